@@ -1,11 +1,16 @@
 package graph;
 
+import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StreamTokenizer;
 import java.util.HashSet;
 import java.util.Scanner;
 import java.util.Set;
 
+import graph.compact.GraphBuilder;
 import graph.impl.Graph;
 
 /**
@@ -36,15 +41,29 @@ public class GraphFactories
     public static IGraph createUndirectedGraphFromAdjacencyList(InputStream in)
     throws IOException
     {
-        IGraph g = Graph.createGraph();
-        Scanner scan = new Scanner(in);
-        while (scan.hasNext()){
-            INode src = g.getOrCreateNode(scan.next());
-            INode dst = g.getOrCreateNode(scan.next());
-            src.addUndirectedEdgeToNode(dst, 1);
+        return createUndirectedGraphFromAdjacencyList(in, null);
+    }
+    
+    /**
+     * Same as {@link #createUndirectedGraphFromAdjacencyList(InputStream)}, but
+     * creates the graph with the given provider instead of the one picked
+     * by junit.VERSION. A null provider means the default.
+     * 
+     * @param in
+     * @param provider
+     * @return
+     * @throws IOException
+     */
+    public static IGraph createUndirectedGraphFromAdjacencyList(InputStream in, GraphProvider provider)
+    throws IOException
+    {
+        GraphBuilder builder = new GraphBuilder(16, 16, true);
+        StreamTokenizer tokens = tokenizer(in);
+        while (tokens.nextToken() != StreamTokenizer.TT_EOF){
+            String src = tokens.sval;
+            builder.addEdge(src, nextToken(tokens), 1);
         }
-        scan.close();
-        return g;
+        return builder.build(provider(provider));
     }
     
     /**
@@ -67,18 +86,31 @@ public class GraphFactories
     public static IGraph createUndirectedWeightedGraphFromEdgeList(InputStream in)
     throws IOException
     {
-        IGraph g = Graph.createGraph();
-        Scanner scanner = new Scanner(in);
-        while (scanner.hasNext()){
-            String src=scanner.next();
-            String dst=scanner.next();
-            int cost=scanner.nextInt();
-            INode srcNode=g.getOrCreateNode(src);
-            INode dstNode=g.getOrCreateNode(dst);
-            srcNode.addUndirectedEdgeToNode(dstNode, cost);
+        return createUndirectedWeightedGraphFromEdgeList(in, null);
+    }
+    
+    /**
+     * Same as {@link #createUndirectedWeightedGraphFromEdgeList(InputStream)}, but
+     * creates the graph with the given provider instead of the one picked
+     * by junit.VERSION. A null provider means the default.
+     * 
+     * @param in
+     * @param provider
+     * @return
+     * @throws IOException
+     */
+    public static IGraph createUndirectedWeightedGraphFromEdgeList(InputStream in, GraphProvider provider)
+    throws IOException
+    {
+        GraphBuilder builder = new GraphBuilder(16, 16, true);
+        StreamTokenizer tokens = tokenizer(in);
+        while (tokens.nextToken() != StreamTokenizer.TT_EOF){
+            String src=tokens.sval;
+            String dst=nextToken(tokens);
+            int cost=Integer.parseInt(nextToken(tokens));
+            builder.addEdge(src, dst, cost);
         }
-        scanner.close();
-        return g;
+        return builder.build(provider(provider));
     }
     
     /**
@@ -290,7 +322,23 @@ public class GraphFactories
     public static IGraph readFromDotFile(InputStream in)
     throws IOException
     {
-        IGraph g = Graph.createGraph();
+        return readFromDotFile(in, null);
+    }
+    
+    /**
+     * Same as {@link #readFromDotFile(InputStream)}, but creates the graph
+     * with the given provider instead of the one picked by junit.VERSION.
+     * A null provider means the default.
+     * 
+     * @param in
+     * @param provider
+     * @return
+     * @throws IOException
+     */
+    public static IGraph readFromDotFile(InputStream in, GraphProvider provider)
+    throws IOException
+    {
+        GraphBuilder builder = new GraphBuilder(16, 16, true);
         Scanner scan=new Scanner(in);
         while (scan.hasNextLine()) {
             String line=scan.nextLine();
@@ -303,18 +351,37 @@ public class GraphFactories
             {
                 continue;
             }
-            System.out.println(line);
             Scanner lscan=new Scanner(line);
             String srcname=lscan.next();
             String dstname=lscan.next();
             int weight=lscan.nextInt();
             lscan.close();
-            INode src=g.getOrCreateNode(srcname);
-            INode dst=g.getOrCreateNode(dstname);
-            src.addUndirectedEdgeToNode(dst, weight);
+            builder.addEdge(srcname, dstname, weight);
         }
         scan.close();
-        return g;
+        return builder.build(provider(provider));
+    }
+    
+    private static GraphProvider provider(GraphProvider provider) {
+        return provider==null ? GraphProviders.current() : provider;
+    }
+    
+    /**
+     * Tokenizer that splits the input on whitespace and nothing else.
+     */
+    private static StreamTokenizer tokenizer(InputStream in) {
+        StreamTokenizer tokens = new StreamTokenizer(new BufferedReader(new InputStreamReader(in)));
+        tokens.resetSyntax();
+        tokens.wordChars(33, 255);
+        tokens.whitespaceChars(0, 32);
+        return tokens;
+    }
+    
+    private static String nextToken(StreamTokenizer tokens) throws IOException {
+        if (tokens.nextToken() == StreamTokenizer.TT_EOF) {
+            throw new EOFException("Unexpected end of input on line "+tokens.lineno());
+        }
+        return tokens.sval;
     }
     
 }
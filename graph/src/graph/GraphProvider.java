@@ -0,0 +1,51 @@
+package graph;
+
+/**
+ * Service provider interface for a graph implementation: something that can
+ * create empty graphs and standalone nodes.
+ * 
+ * Implementations are found with {@link java.util.ServiceLoader}, by listing
+ * them in META-INF/services/graph.GraphProvider, and looked up by name
+ * through {@link GraphProviders}. The static factories in
+ * {@link GraphFactories} and {@link graph.impl.SYSolver} accept a provider,
+ * so different loaders can use different implementations at the same time.
+ * 
+ * @author jspacco
+ *
+ */
+public interface GraphProvider
+{
+    /**
+     * The name used to look up this provider, such as "impl" for
+     * the code in graph.impl.
+     * 
+     * @return
+     */
+    String getName();
+    
+    /**
+     * Create a new, empty graph.
+     * 
+     * @return
+     */
+    IGraph createGraph();
+    
+    /**
+     * Create a new, empty graph with room for about the given number of
+     * nodes. Providers that cannot presize just create a normal graph.
+     * 
+     * @param expectedNodes
+     * @return
+     */
+    default IGraph createGraph(int expectedNodes) {
+        return createGraph();
+    }
+    
+    /**
+     * Create a new node with the given name and no edges.
+     * 
+     * @param name
+     * @return
+     */
+    INode createNode(String name);
+}
@@ -0,0 +1,139 @@
+package graph;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+import graph.impl.DefaultGraphProvider;
+import graph.impl.Graph;
+import junit.VERSION;
+
+/**
+ * Looks up {@link GraphProvider}s by name. Each provider is resolved once and
+ * then cached, so creating graphs and nodes through a provider costs the same
+ * as calling a constructor.
+ * 
+ * Providers registered with {@link ServiceLoader} are found by their
+ * {@link GraphProvider#getName()}. Any other name, such as "sol" or
+ * "broken3", is treated as a package under graph containing public Graph
+ * and Node classes (like the ones in lib/broken.jar), whose constructors are
+ * looked up with reflection once and then called through method handles.
+ * 
+ * @author jspacco
+ *
+ */
+public class GraphProviders
+{
+    private static final Map<String,GraphProvider> providers=new ConcurrentHashMap<String,GraphProvider>();
+    private static final Map<Integer,GraphProvider> versions=new ConcurrentHashMap<Integer,GraphProvider>();
+    
+    static {
+        for (GraphProvider provider : ServiceLoader.load(GraphProvider.class, GraphProviders.class.getClassLoader())) {
+            providers.putIfAbsent(provider.getName(), provider);
+        }
+        // in case META-INF/services did not make it onto the classpath
+        providers.putIfAbsent("impl", new DefaultGraphProvider());
+    }
+    
+    /**
+     * Return the provider with the given name.
+     * 
+     * @param name
+     * @return
+     * @throws IllegalArgumentException if there is no such provider
+     */
+    public static GraphProvider get(String name) {
+        return providers.computeIfAbsent(name, ReflectiveProvider::new);
+    }
+    
+    /**
+     * Return the provider for the given version number, using the numbering
+     * of junit.VERSION: 0 is graph.impl, -1 is graph.sol, and any other
+     * number n is graph.broken<i>n</i>.
+     * 
+     * @param version
+     * @return
+     */
+    public static GraphProvider forVersion(int version) {
+        GraphProvider provider=versions.get(version);
+        if (provider==null) {
+            if (version==0) {
+                provider=get("impl");
+            } else if (version==-1) {
+                provider=get("sol");
+            } else {
+                provider=get("broken"+version);
+            }
+            versions.putIfAbsent(version, provider);
+        }
+        return provider;
+    }
+    
+    /**
+     * Return the provider picked by the version number in junit.VERSION,
+     * which is what {@link Graph#createGraph()} uses.
+     * 
+     * @return
+     */
+    public static GraphProvider current() {
+        return forVersion(VERSION.version);
+    }
+    
+    /**
+     * Provider for a package containing Graph and Node classes with
+     * public constructors.
+     */
+    private static class ReflectiveProvider implements GraphProvider
+    {
+        private final String name;
+        private final MethodHandle graphConstructor;
+        private final MethodHandle nodeConstructor;
+        
+        ReflectiveProvider(String name) {
+            this.name=name;
+            try {
+                MethodHandles.Lookup lookup=MethodHandles.publicLookup();
+                Class<?> graph=Class.forName("graph."+name+".Graph");
+                Class<?> node=Class.forName("graph."+name+".Node");
+                graphConstructor=lookup.findConstructor(graph, MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(IGraph.class));
+                nodeConstructor=lookup.findConstructor(node, MethodType.methodType(void.class, String.class))
+                        .asType(MethodType.methodType(INode.class, String.class));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("No graph implementation named "+name, e);
+            }
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public IGraph createGraph() {
+            try {
+                return (IGraph)graphConstructor.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+        
+        public INode createNode(String nodeName) {
+            try {
+                return (INode)nodeConstructor.invokeExact(nodeName);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+    
+    private GraphProviders() {
+        // private constructor to prevent creating instances
+        // this class exists only to hold static methods
+    }
+}
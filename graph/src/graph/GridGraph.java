@@ -1,93 +1,107 @@
 package graph;
 
-import java.util.Stack;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 
+import graph.compact.NodeNames;
+import graph.gen.MazeGenerator;
 import graph.impl.Graph;
 
 /**
  * Pretty cool class for creating "grid graphs", which are graphs with the nodes
  * arranged on a grid of rows and columns. Perfomring a DFS on this graph creates
- * a maze.
+ * a maze; {@link MazeGenerator} does that directly, without building the graph.
  * 
  * @author jspacco
  *
  */
 public class GridGraph
 {
+    /**
+     * Create a grid graph as a regular mutable {@link Graph}.
+     * 
+     * For large grids use {@link graph.gen.GraphGenerators#grid(int, int)},
+     * which builds the same graph in a compact read-only form.
+     * 
+     * @param rows
+     * @param cols
+     * @return
+     */
     public static IGraph makeGridGraph(int rows, int cols) {
         IGraph graph = Graph.createGraph();
         // Each node is named something like r2c1, which means "row 2, column 1".
         // Nodes have edges to other nodes that are to their left or right, and
-        // above or below.
+        // above or below. Each cell only adds the undirected edges to its right
+        // and below, which covers every edge exactly once, and the row above
+        // is kept around so that every node is looked up by name only once.
+        INode[] above = new INode[cols];
         for (int r = 0; r < rows; r++){
+            INode left = null;
             for (int c=0; c < cols; c++){
-                if (r > 0) {
-                    INode current = graph.getOrCreateNode(String.format("r%dc%d", r, c));
-                    INode other = graph.getOrCreateNode(String.format("r%dc%d", r-1, c));
-                    current.addUndirectedEdgeToNode(other, 1);
+                INode current = graph.getOrCreateNode("r" + r + "c" + c);
+                if (left != null) {
+                    left.addUndirectedEdgeToNode(current, 1);
                 }
-                if (r < rows-1) {
-                    INode current = graph.getOrCreateNode(String.format("r%dc%d", r, c));
-                    INode other = graph.getOrCreateNode(String.format("r%dc%d", r+1, c));
-                    current.addUndirectedEdgeToNode(other, 1);
-                }
-                if (c > 0) {
-                    INode current = graph.getOrCreateNode(String.format("r%dc%d", r, c));
-                    INode other = graph.getOrCreateNode(String.format("r%dc%d", r, c-1));
-                    current.addUndirectedEdgeToNode(other, 1);
-                }
-                if (c < cols-1) {
-                    INode current = graph.getOrCreateNode(String.format("r%dc%d", r, c));
-                    INode other = graph.getOrCreateNode(String.format("r%dc%d", r, c+1));
-                    current.addUndirectedEdgeToNode(other, 1);
+                if (above[c] != null) {
+                    above[c].addUndirectedEdgeToNode(current, 1);
                 }
+                above[c] = current;
+                left = current;
             }
         }
         return graph;
     }
     
-    public static void main(String[] args){
-        int rows = 5;
-        int cols = 5;
-        
-        IGraph g = makeGridGraph(rows, cols);
-
-        // This code generates a maze with the given number of rows and cols
-        // using DFS, and prints it out in Graphviz format. 
-        System.out.printf("graph gr {\n");
-        
-        
-        g.depthFirstSearch("r0c0", new NodeVisitor() {
-            Stack<INode> nodes = new Stack<INode>();
+    /**
+     * Write a random maze with the given number of rows and columns to the
+     * given writer in Graphviz format. The maze is generated with a
+     * randomized DFS by {@link MazeGenerator}, and each passage is written out
+     * as soon as it is carved, so the grid graph is never built.
+     * 
+     * @param rows
+     * @param cols
+     * @param seed
+     * @param out
+     */
+    public static void writeMaze(int rows, int cols, long seed, final PrintWriter out) {
+        final NodeNames names = NodeNames.grid(rows, cols);
+        out.print("graph gr {\n");
+        MazeGenerator.depthFirst(rows, cols, seed, new MazeGenerator.EdgeSink() {
             @Override
-            public void visit(INode node) {
-                // Go through the stack of nodes we've already seen,
-                // and connect to it.
-                for (INode n : nodes){
-                    if (node.hasEdge(n)){
-                        System.out.printf("%s -- %s;\n", n.getName(), node.getName());
-                        break;
-                    }
-                }
-                nodes.push(node);
+            public void edge(int from, int to) {
+                out.print(names.name(from));
+                out.print(" -- ");
+                out.print(names.name(to));
+                out.print(";\n");
             }
         });
         
         // This creates a bunch of "rank=same" directives that tell graphviz to lay out
         // the graph a certain way.
         for (int r=0; r<rows; r++){
-            String rank = "";
+            out.print("{ rank=same; ");
             for (int c=0; c<cols; c++){
-                String label = String.format("r%dc%d", r, c);
-                //System.out.printf("%s [\n\tlabel = %s\npos = \"%d,%d\" ];\n", label, label, r, c);
-                rank += label + ", ";
+                if (c > 0) {
+                    out.print(", ");
+                }
+                out.print(names.name(r*cols+c));
             }
-            // remove last comma
-            rank = rank.substring(0, rank.length()-2);
-            System.out.printf("{ rank=same; %s }\n", rank);
+            out.print(" }\n");
         }
         
-        System.out.printf("}\n");
+        out.print("}\n");
+        out.flush();
+    }
+    
+    public static void main(String[] args){
+        // This code generates a maze with the given number of rows and cols
+        // and prints it out in Graphviz format.
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int cols = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        
+        writeMaze(rows, cols, seed, new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out))));
     }
     
 }
@@ -0,0 +1,243 @@
+package graph;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * How many bytes of heap a graph uses, broken down by what they are for.
+ * Reports are computed from the sizes of the structures a graph knows it
+ * holds (so many map entries, an int array of such a length) and a model of
+ * the JVM's object layout, not by walking the heap, so they cost at most one
+ * pass over the nodes and edges and do not depend on reflection. They are
+ * estimates: the real layout can differ by a few bytes per object, and a
+ * HashMap is assumed to have the capacity it would reach by insertion.
+ *
+ * The layout is read once from the running HotSpot JVM (whether object
+ * references are compressed), and defaults to the compressed layout of a 64
+ * bit JVM with a heap under 32 GB if it cannot be read.
+ *
+ * @author jspacco
+ *
+ */
+public final class MemoryFootprint
+{
+    public enum Category
+    {
+        // node names, as Strings or dictionaries
+        NAMES,
+        // node objects
+        NODES,
+        // the edges: neighbor maps or arrays of neighbor ids
+        ADJACENCY,
+        // edge weights stored apart from the adjacency
+        WEIGHTS,
+        // lookup structures: name to node maps, row offsets
+        INDEX,
+        // anything kept only to make later calls faster
+        CACHES
+    }
+
+    /**
+     * A graph, or part of one, that can report its footprint.
+     */
+    public interface Source
+    {
+        MemoryFootprint memoryFootprint();
+    }
+
+    /**
+     * Size of an object reference.
+     */
+    public static final int REFERENCE;
+    /**
+     * Size of the header of an ordinary object.
+     */
+    public static final int OBJECT_HEADER;
+    /**
+     * Size of the header of an array, including its length.
+     */
+    public static final int ARRAY_HEADER;
+    private static final int ALIGNMENT=8;
+
+    static {
+        boolean compressed=true;
+        try {
+            com.sun.management.HotSpotDiagnosticMXBean hotspot=ManagementFactory
+                    .getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class);
+            compressed=Boolean.parseBoolean(hotspot.getVMOption("UseCompressedOops").getValue());
+        } catch (RuntimeException | LinkageError e) {
+            // not HotSpot; keep the common layout
+        }
+        REFERENCE=compressed ? 4 : 8;
+        OBJECT_HEADER=compressed ? 12 : 16;
+        ARRAY_HEADER=compressed ? 16 : 24;
+    }
+
+    private final String implementation;
+    private final long[] bytes;
+
+    private MemoryFootprint(String implementation, long[] bytes) {
+        this.implementation=implementation;
+        this.bytes=bytes;
+    }
+
+    /**
+     * The footprint of any graph that can report one.
+     *
+     * @param g
+     * @return
+     * @throws IllegalArgumentException if the graph cannot report its footprint
+     */
+    public static MemoryFootprint of(IGraph g) {
+        if (g instanceof Source) {
+            return ((Source)g).memoryFootprint();
+        }
+        throw new IllegalArgumentException(g.getClass().getName()+" does not report its memory footprint");
+    }
+
+    /**
+     * Name of the class that was measured.
+     *
+     * @return
+     */
+    public String getImplementation() {
+        return implementation;
+    }
+
+    public long get(Category category) {
+        return bytes[category.ordinal()];
+    }
+
+    public long total() {
+        long total=0;
+        for (long b : bytes) {
+            total+=b;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb=new StringBuilder(implementation).append(": ").append(total()).append(" bytes");
+        for (Category category : Category.values()) {
+            if (get(category)>0) {
+                sb.append(", ").append(category.name().toLowerCase()).append(' ').append(get(category));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Adds up bytes by category.
+     */
+    public static class Builder
+    {
+        private final String implementation;
+        private final long[] bytes=new long[Category.values().length];
+
+        public Builder(String implementation) {
+            this.implementation=implementation;
+        }
+
+        public Builder add(Category category, long size) {
+            bytes[category.ordinal()]+=size;
+            return this;
+        }
+
+        /**
+         * Add every category of another report, such as the graph inside a
+         * wrapper.
+         *
+         * @param other
+         * @return
+         */
+        public Builder addAll(MemoryFootprint other) {
+            for (int i=0; i<bytes.length; i++) {
+                bytes[i]+=other.bytes[i];
+            }
+            return this;
+        }
+
+        public MemoryFootprint build() {
+            return new MemoryFootprint(implementation, bytes.clone());
+        }
+    }
+
+    private static long align(long size) {
+        return (size+ALIGNMENT-1)/ALIGNMENT*ALIGNMENT;
+    }
+
+    /**
+     * Size of an object with the given number of reference fields and bytes
+     * of primitive fields.
+     *
+     * @param references
+     * @param primitiveBytes
+     * @return
+     */
+    public static long object(int references, int primitiveBytes) {
+        return align(OBJECT_HEADER+(long)references*REFERENCE+primitiveBytes);
+    }
+
+    /**
+     * Size of an array of the given length, with elements of the given size.
+     *
+     * @param elementSize
+     * @param length
+     * @return
+     */
+    public static long array(int elementSize, long length) {
+        return align(ARRAY_HEADER+elementSize*length);
+    }
+
+    public static long referenceArray(long length) {
+        return array(REFERENCE, length);
+    }
+
+    /**
+     * Size of a String with its characters, which take one byte each when
+     * they all fit in Latin-1 and two otherwise.
+     *
+     * @param s
+     * @return
+     */
+    public static long string(String s) {
+        boolean latin1=true;
+        for (int i=0; i<s.length() && latin1; i++) {
+            latin1=s.charAt(i)<256;
+        }
+        // value, then hash, coder and hashIsZero
+        return object(1, 6)+array(latin1 ? 1 : 2, s.length());
+    }
+
+    /**
+     * Size of a HashMap with the given number of entries, counting the map,
+     * its table and its entries but not the keys and values.
+     *
+     * @param entries
+     * @return
+     */
+    public static long hashMap(int entries) {
+        // table, entrySet, keySet, values; size, modCount, threshold, loadFactor
+        long size=object(4, 16);
+        if (entries>0) {
+            int capacity=16;
+            while (entries>capacity*0.75) {
+                capacity*=2;
+            }
+            // key, value, next; hash
+            size+=referenceArray(capacity)+entries*object(3, 4);
+        }
+        return size;
+    }
+
+    /**
+     * Size of an Integer box, or 0 for the values that
+     * {@link Integer#valueOf(int)} shares from its cache.
+     *
+     * @param value
+     * @return
+     */
+    public static long boxedInt(int value) {
+        return value>=-128 && value<=127 ? 0 : object(0, 4);
+    }
+}
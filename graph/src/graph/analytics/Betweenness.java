@@ -0,0 +1,280 @@
+package graph.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import graph.compact.CompactGraph;
+import graph.compact.LongHeap;
+
+/**
+ * Betweenness centrality using Brandes' algorithm: one shortest path search
+ * from each source, followed by a pass back through the nodes in order of
+ * decreasing distance that accumulates the dependency of the source on every
+ * node. Unweighted graphs are searched with BFS and weighted graphs with
+ * Dijkstra's algorithm, which requires all weights to be positive; a weighted
+ * graph with any other weight is rejected.
+ *
+ * Sources are handed out to one task per thread of a {@link ForkJoinPool}.
+ * Each task has its own distance, path count and dependency arrays, and its
+ * own array of scores, so the tasks never share anything until their scores
+ * are added up at the end. Memory use is a few arrays of n per thread, not
+ * the n by n table of distances that calling {@link graph.IGraph#dijkstra(String)}
+ * from every node would need.
+ *
+ * Scores count ordered pairs of nodes: the score of v is the sum over all
+ * pairs s != t of the fraction of shortest paths from s to t that go through
+ * v. In an undirected graph every pair is counted in both directions, so
+ * the scores are twice the usual undirected betweenness.
+ *
+ * @author jspacco
+ *
+ */
+public class Betweenness
+{
+    private Betweenness() {
+    }
+
+    /**
+     * Exact betweenness of every node, indexed by node id, using every node
+     * as a source. Runs on the common pool.
+     *
+     * @param g
+     * @return
+     */
+    public static double[] exact(CompactGraph g) {
+        return exact(g, ForkJoinPool.commonPool());
+    }
+
+    public static double[] exact(CompactGraph g, ForkJoinPool pool) {
+        int[] sources=new int[g.nodeCount()];
+        for (int i=0; i<sources.length; i++) {
+            sources[i]=i;
+        }
+        return fromSources(g, sources, pool);
+    }
+
+    /**
+     * Estimate the betweenness of every node from the given number of
+     * sources, drawn uniformly at random with replacement. The dependencies
+     * are scaled by n/samples, so the estimates are unbiased and on the same
+     * scale as {@link #exact(CompactGraph)}. See {@link #errorBound(int, int, double)}
+     * for how close they are.
+     *
+     * @param g
+     * @param samples
+     * @param seed
+     * @return
+     */
+    public static double[] approximate(CompactGraph g, int samples, long seed) {
+        return approximate(g, samples, seed, ForkJoinPool.commonPool());
+    }
+
+    public static double[] approximate(CompactGraph g, int samples, long seed, ForkJoinPool pool) {
+        int n=g.nodeCount();
+        if (samples<=0) {
+            throw new IllegalArgumentException("Need at least one sample but got "+samples);
+        }
+        SplittableRandom random=new SplittableRandom(seed);
+        int[] sources=new int[samples];
+        for (int i=0; i<samples; i++) {
+            sources[i]=random.nextInt(n);
+        }
+        double[] scores=fromSources(g, sources, pool);
+        double scale=(double)n/samples;
+        for (int i=0; i<n; i++) {
+            scores[i]*=scale;
+        }
+        return scores;
+    }
+
+    /**
+     * Bound on the error of {@link #approximate(CompactGraph, int, long)}.
+     * With probability at least 1-delta, every estimate is within
+     * errorBound*n*(n-1) of the exact score. This is Hoeffding's inequality
+     * applied to each node, since the dependency of a single source on a node
+     * is between 0 and n-2, with a union bound over all n nodes.
+     *
+     * @param n number of nodes
+     * @param samples number of sampled sources
+     * @param delta probability that the bound does not hold
+     * @return
+     */
+    public static double errorBound(int n, int samples, double delta) {
+        return Math.sqrt(Math.log(2.0*n/delta)/(2.0*samples));
+    }
+
+    /**
+     * Number of samples needed so that {@link #errorBound(int, int, double)}
+     * is at most epsilon.
+     *
+     * @param n
+     * @param epsilon
+     * @param delta
+     * @return
+     */
+    public static int samplesFor(int n, double epsilon, double delta) {
+        return (int)Math.ceil(Math.log(2.0*n/delta)/(2.0*epsilon*epsilon));
+    }
+
+    /**
+     * Sum of the dependencies of the given sources on every node, without
+     * any scaling. A source may appear more than once.
+     *
+     * @param g
+     * @param sources
+     * @param pool
+     * @return
+     * @throws IllegalArgumentException if the graph is weighted and has an
+     *      edge whose weight is not positive
+     */
+    public static double[] fromSources(CompactGraph g, int[] sources, ForkJoinPool pool) {
+        if (g.isWeighted()) {
+            // Dijkstra would count paths through zero or negative edges wrong
+            int[] offsets=g.offsets();
+            for (int u=0; u<g.nodeCount(); u++) {
+                for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                    if (g.weight(e)<=0) {
+                        throw new IllegalArgumentException("Betweenness needs positive weights but found "
+                                +g.weight(e)+" on an edge of "+g.name(u));
+                    }
+                }
+            }
+        }
+        int tasks=Math.max(1, Math.min(pool.getParallelism(), sources.length));
+        AtomicInteger next=new AtomicInteger();
+        List<ForkJoinTask<double[]>> running=new ArrayList<ForkJoinTask<double[]>>(tasks);
+        for (int i=0; i<tasks; i++) {
+            running.add(pool.submit(() -> {
+                Workspace work=new Workspace(g);
+                int s;
+                while ((s=next.getAndIncrement())<sources.length) {
+                    work.accumulate(sources[s]);
+                }
+                return work.scores;
+            }));
+        }
+        double[] total=running.get(0).join();
+        for (int i=1; i<tasks; i++) {
+            double[] scores=running.get(i).join();
+            for (int v=0; v<total.length; v++) {
+                total[v]+=scores[v];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The arrays used by one thread. Only the entries of nodes reached from
+     * the current source are reset between sources.
+     */
+    private static class Workspace
+    {
+        private final CompactGraph g;
+        private final int[] offsets;
+        private final int[] targets;
+        private final int[] dist;
+        // number of shortest paths; doubles because the counts grow exponentially
+        private final double[] sigma;
+        private final double[] delta;
+        // nodes in the order they were settled, which is also the BFS queue
+        private final int[] order;
+        private final LongHeap heap;
+        final double[] scores;
+
+        Workspace(CompactGraph g) {
+            int n=g.nodeCount();
+            this.g=g;
+            this.offsets=g.offsets();
+            this.targets=g.targets();
+            this.dist=new int[n];
+            this.sigma=new double[n];
+            this.delta=new double[n];
+            this.order=new int[n];
+            this.heap=g.isWeighted() ? new LongHeap(n) : null;
+            this.scores=new double[n];
+            Arrays.fill(dist, Integer.MAX_VALUE);
+        }
+
+        void accumulate(int source) {
+            int count=g.isWeighted() ? dijkstra(source) : bfs(source);
+            // successors of v are settled after v, so walking the order
+            // backwards finishes every successor before v
+            for (int i=count-1; i>=0; i--) {
+                int v=order[i];
+                double sum=0;
+                for (int e=offsets[v]; e<offsets[v+1]; e++) {
+                    int w=targets[e];
+                    if ((long)dist[v]+g.weight(e)==dist[w]) {
+                        sum+=(1+delta[w])/sigma[w];
+                    }
+                }
+                delta[v]=sigma[v]*sum;
+                if (v!=source) {
+                    scores[v]+=delta[v];
+                }
+            }
+            for (int i=0; i<count; i++) {
+                int v=order[i];
+                dist[v]=Integer.MAX_VALUE;
+                sigma[v]=0;
+                delta[v]=0;
+            }
+        }
+
+        private int bfs(int source) {
+            int head=0;
+            int tail=0;
+            dist[source]=0;
+            sigma[source]=1;
+            order[tail++]=source;
+            while (head<tail) {
+                int u=order[head++];
+                for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                    int t=targets[e];
+                    if (dist[t]==Integer.MAX_VALUE) {
+                        dist[t]=dist[u]+1;
+                        order[tail++]=t;
+                    }
+                    if (dist[t]==dist[u]+1) {
+                        sigma[t]+=sigma[u];
+                    }
+                }
+            }
+            return tail;
+        }
+
+        private int dijkstra(int source) {
+            int count=0;
+            dist[source]=0;
+            sigma[source]=1;
+            heap.clear();
+            heap.push(LongHeap.pack(0, source));
+            while (!heap.isEmpty()) {
+                long entry=heap.pop();
+                int u=LongHeap.id(entry);
+                if (LongHeap.cost(entry)>dist[u]) {
+                    // stale entry, u was already settled more cheaply
+                    continue;
+                }
+                order[count++]=u;
+                for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                    int t=targets[e];
+                    int alt=dist[u]+g.weight(e);
+                    if (alt<dist[t]) {
+                        dist[t]=alt;
+                        sigma[t]=sigma[u];
+                        heap.push(LongHeap.pack(alt, t));
+                    } else if (alt==dist[t]) {
+                        sigma[t]+=sigma[u];
+                    }
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package graph.analytics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import graph.IGraph;
+import graph.compact.CompactGraph;
+import graph.compact.NameDictionary;
+
+/**
+ * k-core decomposition of an undirected graph, where every edge is stored
+ * in both directions. The k-core is the largest subgraph in which every node
+ * has at least k neighbors, and the core number of a node is the largest k
+ * whose k-core contains it.
+ *
+ * Neither algorithm touches the input graph: the degrees being peeled are
+ * kept in an int array.
+ *
+ * @author jspacco
+ *
+ */
+public class CoreDecomposition
+{
+    private final CompactGraph graph;
+    private final int[] core;
+
+    private CoreDecomposition(CompactGraph graph, int[] core) {
+        this.graph=graph;
+        this.core=core;
+    }
+
+    /**
+     * Decompose any graph, compiling it to a {@link CompactGraph} first
+     * unless it already is one.
+     *
+     * @param g
+     * @return
+     */
+    public static CoreDecomposition of(IGraph g) {
+        return peel(g instanceof CompactGraph ? (CompactGraph)g : CompactGraph.copyOf(g));
+    }
+
+    /**
+     * Batagelj and Zaversnik's bucket peeling, in O(n+m) time. The nodes
+     * are kept sorted by current degree in one array, with the start of each
+     * degree's bucket in another. Removing the node of smallest degree lowers
+     * the degree of each of its remaining neighbors by one, which moves the
+     * neighbor to the front of its bucket and then across the boundary into
+     * the bucket below by a single swap.
+     *
+     * @param g
+     * @return
+     */
+    public static CoreDecomposition peel(CompactGraph g) {
+        int n=g.nodeCount();
+        int[] offsets=g.offsets();
+        int[] targets=g.targets();
+        int[] degree=new int[n];
+        int maxDegree=0;
+        for (int u=0; u<n; u++) {
+            degree[u]=offsets[u+1]-offsets[u];
+            maxDegree=Math.max(maxDegree, degree[u]);
+        }
+        // counting sort of the nodes by degree
+        int[] bucket=new int[maxDegree+1];
+        for (int u=0; u<n; u++) {
+            bucket[degree[u]]++;
+        }
+        int start=0;
+        for (int d=0; d<=maxDegree; d++) {
+            int size=bucket[d];
+            bucket[d]=start;
+            start+=size;
+        }
+        int[] sorted=new int[n];
+        int[] position=new int[n];
+        for (int u=0; u<n; u++) {
+            position[u]=bucket[degree[u]]++;
+            sorted[position[u]]=u;
+        }
+        for (int d=maxDegree; d>0; d--) {
+            bucket[d]=bucket[d-1];
+        }
+        bucket[0]=0;
+
+        for (int i=0; i<n; i++) {
+            int u=sorted[i];
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                int v=targets[e];
+                if (degree[v]>degree[u]) {
+                    // swap v with the first node of its bucket, then shrink the bucket
+                    int dv=degree[v];
+                    int first=bucket[dv];
+                    int w=sorted[first];
+                    if (w!=v) {
+                        sorted[position[v]]=w;
+                        position[w]=position[v];
+                        sorted[first]=v;
+                        position[v]=first;
+                    }
+                    bucket[dv]++;
+                    degree[v]--;
+                }
+            }
+        }
+        // the remaining degree of each node when it was removed is its core number
+        return new CoreDecomposition(g, degree);
+    }
+
+    /**
+     * Parallel h-index iteration: every node starts with its degree, and in
+     * each round replaces it with the h-index of its neighbors' values (the
+     * largest h such that at least h neighbors have a value of at least h).
+     * The values only go down and settle on the core numbers. Every node is
+     * updated in parallel from the previous round's values, so the result is
+     * the same for any number of threads. Rounds stop when nothing changes.
+     *
+     * @param g
+     * @return
+     */
+    public static CoreDecomposition hIndex(CompactGraph g) {
+        int n=g.nodeCount();
+        int[] offsets=g.offsets();
+        int[] targets=g.targets();
+        int[] current=new int[n];
+        for (int u=0; u<n; u++) {
+            current[u]=offsets[u+1]-offsets[u];
+        }
+        // nodes are split into ranges, and each range keeps one scratch
+        // array for counting across all rounds, sized by the largest degree
+        // in the range, so a single hub only costs one large array
+        int ranges=Math.max(1, Math.min(n, 4*ForkJoinPool.commonPool().getParallelism()));
+        int size=(n+ranges-1)/ranges;
+        int[][] scratch=new int[ranges][];
+        for (int r=0; r<ranges; r++) {
+            int largest=0;
+            for (int u=r*size; u<Math.min(n, r*size+size); u++) {
+                largest=Math.max(largest, current[u]);
+            }
+            scratch[r]=new int[largest+1];
+        }
+        int[] next=new int[n];
+        boolean changed=true;
+        while (changed) {
+            final int[] values=current;
+            final int[] updated=next;
+            changed=IntStream.range(0, ranges).parallel().map(r -> {
+                int[] count=scratch[r];
+                int diff=0;
+                for (int u=r*size; u<Math.min(n, r*size+size); u++) {
+                    int h=hIndex(values, targets, offsets[u], offsets[u+1], values[u], count);
+                    updated[u]=h;
+                    if (h!=values[u]) {
+                        diff=1;
+                    }
+                }
+                return diff;
+            }).sum()>0;
+            next=current;
+            current=updated;
+        }
+        return new CoreDecomposition(g, current);
+    }
+
+    /**
+     * The h-index of the values of targets[lo..hi), which is never more than
+     * the given upper bound. Counting is done in the first bound+1 slots of
+     * the given scratch array, so no sorting is needed, and only those slots
+     * are cleared again afterwards.
+     */
+    private static int hIndex(int[] values, int[] targets, int lo, int hi, int bound, int[] count) {
+        if (bound==0) {
+            return 0;
+        }
+        for (int e=lo; e<hi; e++) {
+            count[Math.min(values[targets[e]], bound)]++;
+        }
+        int atLeast=0;
+        int h=bound;
+        while (h>0) {
+            atLeast+=count[h];
+            if (atLeast>=h) {
+                break;
+            }
+            h--;
+        }
+        Arrays.fill(count, 0, bound+1, 0);
+        return h;
+    }
+
+    public CompactGraph graph() {
+        return graph;
+    }
+
+    /**
+     * The core number of every node, indexed by node id. This is the internal
+     * array, not a copy.
+     *
+     * @return
+     */
+    public int[] coreNumbers() {
+        return core;
+    }
+
+    public int coreNumber(int id) {
+        return core[id];
+    }
+
+    /**
+     * The largest k for which the k-core is not empty, which is 0 for a
+     * graph with no edges.
+     *
+     * @return
+     */
+    public int maxCore() {
+        int max=0;
+        for (int c : core) {
+            max=Math.max(max, c);
+        }
+        return max;
+    }
+
+    /**
+     * The ids of the nodes in the k-core, in increasing order.
+     *
+     * @param k
+     * @return
+     */
+    public int[] members(int k) {
+        return IntStream.range(0, core.length).filter(u -> core[u]>=k).toArray();
+    }
+
+    /**
+     * The k-core as a new graph: the nodes with core number at least k, with
+     * their names and all the edges between them. The original graph is
+     * unchanged.
+     *
+     * @param k
+     * @return
+     */
+    public CompactGraph kCore(int k) {
+        int[] members=members(k);
+        int[] newId=new int[core.length];
+        Arrays.fill(newId, -1);
+        String[] names=new String[members.length];
+        for (int i=0; i<members.length; i++) {
+            newId[members[i]]=i;
+            names[i]=graph.name(members[i]);
+        }
+        int[] offsets=graph.offsets();
+        int[] targets=graph.targets();
+        int[] coreOffsets=new int[members.length+1];
+        for (int i=0; i<members.length; i++) {
+            int u=members[i];
+            int degree=0;
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                if (newId[targets[e]]>=0) {
+                    degree++;
+                }
+            }
+            coreOffsets[i+1]=coreOffsets[i]+degree;
+        }
+        // members are in id order, so the renumbered rows stay sorted
+        int[] coreTargets=new int[coreOffsets[members.length]];
+        int[] coreWeights=graph.isWeighted() ? new int[coreTargets.length] : null;
+        int next=0;
+        for (int u : members) {
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                if (newId[targets[e]]>=0) {
+                    coreTargets[next]=newId[targets[e]];
+                    if (coreWeights!=null) {
+                        coreWeights[next]=graph.weight(e);
+                    }
+                    next++;
+                }
+            }
+        }
+        return CompactGraph.fromSortedRows(coreOffsets, coreTargets, coreWeights, NameDictionary.of(names));
+    }
+}
@@ -0,0 +1,420 @@
+package graph.analytics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import graph.IGraph;
+import graph.compact.CompactGraph;
+
+/**
+ * Community detection with the Louvain method on a weighted undirected graph,
+ * where every edge is stored in both directions.
+ *
+ * Each level first moves nodes between communities while that raises the
+ * modularity, then collapses every community into a single node of a smaller
+ * aggregate graph and starts again on that. It stops when a level no longer
+ * merges anything.
+ *
+ * The local moving phase runs in parallel rounds. In a round every node
+ * picks its best community based on the assignment at the start of the
+ * round, then all the moves are applied at once, so the result does not
+ * depend on the number of threads. To stop pairs of nodes from swapping
+ * places forever, a node that is alone in its community only moves into
+ * another singleton community with a smaller id. A round that does not
+ * raise the modularity is undone, which ends the phase.
+ *
+ * The aggregate graphs are kept in CSR form with double weights and a
+ * separate array of self loop weights, so every level after the first is
+ * much smaller than the input.
+ *
+ * @author jspacco
+ *
+ */
+public class Louvain
+{
+    // a round must raise the modularity by at least this much to count
+    private static final double MIN_GAIN=1e-7;
+    private static final int MAX_ROUNDS=100;
+    // nodes handed to a task at a time in the local moving phase
+    private static final int BLOCK=1024;
+
+    private final int[] community;
+    private final int count;
+    private final double modularity;
+    private final int levels;
+
+    private Louvain(int[] community, int count, double modularity, int levels) {
+        this.community=community;
+        this.count=count;
+        this.modularity=modularity;
+        this.levels=levels;
+    }
+
+    /**
+     * Find the communities of any graph, compiling it to a {@link CompactGraph}
+     * first unless it already is one.
+     *
+     * @param g
+     * @return
+     */
+    public static Louvain of(IGraph g) {
+        return detect(g instanceof CompactGraph ? (CompactGraph)g : CompactGraph.copyOf(g));
+    }
+
+    public static Louvain detect(CompactGraph g) {
+        int n=g.nodeCount();
+        double[] weights=new double[g.edgeCount()];
+        for (int e=0; e<weights.length; e++) {
+            weights[e]=g.weight(e);
+        }
+        Level level=new Level(g.offsets(), g.targets(), weights, new double[n]);
+        // community of every original node, in terms of the current level's nodes
+        int[] membership=new int[n];
+        for (int u=0; u<n; u++) {
+            membership[u]=u;
+        }
+        int levels=0;
+        while (true) {
+            int[] assignment=level.moveNodes();
+            int communities=renumber(assignment);
+            if (communities==level.size()) {
+                break;
+            }
+            levels++;
+            for (int u=0; u<n; u++) {
+                membership[u]=assignment[membership[u]];
+            }
+            level=level.aggregate(assignment, communities);
+        }
+        return new Louvain(membership, level.size(), modularity(g, membership), levels);
+    }
+
+    /**
+     * Modularity of the given assignment of nodes to communities: the
+     * fraction of edge weight inside communities, minus the fraction expected
+     * if the edges were placed at random keeping every node's degree.
+     *
+     * @param g
+     * @param community community of every node, indexed by node id
+     * @return
+     */
+    public static double modularity(CompactGraph g, int[] community) {
+        double[] weights=new double[g.edgeCount()];
+        for (int e=0; e<weights.length; e++) {
+            weights[e]=g.weight(e);
+        }
+        return new Level(g.offsets(), g.targets(), weights, new double[g.nodeCount()]).modularity(community);
+    }
+
+    /**
+     * Renumber the values of the array to 0..k-1 in order of first
+     * appearance, and return k.
+     */
+    private static int renumber(int[] assignment) {
+        int[] map=new int[assignment.length];
+        Arrays.fill(map, -1);
+        int next=0;
+        for (int u=0; u<assignment.length; u++) {
+            int c=assignment[u];
+            if (map[c]<0) {
+                map[c]=next++;
+            }
+            assignment[u]=map[c];
+        }
+        return next;
+    }
+
+    /**
+     * The community of every node, numbered 0 to count()-1 and indexed by
+     * node id. This is the internal array, not a copy.
+     *
+     * @return
+     */
+    public int[] communities() {
+        return community;
+    }
+
+    public int community(int id) {
+        return community[id];
+    }
+
+    /**
+     * Number of communities.
+     *
+     * @return
+     */
+    public int count() {
+        return count;
+    }
+
+    public double modularity() {
+        return modularity;
+    }
+
+    /**
+     * Number of aggregation levels that merged at least two nodes.
+     *
+     * @return
+     */
+    public int levels() {
+        return levels;
+    }
+
+    /**
+     * One level of the hierarchy: a weighted graph in CSR form, plus the
+     * weight of each node's self loop, which is the weight of all the edges
+     * inside the community it stands for (counted in both directions).
+     */
+    private static class Level
+    {
+        private final int[] offsets;
+        private final int[] targets;
+        private final double[] weights;
+        private final double[] self;
+        // weighted degree, including the self loop
+        private final double[] degree;
+        private final double total;
+
+        Level(int[] offsets, int[] targets, double[] weights, double[] self) {
+            this.offsets=offsets;
+            this.targets=targets;
+            this.weights=weights;
+            this.self=self;
+            int n=self.length;
+            degree=new double[n];
+            IntStream.range(0, n).parallel().forEach(u -> {
+                double sum=self[u];
+                for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                    sum+=weights[e];
+                }
+                degree[u]=sum;
+            });
+            double sum=0;
+            for (double d : degree) {
+                sum+=d;
+            }
+            total=sum;
+        }
+
+        int size() {
+            return self.length;
+        }
+
+        double modularity(int[] community) {
+            if (total==0) {
+                return 0;
+            }
+            int n=size();
+            double[] inside=new double[n];
+            double[] tot=new double[n];
+            for (int u=0; u<n; u++) {
+                int c=community[u];
+                tot[c]+=degree[u];
+                inside[c]+=self[u];
+                for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                    if (community[targets[e]]==c) {
+                        inside[c]+=weights[e];
+                    }
+                }
+            }
+            double q=0;
+            for (int c=0; c<n; c++) {
+                q+=inside[c]/total-(tot[c]/total)*(tot[c]/total);
+            }
+            return q;
+        }
+
+        /**
+         * The local moving phase. Returns the community of every node of
+         * this level, as the id of one of its nodes.
+         */
+        int[] moveNodes() {
+            int n=size();
+            int[] community=new int[n];
+            double[] tot=new double[n];
+            int[] members=new int[n];
+            for (int u=0; u<n; u++) {
+                community[u]=u;
+                tot[u]=degree[u];
+                members[u]=1;
+            }
+            int[] target=new int[n];
+            double quality=modularity(community);
+            // one scratch per task, created the first time the task runs and
+            // dropped with the rest of this level; tasks take blocks of nodes
+            // as they go, so a few high degree nodes do not hold up a thread
+            int tasks=Math.max(1, Math.min(ForkJoinPool.commonPool().getParallelism(), (n+BLOCK-1)/BLOCK));
+            Scratch[] scratch=new Scratch[tasks];
+            for (int round=0; round<MAX_ROUNDS; round++) {
+                AtomicInteger next=new AtomicInteger();
+                IntStream.range(0, tasks).parallel().forEach(t -> {
+                    if (scratch[t]==null) {
+                        scratch[t]=new Scratch(n);
+                    }
+                    int b;
+                    while ((b=next.getAndIncrement())*BLOCK<n) {
+                        for (int u=b*BLOCK; u<Math.min(n, b*BLOCK+BLOCK); u++) {
+                            target[u]=bestCommunity(u, community, tot, members, scratch[t]);
+                        }
+                    }
+                });
+                int[] previous=community.clone();
+                boolean moved=false;
+                for (int u=0; u<n; u++) {
+                    if (target[u]!=community[u]) {
+                        moved=true;
+                        tot[community[u]]-=degree[u];
+                        members[community[u]]--;
+                        community[u]=target[u];
+                        tot[target[u]]+=degree[u];
+                        members[target[u]]++;
+                    }
+                }
+                if (!moved) {
+                    break;
+                }
+                double q=modularity(community);
+                if (q<quality+MIN_GAIN) {
+                    // this round did not help, so put everything back
+                    System.arraycopy(previous, 0, community, 0, n);
+                    break;
+                }
+                quality=q;
+            }
+            return community;
+        }
+
+        /**
+         * The community that gains the most modularity from moving u into it,
+         * given the assignment at the start of the round; ties go to the
+         * smaller community id.
+         */
+        private int bestCommunity(int u, int[] community, double[] tot, int[] members, Scratch s) {
+            int own=community[u];
+            s.touch(own);
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                int c=community[targets[e]];
+                s.touch(c);
+                s.weight[c]+=weights[e];
+            }
+            double k=degree[u];
+            // gain of joining c, relative to being alone; the common factor
+            // of 1/total is dropped
+            double ownTot=tot[own]-k;
+            double bestGain=s.weight[own]-k*ownTot/total;
+            int best=own;
+            for (int i=0; i<s.size; i++) {
+                int c=s.touched[i];
+                if (c==own) {
+                    continue;
+                }
+                if (members[own]==1 && members[c]==1 && c>own) {
+                    continue;
+                }
+                double gain=s.weight[c]-k*tot[c]/total;
+                if (gain>bestGain || (gain==bestGain && c<best)) {
+                    bestGain=gain;
+                    best=c;
+                }
+            }
+            s.clear();
+            return best;
+        }
+
+        /**
+         * Collapse every community into one node. Edges between two
+         * communities are summed, and edges inside a community become its
+         * self loop.
+         */
+        Level aggregate(int[] assignment, int communities) {
+            int n=size();
+            int[] start=new int[communities+1];
+            for (int c : assignment) {
+                start[c+1]++;
+            }
+            for (int c=0; c<communities; c++) {
+                start[c+1]+=start[c];
+            }
+            int[] nodes=new int[n];
+            int[] cursor=Arrays.copyOf(start, communities);
+            for (int u=0; u<n; u++) {
+                nodes[cursor[assignment[u]]++]=u;
+            }
+
+            double[] newSelf=new double[communities];
+            int[] newOffsets=new int[communities+1];
+            int[] newTargets=new int[Math.max(16, targets.length/2)];
+            double[] newWeights=new double[newTargets.length];
+            Scratch s=new Scratch(communities);
+            int m=0;
+            for (int c=0; c<communities; c++) {
+                double inside=0;
+                for (int i=start[c]; i<start[c+1]; i++) {
+                    int u=nodes[i];
+                    inside+=self[u];
+                    for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                        int d=assignment[targets[e]];
+                        if (d==c) {
+                            inside+=weights[e];
+                        } else {
+                            s.touch(d);
+                            s.weight[d]+=weights[e];
+                        }
+                    }
+                }
+                newSelf[c]=inside;
+                Arrays.sort(s.touched, 0, s.size);
+                if (m+s.size>newTargets.length) {
+                    int capacity=Math.max(m+s.size, 2*newTargets.length);
+                    newTargets=Arrays.copyOf(newTargets, capacity);
+                    newWeights=Arrays.copyOf(newWeights, capacity);
+                }
+                for (int i=0; i<s.size; i++) {
+                    int d=s.touched[i];
+                    newTargets[m]=d;
+                    newWeights[m]=s.weight[d];
+                    m++;
+                }
+                s.clear();
+                newOffsets[c+1]=m;
+            }
+            return new Level(newOffsets, Arrays.copyOf(newTargets, m), Arrays.copyOf(newWeights, m), newSelf);
+        }
+    }
+
+    /**
+     * Sparse accumulator of weight per community, reset in time proportional
+     * to the number of communities touched.
+     */
+    private static class Scratch
+    {
+        final double[] weight;
+        final boolean[] seen;
+        final int[] touched;
+        int size;
+
+        Scratch(int n) {
+            weight=new double[n];
+            seen=new boolean[n];
+            touched=new int[n];
+        }
+
+        void touch(int c) {
+            if (!seen[c]) {
+                seen[c]=true;
+                touched[size++]=c;
+            }
+        }
+
+        void clear() {
+            for (int i=0; i<size; i++) {
+                int c=touched[i];
+                weight[c]=0;
+                seen[c]=false;
+            }
+            size=0;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package graph.analytics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import graph.IGraph;
+import graph.compact.CompactGraph;
+
+/**
+ * Unweighted breadth first searches from many sources at once. Sources are
+ * taken 64 at a time, and every node keeps one bit per source of the batch
+ * in a long: whether that search has seen the node, and whether it is on
+ * the frontier of that search. Expanding a node ORs its frontier bits into
+ * every neighbor, minus the searches that have already seen the neighbor, so
+ * each edge is scanned once per level for all 64 searches instead of once
+ * per search. Searches that reach the same parts of the graph at the same
+ * levels, which is most of them in a small world graph, share nearly all of
+ * their work.
+ *
+ * Batches are handed out to one task per thread of a {@link ForkJoinPool},
+ * so more than 64 sources are searched 64 times the number of threads at a
+ * time. Each task has its own arrays of n longs and never shares them.
+ *
+ * Searches follow edge directions, and edge weights are ignored.
+ *
+ * @author jspacco
+ *
+ */
+public class MultiSourceBfs
+{
+    /**
+     * Receives every node reached by every search, one level at a time: all
+     * the nodes at distance d from a source are reported before any node at
+     * distance d+1 from it. Reports for different batches of sources come
+     * from different threads at once.
+     */
+    public interface LevelVisitor
+    {
+        /**
+         * @param source index of the source in the array of sources searched
+         * @param node id of the node reached
+         * @param level its distance from the source
+         */
+        void visit(int source, int node, int level);
+    }
+
+    private MultiSourceBfs() {
+    }
+
+    /**
+     * Hop distances from each of the given sources, indexed by the position
+     * of the source and then by node id, or -1 for nodes a source cannot
+     * reach. Runs on the common pool.
+     *
+     * @param g
+     * @param sources
+     * @return
+     */
+    public static int[][] distances(IGraph g, String... sources) {
+        CompactGraph c=g instanceof CompactGraph ? (CompactGraph)g : CompactGraph.copyOf(g);
+        int[] ids=new int[sources.length];
+        for (int i=0; i<sources.length; i++) {
+            ids[i]=c.id(sources[i]);
+            if (ids[i]<0) {
+                throw new IllegalArgumentException("No node named "+sources[i]);
+            }
+        }
+        return distances(c, ids, ForkJoinPool.commonPool());
+    }
+
+    public static int[][] distances(CompactGraph g, int[] sources, ForkJoinPool pool) {
+        final int[][] dist=new int[sources.length][];
+        for (int i=0; i<sources.length; i++) {
+            dist[i]=new int[g.nodeCount()];
+            Arrays.fill(dist[i], -1);
+        }
+        search(g, sources, (source, node, level) -> dist[source][node]=level, pool);
+        return dist;
+    }
+
+    /**
+     * Closeness centrality of every node, indexed by node id: the number of
+     * other nodes it reaches divided by the sum of their distances, or 0 for
+     * a node that reaches nothing. Every node is a source, so this is n
+     * searches packed into n/64 passes over the edges.
+     *
+     * @param g
+     * @param pool
+     * @return
+     */
+    public static double[] closeness(CompactGraph g, ForkJoinPool pool) {
+        int n=g.nodeCount();
+        int[] sources=new int[n];
+        for (int i=0; i<n; i++) {
+            sources[i]=i;
+        }
+        // each source is only ever reported by the one task searching it
+        final long[] sum=new long[n];
+        final int[] reached=new int[n];
+        search(g, sources, (source, node, level) -> {
+            sum[source]+=level;
+            reached[source]++;
+        }, pool);
+        double[] closeness=new double[n];
+        for (int u=0; u<n; u++) {
+            if (sum[u]>0) {
+                // the source itself is reached at level 0
+                closeness[u]=(reached[u]-1)/(double)sum[u];
+            }
+        }
+        return closeness;
+    }
+
+    /**
+     * Search from every one of the given sources, reporting every node each
+     * one reaches, the source included, to the visitor.
+     *
+     * @param g
+     * @param sources
+     * @param visitor
+     * @param pool
+     */
+    public static void search(CompactGraph g, int[] sources, LevelVisitor visitor, ForkJoinPool pool) {
+        int batches=(sources.length+63)/64;
+        int tasks=Math.max(1, Math.min(pool.getParallelism(), batches));
+        AtomicInteger next=new AtomicInteger();
+        ForkJoinTask<?>[] running=new ForkJoinTask<?>[tasks];
+        for (int i=0; i<tasks; i++) {
+            running[i]=pool.submit(() -> {
+                Workspace work=new Workspace(g);
+                int b;
+                while ((b=next.getAndIncrement())<batches) {
+                    work.search(sources, b*64, Math.min(sources.length, b*64+64), visitor);
+                }
+            });
+        }
+        for (ForkJoinTask<?> task : running) {
+            task.join();
+        }
+    }
+
+    /**
+     * The arrays used by one thread. Only the entries of nodes reached by
+     * the current batch are reset between batches.
+     */
+    private static class Workspace
+    {
+        private final int[] offsets;
+        private final int[] targets;
+        // bit i set if search i of the batch has reached the node
+        private final long[] seen;
+        // bit i set if the node is on the frontier of search i
+        private long[] visit;
+        private long[] visitNext;
+        private int[] frontier;
+        private int[] frontierNext;
+        // every node seen by the batch, to reset seen afterwards
+        private final int[] touched;
+
+        Workspace(CompactGraph g) {
+            int n=g.nodeCount();
+            this.offsets=g.offsets();
+            this.targets=g.targets();
+            this.seen=new long[n];
+            this.visit=new long[n];
+            this.visitNext=new long[n];
+            this.frontier=new int[n];
+            this.frontierNext=new int[n];
+            this.touched=new int[n];
+        }
+
+        void search(int[] sources, int from, int to, LevelVisitor visitor) {
+            int size=0;
+            int touchedSize=0;
+            for (int i=from; i<to; i++) {
+                int s=sources[i];
+                long bit=1L<<(i-from);
+                if (seen[s]==0) {
+                    frontier[size++]=s;
+                    touched[touchedSize++]=s;
+                }
+                seen[s]|=bit;
+                visit[s]|=bit;
+                visitor.visit(i, s, 0);
+            }
+            for (int level=1; size>0; level++) {
+                int nextSize=0;
+                for (int k=0; k<size; k++) {
+                    int u=frontier[k];
+                    long bits=visit[u];
+                    visit[u]=0;
+                    for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                        int v=targets[e];
+                        long fresh=bits & ~seen[v];
+                        if (fresh!=0) {
+                            if (visitNext[v]==0) {
+                                frontierNext[nextSize++]=v;
+                            }
+                            visitNext[v]|=fresh;
+                        }
+                    }
+                }
+                // only now mark the new nodes seen, so a node reached twice
+                // in one level keeps the bits from both
+                for (int k=0; k<nextSize; k++) {
+                    int v=frontierNext[k];
+                    long bits=visitNext[v];
+                    if (seen[v]==0) {
+                        touched[touchedSize++]=v;
+                    }
+                    seen[v]|=bits;
+                    while (bits!=0) {
+                        int i=Long.numberOfTrailingZeros(bits);
+                        visitor.visit(from+i, v, level);
+                        bits&=bits-1;
+                    }
+                }
+                long[] tmp=visit;
+                visit=visitNext;
+                visitNext=tmp;
+                int[] swap=frontier;
+                frontier=frontierNext;
+                frontierNext=swap;
+                size=nextSize;
+            }
+            for (int k=0; k<touchedSize; k++) {
+                seen[touched[k]]=0;
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package graph.analytics;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import graph.IGraph;
+import graph.compact.CompactGraph;
+
+/**
+ * PageRank and personalized PageRank by power iteration.
+ *
+ * The iteration is pull based: every node adds up the rank flowing in along
+ * its incoming edges, which are stored once in a contiguous in-edge (CSR of
+ * the transposed graph) array when this object is created. Each node writes
+ * only its own entry of the new rank vector, so the nodes are split into
+ * fixed ranges that are processed in parallel with no locking, and the result
+ * does not depend on the number of threads.
+ *
+ * Edge weights are ignored: a node splits its rank evenly between its
+ * outgoing edges. The rank of dangling nodes (nodes without outgoing edges)
+ * is redistributed the same way as the teleport probability, so the ranks
+ * always add up to 1.
+ *
+ * @author jspacco
+ *
+ */
+public class PageRank
+{
+    public static final double DEFAULT_DAMPING=0.85;
+    public static final double DEFAULT_TOLERANCE=1e-9;
+    public static final int DEFAULT_MAX_ITERATIONS=100;
+
+    // number of nodes in each range processed by one task
+    private static final int CHUNK=1<<14;
+
+    private final CompactGraph graph;
+    private final int[] inOffsets;
+    private final int[] inSources;
+
+    /**
+     * Prepare to rank the given graph, building its in-edge layout.
+     *
+     * @param graph
+     */
+    public PageRank(CompactGraph graph) {
+        this.graph=graph;
+        int n=graph.nodeCount();
+        int[] offsets=graph.offsets();
+        int[] targets=graph.targets();
+        inOffsets=new int[n+1];
+        for (int e=0; e<targets.length; e++) {
+            inOffsets[targets[e]+1]++;
+        }
+        for (int v=0; v<n; v++) {
+            inOffsets[v+1]+=inOffsets[v];
+        }
+        // scanning sources in id order leaves every in-edge row sorted
+        inSources=new int[targets.length];
+        int[] cursor=Arrays.copyOf(inOffsets, n);
+        for (int u=0; u<n; u++) {
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                inSources[cursor[targets[e]]++]=u;
+            }
+        }
+    }
+
+    /**
+     * Prepare to rank any graph, compiling it to a {@link CompactGraph}
+     * first unless it already is one.
+     *
+     * @param g
+     * @return
+     */
+    public static PageRank of(IGraph g) {
+        return new PageRank(g instanceof CompactGraph ? (CompactGraph)g : CompactGraph.copyOf(g));
+    }
+
+    public CompactGraph graph() {
+        return graph;
+    }
+
+    /**
+     * PageRank with the default damping factor, tolerance and iteration cap.
+     *
+     * @return
+     */
+    public Result rank() {
+        return rank(DEFAULT_DAMPING, DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * PageRank, teleporting to every node with equal probability.
+     *
+     * @param damping probability of following an edge rather than teleporting
+     * @param tolerance stop once the ranks change by less than this in total (L1 norm)
+     * @param maxIterations stop after this many iterations even if not converged
+     * @return
+     */
+    public Result rank(double damping, double tolerance, int maxIterations) {
+        return iterate(null, damping, tolerance, maxIterations);
+    }
+
+    /**
+     * Personalized PageRank, teleporting only to the given seed nodes, each
+     * with equal probability. The rank of a node measures how close it is to
+     * the seeds.
+     *
+     * @param seeds ids of the seed nodes
+     * @param damping
+     * @param tolerance
+     * @param maxIterations
+     * @return
+     */
+    public Result personalized(int[] seeds, double damping, double tolerance, int maxIterations) {
+        if (seeds.length==0) {
+            throw new IllegalArgumentException("Personalized PageRank needs at least one seed");
+        }
+        double[] teleport=new double[graph.nodeCount()];
+        for (int s : seeds) {
+            teleport[s]+=1.0/seeds.length;
+        }
+        return iterate(teleport, damping, tolerance, maxIterations);
+    }
+
+    public Result personalized(String... seeds) {
+        int[] ids=new int[seeds.length];
+        for (int i=0; i<seeds.length; i++) {
+            ids[i]=graph.id(seeds[i]);
+            if (ids[i]<0) {
+                throw new IllegalArgumentException("No node named "+seeds[i]);
+            }
+        }
+        return personalized(ids, DEFAULT_DAMPING, DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * Power iteration. A null teleport vector means uniform teleporting.
+     */
+    private Result iterate(double[] teleport, double damping, double tolerance, int maxIterations) {
+        final int n=graph.nodeCount();
+        final int[] offsets=graph.offsets();
+        final double uniform=1.0/n;
+        double[] rank=new double[n];
+        if (teleport==null) {
+            Arrays.fill(rank, uniform);
+        } else {
+            System.arraycopy(teleport, 0, rank, 0, n);
+        }
+        double[] next=new double[n];
+        // rank[u]/outdegree(u), so each in-edge costs one load and one add
+        final double[] share=new double[n];
+        int chunks=(n+CHUNK-1)/CHUNK;
+        double[] partial=new double[chunks];
+
+        int iterations=0;
+        double residual=Double.POSITIVE_INFINITY;
+        while (iterations<maxIterations && residual>=tolerance) {
+            final double[] current=rank;
+            final double[] updated=next;
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                double dangling=0;
+                for (int u=c*CHUNK; u<Math.min(n, (c+1)*CHUNK); u++) {
+                    int degree=offsets[u+1]-offsets[u];
+                    if (degree==0) {
+                        share[u]=0;
+                        dangling+=current[u];
+                    } else {
+                        share[u]=current[u]/degree;
+                    }
+                }
+                partial[c]=dangling;
+            });
+            // summed in chunk order so the result never depends on scheduling
+            double dangling=sum(partial);
+            final double base=(1-damping)+damping*dangling;
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                double change=0;
+                for (int v=c*CHUNK; v<Math.min(n, (c+1)*CHUNK); v++) {
+                    double in=0;
+                    for (int e=inOffsets[v]; e<inOffsets[v+1]; e++) {
+                        in+=share[inSources[e]];
+                    }
+                    double r=damping*in+base*(teleport==null ? uniform : teleport[v]);
+                    change+=Math.abs(r-current[v]);
+                    updated[v]=r;
+                }
+                partial[c]=change;
+            });
+            residual=sum(partial);
+            next=rank;
+            rank=updated;
+            iterations++;
+        }
+        return new Result(graph, rank, iterations, residual<tolerance, residual);
+    }
+
+    private static double sum(double[] values) {
+        double total=0;
+        for (double v : values) {
+            total+=v;
+        }
+        return total;
+    }
+
+    /**
+     * The ranks computed by one run, with how the iteration ended.
+     */
+    public static class Result
+    {
+        private final CompactGraph graph;
+        private final double[] ranks;
+        private final int iterations;
+        private final boolean converged;
+        private final double residual;
+
+        Result(CompactGraph graph, double[] ranks, int iterations, boolean converged, double residual) {
+            this.graph=graph;
+            this.ranks=ranks;
+            this.iterations=iterations;
+            this.converged=converged;
+            this.residual=residual;
+        }
+
+        /**
+         * The rank of every node, indexed by node id. This is the internal
+         * array, not a copy.
+         *
+         * @return
+         */
+        public double[] getRanks() {
+            return ranks;
+        }
+
+        public double getRank(String name) {
+            int id=graph.id(name);
+            if (id<0) {
+                throw new IllegalArgumentException("No node named "+name);
+            }
+            return ranks[id];
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        /**
+         * True if the last iteration changed the ranks by less than the
+         * tolerance, false if the iteration cap was reached first.
+         *
+         * @return
+         */
+        public boolean isConverged() {
+            return converged;
+        }
+
+        /**
+         * Total (L1) change in the ranks made by the last iteration.
+         *
+         * @return
+         */
+        public double getResidual() {
+            return residual;
+        }
+
+        /**
+         * Ids of the k highest ranked nodes, highest first. Ties go to the
+         * smaller id.
+         *
+         * @param k
+         * @return
+         * @throws IllegalArgumentException if k is negative
+         */
+        public int[] top(int k) {
+            if (k<0) {
+                throw new IllegalArgumentException("Cannot take the top "+k+" nodes");
+            }
+            k=Math.min(k, ranks.length);
+            if (k==0) {
+                return new int[0];
+            }
+            // min-heap of the best k so far, worst on top
+            int[] heap=new int[k];
+            int size=0;
+            for (int v=0; v<ranks.length; v++) {
+                if (size<k) {
+                    heap[size]=v;
+                    siftUp(heap, size++);
+                } else if (better(v, heap[0])) {
+                    heap[0]=v;
+                    siftDown(heap, size);
+                }
+            }
+            int[] result=new int[k];
+            for (int i=k-1; i>=0; i--) {
+                result[i]=heap[0];
+                heap[0]=heap[--size];
+                siftDown(heap, size);
+            }
+            return result;
+        }
+
+        private boolean better(int a, int b) {
+            return ranks[a]>ranks[b] || (ranks[a]==ranks[b] && a<b);
+        }
+
+        private void siftUp(int[] heap, int i) {
+            while (i>0) {
+                int parent=(i-1)/2;
+                if (!better(heap[parent], heap[i])) {
+                    break;
+                }
+                swap(heap, i, parent);
+                i=parent;
+            }
+        }
+
+        private void siftDown(int[] heap, int size) {
+            int i=0;
+            while (2*i+1<size) {
+                int child=2*i+1;
+                if (child+1<size && better(heap[child], heap[child+1])) {
+                    child++;
+                }
+                if (!better(heap[i], heap[child])) {
+                    break;
+                }
+                swap(heap, i, child);
+                i=child;
+            }
+        }
+
+        private static void swap(int[] a, int i, int j) {
+            int t=a[i];
+            a[i]=a[j];
+            a[j]=t;
+        }
+    }
+}
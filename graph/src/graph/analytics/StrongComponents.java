@@ -0,0 +1,237 @@
+package graph.analytics;
+
+import java.util.Arrays;
+
+import graph.IGraph;
+import graph.compact.CompactGraph;
+import graph.compact.NodeNames;
+
+/**
+ * Strongly connected components of a directed graph, found with Tarjan's
+ * algorithm. The depth-first search keeps its own stack of (node, next edge)
+ * frames in int arrays instead of recursing, so graphs with paths millions
+ * of nodes long cannot overflow the call stack.
+ *
+ * Components are numbered in topological order of the condensation: every
+ * edge between two different components goes from a smaller component id to
+ * a larger one. Source components come first and sink components last.
+ *
+ * @author jspacco
+ *
+ */
+public class StrongComponents
+{
+    private final CompactGraph graph;
+    private final int[] component;
+    private final int count;
+
+    private StrongComponents(CompactGraph graph, int[] component, int count) {
+        this.graph=graph;
+        this.component=component;
+        this.count=count;
+    }
+
+    /**
+     * Find the components of any graph, compiling it to a {@link CompactGraph}
+     * first unless it already is one.
+     *
+     * @param g
+     * @return
+     */
+    public static StrongComponents of(IGraph g) {
+        return find(g instanceof CompactGraph ? (CompactGraph)g : CompactGraph.copyOf(g));
+    }
+
+    public static StrongComponents find(CompactGraph g) {
+        int n=g.nodeCount();
+        int[] offsets=g.offsets();
+        int[] targets=g.targets();
+        // discovery order of each node, 0 for not yet discovered
+        int[] index=new int[n];
+        int[] low=new int[n];
+        // Tarjan's stack of nodes whose component is not yet known
+        int[] stack=new int[n];
+        boolean[] onStack=new boolean[n];
+        // the call stack: a node and the next edge of it to explore
+        int[] frameNode=new int[n];
+        int[] frameEdge=new int[n];
+        // components in the order Tarjan finishes them, sinks first
+        int[] finished=new int[n];
+        int next=1;
+        int top=0;
+        int found=0;
+
+        for (int root=0; root<n; root++) {
+            if (index[root]!=0) {
+                continue;
+            }
+            int depth=0;
+            frameNode[0]=root;
+            frameEdge[0]=offsets[root];
+            index[root]=low[root]=next++;
+            stack[top++]=root;
+            onStack[root]=true;
+            while (depth>=0) {
+                int u=frameNode[depth];
+                int e=frameEdge[depth];
+                if (e<offsets[u+1]) {
+                    frameEdge[depth]++;
+                    int v=targets[e];
+                    if (index[v]==0) {
+                        // "recurse" into v
+                        index[v]=low[v]=next++;
+                        stack[top++]=v;
+                        onStack[v]=true;
+                        depth++;
+                        frameNode[depth]=v;
+                        frameEdge[depth]=offsets[v];
+                    } else if (onStack[v]) {
+                        low[u]=Math.min(low[u], index[v]);
+                    }
+                    continue;
+                }
+                // all edges of u are done
+                if (low[u]==index[u]) {
+                    int v;
+                    do {
+                        v=stack[--top];
+                        onStack[v]=false;
+                        finished[v]=found;
+                    } while (v!=u);
+                    found++;
+                }
+                depth--;
+                if (depth>=0) {
+                    int parent=frameNode[depth];
+                    low[parent]=Math.min(low[parent], low[u]);
+                }
+            }
+        }
+        // Tarjan finishes sinks first, so reverse the numbering
+        int[] component=new int[n];
+        for (int u=0; u<n; u++) {
+            component[u]=found-1-finished[u];
+        }
+        return new StrongComponents(g, component, found);
+    }
+
+    /**
+     * Number of strongly connected components.
+     *
+     * @return
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * The component of every node, indexed by node id. This is the internal
+     * array, not a copy.
+     *
+     * @return
+     */
+    public int[] components() {
+        return component;
+    }
+
+    public int component(int id) {
+        return component[id];
+    }
+
+    public int component(String name) {
+        int id=graph.id(name);
+        if (id<0) {
+            throw new IllegalArgumentException("No node named "+name);
+        }
+        return component[id];
+    }
+
+    /**
+     * Number of nodes in each component, indexed by component id.
+     *
+     * @return
+     */
+    public int[] sizes() {
+        int[] sizes=new int[count];
+        for (int c : component) {
+            sizes[c]++;
+        }
+        return sizes;
+    }
+
+    /**
+     * The condensation of the graph: a directed acyclic graph with one node
+     * per component, named by its component id ("0", "1", ...), and an edge
+     * between two components whenever the graph has an edge between their
+     * members. The weight of that edge is the smallest weight of those edges.
+     *
+     * @return
+     */
+    public CompactGraph condensation() {
+        int n=graph.nodeCount();
+        int[] offsets=graph.offsets();
+        int[] targets=graph.targets();
+
+        // counting sort of the nodes by component
+        int[] start=new int[count+1];
+        for (int c : component) {
+            start[c+1]++;
+        }
+        for (int c=0; c<count; c++) {
+            start[c+1]+=start[c];
+        }
+        int[] members=new int[n];
+        int[] cursor=Arrays.copyOf(start, count);
+        for (int u=0; u<n; u++) {
+            members[cursor[component[u]]++]=u;
+        }
+
+        // best[d] is the lightest edge seen from the current component to d,
+        // and seen[d] says which component best[d] belongs to
+        int[] best=new int[count];
+        int[] seen=new int[count];
+        Arrays.fill(seen, -1);
+        int[] row=new int[count];
+        int[] dagOffsets=new int[count+1];
+        int[] dagTargets=new int[16];
+        int[] dagWeights=graph.isWeighted() ? new int[16] : null;
+        int m=0;
+        for (int c=0; c<count; c++) {
+            int size=0;
+            for (int i=start[c]; i<start[c+1]; i++) {
+                int u=members[i];
+                for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                    int d=component[targets[e]];
+                    if (d==c) {
+                        continue;
+                    }
+                    if (seen[d]!=c) {
+                        seen[d]=c;
+                        best[d]=graph.weight(e);
+                        row[size++]=d;
+                    } else {
+                        best[d]=Math.min(best[d], graph.weight(e));
+                    }
+                }
+            }
+            Arrays.sort(row, 0, size);
+            if (m+size>dagTargets.length) {
+                int capacity=Math.max(m+size, 2*dagTargets.length);
+                dagTargets=Arrays.copyOf(dagTargets, capacity);
+                if (dagWeights!=null) {
+                    dagWeights=Arrays.copyOf(dagWeights, capacity);
+                }
+            }
+            for (int k=0; k<size; k++) {
+                dagTargets[m]=row[k];
+                if (dagWeights!=null) {
+                    dagWeights[m]=best[row[k]];
+                }
+                m++;
+            }
+            dagOffsets[c+1]=m;
+        }
+        return CompactGraph.fromSortedRows(dagOffsets, Arrays.copyOf(dagTargets, m),
+                dagWeights==null ? null : Arrays.copyOf(dagWeights, m), NodeNames.numbered(count, 0));
+    }
+}
@@ -0,0 +1,337 @@
+package graph.analytics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+import graph.IGraph;
+import graph.INode;
+import graph.compact.CompactGraph;
+
+/**
+ * Topological order of a directed graph by Kahn's algorithm, one level at a
+ * time: level 0 holds the nodes with no incoming edges, and level k+1 the
+ * nodes whose last remaining incoming edge comes from level k. All the nodes
+ * of a level are independent, so large levels are processed in parallel.
+ * Within a level nodes are sorted by id, so the order is the same no matter
+ * how many threads run it.
+ *
+ * If the graph has a cycle, the nodes on and after it never reach in-degree
+ * zero. {@link #isAcyclic()} is then false and {@link #findCycle()} returns
+ * one of the cycles. A {@link CompactGraph} has no self loops, so
+ * {@link #of(IGraph)} looks for them while compiling the graph and reports a
+ * node with an edge to itself as a cycle of length one.
+ *
+ * Once sorted, shortest and longest paths from a source take a single pass
+ * over the edges in topological order, with no priority queue. Longest
+ * paths are the critical paths of a schedule, which Dijkstra's algorithm
+ * cannot compute at all.
+ *
+ * @author jspacco
+ *
+ */
+public class TopologicalOrder
+{
+    // levels smaller than this are not worth handing to other threads
+    private static final int PARALLEL_LEVEL=1<<12;
+
+    private final CompactGraph graph;
+    private final int[] order;
+    private final int sorted;
+    // order[levels[k]] up to order[levels[k+1]] is level k
+    private final int[] levels;
+    // a node with an edge to itself in the original graph, or -1
+    private final int selfLoop;
+
+    private TopologicalOrder(CompactGraph graph, int[] order, int sorted, int[] levels, int selfLoop) {
+        this.graph=graph;
+        this.order=order;
+        this.sorted=sorted;
+        this.levels=levels;
+        this.selfLoop=selfLoop;
+    }
+
+    /**
+     * Sort any graph, compiling it to a {@link CompactGraph} first unless it
+     * already is one. Directed edges added with
+     * {@link graph.INode#addDirectedEdgeToNode(graph.INode, int)} keep their direction.
+     * Self loops, which the compiled graph drops, still count as cycles.
+     *
+     * @param g
+     * @return
+     */
+    public static TopologicalOrder of(IGraph g) {
+        if (g instanceof CompactGraph) {
+            return sort((CompactGraph)g);
+        }
+        CompactGraph compact=CompactGraph.copyOf(g);
+        int selfLoop=-1;
+        for (INode node : g.getAllNodes()) {
+            if (node.hasEdge(node)) {
+                int id=compact.id(node.getName());
+                if (selfLoop<0 || id<selfLoop) {
+                    selfLoop=id;
+                }
+            }
+        }
+        return sort(compact, selfLoop);
+    }
+
+    public static TopologicalOrder sort(CompactGraph g) {
+        return sort(g, -1);
+    }
+
+    private static TopologicalOrder sort(CompactGraph g, int selfLoop) {
+        int n=g.nodeCount();
+        int[] offsets=g.offsets();
+        int[] targets=g.targets();
+        int[] counts=new int[n];
+        for (int t : targets) {
+            counts[t]++;
+        }
+        AtomicIntegerArray inDegree=new AtomicIntegerArray(counts);
+        int[] order=new int[n];
+        int end=0;
+        for (int u=0; u<n; u++) {
+            if (counts[u]==0) {
+                order[end++]=u;
+            }
+        }
+        int[] levels=new int[16];
+        int levelCount=0;
+        int start=0;
+        AtomicInteger tail=new AtomicInteger(end);
+        while (start<end) {
+            if (levelCount+1>=levels.length) {
+                levels=Arrays.copyOf(levels, levels.length*2);
+            }
+            levels[levelCount++]=start;
+            IntStream level=IntStream.range(start, end);
+            if (end-start>=PARALLEL_LEVEL) {
+                level=level.parallel();
+            }
+            level.forEach(i -> {
+                int u=order[i];
+                for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                    int t=targets[e];
+                    if (inDegree.decrementAndGet(t)==0) {
+                        order[tail.getAndIncrement()]=t;
+                    }
+                }
+            });
+            start=end;
+            end=tail.get();
+            Arrays.sort(order, start, end);
+        }
+        levels[levelCount]=end;
+        return new TopologicalOrder(g, order, end, Arrays.copyOf(levels, levelCount+1), selfLoop);
+    }
+
+    public CompactGraph graph() {
+        return graph;
+    }
+
+    /**
+     * True if the graph has no directed cycle, so every node was sorted.
+     *
+     * @return
+     */
+    public boolean isAcyclic() {
+        return sorted==order.length && selfLoop<0;
+    }
+
+    /**
+     * The node ids in topological order: every edge goes from a node earlier
+     * in the array to a node later in it.
+     *
+     * @return
+     * @throws IllegalStateException if the graph has a cycle
+     */
+    public int[] order() {
+        requireAcyclic();
+        return order;
+    }
+
+    /**
+     * Number of levels, which is the number of nodes on the longest path.
+     *
+     * @return
+     */
+    public int levelCount() {
+        return levels.length-1;
+    }
+
+    /**
+     * The nodes of the given level, sorted by id.
+     *
+     * @param level
+     * @return
+     */
+    public int[] level(int level) {
+        return Arrays.copyOfRange(order, levels[level], levels[level+1]);
+    }
+
+    /**
+     * Return the ids of the nodes of one directed cycle, in order, or null
+     * if the graph is acyclic. Every node left over by Kahn's algorithm has a
+     * remaining incoming edge, so the cycle is found by walking those edges
+     * backwards from any of them until a node repeats. A self loop is
+     * returned as a cycle of one node.
+     *
+     * @return
+     */
+    public int[] findCycle() {
+        if (isAcyclic()) {
+            return null;
+        }
+        if (selfLoop>=0) {
+            return new int[] {selfLoop};
+        }
+        int n=graph.nodeCount();
+        int[] offsets=graph.offsets();
+        int[] targets=graph.targets();
+        boolean[] done=new boolean[n];
+        for (int i=0; i<sorted; i++) {
+            done[order[i]]=true;
+        }
+        // one remaining predecessor of every remaining node
+        int[] pred=new int[n];
+        Arrays.fill(pred, -1);
+        int any=-1;
+        for (int u=0; u<n; u++) {
+            if (done[u]) {
+                continue;
+            }
+            any=u;
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                if (!done[targets[e]]) {
+                    pred[targets[e]]=u;
+                }
+            }
+        }
+        // position of each node on the walk, -1 if not on it yet
+        int[] position=new int[n];
+        Arrays.fill(position, -1);
+        int[] walk=new int[n-sorted+1];
+        int steps=0;
+        int u=any;
+        while (position[u]<0) {
+            position[u]=steps;
+            walk[steps++]=u;
+            u=pred[u];
+        }
+        // walk[position[u]..steps) is the cycle backwards
+        int length=steps-position[u];
+        int[] cycle=new int[length];
+        for (int i=0; i<length; i++) {
+            cycle[i]=walk[steps-1-i];
+        }
+        return cycle;
+    }
+
+    /**
+     * Cost of the cheapest path from the source to every node, or
+     * Long.MAX_VALUE for nodes that cannot be reached.
+     *
+     * @param source
+     * @return
+     * @throws IllegalStateException if the graph has a cycle
+     */
+    public long[] shortestPaths(int source) {
+        return relax(source, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * Cost of the most expensive path from the source to every node, or
+     * Long.MIN_VALUE for nodes that cannot be reached.
+     *
+     * @param source
+     * @return
+     * @throws IllegalStateException if the graph has a cycle
+     */
+    public long[] longestPaths(int source) {
+        return relax(source, Long.MIN_VALUE, true);
+    }
+
+    private long[] relax(int source, long unreached, boolean longest) {
+        requireAcyclic();
+        int[] offsets=graph.offsets();
+        int[] targets=graph.targets();
+        long[] dist=new long[order.length];
+        Arrays.fill(dist, unreached);
+        dist[source]=0;
+        // nothing before the source in the order can be reached from it
+        int i=0;
+        while (order[i]!=source) {
+            i++;
+        }
+        for (; i<order.length; i++) {
+            int u=order[i];
+            if (dist[u]==unreached) {
+                continue;
+            }
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                int t=targets[e];
+                long alt=dist[u]+graph.weight(e);
+                if (dist[t]==unreached || (longest ? alt>dist[t] : alt<dist[t])) {
+                    dist[t]=alt;
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * The most expensive path anywhere in the graph, as node ids from start
+     * to finish. In a schedule where edge weights are durations, this is the
+     * critical path.
+     *
+     * @return
+     * @throws IllegalStateException if the graph has a cycle
+     */
+    public int[] criticalPath() {
+        requireAcyclic();
+        int n=order.length;
+        if (n==0) {
+            return new int[0];
+        }
+        int[] offsets=graph.offsets();
+        int[] targets=graph.targets();
+        // every node may start a path, so all costs start at zero
+        long[] dist=new long[n];
+        int[] pred=new int[n];
+        Arrays.fill(pred, -1);
+        for (int u : order) {
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                int t=targets[e];
+                long alt=dist[u]+graph.weight(e);
+                if (alt>dist[t]) {
+                    dist[t]=alt;
+                    pred[t]=u;
+                }
+            }
+        }
+        int last=order[0];
+        for (int u=0; u<n; u++) {
+            if (dist[u]>dist[last]) {
+                last=u;
+            }
+        }
+        int length=1;
+        for (int u=last; pred[u]>=0; u=pred[u]) {
+            length++;
+        }
+        int[] path=new int[length];
+        for (int u=last, i=length-1; i>=0; u=pred[u], i--) {
+            path[i]=u;
+        }
+        return path;
+    }
+
+    private void requireAcyclic() {
+        if (!isAcyclic()) {
+            throw new IllegalStateException("The graph has a cycle, so it has no topological order");
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package graph.analytics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+import graph.IGraph;
+import graph.compact.CompactGraph;
+
+/**
+ * Triangle counts and clustering coefficients of an undirected graph, where
+ * every edge is stored in both directions as {@link CompactGraph} does for
+ * undirected graphs.
+ *
+ * Each edge is oriented from the endpoint of lower degree to the endpoint of
+ * higher degree (ties broken by id), so every node keeps only its neighbors
+ * of higher rank. This finds every triangle exactly once, at its lowest
+ * ranked corner, and limits every oriented list to at most sqrt(2m) entries,
+ * so hubs never have their full neighbor list scanned over and over.
+ * The triangles through an oriented edge (u,v) are the common entries of the
+ * sorted lists of u and v. The lists are merged when their sizes are
+ * similar, and the smaller one is galloped through the larger one when they
+ * are not. Nodes are processed in parallel.
+ *
+ * @author jspacco
+ *
+ */
+public class Triangles
+{
+    // galloping pays off once one list is this many times longer than the other
+    private static final int GALLOP_RATIO=16;
+
+    private final int[] degree;
+    private final long[] perNode;
+    private final long total;
+
+    private Triangles(int[] degree, long[] perNode, long total) {
+        this.degree=degree;
+        this.perNode=perNode;
+        this.total=total;
+    }
+
+    /**
+     * Count the triangles of any graph, compiling it to a {@link CompactGraph}
+     * first unless it already is one.
+     *
+     * @param g
+     * @return
+     */
+    public static Triangles of(IGraph g) {
+        return count(g instanceof CompactGraph ? (CompactGraph)g : CompactGraph.copyOf(g));
+    }
+
+    public static Triangles count(CompactGraph g) {
+        int n=g.nodeCount();
+        int[] offsets=g.offsets();
+        int[] targets=g.targets();
+        int[] degree=new int[n];
+        for (int u=0; u<n; u++) {
+            degree[u]=offsets[u+1]-offsets[u];
+        }
+
+        // oriented CSR: the neighbors of higher rank, still sorted by id
+        int[] upOffsets=new int[n+1];
+        for (int u=0; u<n; u++) {
+            int count=0;
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                if (higher(degree, targets[e], u)) {
+                    count++;
+                }
+            }
+            upOffsets[u+1]=upOffsets[u]+count;
+        }
+        int[] up=new int[upOffsets[n]];
+        IntStream.range(0, n).parallel().forEach(u -> {
+            int k=upOffsets[u];
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                if (higher(degree, targets[e], u)) {
+                    up[k++]=targets[e];
+                }
+            }
+        });
+
+        AtomicLongArray shared=new AtomicLongArray(n);
+        long total=IntStream.range(0, n).parallel().mapToLong(u -> {
+            long found=0;
+            for (int e=upOffsets[u]; e<upOffsets[u+1]; e++) {
+                int v=up[e];
+                long t=intersect(up, upOffsets[u], upOffsets[u+1], upOffsets[v], upOffsets[v+1], shared);
+                if (t>0) {
+                    shared.addAndGet(v, t);
+                    found+=t;
+                }
+            }
+            if (found>0) {
+                shared.addAndGet(u, found);
+            }
+            return found;
+        }).sum();
+
+        long[] perNode=new long[n];
+        for (int u=0; u<n; u++) {
+            perNode[u]=shared.get(u);
+        }
+        return new Triangles(degree, perNode, total);
+    }
+
+    /**
+     * True if a comes after b in the orientation order: by degree, then by id.
+     */
+    private static boolean higher(int[] degree, int a, int b) {
+        return degree[a]>degree[b] || (degree[a]==degree[b] && a>b);
+    }
+
+    /**
+     * Count the common entries of up[aLo..aHi) and up[bLo..bHi), adding one
+     * triangle to each common entry.
+     */
+    private static long intersect(int[] up, int aLo, int aHi, int bLo, int bHi, AtomicLongArray shared) {
+        if (aHi-aLo>bHi-bLo) {
+            return intersect(up, bLo, bHi, aLo, aHi, shared);
+        }
+        long count=0;
+        if ((long)(aHi-aLo)*GALLOP_RATIO<bHi-bLo) {
+            int j=bLo;
+            for (int i=aLo; i<aHi && j<bHi; i++) {
+                j=gallop(up, j, bHi, up[i]);
+                if (j<bHi && up[j]==up[i]) {
+                    shared.incrementAndGet(up[i]);
+                    count++;
+                    j++;
+                }
+            }
+        } else {
+            int i=aLo;
+            int j=bLo;
+            while (i<aHi && j<bHi) {
+                if (up[i]<up[j]) {
+                    i++;
+                } else if (up[i]>up[j]) {
+                    j++;
+                } else {
+                    shared.incrementAndGet(up[i]);
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the first position in a[lo..hi) holding a value of at least key,
+     * doubling the step until it is passed and then binary searching.
+     */
+    private static int gallop(int[] a, int lo, int hi, int key) {
+        int step=1;
+        int bound=lo;
+        while (bound<hi && a[bound]<key) {
+            lo=bound+1;
+            bound+=step;
+            step<<=1;
+        }
+        hi=Math.min(bound, hi);
+        while (lo<hi) {
+            int mid=(lo+hi)>>>1;
+            if (a[mid]<key) {
+                lo=mid+1;
+            } else {
+                hi=mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Number of triangles in the graph.
+     *
+     * @return
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Number of triangles the given node is a corner of.
+     *
+     * @param id
+     * @return
+     */
+    public long triangles(int id) {
+        return perNode[id];
+    }
+
+    /**
+     * Local clustering coefficient: the fraction of pairs of neighbors of
+     * the node that are themselves neighbors. 0 for nodes with fewer than two
+     * neighbors.
+     *
+     * @param id
+     * @return
+     */
+    public double clustering(int id) {
+        long d=degree[id];
+        return d<2 ? 0 : 2.0*perNode[id]/(d*(d-1));
+    }
+
+    /**
+     * Mean of the local clustering coefficients of all the nodes.
+     *
+     * @return
+     */
+    public double averageClustering() {
+        double sum=0;
+        for (int u=0; u<degree.length; u++) {
+            sum+=clustering(u);
+        }
+        return degree.length==0 ? 0 : sum/degree.length;
+    }
+
+    /**
+     * Global clustering coefficient (transitivity): three times the number
+     * of triangles divided by the number of paths of length two.
+     *
+     * @return
+     */
+    public double globalClustering() {
+        long wedges=0;
+        for (int d : degree) {
+            wedges+=(long)d*(d-1)/2;
+        }
+        return wedges==0 ? 0 : 3.0*total/wedges;
+    }
+}
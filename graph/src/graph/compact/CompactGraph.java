@@ -0,0 +1,606 @@
+package graph.compact;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import graph.IGraph;
+import graph.INode;
+import graph.MemoryFootprint;
+import graph.NodeVisitor;
+import graph.impl.Graph;
+
+/**
+ * Read-only graph stored in compressed sparse row (CSR) form: node ids are
+ * 0 to n-1, the neighbors of node u are targets[offsets[u]] up to (but not
+ * including) targets[offsets[u+1]], sorted by id, and the matching edge weights
+ * are in the same positions of the weights array. An undirected edge is stored
+ * once in each direction.
+ * 
+ * This uses a few ints per edge instead of a HashMap entry per edge, so it
+ * can hold graphs with tens of millions of edges. Names are produced by a
+ * {@link NodeNames}, so generated graphs never need to store them.
+ * 
+ * Since rows are sorted by id, numbering the nodes in alphabetical order
+ * makes every neighbor list alphabetical as well. {@link #copyOf(IGraph)}
+ * and {@link #sortedByName()} do this, ranking the names once up front, so
+ * that BFS and DFS honor the alphabetical order promised by {@link IGraph}
+ * without sorting anything while they run.
+ * 
+ * The {@link INode}s handed out by this class are lightweight views that
+ * are created on demand. Two views of the same node are equal, but not
+ * necessarily the same object. Any attempt to change the graph throws
+ * {@link UnsupportedOperationException}.
+ * 
+ * @author jspacco
+ *
+ */
+public class CompactGraph implements IGraph, MemoryFootprint.Source
+{
+    private final int[] offsets;
+    private final int[] targets;
+    // null when every edge has weight 1
+    private final int[] weights;
+    private final NodeNames names;
+    
+    CompactGraph(int[] offsets, int[] targets, int[] weights, NodeNames names) {
+        if (offsets.length!=names.size()+1) {
+            throw new IllegalArgumentException("Expected "+(names.size()+1)+" offsets but got "+offsets.length);
+        }
+        this.offsets=offsets;
+        this.targets=targets;
+        this.weights=weights;
+        this.names=names;
+    }
+    
+    /**
+     * Build a graph with n nodes from the first m edges in the given arrays,
+     * where edge i goes from src[i] to dst[i] with weight w[i]. A null weight
+     * array means all the weights are 1. Self loops are dropped, and if the
+     * same edge appears more than once the last one wins, just as it would
+     * when adding edges to a {@link Graph} one at a time.
+     * 
+     * @param src
+     * @param dst
+     * @param w
+     * @param m
+     * @param undirected if true, each edge is added in both directions
+     * @param names names of the nodes; names.size() is the number of nodes
+     * @return
+     */
+    public static CompactGraph fromEdges(int[] src, int[] dst, int[] w, int m,
+            boolean undirected, NodeNames names)
+    {
+        return CsrBuilder.build(names.size(), src, dst, w, m, undirected, names);
+    }
+    
+    /**
+     * Make a compact, read-only copy of the given graph. Node names are
+     * stored in a {@link NameDictionary}, and ids are assigned in alphabetical
+     * order of the names, so the copy is {@link #sortedByName()}. Edges keep
+     * their direction and weight, so undirected graphs stay undirected.
+     * 
+     * @param g
+     * @return
+     */
+    public static CompactGraph copyOf(IGraph g) {
+        Collection<INode> all=g.getAllNodes();
+        String[] sorted=new String[all.size()];
+        int i=0;
+        for (INode node : all) {
+            sorted[i++]=node.getName();
+        }
+        Arrays.sort(sorted);
+        NameDictionary.Builder dictionary=new NameDictionary.Builder(sorted.length);
+        for (String name : sorted) {
+            dictionary.getOrAdd(name);
+        }
+        int m=0;
+        for (INode node : all) {
+            m+=node.getNeighbors().size();
+        }
+        int[] src=new int[m];
+        int[] dst=new int[m];
+        int[] w=new int[m];
+        boolean weighted=false;
+        int e=0;
+        for (INode node : all) {
+            int u=dictionary.getOrAdd(node.getName());
+            for (INode neighbor : node.getNeighbors()) {
+                src[e]=u;
+                dst[e]=dictionary.getOrAdd(neighbor.getName());
+                w[e]=node.getWeight(neighbor);
+                weighted|=w[e]!=1;
+                e++;
+            }
+        }
+        return CsrBuilder.build(dictionary.size(), src, dst, weighted ? w : null, m, false, dictionary.build());
+    }
+    
+    /**
+     * Wrap arrays that are already in CSR form. The arrays are used directly,
+     * not copied. Each row of targets must be sorted by id with no duplicates,
+     * and weights may be null if every edge has weight 1.
+     * 
+     * @param offsets
+     * @param targets
+     * @param weights
+     * @param names
+     * @return
+     */
+    public static CompactGraph fromSortedRows(int[] offsets, int[] targets, int[] weights, NodeNames names) {
+        if (offsets[offsets.length-1]!=targets.length || (weights!=null && weights.length!=targets.length)) {
+            throw new IllegalArgumentException("Offsets, targets and weights do not match");
+        }
+        return new CompactGraph(offsets, targets, weights, names);
+    }
+    
+    /**
+     * Return a copy of this graph with the nodes renumbered in alphabetical
+     * order of their names, so that every neighbor list is alphabetical too.
+     * Returns this graph if it is already numbered that way. Names are
+     * compared with {@link String#compareTo(String)}, so "10" comes before "9".
+     * 
+     * @return
+     */
+    public CompactGraph sortedByName() {
+        final int n=nodeCount();
+        final String[] all=new String[n];
+        boolean sorted=true;
+        for (int i=0; i<n; i++) {
+            all[i]=names.name(i);
+            sorted&=i==0 || all[i-1].compareTo(all[i])<0;
+        }
+        if (sorted) {
+            return this;
+        }
+        int[] order=new int[n];
+        for (int i=0; i<n; i++) {
+            order[i]=i;
+        }
+        IntSorter.sort(order, new IntSorter.Comparator() {
+            public int compare(int a, int b) {
+                return all[a].compareTo(all[b]);
+            }
+        });
+        int[] rank=new int[n];
+        String[] sortedNames=new String[n];
+        for (int i=0; i<n; i++) {
+            rank[order[i]]=i;
+            sortedNames[i]=all[order[i]];
+        }
+        int[] newOffsets=new int[n+1];
+        for (int i=0; i<n; i++) {
+            newOffsets[i+1]=newOffsets[i]+degree(order[i]);
+        }
+        int[] newTargets=new int[targets.length];
+        int[] newWeights=weights==null ? null : new int[weights.length];
+        long[] row=new long[maxDegree()];
+        for (int i=0; i<n; i++) {
+            int u=order[i];
+            int d=degree(u);
+            // rank in the high half, weight in the low half; ranks in a row
+            // are distinct so the weights never affect the order
+            for (int k=0; k<d; k++) {
+                int e=offsets[u]+k;
+                row[k]=(long)rank[targets[e]]<<32 | (weight(e) & 0xffffffffL);
+            }
+            Arrays.sort(row, 0, d);
+            int base=newOffsets[i];
+            for (int k=0; k<d; k++) {
+                newTargets[base+k]=(int)(row[k]>>>32);
+                if (newWeights!=null) {
+                    newWeights[base+k]=(int)row[k];
+                }
+            }
+        }
+        return new CompactGraph(newOffsets, newTargets, newWeights, NameDictionary.of(sortedNames));
+    }
+    
+    /**
+     * Number of nodes.
+     * 
+     * @return
+     */
+    public int nodeCount() {
+        return offsets.length-1;
+    }
+    
+    /**
+     * Number of directed edges. Each undirected edge counts twice.
+     * 
+     * @return
+     */
+    public int edgeCount() {
+        return targets.length;
+    }
+    
+    public int degree(int id) {
+        return offsets[id+1]-offsets[id];
+    }
+    
+    /**
+     * The row offsets of the CSR layout. This is the internal array, not a
+     * copy, so that algorithms can scan it directly; it must not be modified.
+     * 
+     * @return
+     */
+    public int[] offsets() {
+        return offsets;
+    }
+    
+    /**
+     * The neighbor ids of the CSR layout. This is the internal array, not a
+     * copy; it must not be modified.
+     * 
+     * @return
+     */
+    public int[] targets() {
+        return targets;
+    }
+    
+    /**
+     * The weight of the edge at the given position of {@link #targets()}.
+     * 
+     * @param edge
+     * @return
+     */
+    public int weight(int edge) {
+        return weights==null ? 1 : weights[edge];
+    }
+    
+    /**
+     * True if edges carry weights other than 1.
+     * 
+     * @return
+     */
+    public boolean isWeighted() {
+        return weights!=null;
+    }
+    
+    /**
+     * The largest degree of any node.
+     * 
+     * @return
+     */
+    public int maxDegree() {
+        int max=0;
+        for (int i=0; i<nodeCount(); i++) {
+            max=Math.max(max, degree(i));
+        }
+        return max;
+    }
+    
+    public NodeNames names() {
+        return names;
+    }
+    
+    /**
+     * Bytes used by the arrays and names. Nodes take no space of their own,
+     * since the views are made on demand.
+     */
+    public MemoryFootprint memoryFootprint() {
+        return new MemoryFootprint.Builder(getClass().getName())
+                .add(MemoryFootprint.Category.NAMES, names.sizeInBytes())
+                .add(MemoryFootprint.Category.INDEX, MemoryFootprint.object(4, 0)+MemoryFootprint.array(4, offsets.length))
+                .add(MemoryFootprint.Category.ADJACENCY, MemoryFootprint.array(4, targets.length))
+                .add(MemoryFootprint.Category.WEIGHTS, weights==null ? 0 : MemoryFootprint.array(4, weights.length))
+                .build();
+    }
+    
+    /**
+     * Return the id of the node with the given name, or -1 if there is
+     * no such node.
+     * 
+     * @param name
+     * @return
+     */
+    public int id(String name) {
+        return names.id(name);
+    }
+    
+    public String name(int id) {
+        return names.name(id);
+    }
+    
+    /**
+     * Return the node with the given id.
+     * 
+     * @param id
+     * @return
+     */
+    public INode node(int id) {
+        return new CompactNode(this, id);
+    }
+    
+    /**
+     * Return the position in {@link #targets()} of the edge from u to v,
+     * or -1 if there is no such edge.
+     * 
+     * @param u
+     * @param v
+     * @return
+     */
+    public int findEdge(int u, int v) {
+        int lo=offsets[u];
+        int hi=offsets[u+1]-1;
+        while (lo<=hi) {
+            int mid=(lo+hi)>>>1;
+            int t=targets[mid];
+            if (t<v) {
+                lo=mid+1;
+            } else if (t>v) {
+                hi=mid-1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Count the nodes that are neighbors of both u and v, by merging their
+     * sorted neighbor lists.
+     * 
+     * @param u
+     * @param v
+     * @return
+     */
+    public int countCommonNeighbors(int u, int v) {
+        return commonNeighbors(u, v, null);
+    }
+    
+    /**
+     * Write the ids of the nodes that are neighbors of both u and v into out,
+     * in id order, and return how many there are. out may be null to only
+     * count them; otherwise it must have room for min(degree(u), degree(v)) ids.
+     * 
+     * @param u
+     * @param v
+     * @param out
+     * @return
+     */
+    public int commonNeighbors(int u, int v, int[] out) {
+        int i=offsets[u];
+        int iEnd=offsets[u+1];
+        int j=offsets[v];
+        int jEnd=offsets[v+1];
+        int count=0;
+        while (i<iEnd && j<jEnd) {
+            int a=targets[i];
+            int b=targets[j];
+            if (a<b) {
+                i++;
+            } else if (a>b) {
+                j++;
+            } else {
+                if (out!=null) {
+                    out[count]=a;
+                }
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Return the node with the given name. Since the graph is read-only,
+     * nodes cannot be created, and asking for a node that does not exist
+     * throws {@link UnsupportedOperationException}.
+     */
+    public INode getOrCreateNode(String name) {
+        return node(requireId(name));
+    }
+    
+    public boolean containsNode(String name) {
+        return names.id(name)>=0;
+    }
+    
+    public Collection<INode> getAllNodes() {
+        List<INode> list=new ArrayList<INode>(nodeCount());
+        for (int i=0; i<nodeCount(); i++) {
+            list.add(node(i));
+        }
+        return list;
+    }
+    
+    /**
+     * Breadth-first search using an int queue and a bitset of visited nodes.
+     * Neighbors are visited in id order, which is alphabetical order when
+     * the graph is {@link #sortedByName()}.
+     */
+    public void breadthFirstSearch(String startNode, NodeVisitor v) {
+        int start=requireId(startNode);
+        BitSet visited=new BitSet(nodeCount());
+        int[] queue=new int[nodeCount()];
+        int head=0;
+        int tail=0;
+        queue[tail++]=start;
+        visited.set(start);
+        while (head<tail) {
+            int u=queue[head++];
+            v.visit(node(u));
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                int t=targets[e];
+                if (!visited.get(t)) {
+                    visited.set(t);
+                    queue[tail++]=t;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Iterative depth-first search, so deep graphs cannot overflow the call
+     * stack. Neighbors are pushed in id order, which is alphabetical order
+     * when the graph is {@link #sortedByName()}, so the search visits nodes
+     * in the same order as {@link graph.impl.Graph}.
+     */
+    public void depthFirstSearch(String startNode, NodeVisitor v) {
+        int start=requireId(startNode);
+        BitSet visited=new BitSet(nodeCount());
+        // a node can be pushed once per incoming edge, plus the start node
+        int[] stack=new int[edgeCount()+1];
+        int top=0;
+        stack[top++]=start;
+        while (top>0) {
+            int u=stack[--top];
+            if (visited.get(u)) {
+                continue;
+            }
+            visited.set(u);
+            v.visit(node(u));
+            // push in id order, the same stack order as Graph
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                int t=targets[e];
+                if (!visited.get(t)) {
+                    stack[top++]=t;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Dijkstra's algorithm returning the cost to every node reachable from
+     * the start node.
+     */
+    public Map<INode, Integer> dijkstra(String sourceNode) {
+        int[] dist=dijkstraDistances(requireId(sourceNode));
+        Map<INode,Integer> result=new HashMap<INode,Integer>();
+        for (int i=0; i<dist.length; i++) {
+            if (dist[i]!=Integer.MAX_VALUE) {
+                result.put(node(i), dist[i]);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Dijkstra's algorithm over ids. Returns the cost of reaching every node
+     * from the given source, or Integer.MAX_VALUE for unreachable nodes.
+     * 
+     * @param source
+     * @return
+     */
+    public int[] dijkstraDistances(int source) {
+        int n=nodeCount();
+        int[] dist=new int[n];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        LongHeap heap=new LongHeap(n);
+        dist[source]=0;
+        heap.push(LongHeap.pack(0, source));
+        while (!heap.isEmpty()) {
+            long entry=heap.pop();
+            int u=LongHeap.id(entry);
+            int cost=LongHeap.cost(entry);
+            if (cost>dist[u]) {
+                // stale entry, u was already settled more cheaply
+                continue;
+            }
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                int t=targets[e];
+                int alt=cost+weight(e);
+                if (alt<dist[t]) {
+                    dist[t]=alt;
+                    heap.push(LongHeap.pack(alt, t));
+                }
+            }
+        }
+        return dist;
+    }
+    
+    /**
+     * Prim-Jarnik's algorithm. The result is a regular mutable {@link Graph}
+     * with a directed edge from each tree node to each of its children, the
+     * same shape that {@link Graph#primJarnik()} produces. If the graph is
+     * not connected this produces a spanning forest.
+     */
+    public IGraph primJarnik() {
+        int n=nodeCount();
+        IGraph res=Graph.createGraph();
+        BitSet inTree=new BitSet(n);
+        LongHeap heap=new LongHeap(n);
+        for (int root=0; root<n; root++) {
+            if (inTree.get(root)) {
+                continue;
+            }
+            inTree.set(root);
+            res.getOrCreateNode(name(root));
+            pushEdges(heap, root, inTree);
+            while (!heap.isEmpty()) {
+                int e=LongHeap.id(heap.pop());
+                int dst=targets[e];
+                if (inTree.get(dst)) {
+                    continue;
+                }
+                inTree.set(dst);
+                INode source=res.getOrCreateNode(name(sourceOf(e)));
+                source.addDirectedEdgeToNode(res.getOrCreateNode(name(dst)), weight(e));
+                pushEdges(heap, dst, inTree);
+            }
+        }
+        return res;
+    }
+    
+    private void pushEdges(LongHeap heap, int u, BitSet inTree) {
+        for (int e=offsets[u]; e<offsets[u+1]; e++) {
+            if (!inTree.get(targets[e])) {
+                heap.push(LongHeap.pack(weight(e), e));
+            }
+        }
+    }
+    
+    /**
+     * Return the node whose row contains the given edge position.
+     */
+    int sourceOf(int edge) {
+        int lo=0;
+        int hi=nodeCount()-1;
+        while (lo<hi) {
+            int mid=(lo+hi+1)>>>1;
+            if (offsets[mid]<=edge) {
+                lo=mid;
+            } else {
+                hi=mid-1;
+            }
+        }
+        return lo;
+    }
+    
+    int requireId(String name) {
+        int id=names.id(name);
+        if (id<0) {
+            throw new UnsupportedOperationException("No node named "+name+" and this graph is read-only");
+        }
+        return id;
+    }
+    
+    /**
+     * The neighbors of the given node as a list of views, in id order.
+     */
+    List<INode> neighbors(int id) {
+        final int lo=offsets[id];
+        final int size=offsets[id+1]-lo;
+        return new AbstractList<INode>() {
+            @Override
+            public INode get(int index) {
+                if (index<0 || index>=size) {
+                    throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+                }
+                return node(targets[lo+index]);
+            }
+            
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
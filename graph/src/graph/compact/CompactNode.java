@@ -0,0 +1,94 @@
+package graph.compact;
+
+import java.util.Collection;
+
+import graph.INode;
+
+/**
+ * A node of a {@link CompactGraph}. This is only a (graph, id) pair; the
+ * name and neighbors are read from the graph each time they are asked for.
+ * 
+ * @author jspacco
+ *
+ */
+class CompactNode implements INode
+{
+    private final CompactGraph graph;
+    private final int id;
+    
+    CompactNode(CompactGraph graph, int id) {
+        this.graph=graph;
+        this.id=id;
+    }
+    
+    int getId() {
+        return id;
+    }
+    
+    public String getName() {
+        return graph.name(id);
+    }
+    
+    public Collection<INode> getNeighbors() {
+        return graph.neighbors(id);
+    }
+    
+    public void addDirectedEdgeToNode(INode neighbor, int weight) {
+        throw new UnsupportedOperationException("CompactGraph is read-only");
+    }
+    
+    public void addUndirectedEdgeToNode(INode neighbor, int weight) {
+        throw new UnsupportedOperationException("CompactGraph is read-only");
+    }
+    
+    public void removeDirectedEdgeToNode(INode neighbor) {
+        throw new UnsupportedOperationException("CompactGraph is read-only");
+    }
+    
+    public void removeUndirectedEdgeToNode(INode neighbor) {
+        throw new UnsupportedOperationException("CompactGraph is read-only");
+    }
+    
+    public boolean hasEdge(INode node) {
+        return graph.findEdge(id, idOf(node))>=0;
+    }
+    
+    /**
+     * Get the weight of the edge to the given node.
+     * 
+     * If no such edge exists, throw {@link IllegalStateException}
+     */
+    public int getWeight(INode node) {
+        int e=graph.findEdge(id, idOf(node));
+        if (e<0) {
+            throw new IllegalStateException("No edge to "+node.getName());
+        }
+        return graph.weight(e);
+    }
+    
+    private int idOf(INode node) {
+        if (node instanceof CompactNode && ((CompactNode)node).graph==graph) {
+            return ((CompactNode)node).id;
+        }
+        return graph.id(node.getName());
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CompactNode)) {
+            return false;
+        }
+        CompactNode other=(CompactNode)o;
+        return other.graph==graph && other.id==id;
+    }
+    
+    @Override
+    public int hashCode() {
+        return id;
+    }
+    
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
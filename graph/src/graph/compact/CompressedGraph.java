@@ -0,0 +1,776 @@
+package graph.compact;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import graph.IGraph;
+import graph.INode;
+import graph.MemoryFootprint;
+import graph.NodeVisitor;
+import graph.impl.Graph;
+
+/**
+ * Read-only graph whose neighbor lists are compressed into bytes, for graphs
+ * too big to hold as a {@link CompactGraph}. Every neighbor list is sorted,
+ * so it is stored as the gaps between consecutive ids, each written as a
+ * varint: 7 bits per byte, with the high bit set on every byte but the last.
+ * When neighbors have ids close to each other, as they do in web graphs or
+ * in graphs numbered by a breadth-first or alphabetical order, most gaps fit
+ * in one byte instead of the four of an int.
+ *
+ * Nodes whose ids are close together also tend to have similar neighbor
+ * lists, so a list can instead be stored relative to one of the previous
+ * few lists (the window): as a series of alternating runs of that list's
+ * neighbors to copy and to skip, followed by the gaps of whatever is left.
+ * The reference is only used when it makes the list smaller, and a chain of
+ * references is limited in length so that decoding a list never has to
+ * decode more than a few others. A window of 0 turns this off.
+ *
+ * The record for node u is the varint degree, then (if the window is not 0)
+ * the distance back to its reference or 0 for none, the copy runs if there
+ * is a reference, the first remaining neighbor relative to u, the gaps minus
+ * one, and finally the weights in neighbor order if the graph is weighted.
+ * Signed values are zigzag encoded. Records are stored back to back in
+ * pages of up to 1 GB, so the graph is not limited to 2 GB of data, and a
+ * long offset per node locates its record for random access.
+ *
+ * Lists are decoded into int arrays by a {@link Decoder}, which holds the
+ * buffers and can be reused from one node to the next, so a search decodes
+ * every list it scans without allocating anything. Each thread needs its own
+ * decoder; the graph itself is immutable and can be shared. The single edge
+ * lookups behind {@link INode} decode into arrays sized to the one list they
+ * need, so they hold on to nothing once they return.
+ *
+ * @author jspacco
+ *
+ */
+public class CompressedGraph implements IGraph, MemoryFootprint.Source
+{
+    private static final int PAGE_BITS=30;
+    private static final int PAGE_SIZE=1<<PAGE_BITS;
+    private static final long PAGE_MASK=PAGE_SIZE-1;
+
+    /**
+     * Default number of previous lists to consider as references.
+     */
+    public static final int DEFAULT_WINDOW=7;
+    /**
+     * Default limit on the length of a chain of references.
+     */
+    public static final int DEFAULT_MAX_CHAIN=3;
+
+    private final byte[][] pages;
+    // record of node u starts at offsets[u]; the page is the high bits
+    private final long[] offsets;
+    private final NodeNames names;
+    private final boolean weighted;
+    private final boolean references;
+    private final int maxChain;
+    private final long edgeCount;
+    private final int maxDegree;
+
+    private CompressedGraph(byte[][] pages, long[] offsets, NodeNames names, boolean weighted,
+            boolean references, int maxChain, long edgeCount, int maxDegree)
+    {
+        this.pages=pages;
+        this.offsets=offsets;
+        this.names=names;
+        this.weighted=weighted;
+        this.references=references;
+        this.maxChain=maxChain;
+        this.edgeCount=edgeCount;
+        this.maxDegree=maxDegree;
+    }
+
+    /**
+     * Compress any graph, compiling it to a {@link CompactGraph} first
+     * unless it already is one.
+     *
+     * @param g
+     * @return
+     */
+    public static CompressedGraph of(IGraph g) {
+        return compress(g instanceof CompactGraph ? (CompactGraph)g : CompactGraph.copyOf(g),
+                DEFAULT_WINDOW, DEFAULT_MAX_CHAIN);
+    }
+
+    /**
+     * Compress a {@link CompactGraph}, keeping its ids and names.
+     *
+     * @param g
+     * @param window number of previous lists to try as references, or 0
+     * @param maxChain longest chain of references allowed
+     * @return
+     */
+    public static CompressedGraph compress(CompactGraph g, int window, int maxChain) {
+        Builder builder=new Builder(g.nodeCount(), g.isWeighted(), window, maxChain);
+        int[] offsets=g.offsets();
+        int[] targets=g.targets();
+        int[] row=new int[g.maxDegree()];
+        int[] weights=g.isWeighted() ? new int[row.length] : null;
+        for (int u=0; u<g.nodeCount(); u++) {
+            int d=offsets[u+1]-offsets[u];
+            System.arraycopy(targets, offsets[u], row, 0, d);
+            if (weights!=null) {
+                for (int k=0; k<d; k++) {
+                    weights[k]=g.weight(offsets[u]+k);
+                }
+            }
+            builder.addRow(row, weights, d);
+        }
+        return builder.build(g.names());
+    }
+
+    /**
+     * Builds a compressed graph one neighbor list at a time, so the whole
+     * graph never has to be held uncompressed. Lists must be added in id
+     * order, each sorted by id without duplicates. Only the last few lists
+     * are kept, to be used as references.
+     */
+    public static class Builder
+    {
+        private final int n;
+        private final boolean weighted;
+        private final int window;
+        private final int maxChain;
+        private final long[] offsets;
+        private final List<byte[]> pages=new ArrayList<byte[]>();
+        private byte[] page=new byte[1<<16];
+        private int pageSize;
+        private int u;
+        private long edgeCount;
+        private int maxDegree;
+        // the last window lists, indexed by id modulo the window
+        private final int[][] recent;
+        private final int[] recentDegree;
+        private final int[] recentChain;
+        private RecordBuffer best=new RecordBuffer();
+        private RecordBuffer trial=new RecordBuffer();
+        private int[] residual=new int[16];
+        private int[] runLengths=new int[16];
+
+        public Builder(int n, boolean weighted, int window, int maxChain) {
+            this.n=n;
+            this.weighted=weighted;
+            this.window=window;
+            this.maxChain=maxChain;
+            this.offsets=new long[n+1];
+            this.recent=new int[Math.max(window, 1)][0];
+            this.recentDegree=new int[Math.max(window, 1)];
+            this.recentChain=new int[Math.max(window, 1)];
+        }
+
+        /**
+         * Add the neighbor list of the next node: the first degree entries
+         * of targets, with the matching weights, which may be null if every
+         * weight is 1.
+         *
+         * @param targets
+         * @param weights
+         * @param degree
+         */
+        public void addRow(int[] targets, int[] weights, int degree) {
+            if (u>=n) {
+                throw new IllegalStateException("All "+n+" rows have been added");
+            }
+            if (residual.length<degree) {
+                residual=new int[Math.max(degree, residual.length*2)];
+            }
+            if (runLengths.length<=maxDegree) {
+                runLengths=new int[Math.max(maxDegree+1, runLengths.length*2)];
+            }
+            encode(targets, weights, degree, 0, best);
+            int chain=0;
+            for (int r=1; r<=Math.min(window, u) && degree>0; r++) {
+                int slot=(u-r)%window;
+                if (recentChain[slot]>=maxChain || recentDegree[slot]==0) {
+                    continue;
+                }
+                encode(targets, weights, degree, r, trial);
+                if (trial.size<best.size) {
+                    RecordBuffer tmp=best;
+                    best=trial;
+                    trial=tmp;
+                    chain=recentChain[slot]+1;
+                }
+            }
+            if (window>0) {
+                int slot=u%window;
+                if (recent[slot].length<degree) {
+                    recent[slot]=new int[Math.max(degree, recent[slot].length*2)];
+                }
+                System.arraycopy(targets, 0, recent[slot], 0, degree);
+                recentDegree[slot]=degree;
+                recentChain[slot]=chain;
+            }
+            append(best);
+            edgeCount+=degree;
+            maxDegree=Math.max(maxDegree, degree);
+            u++;
+        }
+
+        /**
+         * Encode the list, relative to the list r back if r is not 0.
+         */
+        private void encode(int[] targets, int[] weights, int degree, int r, RecordBuffer out) {
+            out.size=0;
+            out.writeVarint(degree);
+            if (degree==0) {
+                return;
+            }
+            int rest=degree;
+            int[] left=targets;
+            if (window>0) {
+                out.writeVarint(r);
+            }
+            if (r>0) {
+                int slot=(u-r)%window;
+                int[] ref=recent[slot];
+                int refDegree=recentDegree[slot];
+                // runs of the reference list alternating copy and skip,
+                // starting with copy; a trailing skip run is left implicit
+                int runs=0;
+                int[] lengths=runLengths;
+                boolean copying=true;
+                int runLength=0;
+                int i=0;
+                rest=0;
+                for (int k=0; k<refDegree; k++) {
+                    int t=ref[k];
+                    while (i<degree && targets[i]<t) {
+                        residual[rest++]=targets[i++];
+                    }
+                    boolean copy=i<degree && targets[i]==t;
+                    if (copy) {
+                        i++;
+                    }
+                    if (copy!=copying) {
+                        lengths[runs++]=runLength;
+                        copying=copy;
+                        runLength=0;
+                    }
+                    runLength++;
+                }
+                while (i<degree) {
+                    residual[rest++]=targets[i++];
+                }
+                if (copying) {
+                    lengths[runs++]=runLength;
+                }
+                out.writeVarint(runs);
+                for (int k=0; k<runs; k++) {
+                    // only the first run can be empty
+                    out.writeVarint(k==0 ? lengths[k] : lengths[k]-1);
+                }
+                left=residual;
+            }
+            if (rest>0) {
+                out.writeVarint(zigzag(left[0]-u));
+                for (int k=1; k<rest; k++) {
+                    out.writeVarint(left[k]-left[k-1]-1);
+                }
+            }
+            if (weighted) {
+                for (int k=0; k<degree; k++) {
+                    out.writeVarint(zigzag(weights==null ? 1 : weights[k]));
+                }
+            }
+        }
+
+        private void append(RecordBuffer record) {
+            if (record.size>PAGE_SIZE) {
+                throw new IllegalArgumentException("The list of node "+u+" is too long to compress");
+            }
+            if (pageSize+record.size>PAGE_SIZE) {
+                pages.add(Arrays.copyOf(page, pageSize));
+                page=new byte[1<<16];
+                pageSize=0;
+            }
+            if (pageSize+record.size>page.length) {
+                page=Arrays.copyOf(page, (int)Math.min(PAGE_SIZE, Math.max(pageSize+record.size, 2L*page.length)));
+            }
+            offsets[u]=((long)pages.size()<<PAGE_BITS) | pageSize;
+            System.arraycopy(record.bytes, 0, page, pageSize, record.size);
+            pageSize+=record.size;
+        }
+
+        public CompressedGraph build(NodeNames names) {
+            if (u!=n) {
+                throw new IllegalStateException("Expected "+n+" rows but got "+u);
+            }
+            if (names.size()!=n) {
+                throw new IllegalArgumentException("Expected "+n+" names but got "+names.size());
+            }
+            offsets[n]=((long)pages.size()<<PAGE_BITS) | pageSize;
+            pages.add(Arrays.copyOf(page, pageSize));
+            return new CompressedGraph(pages.toArray(new byte[0][]), offsets, names, weighted,
+                    window>0, maxChain, edgeCount, maxDegree);
+        }
+    }
+
+    /**
+     * A growable array of bytes for encoding one record.
+     */
+    private static class RecordBuffer
+    {
+        byte[] bytes=new byte[64];
+        int size;
+
+        void writeVarint(int value) {
+            if (size+5>bytes.length) {
+                bytes=Arrays.copyOf(bytes, bytes.length*2);
+            }
+            while ((value & ~0x7f)!=0) {
+                bytes[size++]=(byte)((value & 0x7f) | 0x80);
+                value>>>=7;
+            }
+            bytes[size++]=(byte)value;
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value<<1)^(value>>31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value>>>1)^-(value & 1);
+    }
+
+    /**
+     * Decodes neighbor lists into int arrays. Not thread-safe; every thread
+     * needs its own.
+     */
+    public class Decoder
+    {
+        // one reference buffer and one residual buffer per level of a chain,
+        // grown to the longest list decoded at that level
+        private final int[][] refs=new int[maxChain+1][0];
+        private final int[][] rest=new int[maxChain+1][0];
+        private byte[] page;
+        private int pos;
+
+        /**
+         * Write the neighbors of u into targets, in id order, and their
+         * weights into weights unless it is null, and return how many there
+         * are. Both arrays need room for {@link #degree(int)} entries, which
+         * {@link #maxDegree()} is always enough for.
+         *
+         * @param u
+         * @param targets
+         * @param weights
+         * @return
+         */
+        public int decode(int u, int[] targets, int[] weights) {
+            return decode(u, targets, weights, 0);
+        }
+
+        private int decode(int u, int[] targets, int[] weights, int depth) {
+            page=pages[(int)(offsets[u]>>>PAGE_BITS)];
+            pos=(int)(offsets[u] & PAGE_MASK);
+            int degree=readVarint();
+            if (degree==0) {
+                return 0;
+            }
+            int r=references ? readVarint() : 0;
+            int copied=0;
+            int[] left=targets;
+            if (r>0) {
+                byte[] savedPage=page;
+                int savedPos=pos;
+                int refDegree=degree(u-r);
+                if (refs[depth].length<refDegree) {
+                    refs[depth]=new int[Math.max(refDegree, refs[depth].length*2)];
+                }
+                int[] ref=refs[depth];
+                decode(u-r, ref, null, depth+1);
+                page=savedPage;
+                pos=savedPos;
+                int runs=readVarint();
+                int k=0;
+                for (int i=0; i<runs; i++) {
+                    int length=readVarint()+(i==0 ? 0 : 1);
+                    if ((i & 1)==0) {
+                        System.arraycopy(ref, k, targets, copied, length);
+                        copied+=length;
+                    }
+                    k+=length;
+                }
+                if (k>refDegree) {
+                    throw new IllegalStateException("Damaged list for node "+u);
+                }
+                if (rest[depth].length<degree) {
+                    rest[depth]=new int[Math.max(degree, rest[depth].length*2)];
+                }
+                left=rest[depth];
+            }
+            int remaining=degree-copied;
+            if (remaining>0) {
+                int t=u+unzigzag(readVarint());
+                left[0]=t;
+                for (int i=1; i<remaining; i++) {
+                    t+=readVarint()+1;
+                    left[i]=t;
+                }
+            }
+            if (r>0 && remaining>0) {
+                // merge the residuals into the copied ids, from the back
+                int i=copied-1;
+                int j=remaining-1;
+                for (int k=degree-1; j>=0; k--) {
+                    if (i>=0 && targets[i]>left[j]) {
+                        targets[k]=targets[i--];
+                    } else {
+                        targets[k]=left[j--];
+                    }
+                }
+            }
+            if (weights!=null) {
+                for (int i=0; i<degree; i++) {
+                    weights[i]=weighted ? unzigzag(readVarint()) : 1;
+                }
+            }
+            return degree;
+        }
+
+        private int readVarint() {
+            int b=page[pos++];
+            int value=b & 0x7f;
+            for (int shift=7; b<0; shift+=7) {
+                b=page[pos++];
+                value|=(b & 0x7f)<<shift;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * A new decoder for this graph.
+     *
+     * @return
+     */
+    public Decoder decoder() {
+        return new Decoder();
+    }
+
+    public int nodeCount() {
+        return offsets.length-1;
+    }
+
+    /**
+     * Number of directed edges. Each undirected edge counts twice.
+     *
+     * @return
+     */
+    public long edgeCount() {
+        return edgeCount;
+    }
+
+    public int maxDegree() {
+        return maxDegree;
+    }
+
+    public boolean isWeighted() {
+        return weighted;
+    }
+
+    /**
+     * The degree of a node, read from the start of its record.
+     *
+     * @param id
+     * @return
+     */
+    public int degree(int id) {
+        byte[] page=pages[(int)(offsets[id]>>>PAGE_BITS)];
+        int pos=(int)(offsets[id] & PAGE_MASK);
+        int b=page[pos++];
+        int value=b & 0x7f;
+        for (int shift=7; b<0; shift+=7) {
+            b=page[pos++];
+            value|=(b & 0x7f)<<shift;
+        }
+        return value;
+    }
+
+    /**
+     * Bytes used by the compressed lists and the offset index, not counting
+     * the names.
+     *
+     * @return
+     */
+    public long sizeInBytes() {
+        long bytes=8L*offsets.length;
+        for (byte[] page : pages) {
+            bytes+=page.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Average number of bits used per edge, including the offset index.
+     *
+     * @return
+     */
+    public double bitsPerEdge() {
+        return edgeCount==0 ? 0 : 8.0*sizeInBytes()/edgeCount;
+    }
+
+    public NodeNames names() {
+        return names;
+    }
+
+    /**
+     * Bytes used by the pages, the offset index and the names. Weights are
+     * interleaved with the neighbor lists, so they are counted as adjacency.
+     */
+    public MemoryFootprint memoryFootprint() {
+        long pageBytes=MemoryFootprint.referenceArray(pages.length);
+        for (byte[] page : pages) {
+            pageBytes+=MemoryFootprint.array(1, page.length);
+        }
+        return new MemoryFootprint.Builder(getClass().getName())
+                .add(MemoryFootprint.Category.NAMES, names.sizeInBytes())
+                .add(MemoryFootprint.Category.INDEX, MemoryFootprint.object(4, 18)+MemoryFootprint.array(8, offsets.length))
+                .add(MemoryFootprint.Category.ADJACENCY, pageBytes)
+                .build();
+    }
+
+    public int id(String name) {
+        return names.id(name);
+    }
+
+    public String name(int id) {
+        return names.name(id);
+    }
+
+    public INode node(int id) {
+        return new CompressedNode(this, id);
+    }
+
+    /**
+     * The weight of the edge from u to v, or null if there is none.
+     */
+    Integer weightOf(int u, int v) {
+        int[] targets=new int[degree(u)];
+        int[] weights=new int[targets.length];
+        int d=decoder().decode(u, targets, weights);
+        int k=Arrays.binarySearch(targets, 0, d, v);
+        return k<0 ? null : weights[k];
+    }
+
+    boolean hasEdge(int u, int v) {
+        int[] targets=new int[degree(u)];
+        int d=decoder().decode(u, targets, null);
+        return Arrays.binarySearch(targets, 0, d, v)>=0;
+    }
+
+    /**
+     * Return the node with the given name. Since the graph is read-only,
+     * asking for a node that does not exist throws
+     * {@link UnsupportedOperationException}.
+     */
+    public INode getOrCreateNode(String name) {
+        return node(requireId(name));
+    }
+
+    public boolean containsNode(String name) {
+        return names.id(name)>=0;
+    }
+
+    public Collection<INode> getAllNodes() {
+        List<INode> list=new ArrayList<INode>(nodeCount());
+        for (int i=0; i<nodeCount(); i++) {
+            list.add(node(i));
+        }
+        return list;
+    }
+
+    /**
+     * Breadth-first search, decoding each list once as its node is taken
+     * off the queue. Neighbors are visited in id order.
+     */
+    public void breadthFirstSearch(String startNode, NodeVisitor v) {
+        int start=requireId(startNode);
+        BitSet visited=new BitSet(nodeCount());
+        IntQueue queue=new IntQueue();
+        Decoder decoder=decoder();
+        int[] buf=new int[maxDegree];
+        queue.add(start);
+        visited.set(start);
+        while (!queue.isEmpty()) {
+            int u=queue.poll();
+            v.visit(node(u));
+            int d=decoder.decode(u, buf, null);
+            for (int i=0; i<d; i++) {
+                int t=buf[i];
+                if (!visited.get(t)) {
+                    visited.set(t);
+                    queue.add(t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Iterative depth-first search. Neighbors are pushed in id order, as
+     * {@link CompactGraph} does.
+     */
+    public void depthFirstSearch(String startNode, NodeVisitor v) {
+        int start=requireId(startNode);
+        BitSet visited=new BitSet(nodeCount());
+        Decoder decoder=decoder();
+        int[] buf=new int[maxDegree];
+        int[] stack=new int[64];
+        int top=0;
+        stack[top++]=start;
+        while (top>0) {
+            int u=stack[--top];
+            if (visited.get(u)) {
+                continue;
+            }
+            visited.set(u);
+            v.visit(node(u));
+            int d=decoder.decode(u, buf, null);
+            if (top+d>stack.length) {
+                stack=Arrays.copyOf(stack, Math.max(top+d, stack.length*2));
+            }
+            // push in id order, the same stack order as Graph
+            for (int i=0; i<d; i++) {
+                if (!visited.get(buf[i])) {
+                    stack[top++]=buf[i];
+                }
+            }
+        }
+    }
+
+    public Map<INode, Integer> dijkstra(String sourceNode) {
+        int[] dist=dijkstraDistances(requireId(sourceNode));
+        Map<INode,Integer> result=new HashMap<INode,Integer>();
+        for (int i=0; i<dist.length; i++) {
+            if (dist[i]!=Integer.MAX_VALUE) {
+                result.put(node(i), dist[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Dijkstra's algorithm over ids. Returns the cost of reaching every node
+     * from the given source, or Integer.MAX_VALUE for unreachable nodes.
+     *
+     * @param source
+     * @return
+     */
+    public int[] dijkstraDistances(int source) {
+        int n=nodeCount();
+        int[] dist=new int[n];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        LongHeap heap=new LongHeap(n);
+        Decoder decoder=decoder();
+        int[] buf=new int[maxDegree];
+        int[] w=new int[maxDegree];
+        dist[source]=0;
+        heap.push(LongHeap.pack(0, source));
+        while (!heap.isEmpty()) {
+            long entry=heap.pop();
+            int u=LongHeap.id(entry);
+            int cost=LongHeap.cost(entry);
+            if (cost>dist[u]) {
+                // stale entry, u was already settled more cheaply
+                continue;
+            }
+            int d=decoder.decode(u, buf, w);
+            for (int i=0; i<d; i++) {
+                int t=buf[i];
+                int alt=cost+w[i];
+                if (alt<dist[t]) {
+                    dist[t]=alt;
+                    heap.push(LongHeap.pack(alt, t));
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Prim-Jarnik's algorithm, returning a spanning forest as a regular
+     * mutable {@link Graph} with a directed edge from each tree node to
+     * each of its children.
+     */
+    public IGraph primJarnik() {
+        int n=nodeCount();
+        IGraph res=Graph.createGraph();
+        int[] best=new int[n];
+        int[] parent=new int[n];
+        Arrays.fill(best, Integer.MAX_VALUE);
+        BitSet inTree=new BitSet(n);
+        LongHeap heap=new LongHeap(n);
+        Decoder decoder=decoder();
+        int[] buf=new int[maxDegree];
+        int[] w=new int[maxDegree];
+        for (int root=0; root<n; root++) {
+            if (inTree.get(root)) {
+                continue;
+            }
+            best[root]=0;
+            parent[root]=-1;
+            heap.push(LongHeap.pack(0, root));
+            while (!heap.isEmpty()) {
+                int u=LongHeap.id(heap.pop());
+                if (inTree.get(u)) {
+                    continue;
+                }
+                inTree.set(u);
+                INode node=res.getOrCreateNode(name(u));
+                if (parent[u]>=0) {
+                    res.getOrCreateNode(name(parent[u])).addDirectedEdgeToNode(node, best[u]);
+                }
+                int d=decoder.decode(u, buf, w);
+                for (int i=0; i<d; i++) {
+                    int t=buf[i];
+                    if (!inTree.get(t) && w[i]<best[t]) {
+                        best[t]=w[i];
+                        parent[t]=u;
+                        heap.push(LongHeap.pack(best[t], t));
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    int requireId(String name) {
+        int id=names.id(name);
+        if (id<0) {
+            throw new UnsupportedOperationException("No node named "+name+" and this graph is read-only");
+        }
+        return id;
+    }
+
+    /**
+     * The neighbors of the given node as a list of views, in id order.
+     */
+    List<INode> neighbors(int id) {
+        final int[] buf=new int[degree(id)];
+        final int size=decoder().decode(id, buf, null);
+        return new AbstractList<INode>() {
+            @Override
+            public INode get(int index) {
+                if (index<0 || index>=size) {
+                    throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+                }
+                return node(buf[index]);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+package graph.compact;
+
+import java.util.Collection;
+
+import graph.INode;
+
+/**
+ * A node of a {@link CompressedGraph}. This is only a (graph, id) pair; the
+ * neighbor list is decoded each time it is asked for.
+ * 
+ * @author jspacco
+ *
+ */
+class CompressedNode implements INode
+{
+    private final CompressedGraph graph;
+    private final int id;
+    
+    CompressedNode(CompressedGraph graph, int id) {
+        this.graph=graph;
+        this.id=id;
+    }
+    
+    public String getName() {
+        return graph.name(id);
+    }
+    
+    public Collection<INode> getNeighbors() {
+        return graph.neighbors(id);
+    }
+    
+    public void addDirectedEdgeToNode(INode neighbor, int weight) {
+        throw new UnsupportedOperationException("CompressedGraph is read-only");
+    }
+    
+    public void addUndirectedEdgeToNode(INode neighbor, int weight) {
+        throw new UnsupportedOperationException("CompressedGraph is read-only");
+    }
+    
+    public void removeDirectedEdgeToNode(INode neighbor) {
+        throw new UnsupportedOperationException("CompressedGraph is read-only");
+    }
+    
+    public void removeUndirectedEdgeToNode(INode neighbor) {
+        throw new UnsupportedOperationException("CompressedGraph is read-only");
+    }
+    
+    public boolean hasEdge(INode node) {
+        int other=idOf(node);
+        return other>=0 && graph.hasEdge(id, other);
+    }
+    
+    /**
+     * Get the weight of the edge to the given node.
+     * 
+     * If no such edge exists, throw {@link IllegalStateException}
+     */
+    public int getWeight(INode node) {
+        int other=idOf(node);
+        Integer weight=other<0 ? null : graph.weightOf(id, other);
+        if (weight==null) {
+            throw new IllegalStateException("No edge to "+node.getName());
+        }
+        return weight;
+    }
+    
+    private int idOf(INode node) {
+        if (node instanceof CompressedNode && ((CompressedNode)node).graph==graph) {
+            return ((CompressedNode)node).id;
+        }
+        return graph.id(node.getName());
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CompressedNode)) {
+            return false;
+        }
+        CompressedNode other=(CompressedNode)o;
+        return other.graph==graph && other.id==id;
+    }
+    
+    @Override
+    public int hashCode() {
+        return id;
+    }
+    
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,132 @@
+package graph.compact;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Turns an unordered list of edges into the compressed sparse row layout
+ * used by {@link CompactGraph}: neighbor lists sorted by target id, duplicate
+ * edges and self loops removed.
+ * 
+ * Every step (degree counting, scattering, sorting rows, compaction) runs in
+ * parallel. Rows are sorted by target and then by the position of the edge in
+ * the input, so the result does not depend on how threads are scheduled.
+ */
+class CsrBuilder
+{
+    // edges are handled in fixed size chunks so that work splits evenly
+    static final int CHUNK=1<<16;
+    
+    private CsrBuilder() {
+    }
+    
+    /**
+     * Build the graph. When the same edge appears more than once, the last
+     * one wins, just like calling addDirectedEdgeToNode again on a
+     * {@link graph.impl.Node}. A null weight array means every edge
+     * has weight 1, and the resulting graph will not store weights at all.
+     */
+    static CompactGraph build(int n, int[] src, int[] dst, int[] w, int m,
+            boolean undirected, NodeNames names)
+    {
+        AtomicIntegerArray degree=new AtomicIntegerArray(n);
+        forEachChunk(m, (lo, hi) -> {
+            for (int e=lo; e<hi; e++) {
+                if (src[e]==dst[e]) {
+                    continue;
+                }
+                degree.incrementAndGet(src[e]);
+                if (undirected) {
+                    degree.incrementAndGet(dst[e]);
+                }
+            }
+        });
+        int[] rawOffsets=new int[n+1];
+        for (int i=0; i<n; i++) {
+            rawOffsets[i+1]=rawOffsets[i]+degree.get(i);
+        }
+        
+        // scatter (target, edge index) pairs into their rows, packed into one
+        // long so that sorting a row sorts by target and then by input order
+        long[] keys=new long[rawOffsets[n]];
+        AtomicIntegerArray cursor=new AtomicIntegerArray(Arrays.copyOf(rawOffsets, n));
+        forEachChunk(m, (lo, hi) -> {
+            for (int e=lo; e<hi; e++) {
+                int u=src[e];
+                int v=dst[e];
+                if (u==v) {
+                    continue;
+                }
+                keys[cursor.getAndIncrement(u)]=key(v, e);
+                if (undirected) {
+                    keys[cursor.getAndIncrement(v)]=key(u, e);
+                }
+            }
+        });
+        
+        // sort each row, and keep only the last entry for each target
+        int[] distinct=new int[n+1];
+        IntStream.range(0, n).parallel().forEach(u -> {
+            int lo=rawOffsets[u];
+            int hi=rawOffsets[u+1];
+            Arrays.sort(keys, lo, hi);
+            int count=0;
+            for (int i=lo; i<hi; i++) {
+                if (i==hi-1 || target(keys[i])!=target(keys[i+1])) {
+                    count++;
+                }
+            }
+            distinct[u+1]=count;
+        });
+        for (int i=0; i<n; i++) {
+            distinct[i+1]+=distinct[i];
+        }
+        int[] offsets=distinct;
+        int[] targets=new int[offsets[n]];
+        int[] weights=w!=null ? new int[offsets[n]] : null;
+        IntStream.range(0, n).parallel().forEach(u -> {
+            int lo=rawOffsets[u];
+            int hi=rawOffsets[u+1];
+            int out=offsets[u];
+            for (int i=lo; i<hi; i++) {
+                if (i==hi-1 || target(keys[i])!=target(keys[i+1])) {
+                    targets[out]=target(keys[i]);
+                    if (weights!=null) {
+                        weights[out]=w[edge(keys[i])];
+                    }
+                    out++;
+                }
+            }
+        });
+        return new CompactGraph(offsets, targets, weights, names);
+    }
+    
+    static long key(int target, int edge) {
+        return ((long)target<<32)|edge;
+    }
+    
+    static int target(long key) {
+        return (int)(key>>>32);
+    }
+    
+    static int edge(long key) {
+        return (int)key;
+    }
+    
+    interface Range
+    {
+        void run(int lo, int hi);
+    }
+    
+    /**
+     * Run the given range over [0, m) in parallel chunks of {@link #CHUNK}.
+     */
+    static void forEachChunk(int m, Range range) {
+        int chunks=(m+CHUNK-1)/CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int lo=c*CHUNK;
+            range.run(lo, Math.min(m, lo+CHUNK));
+        });
+    }
+}
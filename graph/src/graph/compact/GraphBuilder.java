@@ -0,0 +1,242 @@
+package graph.compact;
+
+import java.util.Arrays;
+
+import graph.GraphProvider;
+import graph.IGraph;
+import graph.INode;
+
+/**
+ * Collects edges in bulk and turns them into a finished graph.
+ * 
+ * Adding an edge to a {@link graph.impl.Graph} one at a time looks both
+ * names up in a HashMap and then updates two more HashMaps per direction.
+ * A GraphBuilder instead turns each name into an int id once (through a
+ * {@link NameDictionary.Builder}), appends the edge to primitive arrays that
+ * can be sized up front, and then sorts and removes duplicates for all edges
+ * at once when the graph is built.
+ * 
+ * The result can either be a read-only {@link CompactGraph}, or a regular
+ * mutable graph from any {@link GraphProvider}, which gets each node created
+ * once and the edges added straight from the arrays.
+ * 
+ * As with {@link graph.impl.Node#addDirectedEdgeToNode(INode, int)}, adding
+ * the same edge twice keeps the last weight. Self loops are left out of a
+ * {@link CompactGraph}, but a graph built with a provider gets them.
+ * 
+ * @author jspacco
+ *
+ */
+public class GraphBuilder
+{
+    private final boolean undirected;
+    // exactly one of these is set
+    private final NameDictionary.Builder dictionary;
+    private final NodeNames fixedNames;
+    
+    private int[] src;
+    private int[] dst;
+    private int[] w;
+    private int edgeCount;
+    private boolean weighted;
+    
+    /**
+     * Create a builder for nodes with arbitrary names.
+     * 
+     * @param expectedNodes how many nodes to make room for
+     * @param expectedEdges how many edges to make room for
+     * @param undirected if true, every edge is added in both directions
+     */
+    public GraphBuilder(int expectedNodes, int expectedEdges, boolean undirected) {
+        this(new NameDictionary.Builder(expectedNodes), null, expectedEdges, undirected);
+    }
+    
+    /**
+     * Create a builder for a graph whose nodes are already known, such as
+     * nodes numbered "0" to "n-1" from {@link NodeNames#numbered(int, int)}.
+     * Every node in names will be in the graph, even if it has no edges.
+     * 
+     * @param names
+     * @param expectedEdges
+     * @param undirected
+     */
+    public GraphBuilder(NodeNames names, int expectedEdges, boolean undirected) {
+        this(null, names, expectedEdges, undirected);
+    }
+    
+    private GraphBuilder(NameDictionary.Builder dictionary, NodeNames fixedNames,
+            int expectedEdges, boolean undirected)
+    {
+        this.dictionary=dictionary;
+        this.fixedNames=fixedNames;
+        this.undirected=undirected;
+        int capacity=Math.max(16, expectedEdges);
+        src=new int[capacity];
+        dst=new int[capacity];
+        w=new int[capacity];
+    }
+    
+    public int nodeCount() {
+        return dictionary!=null ? dictionary.size() : fixedNames.size();
+    }
+    
+    public int edgeCount() {
+        return edgeCount;
+    }
+    
+    /**
+     * Return the id of the node with the given name, adding the node if it
+     * is not already there. The id can be passed to the int versions of
+     * {@link #addEdge(int, int, int)} and {@link #addEdges(int[], int[], int[])}.
+     * 
+     * @param name
+     * @return
+     * @throws IllegalArgumentException if the builder was created with a
+     *      fixed set of names that does not include this one
+     */
+    public int addNode(String name) {
+        if (dictionary!=null) {
+            return dictionary.getOrAdd(name);
+        }
+        int id=fixedNames.id(name);
+        if (id<0) {
+            throw new IllegalArgumentException("No node named "+name);
+        }
+        return id;
+    }
+    
+    /**
+     * Add an edge between two nodes, given by name.
+     * 
+     * @param srcName
+     * @param dstName
+     * @param weight
+     */
+    public void addEdge(String srcName, String dstName, int weight) {
+        addEdge(addNode(srcName), addNode(dstName), weight);
+    }
+    
+    /**
+     * Add an edge between two nodes, given by id.
+     * 
+     * @param srcId
+     * @param dstId
+     * @param weight
+     */
+    public void addEdge(int srcId, int dstId, int weight) {
+        checkId(srcId);
+        checkId(dstId);
+        ensureCapacity(edgeCount+1);
+        src[edgeCount]=srcId;
+        dst[edgeCount]=dstId;
+        w[edgeCount]=weight;
+        weighted|=weight!=1;
+        edgeCount++;
+    }
+    
+    /**
+     * Add a batch of edges given by id, where edge i goes from srcIds[i] to
+     * dstIds[i] with weight weights[i]. A null weight array means the
+     * weights are all 1.
+     * 
+     * @param srcIds
+     * @param dstIds
+     * @param weights
+     */
+    public void addEdges(int[] srcIds, int[] dstIds, int[] weights) {
+        int count=srcIds.length;
+        if (dstIds.length!=count || (weights!=null && weights.length!=count)) {
+            throw new IllegalArgumentException("Edge arrays have different lengths");
+        }
+        for (int i=0; i<count; i++) {
+            checkId(srcIds[i]);
+            checkId(dstIds[i]);
+        }
+        ensureCapacity(edgeCount+count);
+        System.arraycopy(srcIds, 0, src, edgeCount, count);
+        System.arraycopy(dstIds, 0, dst, edgeCount, count);
+        if (weights==null) {
+            Arrays.fill(w, edgeCount, edgeCount+count, 1);
+        } else {
+            System.arraycopy(weights, 0, w, edgeCount, count);
+            for (int weight : weights) {
+                weighted|=weight!=1;
+            }
+        }
+        edgeCount+=count;
+    }
+    
+    /**
+     * Add a batch of edges given by name. A null weight array means the
+     * weights are all 1.
+     * 
+     * @param srcNames
+     * @param dstNames
+     * @param weights
+     */
+    public void addEdges(String[] srcNames, String[] dstNames, int[] weights) {
+        int count=srcNames.length;
+        if (dstNames.length!=count || (weights!=null && weights.length!=count)) {
+            throw new IllegalArgumentException("Edge arrays have different lengths");
+        }
+        ensureCapacity(edgeCount+count);
+        for (int i=0; i<count; i++) {
+            addEdge(addNode(srcNames[i]), addNode(dstNames[i]), weights==null ? 1 : weights[i]);
+        }
+    }
+    
+    /**
+     * Build a read-only {@link CompactGraph} from the edges added so far.
+     * 
+     * @return
+     */
+    public CompactGraph build() {
+        NodeNames names=dictionary!=null ? dictionary.build() : fixedNames;
+        return CsrBuilder.build(names.size(), src, dst, weighted ? w : null, edgeCount, undirected, names);
+    }
+    
+    /**
+     * Build a regular graph using the given provider, straight from the
+     * edge arrays: every node is created once, in id order, and then every
+     * edge is added in the order it was given, so the provider's own maps
+     * keep the last weight of a repeated edge. Undirected edges are added
+     * with addUndirectedEdgeToNode, so the provider's nodes see the same
+     * calls they would from a loader adding edges one by one. Nothing is
+     * sorted and no {@link CompactGraph} is built on the way.
+     * 
+     * @param provider
+     * @return
+     */
+    public IGraph build(GraphProvider provider) {
+        NodeNames names=dictionary!=null ? dictionary.build() : fixedNames;
+        int n=names.size();
+        IGraph g=provider.createGraph(n);
+        INode[] nodes=new INode[n];
+        for (int i=0; i<n; i++) {
+            nodes[i]=g.getOrCreateNode(names.name(i));
+        }
+        for (int e=0; e<edgeCount; e++) {
+            if (undirected) {
+                nodes[src[e]].addUndirectedEdgeToNode(nodes[dst[e]], w[e]);
+            } else {
+                nodes[src[e]].addDirectedEdgeToNode(nodes[dst[e]], w[e]);
+            }
+        }
+        return g;
+    }
+    
+    private void checkId(int id) {
+        if (id<0 || id>=nodeCount()) {
+            throw new IllegalArgumentException("No node with id "+id);
+        }
+    }
+    
+    private void ensureCapacity(int capacity) {
+        if (capacity>src.length) {
+            int size=Math.max(capacity, src.length*2);
+            src=Arrays.copyOf(src, size);
+            dst=Arrays.copyOf(dst, size);
+            w=Arrays.copyOf(w, size);
+        }
+    }
+}
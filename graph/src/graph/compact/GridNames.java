@@ -0,0 +1,43 @@
+package graph.compact;
+
+/**
+ * {@link NodeNames} for grid cells named like "r2c1". Names are built only
+ * when asked for, and parsed back into ids without any lookup table.
+ */
+class GridNames implements NodeNames
+{
+    private final int rows;
+    private final int cols;
+    
+    GridNames(int rows, int cols) {
+        if ((long)rows*cols>Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Grid too large: "+rows+"x"+cols);
+        }
+        this.rows=rows;
+        this.cols=cols;
+    }
+    
+    public int size() {
+        return rows*cols;
+    }
+    
+    public String name(int id) {
+        return "r"+(id/cols)+"c"+(id%cols);
+    }
+    
+    public int id(String name) {
+        if (name.length()<4 || name.charAt(0)!='r') {
+            return -1;
+        }
+        int split=name.indexOf('c', 1);
+        if (split<0) {
+            return -1;
+        }
+        int r=NumberedNames.parseCanonicalInt(name, 1, split);
+        int c=NumberedNames.parseCanonicalInt(name, split+1, name.length());
+        if (r<0 || c<0 || r>=rows || c>=cols) {
+            return -1;
+        }
+        return r*cols+c;
+    }
+}
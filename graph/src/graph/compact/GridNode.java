@@ -0,0 +1,92 @@
+package graph.compact;
+
+import java.util.Collection;
+
+import graph.INode;
+
+/**
+ * A cell of an {@link ImplicitGridGraph}. Like {@link CompactNode}, this is
+ * only a (graph, id) pair and everything else is computed when asked for.
+ * 
+ * @author jspacco
+ *
+ */
+class GridNode implements INode
+{
+    private final ImplicitGridGraph graph;
+    private final int id;
+    
+    GridNode(ImplicitGridGraph graph, int id) {
+        this.graph=graph;
+        this.id=id;
+    }
+    
+    public String getName() {
+        return graph.name(id);
+    }
+    
+    public Collection<INode> getNeighbors() {
+        return graph.neighborList(id);
+    }
+    
+    public void addDirectedEdgeToNode(INode neighbor, int weight) {
+        throw new UnsupportedOperationException("ImplicitGridGraph is read-only");
+    }
+    
+    public void addUndirectedEdgeToNode(INode neighbor, int weight) {
+        throw new UnsupportedOperationException("ImplicitGridGraph is read-only");
+    }
+    
+    public void removeDirectedEdgeToNode(INode neighbor) {
+        throw new UnsupportedOperationException("ImplicitGridGraph is read-only");
+    }
+    
+    public void removeUndirectedEdgeToNode(INode neighbor) {
+        throw new UnsupportedOperationException("ImplicitGridGraph is read-only");
+    }
+    
+    public boolean hasEdge(INode node) {
+        int other=idOf(node);
+        return other>=0 && graph.adjacent(id, other);
+    }
+    
+    /**
+     * Get the weight of the edge to the given node, which is the weight
+     * of the cell it leads into.
+     * 
+     * If no such edge exists, throw {@link IllegalStateException}
+     */
+    public int getWeight(INode node) {
+        int other=idOf(node);
+        if (other<0 || !graph.adjacent(id, other)) {
+            throw new IllegalStateException("No edge to "+node.getName());
+        }
+        return graph.cellWeight(other);
+    }
+    
+    private int idOf(INode node) {
+        if (node instanceof GridNode && ((GridNode)node).graph==graph) {
+            return ((GridNode)node).id;
+        }
+        return graph.id(node.getName());
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof GridNode)) {
+            return false;
+        }
+        GridNode other=(GridNode)o;
+        return other.graph==graph && other.id==id;
+    }
+    
+    @Override
+    public int hashCode() {
+        return id;
+    }
+    
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
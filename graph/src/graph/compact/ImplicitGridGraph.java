@@ -0,0 +1,382 @@
+package graph.compact;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import graph.IGraph;
+import graph.INode;
+import graph.MemoryFootprint;
+import graph.NodeVisitor;
+import graph.impl.Graph;
+
+/**
+ * Read-only grid graph whose edges are computed on demand instead of stored.
+ * 
+ * The neighbors of a cell are a pure function of its row and column: the
+ * cells above, below, left and right of it that are inside the grid and not
+ * blocked. So all this class stores is the size of the grid, an optional
+ * bitmap of blocked cells and an optional array of cell weights. Nodes are
+ * named like "r2c1" for row 2, column 1, just like {@link graph.GridGraph},
+ * but the names are only built when {@link INode#getName()} is called.
+ * 
+ * The weight of an edge is the weight of the cell it leads into, so moving
+ * onto an expensive cell costs more than moving off of it. With cell weights
+ * the grid is therefore a directed graph whose edges come in pairs of
+ * different weights: getWeight(a, b) is the weight of b, not of a, and
+ * algorithms for undirected graphs such as {@link #primJarnik()} are
+ * rejected. Without cell weights every edge has weight 1 and the grid is
+ * undirected.
+ * 
+ * A cell has id {@code row*cols+col}. Blocked cells are not part of the graph.
+ * 
+ * @author jspacco
+ *
+ */
+public class ImplicitGridGraph implements IGraph, MemoryFootprint.Source
+{
+    private final int rows;
+    private final int cols;
+    private final NodeNames names;
+    // null when no cell is blocked
+    private final BitSet blocked;
+    // null when every cell has weight 1
+    private final int[] cellWeights;
+    
+    /**
+     * Create an open grid where every edge has weight 1.
+     * 
+     * @param rows
+     * @param cols
+     */
+    public ImplicitGridGraph(int rows, int cols) {
+        this(rows, cols, null, null);
+    }
+    
+    /**
+     * Create a grid with the given blocked cells and cell weights. Either can
+     * be null. The bitmap and array are used directly, not copied, and
+     * should not be changed while the graph is in use.
+     * 
+     * @param rows
+     * @param cols
+     * @param blocked bit i is set if the cell with id i is blocked
+     * @param cellWeights the cost of moving into each cell
+     */
+    public ImplicitGridGraph(int rows, int cols, BitSet blocked, int[] cellWeights) {
+        this.names=NodeNames.grid(rows, cols);
+        if (cellWeights!=null && cellWeights.length!=names.size()) {
+            throw new IllegalArgumentException("Expected "+names.size()+" cell weights but got "+cellWeights.length);
+        }
+        this.rows=rows;
+        this.cols=cols;
+        this.blocked=blocked;
+        this.cellWeights=cellWeights;
+    }
+    
+    public int getRows() {
+        return rows;
+    }
+    
+    public int getCols() {
+        return cols;
+    }
+    
+    /**
+     * Bytes used by the grid: only the blocked bitmap and cell weights, if
+     * there are any, since edges and names are computed.
+     */
+    public MemoryFootprint memoryFootprint() {
+        return new MemoryFootprint.Builder(getClass().getName())
+                .add(MemoryFootprint.Category.NAMES, names.sizeInBytes())
+                .add(MemoryFootprint.Category.INDEX, MemoryFootprint.object(3, 8))
+                .add(MemoryFootprint.Category.ADJACENCY, blocked==null ? 0
+                        : MemoryFootprint.object(1, 5)+MemoryFootprint.array(8, (blocked.size()+63)/64))
+                .add(MemoryFootprint.Category.WEIGHTS, cellWeights==null ? 0 : MemoryFootprint.array(4, cellWeights.length))
+                .build();
+    }
+    
+    /**
+     * Return true if the cell with the given id is part of the graph.
+     * 
+     * @param id
+     * @return
+     */
+    public boolean isOpen(int id) {
+        return blocked==null || !blocked.get(id);
+    }
+    
+    /**
+     * The cost of moving into the given cell.
+     * 
+     * @param id
+     * @return
+     */
+    public int cellWeight(int id) {
+        return cellWeights==null ? 1 : cellWeights[id];
+    }
+    
+    /**
+     * Write the ids of the open neighbors of the given cell into buf, in
+     * increasing id order (up, left, right, down), and return how many
+     * there are. buf needs room for 4.
+     * 
+     * @param id
+     * @param buf
+     * @return
+     */
+    public int neighbors(int id, int[] buf) {
+        int r=id/cols;
+        int c=id%cols;
+        int count=0;
+        if (r>0 && isOpen(id-cols)) {
+            buf[count++]=id-cols;
+        }
+        if (c>0 && isOpen(id-1)) {
+            buf[count++]=id-1;
+        }
+        if (c<cols-1 && isOpen(id+1)) {
+            buf[count++]=id+1;
+        }
+        if (r<rows-1 && isOpen(id+cols)) {
+            buf[count++]=id+cols;
+        }
+        return count;
+    }
+    
+    /**
+     * Return true if there is an edge between the two cells.
+     */
+    boolean adjacent(int a, int b) {
+        if (!isOpen(a) || !isOpen(b)) {
+            return false;
+        }
+        int diff=Math.abs(a-b);
+        return diff==cols || (diff==1 && Math.min(a, b)/cols==Math.max(a, b)/cols);
+    }
+    
+    public String name(int id) {
+        return names.name(id);
+    }
+    
+    /**
+     * Return the id of the open cell with the given name, or -1.
+     * 
+     * @param name
+     * @return
+     */
+    public int id(String name) {
+        int id=names.id(name);
+        return id>=0 && isOpen(id) ? id : -1;
+    }
+    
+    public INode node(int id) {
+        return new GridNode(this, id);
+    }
+    
+    /**
+     * Return the cell with the given name. Since the graph is read-only,
+     * asking for a cell that does not exist (or is blocked) throws
+     * {@link UnsupportedOperationException}.
+     */
+    public INode getOrCreateNode(String name) {
+        return node(requireId(name));
+    }
+    
+    public boolean containsNode(String name) {
+        return id(name)>=0;
+    }
+    
+    public Collection<INode> getAllNodes() {
+        List<INode> list=new ArrayList<INode>();
+        for (int id=0; id<names.size(); id++) {
+            if (isOpen(id)) {
+                list.add(node(id));
+            }
+        }
+        return list;
+    }
+    
+    /**
+     * Breadth-first search. Besides the visited bitmap, the only memory used
+     * is a queue holding the current frontier, which on a grid is about as
+     * long as the grid is wide.
+     */
+    public void breadthFirstSearch(String startNode, NodeVisitor v) {
+        int start=requireId(startNode);
+        BitSet visited=new BitSet(names.size());
+        IntQueue queue=new IntQueue();
+        int[] buf=new int[4];
+        queue.add(start);
+        visited.set(start);
+        while (!queue.isEmpty()) {
+            int u=queue.poll();
+            v.visit(node(u));
+            int count=neighbors(u, buf);
+            for (int i=0; i<count; i++) {
+                if (!visited.get(buf[i])) {
+                    visited.set(buf[i]);
+                    queue.add(buf[i]);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Iterative depth-first search, pushing neighbors in increasing id order,
+     * the same stack order as {@link graph.impl.Graph}.
+     */
+    public void depthFirstSearch(String startNode, NodeVisitor v) {
+        int start=requireId(startNode);
+        BitSet visited=new BitSet(names.size());
+        int[] stack=new int[64];
+        int top=0;
+        int[] buf=new int[4];
+        stack[top++]=start;
+        while (top>0) {
+            int u=stack[--top];
+            if (visited.get(u)) {
+                continue;
+            }
+            visited.set(u);
+            v.visit(node(u));
+            int count=neighbors(u, buf);
+            for (int i=0; i<count; i++) {
+                if (!visited.get(buf[i])) {
+                    if (top==stack.length) {
+                        stack=Arrays.copyOf(stack, stack.length*2);
+                    }
+                    stack[top++]=buf[i];
+                }
+            }
+        }
+    }
+    
+    public Map<INode, Integer> dijkstra(String sourceNode) {
+        int[] dist=dijkstraDistances(requireId(sourceNode));
+        Map<INode,Integer> result=new HashMap<INode,Integer>();
+        for (int i=0; i<dist.length; i++) {
+            if (dist[i]!=Integer.MAX_VALUE) {
+                result.put(node(i), dist[i]);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Dijkstra's algorithm over cell ids. Returns the cost of reaching every
+     * cell, or Integer.MAX_VALUE for blocked and unreachable cells.
+     * 
+     * @param source
+     * @return
+     */
+    public int[] dijkstraDistances(int source) {
+        int[] dist=new int[names.size()];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        LongHeap heap=new LongHeap(rows+cols);
+        int[] buf=new int[4];
+        dist[source]=0;
+        heap.push(LongHeap.pack(0, source));
+        while (!heap.isEmpty()) {
+            long entry=heap.pop();
+            int u=LongHeap.id(entry);
+            int cost=LongHeap.cost(entry);
+            if (cost>dist[u]) {
+                continue;
+            }
+            int count=neighbors(u, buf);
+            for (int i=0; i<count; i++) {
+                int t=buf[i];
+                int alt=cost+cellWeight(t);
+                if (alt<dist[t]) {
+                    dist[t]=alt;
+                    heap.push(LongHeap.pack(alt, t));
+                }
+            }
+        }
+        return dist;
+    }
+    
+    /**
+     * Prim-Jarnik's algorithm, returning a spanning forest of the open cells
+     * as a regular mutable {@link Graph} with a directed edge from each tree
+     * node to each of its children. A minimum spanning tree is only defined
+     * when both directions of an edge weigh the same, so this throws
+     * {@link UnsupportedOperationException} on a grid with cell weights.
+     */
+    public IGraph primJarnik() {
+        if (cellWeights!=null) {
+            throw new UnsupportedOperationException(
+                    "Cell weights make edge weights depend on direction, so there is no minimum spanning tree");
+        }
+        int n=names.size();
+        IGraph res=Graph.createGraph();
+        int[] best=new int[n];
+        int[] parent=new int[n];
+        Arrays.fill(best, Integer.MAX_VALUE);
+        BitSet inTree=new BitSet(n);
+        LongHeap heap=new LongHeap(rows+cols);
+        int[] buf=new int[4];
+        for (int root=0; root<n; root++) {
+            if (inTree.get(root) || !isOpen(root)) {
+                continue;
+            }
+            best[root]=0;
+            parent[root]=-1;
+            heap.push(LongHeap.pack(0, root));
+            while (!heap.isEmpty()) {
+                int u=LongHeap.id(heap.pop());
+                if (inTree.get(u)) {
+                    continue;
+                }
+                inTree.set(u);
+                INode node=res.getOrCreateNode(name(u));
+                if (parent[u]>=0) {
+                    res.getOrCreateNode(name(parent[u])).addDirectedEdgeToNode(node, best[u]);
+                }
+                int count=neighbors(u, buf);
+                for (int i=0; i<count; i++) {
+                    int t=buf[i];
+                    if (!inTree.get(t) && cellWeight(t)<best[t]) {
+                        best[t]=cellWeight(t);
+                        parent[t]=u;
+                        heap.push(LongHeap.pack(best[t], t));
+                    }
+                }
+            }
+        }
+        return res;
+    }
+    
+    int requireId(String name) {
+        int id=id(name);
+        if (id<0) {
+            throw new UnsupportedOperationException("No open cell named "+name+" and this graph is read-only");
+        }
+        return id;
+    }
+    
+    List<INode> neighborList(int id) {
+        final int[] buf=new int[4];
+        final int size=neighbors(id, buf);
+        return new AbstractList<INode>() {
+            @Override
+            public INode get(int index) {
+                if (index<0 || index>=size) {
+                    throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+                }
+                return node(buf[index]);
+            }
+            
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
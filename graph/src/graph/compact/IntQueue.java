@@ -0,0 +1,39 @@
+package graph.compact;
+
+/**
+ * Growable FIFO queue of primitive ints, backed by a circular array.
+ */
+class IntQueue
+{
+    private int[] items=new int[64];
+    private int head;
+    private int size;
+    
+    boolean isEmpty() {
+        return size==0;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    void add(int value) {
+        if (size==items.length) {
+            int[] bigger=new int[items.length*2];
+            int first=Math.min(size, items.length-head);
+            System.arraycopy(items, head, bigger, 0, first);
+            System.arraycopy(items, 0, bigger, first, size-first);
+            items=bigger;
+            head=0;
+        }
+        items[(head+size)&(items.length-1)]=value;
+        size++;
+    }
+    
+    int poll() {
+        int value=items[head];
+        head=(head+1)&(items.length-1);
+        size--;
+        return value;
+    }
+}
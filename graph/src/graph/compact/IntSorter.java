@@ -0,0 +1,49 @@
+package graph.compact;
+
+/**
+ * Sorts arrays of primitive ints with a custom comparator, which
+ * {@link java.util.Arrays} cannot do without boxing every element.
+ */
+class IntSorter
+{
+    interface Comparator
+    {
+        int compare(int a, int b);
+    }
+    
+    private IntSorter() {
+    }
+    
+    /**
+     * Stable bottom-up merge sort.
+     */
+    static void sort(int[] a, Comparator cmp) {
+        int n=a.length;
+        int[] src=a;
+        int[] dst=new int[n];
+        for (int width=1; width<n; width*=2) {
+            for (int lo=0; lo<n; lo+=2*width) {
+                int mid=Math.min(lo+width, n);
+                int hi=Math.min(lo+2*width, n);
+                int i=lo;
+                int j=mid;
+                int k=lo;
+                while (i<mid && j<hi) {
+                    dst[k++]=cmp.compare(src[j], src[i])<0 ? src[j++] : src[i++];
+                }
+                while (i<mid) {
+                    dst[k++]=src[i++];
+                }
+                while (j<hi) {
+                    dst[k++]=src[j++];
+                }
+            }
+            int[] tmp=src;
+            src=dst;
+            dst=tmp;
+        }
+        if (src!=a) {
+            System.arraycopy(src, 0, a, 0, n);
+        }
+    }
+}
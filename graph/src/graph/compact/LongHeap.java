@@ -0,0 +1,78 @@
+package graph.compact;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of primitive longs. The compact algorithms pack a cost into
+ * the high 32 bits and an id into the low 32 bits, so the smallest long is the
+ * cheapest entry and no Path or Edge objects need to be allocated.
+ */
+public class LongHeap
+{
+    private long[] heap;
+    private int size;
+    
+    public LongHeap(int capacity) {
+        heap=new long[Math.max(capacity, 16)];
+    }
+    
+    public static long pack(long cost, int id) {
+        return (cost<<32)|(id&0xffffffffL);
+    }
+    
+    public static int cost(long entry) {
+        return (int)(entry>>>32);
+    }
+    
+    public static int id(long entry) {
+        return (int)entry;
+    }
+    
+    public boolean isEmpty() {
+        return size==0;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public void clear() {
+        size=0;
+    }
+    
+    public void push(long value) {
+        if (size==heap.length) {
+            heap=Arrays.copyOf(heap, heap.length*2);
+        }
+        int i=size++;
+        while (i>0) {
+            int parent=(i-1)>>>1;
+            if (heap[parent]<=value) {
+                break;
+            }
+            heap[i]=heap[parent];
+            i=parent;
+        }
+        heap[i]=value;
+    }
+    
+    public long pop() {
+        long top=heap[0];
+        long last=heap[--size];
+        int i=0;
+        int half=size>>>1;
+        while (i<half) {
+            int child=2*i+1;
+            if (child+1<size && heap[child+1]<heap[child]) {
+                child++;
+            }
+            if (last<=heap[child]) {
+                break;
+            }
+            heap[i]=heap[child];
+            i=child;
+        }
+        heap[i]=last;
+        return top;
+    }
+}
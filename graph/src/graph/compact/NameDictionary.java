@@ -0,0 +1,333 @@
+package graph.compact;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import graph.MemoryFootprint;
+
+/**
+ * Compact {@link NodeNames} for arbitrary node names.
+ * 
+ * Instead of one String object (and one HashMap entry) per name, all of the
+ * names are stored as UTF-8 bytes in a single byte array, with an int offset
+ * per name. Names that are canonical non-negative decimal numbers, like the
+ * Scotland Yard stations "1" to "199", are recognized and kept as ints
+ * instead. If every name is a number and the numbers are consecutive, not even
+ * the ints are stored. Strings are only built when {@link #name(int)} is
+ * called.
+ * 
+ * Lookups by name use binary search over the ids sorted by name, which costs
+ * one more int per name.
+ * 
+ * @author jspacco
+ *
+ */
+public class NameDictionary implements NodeNames
+{
+    private final int size;
+    // the value of each numeric name, or -1 for text names;
+    // null if no name is numeric, or if the names are consecutive numbers
+    private final int[] numbers;
+    // first value when the names are the consecutive numbers base, base+1, ...
+    private final int base;
+    // UTF-8 bytes of the text names, and where each one starts; null if every name is numeric
+    private final byte[] arena;
+    private final int[] offsets;
+    // ids of numeric names sorted by value, and of text names sorted by bytes
+    private final int[] numericOrder;
+    private final int[] textOrder;
+    
+    private NameDictionary(int size, int[] numbers, int base, byte[] arena, int[] offsets,
+            int[] numericOrder, int[] textOrder)
+    {
+        this.size=size;
+        this.numbers=numbers;
+        this.base=base;
+        this.arena=arena;
+        this.offsets=offsets;
+        this.numericOrder=numericOrder;
+        this.textOrder=textOrder;
+    }
+    
+    /**
+     * Create a dictionary where the name of node i is names[i].
+     * 
+     * @param names
+     * @return
+     * @throws IllegalArgumentException if a name appears more than once
+     */
+    public static NameDictionary of(String... names) {
+        Builder builder=new Builder(names.length);
+        for (int i=0; i<names.length; i++) {
+            if (builder.getOrAdd(names[i])!=i) {
+                throw new IllegalArgumentException("Duplicate name "+names[i]);
+            }
+        }
+        return builder.build();
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public long sizeInBytes() {
+        long bytes=MemoryFootprint.object(5, 8);
+        for (int[] array : new int[][] {numbers, offsets, numericOrder, textOrder}) {
+            bytes+=array==null ? 0 : MemoryFootprint.array(4, array.length);
+        }
+        return bytes+(arena==null ? 0 : MemoryFootprint.array(1, arena.length));
+    }
+    
+    public String name(int id) {
+        if (id<0 || id>=size) {
+            throw new IndexOutOfBoundsException("No name with id "+id);
+        }
+        if (base>=0) {
+            return Integer.toString(id+base);
+        }
+        if (numbers!=null && numbers[id]>=0) {
+            return Integer.toString(numbers[id]);
+        }
+        return new String(arena, offsets[id], offsets[id+1]-offsets[id], StandardCharsets.UTF_8);
+    }
+    
+    public int id(String name) {
+        int value=NumberedNames.parseCanonicalInt(name, 0, name.length());
+        if (value>=0) {
+            if (base>=0) {
+                long id=(long)value-base;
+                return id>=0 && id<size ? (int)id : -1;
+            }
+            return findNumber(value);
+        }
+        if (textOrder==null) {
+            return -1;
+        }
+        byte[] key=name.getBytes(StandardCharsets.UTF_8);
+        int lo=0;
+        int hi=textOrder.length-1;
+        while (lo<=hi) {
+            int mid=(lo+hi)>>>1;
+            int id=textOrder[mid];
+            int cmp=Arrays.compareUnsigned(arena, offsets[id], offsets[id+1], key, 0, key.length);
+            if (cmp<0) {
+                lo=mid+1;
+            } else if (cmp>0) {
+                hi=mid-1;
+            } else {
+                return id;
+            }
+        }
+        return -1;
+    }
+    
+    private int findNumber(int value) {
+        if (numericOrder==null) {
+            return -1;
+        }
+        int lo=0;
+        int hi=numericOrder.length-1;
+        while (lo<=hi) {
+            int mid=(lo+hi)>>>1;
+            int v=numbers[numericOrder[mid]];
+            if (v<value) {
+                lo=mid+1;
+            } else if (v>value) {
+                hi=mid-1;
+            } else {
+                return numericOrder[mid];
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Return true if the name with the given id is stored as a number.
+     * 
+     * @param id
+     * @return
+     */
+    public boolean isNumeric(int id) {
+        return base>=0 || (numbers!=null && numbers[id]>=0);
+    }
+    
+    /**
+     * Incrementally builds a {@link NameDictionary}, handing out ids in the
+     * order names are first seen. Duplicates are detected with an open
+     * addressing hash table over the ids, so no String is kept for any name.
+     */
+    public static class Builder
+    {
+        private int size;
+        private int[] numbers;
+        private byte[] arena;
+        private int arenaLength;
+        private int[] offsets;
+        // id+1 of the name in each slot, or 0 for an empty slot
+        private int[] table;
+        private boolean anyNumeric;
+        private boolean anyText;
+        
+        /**
+         * Create a builder with room for the given number of names. It will
+         * grow if more are added.
+         * 
+         * @param expectedSize
+         */
+        public Builder(int expectedSize) {
+            int capacity=Math.max(16, expectedSize);
+            numbers=new int[capacity];
+            offsets=new int[capacity+1];
+            arena=new byte[capacity*4];
+            table=new int[tableSize(capacity)];
+        }
+        
+        private static int tableSize(int capacity) {
+            // power of two, at most half full
+            return Integer.highestOneBit(Math.max(16, capacity)*2)*2;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        /**
+         * Return the id of the given name, adding it if it has not been
+         * seen before.
+         * 
+         * @param name
+         * @return
+         */
+        public int getOrAdd(String name) {
+            int value=NumberedNames.parseCanonicalInt(name, 0, name.length());
+            byte[] bytes=value>=0 ? null : name.getBytes(StandardCharsets.UTF_8);
+            int hash=value>=0 ? mix(value) : mix(hashBytes(bytes, 0, bytes.length));
+            int mask=table.length-1;
+            for (int slot=hash&mask; ; slot=(slot+1)&mask) {
+                int entry=table[slot];
+                if (entry==0) {
+                    int id=append(value, bytes);
+                    table[slot]=id+1;
+                    if (size*2>table.length) {
+                        rehash();
+                    }
+                    return id;
+                }
+                int id=entry-1;
+                if (value>=0 ? numbers[id]==value : numbers[id]<0 && Arrays.equals(arena,
+                        offsets[id], offsets[id+1], bytes, 0, bytes.length))
+                {
+                    return id;
+                }
+            }
+        }
+        
+        private int append(int value, byte[] bytes) {
+            if (size==numbers.length) {
+                numbers=Arrays.copyOf(numbers, size*2);
+                offsets=Arrays.copyOf(offsets, size*2+1);
+            }
+            int id=size++;
+            numbers[id]=value;
+            if (value>=0) {
+                anyNumeric=true;
+            } else {
+                anyText=true;
+                if (arenaLength+bytes.length>arena.length) {
+                    arena=Arrays.copyOf(arena, Math.max(arena.length*2, arenaLength+bytes.length));
+                }
+                System.arraycopy(bytes, 0, arena, arenaLength, bytes.length);
+                arenaLength+=bytes.length;
+            }
+            offsets[id+1]=arenaLength;
+            return id;
+        }
+        
+        private void rehash() {
+            int[] bigger=new int[table.length*2];
+            int mask=bigger.length-1;
+            for (int id=0; id<size; id++) {
+                int hash=numbers[id]>=0 ? mix(numbers[id]) : mix(hashBytes(arena, offsets[id], offsets[id+1]));
+                int slot=hash&mask;
+                while (bigger[slot]!=0) {
+                    slot=(slot+1)&mask;
+                }
+                bigger[slot]=id+1;
+            }
+            table=bigger;
+        }
+        
+        /**
+         * Finish building. The builder should not be used afterwards.
+         * 
+         * @return
+         */
+        public NameDictionary build() {
+            table=null;
+            if (!anyText) {
+                if (consecutive()) {
+                    return new NameDictionary(size, null, size==0 ? 0 : numbers[0], null, null, null, null);
+                }
+                int[] nums=Arrays.copyOf(numbers, size);
+                return new NameDictionary(size, nums, -1, null, null, sortNumeric(nums), null);
+            }
+            final byte[] bytes=Arrays.copyOf(arena, arenaLength);
+            final int[] offs=Arrays.copyOf(offsets, size+1);
+            int[] nums=anyNumeric ? Arrays.copyOf(numbers, size) : null;
+            int[] text=new int[size];
+            int count=0;
+            for (int id=0; id<size; id++) {
+                if (numbers[id]<0) {
+                    text[count++]=id;
+                }
+            }
+            text=Arrays.copyOf(text, count);
+            IntSorter.sort(text, new IntSorter.Comparator() {
+                @Override
+                public int compare(int a, int b) {
+                    return Arrays.compareUnsigned(bytes, offs[a], offs[a+1], bytes, offs[b], offs[b+1]);
+                }
+            });
+            return new NameDictionary(size, nums, -1, bytes, offs, nums==null ? null : sortNumeric(nums), text);
+        }
+        
+        private boolean consecutive() {
+            for (int id=1; id<size; id++) {
+                if (numbers[id]!=numbers[0]+id) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private static int[] sortNumeric(int[] nums) {
+            long[] keys=new long[nums.length];
+            int count=0;
+            for (int id=0; id<nums.length; id++) {
+                if (nums[id]>=0) {
+                    keys[count++]=((long)nums[id]<<32)|id;
+                }
+            }
+            Arrays.sort(keys, 0, count);
+            int[] order=new int[count];
+            for (int i=0; i<count; i++) {
+                order[i]=(int)keys[i];
+            }
+            return order;
+        }
+        
+        private static int hashBytes(byte[] bytes, int from, int to) {
+            int h=1;
+            for (int i=from; i<to; i++) {
+                h=31*h+bytes[i];
+            }
+            return h;
+        }
+        
+        private static int mix(int h) {
+            h*=0x9E3779B9;
+            return h^(h>>>16);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package graph.compact;
+
+import graph.MemoryFootprint;
+
+/**
+ * Mapping between the int ids used inside a {@link CompactGraph} and the
+ * String names exposed through {@link graph.INode#getName()}.
+ * 
+ * Ids are always 0 to size()-1. Implementations are free to compute names
+ * on demand rather than storing them, which is what lets generated graphs
+ * with millions of nodes avoid holding millions of Strings.
+ * 
+ * @author jspacco
+ *
+ */
+public interface NodeNames
+{
+    /**
+     * Return the number of names, which is also the number of nodes.
+     * 
+     * @return
+     */
+    int size();
+    
+    /**
+     * Return the name of the node with the given id.
+     * 
+     * @param id
+     * @return
+     */
+    String name(int id);
+    
+    /**
+     * Return the id of the node with the given name, or -1 if there
+     * is no such node.
+     * 
+     * @param name
+     * @return
+     */
+    int id(String name);
+    
+    /**
+     * Bytes of heap used to store the names. Names that are computed from
+     * the id store nothing but a few fields.
+     * 
+     * @return
+     */
+    default long sizeInBytes() {
+        return MemoryFootprint.object(0, 8);
+    }
+    
+    /**
+     * Names that are just the decimal id plus the given base, so
+     * with a base of 1 the nodes are named "1", "2", "3", etc.
+     * 
+     * @param size
+     * @param base
+     * @return
+     */
+    static NodeNames numbered(int size, int base) {
+        return new NumberedNames(size, base);
+    }
+    
+    /**
+     * Names like "r2c1" for the node in row 2, column 1 of a grid, the
+     * same naming used by {@link graph.GridGraph}. The id of a cell is
+     * {@code row*cols+col}.
+     * 
+     * @param rows
+     * @param cols
+     * @return
+     */
+    static NodeNames grid(int rows, int cols) {
+        return new GridNames(rows, cols);
+    }
+    
+    /**
+     * Names taken from the given array, where the name of node i is names[i].
+     * The names are copied into a {@link NameDictionary}, so the array
+     * and its Strings can be garbage collected afterwards.
+     * 
+     * @param names
+     * @return
+     */
+    static NodeNames of(String... names) {
+        return NameDictionary.of(names);
+    }
+}
@@ -0,0 +1,53 @@
+package graph.compact;
+
+/**
+ * {@link NodeNames} for nodes named by consecutive integers.
+ */
+class NumberedNames implements NodeNames
+{
+    private final int size;
+    private final int base;
+    
+    NumberedNames(int size, int base) {
+        this.size=size;
+        this.base=base;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public String name(int id) {
+        return Integer.toString(id+base);
+    }
+    
+    public int id(String name) {
+        int value=parseCanonicalInt(name, 0, name.length());
+        if (value==Integer.MIN_VALUE) {
+            return -1;
+        }
+        long id=(long)value-base;
+        return id>=0 && id<size ? (int)id : -1;
+    }
+    
+    /**
+     * Parse the non-negative decimal number in s[start,end), rejecting
+     * anything that Integer.toString would not have produced (signs,
+     * leading zeros, overflow). Returns Integer.MIN_VALUE on failure.
+     */
+    static int parseCanonicalInt(String s, int start, int end) {
+        int len=end-start;
+        if (len==0 || len>10 || (len>1 && s.charAt(start)=='0')) {
+            return Integer.MIN_VALUE;
+        }
+        long value=0;
+        for (int i=start; i<end; i++) {
+            char ch=s.charAt(i);
+            if (ch<'0' || ch>'9') {
+                return Integer.MIN_VALUE;
+            }
+            value=value*10+(ch-'0');
+        }
+        return value>Integer.MAX_VALUE ? Integer.MIN_VALUE : (int)value;
+    }
+}
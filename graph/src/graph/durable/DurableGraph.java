@@ -0,0 +1,337 @@
+package graph.durable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import graph.GraphProvider;
+import graph.GraphProviders;
+import graph.IGraph;
+import graph.INode;
+import graph.MemoryFootprint;
+import graph.NodeVisitor;
+
+/**
+ * A graph kept in memory by any {@link GraphProvider} and made durable by a
+ * directory of files: snapshots of the whole graph, and logs of the
+ * mutations made since. Every new node and every edge added or removed is
+ * appended to the current log, and the call returns once the record is on
+ * disk. Concurrent writers share fsyncs through group commit (see
+ * {@link MutationLog}), so the cost of durability per mutation falls as the
+ * number of writers rises.
+ *
+ * Generation k of the directory is snapshot-k (the graph as it was when log
+ * k was started) and log-k (everything since). Opening the directory loads
+ * the newest snapshot and replays the logs from its generation on. A record
+ * torn by a crash is dropped along with anything after it, so the graph
+ * comes back exactly as it was after the last mutation that returned.
+ *
+ * {@link #compact()} folds the logs into a new snapshot so that restarts do
+ * not replay an ever longer log. Writers only wait for the current log to be
+ * closed and a new one started; the new snapshot is built in the background
+ * from the previous snapshot and the closed logs, without touching the graph
+ * in memory. Once it is safely on disk, the files it replaces are deleted.
+ *
+ * Mutations may come from any number of threads. As with the other graphs,
+ * searches and other reads must not run at the same time as mutations.
+ *
+ * @author jspacco
+ *
+ */
+public class DurableGraph implements IGraph, Closeable, MemoryFootprint.Source
+{
+    private final Path dir;
+    private final GraphProvider provider;
+    private final IGraph graph;
+    private MutationLog log;
+    private long generation;
+    private final ExecutorService compactor=Executors.newSingleThreadExecutor(r -> {
+        Thread thread=new Thread(r, "graph-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> compaction;
+    private long replayed;
+
+    private DurableGraph(Path dir, GraphProvider provider) throws IOException {
+        this.dir=dir;
+        this.provider=provider;
+        Files.createDirectories(dir);
+        TreeSet<Long> snapshots=generations("snapshot-");
+        TreeSet<Long> logs=generations("log-");
+        long base=snapshots.isEmpty() ? 0 : snapshots.last();
+        this.graph=snapshots.isEmpty() ? provider.createGraph() : Snapshot.read(snapshotFile(base), provider);
+        generation=base;
+        for (long g : logs.tailSet(base)) {
+            replayed+=MutationLog.replay(logFile(g), (op, src, dst, weight) -> apply(graph, op, src, dst, weight));
+            generation=g;
+        }
+        log=MutationLog.open(logFile(generation));
+    }
+
+    /**
+     * Open the graph stored in the given directory, creating an empty one if
+     * the directory has none, using graph.impl to hold it in memory.
+     *
+     * @param dir
+     * @return
+     * @throws IOException
+     */
+    public static DurableGraph open(Path dir) throws IOException {
+        return open(dir, GraphProviders.get("impl"));
+    }
+
+    public static DurableGraph open(Path dir, GraphProvider provider) throws IOException {
+        return new DurableGraph(dir, provider);
+    }
+
+    private Path snapshotFile(long g) {
+        return dir.resolve("snapshot-"+g);
+    }
+
+    private Path logFile(long g) {
+        return dir.resolve("log-"+g);
+    }
+
+    private TreeSet<Long> generations(String prefix) throws IOException {
+        TreeSet<Long> result=new TreeSet<Long>();
+        try (DirectoryStream<Path> files=Files.newDirectoryStream(dir, prefix+"*")) {
+            for (Path file : files) {
+                String suffix=file.getFileName().toString().substring(prefix.length());
+                if (suffix.matches("[0-9]+")) {
+                    result.add(Long.parseLong(suffix));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Apply one mutation to a graph. Live mutations and replayed ones both
+     * go through here, so replay always rebuilds the same graph.
+     */
+    private static void apply(IGraph g, byte op, String src, String dst, int weight) {
+        INode a=g.getOrCreateNode(src);
+        switch (op) {
+        case MutationLog.ADD_NODE:
+            break;
+        case MutationLog.ADD_EDGE:
+            a.addDirectedEdgeToNode(g.getOrCreateNode(dst), weight);
+            break;
+        case MutationLog.ADD_UNDIRECTED_EDGE:
+            a.addUndirectedEdgeToNode(g.getOrCreateNode(dst), weight);
+            break;
+        case MutationLog.REMOVE_EDGE:
+            a.removeDirectedEdgeToNode(g.getOrCreateNode(dst));
+            break;
+        case MutationLog.REMOVE_UNDIRECTED_EDGE:
+            a.removeUndirectedEdgeToNode(g.getOrCreateNode(dst));
+            break;
+        default:
+            throw new IllegalStateException("Unknown mutation "+op);
+        }
+    }
+
+    /**
+     * Log a mutation, apply it, and wait until the log is on disk. The
+     * record is encoded first, and only applied once the log has accepted
+     * it, so a name too long to log or a log that has already failed leaves
+     * the graph in memory untouched and still the same as the log. The lock
+     * keeps the log in the order the mutations were applied. Waiting for
+     * the disk happens outside the lock, which is what lets other writers
+     * join the same fsync. Adding a node that already exists logs nothing.
+     */
+    void mutate(byte op, String src, String dst, int weight) {
+        MutationLog current;
+        long seq;
+        try {
+            byte[] record=MutationLog.encode(op, src, dst, weight);
+            synchronized (this) {
+                if (op==MutationLog.ADD_NODE && graph.containsNode(src)) {
+                    return;
+                }
+                current=log;
+                seq=log.append(record);
+                apply(graph, op, src, dst, weight);
+            }
+            current.sync(seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    IGraph inner() {
+        return graph;
+    }
+
+    INode wrap(INode node) {
+        return new DurableNode(this, node.getName());
+    }
+
+    private Collection<INode> wrapAll(Collection<INode> nodes) {
+        List<INode> result=new ArrayList<INode>(nodes.size());
+        for (INode node : nodes) {
+            result.add(wrap(node));
+        }
+        return result;
+    }
+
+    public INode getOrCreateNode(String name) {
+        mutate(MutationLog.ADD_NODE, name, null, 0);
+        return new DurableNode(this, name);
+    }
+
+    public boolean containsNode(String name) {
+        return graph.containsNode(name);
+    }
+
+    public Collection<INode> getAllNodes() {
+        return wrapAll(graph.getAllNodes());
+    }
+
+    public void breadthFirstSearch(String startNode, NodeVisitor v) {
+        graph.breadthFirstSearch(startNode, n -> v.visit(wrap(n)));
+    }
+
+    public void depthFirstSearch(String startNode, NodeVisitor v) {
+        graph.depthFirstSearch(startNode, n -> v.visit(wrap(n)));
+    }
+
+    public Map<INode, Integer> dijkstra(String sourceNode) {
+        Map<INode,Integer> result=new LinkedHashMap<INode,Integer>();
+        for (Map.Entry<INode,Integer> entry : graph.dijkstra(sourceNode).entrySet()) {
+            result.put(wrap(entry.getKey()), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * The footprint of the graph held in memory; the log buffers are
+     * counted as caches.
+     */
+    public MemoryFootprint memoryFootprint() {
+        MemoryFootprint.Builder report=new MemoryFootprint.Builder(getClass().getName());
+        if (graph instanceof MemoryFootprint.Source) {
+            report.addAll(((MemoryFootprint.Source)graph).memoryFootprint());
+        }
+        return report.add(MemoryFootprint.Category.CACHES, log.bufferBytes()).build();
+    }
+
+    /**
+     * The minimum spanning tree, as an ordinary graph that is not logged.
+     */
+    public IGraph primJarnik() {
+        return graph.primJarnik();
+    }
+
+    /**
+     * Start a new log and fold everything before it into a new snapshot in
+     * the background. Returns the background task; if a compaction is
+     * already running, returns that one instead of starting another.
+     *
+     * @return
+     * @throws IOException
+     */
+    public synchronized Future<?> compact() throws IOException {
+        if (compaction!=null && !compaction.isDone()) {
+            return compaction;
+        }
+        final long target=generation+1;
+        log.close();
+        log=MutationLog.open(logFile(target));
+        generation=target;
+        compaction=compactor.submit(() -> {
+            fold(target);
+            return null;
+        });
+        return compaction;
+    }
+
+    /**
+     * Write snapshot-target from the newest older snapshot and the logs
+     * since, then delete those files. The directory is forced after the
+     * rename, so the new snapshot survives a crash before anything it
+     * replaces is deleted.
+     */
+    private void fold(long target) throws IOException {
+        TreeSet<Long> snapshots=generations("snapshot-");
+        Long base=snapshots.lower(target);
+        IGraph g=base==null ? provider.createGraph() : Snapshot.read(snapshotFile(base), provider);
+        long from=base==null ? 0 : base;
+        TreeSet<Long> logs=generations("log-");
+        for (long k : logs.subSet(from, target)) {
+            MutationLog.replay(logFile(k), (op, src, dst, weight) -> apply(g, op, src, dst, weight));
+        }
+        Path tmp=dir.resolve("snapshot-"+target+".tmp");
+        Snapshot.write(g, tmp);
+        Files.move(tmp, snapshotFile(target), StandardCopyOption.ATOMIC_MOVE);
+        MutationLog.syncDirectory(dir);
+        for (long k : snapshots.headSet(target)) {
+            Files.deleteIfExists(snapshotFile(k));
+        }
+        for (long k : logs.headSet(target)) {
+            Files.deleteIfExists(logFile(k));
+        }
+    }
+
+    /**
+     * The current generation: the number of the log being written.
+     *
+     * @return
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Number of mutations replayed from the logs when the graph was opened.
+     *
+     * @return
+     */
+    public long getReplayed() {
+        return replayed;
+    }
+
+    /**
+     * Number of fsyncs of the current log. With several writers this is
+     * less than the number of mutations.
+     *
+     * @return
+     */
+    public synchronized long getSyncs() {
+        return log.getSyncs();
+    }
+
+    /**
+     * Wait for any compaction to finish and close the log. Everything
+     * mutated before this is on disk.
+     */
+    public synchronized void close() throws IOException {
+        try {
+            if (compaction!=null) {
+                compaction.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IOException("Compaction failed", e.getCause());
+        } finally {
+            compactor.shutdown();
+            log.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package graph.durable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import graph.INode;
+
+/**
+ * A handle to a node of a {@link DurableGraph}. It only holds the name, so
+ * that every mutation goes through the graph and into its log rather than
+ * straight to the node in memory. Two handles with the same name in the
+ * same graph are equal.
+ *
+ * @author jspacco
+ *
+ */
+class DurableNode implements INode
+{
+    private final DurableGraph graph;
+    private final String name;
+
+    DurableNode(DurableGraph graph, String name) {
+        this.graph=graph;
+        this.name=name;
+    }
+
+    private INode node() {
+        return graph.inner().getOrCreateNode(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Collection<INode> getNeighbors() {
+        Collection<INode> inner=node().getNeighbors();
+        List<INode> neighbors=new ArrayList<INode>(inner.size());
+        for (INode neighbor : inner) {
+            neighbors.add(graph.wrap(neighbor));
+        }
+        return neighbors;
+    }
+
+    public void addDirectedEdgeToNode(INode neighbor, int weight) {
+        graph.mutate(MutationLog.ADD_EDGE, name, neighbor.getName(), weight);
+    }
+
+    public void addUndirectedEdgeToNode(INode neighbor, int weight) {
+        graph.mutate(MutationLog.ADD_UNDIRECTED_EDGE, name, neighbor.getName(), weight);
+    }
+
+    public void removeDirectedEdgeToNode(INode neighbor) {
+        graph.mutate(MutationLog.REMOVE_EDGE, name, neighbor.getName(), 0);
+    }
+
+    public void removeUndirectedEdgeToNode(INode neighbor) {
+        graph.mutate(MutationLog.REMOVE_UNDIRECTED_EDGE, name, neighbor.getName(), 0);
+    }
+
+    public boolean hasEdge(INode node) {
+        return graph.containsNode(node.getName()) && node().hasEdge(graph.inner().getOrCreateNode(node.getName()));
+    }
+
+    public int getWeight(INode node) {
+        if (!graph.containsNode(node.getName())) {
+            throw new IllegalStateException("No edge to "+node.getName());
+        }
+        return node().getWeight(graph.inner().getOrCreateNode(node.getName()));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof DurableNode)) {
+            return false;
+        }
+        DurableNode other=(DurableNode)o;
+        return graph==other.graph && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
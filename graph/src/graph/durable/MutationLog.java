@@ -0,0 +1,319 @@
+package graph.durable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import graph.MemoryFootprint;
+
+/**
+ * An append-only file of graph mutations. Every record is framed by its
+ * length and a CRC32 of its contents, so a record torn by a crash in the
+ * middle of a write is recognized on replay and cut off, along with
+ * anything after it.
+ *
+ * Appending only copies the record into a buffer in memory. Making it
+ * durable is a separate step, with group commit: the first thread to call
+ * {@link #sync(long)} writes everything buffered so far and forces it to
+ * disk, and every thread that appends while that is going on waits for the
+ * next one, which then covers all of their records with a single write and
+ * a single fsync. The busier the log, the more records each fsync covers.
+ *
+ * @author jspacco
+ *
+ */
+final class MutationLog implements Closeable
+{
+    // name
+    static final byte ADD_NODE=0;
+    // src, dst, weight
+    static final byte ADD_EDGE=1;
+    static final byte ADD_UNDIRECTED_EDGE=2;
+    // src, dst
+    static final byte REMOVE_EDGE=3;
+    static final byte REMOVE_UNDIRECTED_EDGE=4;
+
+    /**
+     * Receives the records of a log being replayed.
+     */
+    interface Replayer
+    {
+        void apply(byte op, String src, String dst, int weight);
+    }
+
+    private final FileChannel channel;
+    private ByteArrayOutputStream pending=new ByteArrayOutputStream(4096);
+    private ByteArrayOutputStream spare=new ByteArrayOutputStream(4096);
+    // number of records appended, and how many of those are on disk
+    private long appended;
+    private long durable;
+    private boolean flushing;
+    private IOException failure;
+    private long syncs;
+    private long bytes;
+
+    private MutationLog(FileChannel channel) {
+        this.channel=channel;
+    }
+
+    /**
+     * Open the log in the given file for appending, creating it if needed.
+     * The file must already have been replayed, so that a torn record at
+     * the end has been cut off. A new file is only known to exist after a
+     * crash once its directory has been forced too, so that is done before
+     * returning.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    static MutationLog open(Path file) throws IOException {
+        boolean created=!Files.exists(file);
+        FileChannel channel=FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.position(channel.size());
+            if (created) {
+                syncDirectory(file.toAbsolutePath().getParent());
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new MutationLog(channel);
+    }
+
+    /**
+     * Force the entries of a directory to disk, so that files created in,
+     * renamed into or deleted from it stay that way after a crash.
+     *
+     * @param dir
+     * @throws IOException
+     */
+    static void syncDirectory(Path dir) throws IOException {
+        try (FileChannel channel=FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Encode a record, framed by its length and CRC, ready to be passed to
+     * {@link #append(byte[])}. The dst is ignored by ADD_NODE and the weight
+     * by everything but the ADD operations. Nothing is written anywhere, so
+     * a record that cannot be encoded, such as one with a name too long for
+     * writeUTF, fails here without touching the log.
+     *
+     * @param op
+     * @param src
+     * @param dst
+     * @param weight
+     * @return
+     * @throws IOException
+     */
+    static byte[] encode(byte op, String src, String dst, int weight) throws IOException {
+        ByteArrayOutputStream record=new ByteArrayOutputStream(64);
+        DataOutputStream recordOut=new DataOutputStream(record);
+        recordOut.writeByte(op);
+        recordOut.writeUTF(src);
+        if (op!=ADD_NODE) {
+            recordOut.writeUTF(dst);
+        }
+        if (op==ADD_EDGE || op==ADD_UNDIRECTED_EDGE) {
+            recordOut.writeInt(weight);
+        }
+        CRC32 crc=new CRC32();
+        crc.update(record.toByteArray());
+        ByteArrayOutputStream framed=new ByteArrayOutputStream(8+record.size());
+        DataOutputStream out=new DataOutputStream(framed);
+        out.writeInt(record.size());
+        out.writeInt((int)crc.getValue());
+        record.writeTo(framed);
+        return framed.toByteArray();
+    }
+
+    /**
+     * Buffer a record made by {@link #encode(byte, String, String, int)},
+     * returning its sequence number to pass to {@link #sync(long)}. Throws
+     * the earlier error if a previous write failed, in which case nothing
+     * is buffered.
+     *
+     * @param framed
+     * @return
+     * @throws IOException
+     */
+    synchronized long append(byte[] framed) throws IOException {
+        if (failure!=null) {
+            throw failure;
+        }
+        pending.write(framed);
+        return ++appended;
+    }
+
+    /**
+     * Return once the record with the given sequence number is on disk,
+     * writing and forcing the buffer unless another thread is already doing
+     * that for it.
+     *
+     * @param seq
+     * @throws IOException
+     */
+    void sync(long seq) throws IOException {
+        ByteArrayOutputStream batch;
+        long upTo;
+        synchronized (this) {
+            while (true) {
+                if (failure!=null) {
+                    throw failure;
+                }
+                if (durable>=seq) {
+                    return;
+                }
+                if (!flushing) {
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for the mutation log");
+                }
+            }
+            // lead the next group: take everything appended so far
+            flushing=true;
+            batch=pending;
+            pending=spare;
+            upTo=appended;
+        }
+        IOException error=null;
+        try {
+            ByteBuffer buffer=ByteBuffer.wrap(batch.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error=e;
+        }
+        synchronized (this) {
+            flushing=false;
+            if (error!=null) {
+                // the records are gone, so nothing after them may be written
+                failure=error;
+            } else {
+                durable=upTo;
+                syncs++;
+                bytes+=batch.size();
+            }
+            batch.reset();
+            spare=batch;
+            notifyAll();
+        }
+        if (error!=null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Number of fsyncs so far.
+     *
+     * @return
+     */
+    synchronized long getSyncs() {
+        return syncs;
+    }
+
+    synchronized long getRecords() {
+        return durable;
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Bytes of heap held by the record buffers, counting what is in them
+     * rather than their capacity.
+     */
+    synchronized long bufferBytes() {
+        return MemoryFootprint.array(1, pending.size())+MemoryFootprint.array(1, spare.size());
+    }
+
+    /**
+     * Make everything appended durable and close the file.
+     */
+    public void close() throws IOException {
+        long last;
+        synchronized (this) {
+            last=appended;
+        }
+        try {
+            sync(last);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Apply every complete record of the given log file, in order, and cut
+     * the file off after the last one. Returns the number of records.
+     *
+     * @param file
+     * @param replayer
+     * @return
+     * @throws IOException
+     */
+    static long replay(Path file, Replayer replayer) throws IOException {
+        long records=0;
+        long valid=0;
+        try (FileChannel channel=FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            DataInputStream in=new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1<<16));
+            CRC32 check=new CRC32();
+            long size=channel.size();
+            while (true) {
+                byte[] payload;
+                try {
+                    int length=in.readInt();
+                    int expected=in.readInt();
+                    if (length<=0 || valid+8+length>size) {
+                        break;
+                    }
+                    payload=new byte[length];
+                    in.readFully(payload);
+                    check.reset();
+                    check.update(payload);
+                    if ((int)check.getValue()!=expected) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                DataInputStream record=new DataInputStream(new ByteArrayInputStream(payload));
+                byte op=record.readByte();
+                String src=record.readUTF();
+                String dst=op==ADD_NODE ? null : record.readUTF();
+                int weight=op==ADD_EDGE || op==ADD_UNDIRECTED_EDGE ? record.readInt() : 0;
+                replayer.apply(op, src, dst, weight);
+                records++;
+                valid+=8+payload.length;
+            }
+            if (valid<size) {
+                // a torn write at the end
+                channel.truncate(valid);
+                channel.force(false);
+            }
+        }
+        return records;
+    }
+}
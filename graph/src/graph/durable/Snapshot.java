@@ -0,0 +1,109 @@
+package graph.durable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import graph.GraphProvider;
+import graph.IGraph;
+import graph.INode;
+
+/**
+ * A whole graph in one file: the number of nodes, their names, then for
+ * every node its out-degree followed by the index and weight of each
+ * neighbor, and finally a CRC32 of everything before it. Loading reads the
+ * file straight through and creates every node once, without parsing text
+ * or looking names up, which is what makes restarting from a snapshot
+ * fast.
+ *
+ * @author jspacco
+ *
+ */
+final class Snapshot
+{
+    private static final int MAGIC=0x47534E50;
+
+    private Snapshot() {
+    }
+
+    /**
+     * Write the graph to the given file and force it to disk.
+     *
+     * @param g
+     * @param file
+     * @throws IOException
+     */
+    static void write(IGraph g, Path file) throws IOException {
+        try (FileOutputStream fileOut=new FileOutputStream(file.toFile())) {
+            CheckedOutputStream checked=new CheckedOutputStream(new BufferedOutputStream(fileOut, 1<<16), new CRC32());
+            DataOutputStream out=new DataOutputStream(checked);
+            INode[] nodes=g.getAllNodes().toArray(new INode[0]);
+            Map<String,Integer> index=new HashMap<String,Integer>(nodes.length*2);
+            out.writeInt(MAGIC);
+            out.writeInt(nodes.length);
+            for (int i=0; i<nodes.length; i++) {
+                index.put(nodes[i].getName(), i);
+                out.writeUTF(nodes[i].getName());
+            }
+            for (INode node : nodes) {
+                out.writeInt(node.getNeighbors().size());
+                for (INode neighbor : node.getNeighbors()) {
+                    out.writeInt(index.get(neighbor.getName()));
+                    out.writeInt(node.getWeight(neighbor));
+                }
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            fileOut.getChannel().force(true);
+        }
+    }
+
+    /**
+     * Read a graph written by {@link #write(IGraph, Path)}, creating it with
+     * the given provider.
+     *
+     * @param file
+     * @param provider
+     * @return
+     * @throws IOException if the file is damaged
+     */
+    static IGraph read(Path file, GraphProvider provider) throws IOException {
+        try (InputStream fileIn=Files.newInputStream(file)) {
+            CheckedInputStream checked=new CheckedInputStream(new BufferedInputStream(fileIn, 1<<16), new CRC32());
+            DataInputStream in=new DataInputStream(checked);
+            if (in.readInt()!=MAGIC) {
+                throw new IOException("Not a graph snapshot: "+file);
+            }
+            int n=in.readInt();
+            IGraph g=provider.createGraph(n);
+            INode[] nodes=new INode[n];
+            for (int i=0; i<n; i++) {
+                nodes[i]=g.getOrCreateNode(in.readUTF());
+            }
+            for (int i=0; i<n; i++) {
+                int degree=in.readInt();
+                for (int k=0; k<degree; k++) {
+                    int target=in.readInt();
+                    nodes[i].addDirectedEdgeToNode(nodes[target], in.readInt());
+                }
+            }
+            long expected=checked.getChecksum().getValue();
+            if (in.readLong()!=expected) {
+                throw new IOException("Damaged graph snapshot: "+file);
+            }
+            return g;
+        }
+    }
+}
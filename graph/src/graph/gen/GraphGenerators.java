@@ -0,0 +1,318 @@
+package graph.gen;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import graph.compact.CompactGraph;
+import graph.compact.NodeNames;
+
+/**
+ * Static factory methods for generating large synthetic graphs, for capacity
+ * testing and benchmarks.
+ * 
+ * All generators write straight into a {@link CompactGraph}, never creating a
+ * Node object or a name String per node, and generate their edges in parallel.
+ * The random generators are seeded: the work is split into fixed size chunks,
+ * and each chunk gets its own random number generator derived from the seed and
+ * the chunk number, so the same seed produces the same graph no matter how
+ * many threads run it.
+ * 
+ * All of the generated graphs are undirected, with no self loops and no
+ * duplicate edges.
+ * 
+ * @author jspacco
+ *
+ */
+public class GraphGenerators
+{
+    // number of edges generated by each independently seeded chunk
+    private static final int CHUNK=1<<16;
+    
+    /**
+     * Generate a grid graph with the given number of rows and columns, with
+     * the same node names ("r2c1") and edges as {@link graph.GridGraph#makeGridGraph(int, int)}.
+     * All edges have weight 1.
+     * 
+     * The layout is computed directly: no edge list is built and nothing
+     * needs to be sorted.
+     * 
+     * @param rows
+     * @param cols
+     * @return
+     */
+    public static CompactGraph grid(int rows, int cols) {
+        NodeNames names=NodeNames.grid(rows, cols);
+        int n=names.size();
+        int[] offsets=new int[n+1];
+        for (int id=0; id<n; id++) {
+            offsets[id+1]=offsets[id]+gridDegree(id/cols, id%cols, rows, cols);
+        }
+        int[] targets=new int[offsets[n]];
+        IntStream.range(0, rows).parallel().forEach(r -> {
+            for (int c=0; c<cols; c++) {
+                int id=r*cols+c;
+                int e=offsets[id];
+                // in increasing id order: up, left, right, down
+                if (r>0) {
+                    targets[e++]=id-cols;
+                }
+                if (c>0) {
+                    targets[e++]=id-1;
+                }
+                if (c<cols-1) {
+                    targets[e++]=id+1;
+                }
+                if (r<rows-1) {
+                    targets[e++]=id+cols;
+                }
+            }
+        });
+        return CompactGraph.fromSortedRows(offsets, targets, null, names);
+    }
+    
+    private static int gridDegree(int r, int c, int rows, int cols) {
+        int degree=0;
+        if (r>0) degree++;
+        if (r<rows-1) degree++;
+        if (c>0) degree++;
+        if (c<cols-1) degree++;
+        return degree;
+    }
+    
+    /**
+     * Generate an Erdos-Renyi random graph in the G(n, m) model: m edges,
+     * each between two nodes chosen uniformly at random. Self loops and
+     * duplicate edges are dropped, so for dense graphs the result has
+     * slightly fewer than m edges. Nodes are named "0" to "n-1".
+     * 
+     * @param n
+     * @param m
+     * @param seed
+     * @return
+     */
+    public static CompactGraph erdosRenyi(int n, int m, long seed) {
+        int[] src=new int[m];
+        int[] dst=new int[m];
+        forEachChunk(m, seed, (lo, hi, random) -> {
+            for (int e=lo; e<hi; e++) {
+                src[e]=random.nextInt(n);
+                dst[e]=random.nextInt(n);
+            }
+        });
+        return CompactGraph.fromEdges(src, dst, null, m, true, NodeNames.numbered(n, 0));
+    }
+    
+    /**
+     * Generate an R-MAT graph (a recursive matrix, or stochastic Kronecker,
+     * graph) with 2^scale nodes and m edge samples. Each edge picks one of the
+     * four quadrants of the adjacency matrix with probabilities a, b, c and
+     * 1-a-b-c, and recurses scale times. The Graph500 benchmark uses
+     * a=0.57, b=0.19, c=0.19, which gives the skewed degree distribution of
+     * real social and web graphs.
+     * 
+     * Node ids are randomly permuted (with the same seed) so that high degree
+     * nodes are not all clustered at small ids. Nodes are named "0" to
+     * "2^scale-1".
+     * 
+     * @param scale
+     * @param m
+     * @param a
+     * @param b
+     * @param c
+     * @param seed
+     * @return
+     */
+    public static CompactGraph rmat(int scale, int m, double a, double b, double c, long seed) {
+        if (scale<1 || scale>30) {
+            throw new IllegalArgumentException("scale must be between 1 and 30: "+scale);
+        }
+        if (a<0 || b<0 || c<0 || a+b+c>1) {
+            throw new IllegalArgumentException("Bad quadrant probabilities "+a+", "+b+", "+c);
+        }
+        int n=1<<scale;
+        int[] permutation=permutation(n, seed);
+        double ab=a+b;
+        double abc=a+b+c;
+        int[] src=new int[m];
+        int[] dst=new int[m];
+        forEachChunk(m, seed, (lo, hi, random) -> {
+            for (int e=lo; e<hi; e++) {
+                int u=0;
+                int v=0;
+                for (int bit=scale-1; bit>=0; bit--) {
+                    double p=random.nextDouble();
+                    if (p>=abc) {
+                        u|=1<<bit;
+                        v|=1<<bit;
+                    } else if (p>=ab) {
+                        u|=1<<bit;
+                    } else if (p>=a) {
+                        v|=1<<bit;
+                    }
+                }
+                src[e]=permutation[u];
+                dst[e]=permutation[v];
+            }
+        });
+        return CompactGraph.fromEdges(src, dst, null, m, true, NodeNames.numbered(n, 0));
+    }
+    
+    /**
+     * Generate a random geometric graph: n points are placed uniformly at
+     * random in the unit square, and two nodes are connected if their points
+     * are within the given radius of each other. The weight of each edge is
+     * the distance between its endpoints in thousandths of the side of the
+     * square (but at least 1). Nodes are named "0" to "n-1".
+     * 
+     * Points are bucketed into cells the size of the radius, so each point is
+     * only compared with points in its own and the eight surrounding cells.
+     * 
+     * @param n
+     * @param radius
+     * @param seed
+     * @return
+     */
+    public static CompactGraph randomGeometric(int n, double radius, long seed) {
+        if (radius<=0 || radius>1) {
+            throw new IllegalArgumentException("radius must be in (0, 1]: "+radius);
+        }
+        double[] x=new double[n];
+        double[] y=new double[n];
+        forEachChunk(n, seed, (lo, hi, random) -> {
+            for (int i=lo; i<hi; i++) {
+                x[i]=random.nextDouble();
+                y[i]=random.nextDouble();
+            }
+        });
+        // bucket the points by cell, using a counting sort
+        // cells must be at least radius wide for the 3x3 neighborhood to be enough
+        int cells=(int)Math.max(1, Math.min(Math.floor(1/radius), Math.sqrt(n)+1));
+        int[] cellStart=new int[cells*cells+1];
+        int[] cellOf=new int[n];
+        for (int i=0; i<n; i++) {
+            cellOf[i]=cell(x[i], cells)*cells+cell(y[i], cells);
+            cellStart[cellOf[i]+1]++;
+        }
+        for (int i=0; i<cells*cells; i++) {
+            cellStart[i+1]+=cellStart[i];
+        }
+        int[] cursor=Arrays.copyOf(cellStart, cells*cells);
+        int[] byCell=new int[n];
+        for (int i=0; i<n; i++) {
+            byCell[cursor[cellOf[i]]++]=i;
+        }
+        
+        // each point only emits edges to larger ids, so each edge is found once;
+        // count first, then fill, so the edge arrays are exactly the right size
+        double r2=radius*radius;
+        int[] count=new int[n+1];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            count[i+1]=forEachNear(i, x, y, cells, cellStart, byCell, r2, null, null, null, 0);
+        });
+        for (int i=0; i<n; i++) {
+            count[i+1]+=count[i];
+        }
+        int m=count[n];
+        int[] src=new int[m];
+        int[] dst=new int[m];
+        int[] w=new int[m];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            forEachNear(i, x, y, cells, cellStart, byCell, r2, src, dst, w, count[i]);
+        });
+        return CompactGraph.fromEdges(src, dst, w, m, true, NodeNames.numbered(n, 0));
+    }
+    
+    private static int cell(double coord, int cells) {
+        return Math.min(cells-1, (int)(coord*cells));
+    }
+    
+    /**
+     * Find the points with larger ids than i within the radius. If src is
+     * not null, write the edges starting at position out. Returns the number
+     * of edges found.
+     */
+    private static int forEachNear(int i, double[] x, double[] y, int cells, int[] cellStart,
+            int[] byCell, double r2, int[] src, int[] dst, int[] w, int out)
+    {
+        int found=0;
+        int cx=cell(x[i], cells);
+        int cy=cell(y[i], cells);
+        for (int gx=Math.max(0, cx-1); gx<=Math.min(cells-1, cx+1); gx++) {
+            for (int gy=Math.max(0, cy-1); gy<=Math.min(cells-1, cy+1); gy++) {
+                int g=gx*cells+gy;
+                for (int k=cellStart[g]; k<cellStart[g+1]; k++) {
+                    int j=byCell[k];
+                    if (j<=i) {
+                        continue;
+                    }
+                    double dx=x[i]-x[j];
+                    double dy=y[i]-y[j];
+                    double d2=dx*dx+dy*dy;
+                    if (d2<=r2) {
+                        if (src!=null) {
+                            src[out+found]=i;
+                            dst[out+found]=j;
+                            w[out+found]=Math.max(1, (int)Math.round(Math.sqrt(d2)*1000));
+                        }
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * A seeded random permutation of 0 to n-1.
+     */
+    private static int[] permutation(int n, long seed) {
+        int[] p=new int[n];
+        for (int i=0; i<n; i++) {
+            p[i]=i;
+        }
+        SplittableRandom random=new SplittableRandom(seed);
+        for (int i=n-1; i>0; i--) {
+            int j=random.nextInt(i+1);
+            int tmp=p[i];
+            p[i]=p[j];
+            p[j]=tmp;
+        }
+        return p;
+    }
+    
+    /**
+     * Scramble the seed and chunk number into a seed for the chunk. Simply
+     * adding them would not do: SplittableRandom steps its seed by a constant,
+     * so nearby seeds give overlapping streams.
+     */
+    private static long mix(long seed, int chunk) {
+        long z=seed+(chunk+1)*0x9E3779B97F4A7C15L;
+        z=(z^(z>>>33))*0xff51afd7ed558ccdL;
+        z=(z^(z>>>33))*0xc4ceb9fe1a85ec53L;
+        return z^(z>>>33);
+    }
+    
+    interface Chunk
+    {
+        void run(int lo, int hi, SplittableRandom random);
+    }
+    
+    /**
+     * Run the given chunk over [0, m) in parallel, giving each fixed size
+     * chunk its own generator derived from the seed and the chunk number.
+     */
+    private static void forEachChunk(int m, long seed, Chunk chunk) {
+        int chunks=(m+CHUNK-1)/CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            SplittableRandom random=new SplittableRandom(mix(seed, c));
+            int lo=c*CHUNK;
+            chunk.run(lo, Math.min(m, lo+CHUNK), random);
+        });
+    }
+    
+    private GraphGenerators() {
+        // private constructor to prevent creating instances
+        // this class exists only to hold static methods
+    }
+}
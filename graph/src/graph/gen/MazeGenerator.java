@@ -0,0 +1,205 @@
+package graph.gen;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * Generates mazes on a grid of rows and columns. A maze is a spanning tree of
+ * the grid graph: every cell can reach every other cell by exactly one path.
+ * 
+ * Cells are identified by {@code row*cols+col}, the same ids used by
+ * {@link GraphGenerators#grid(int, int)} and {@link graph.compact.NodeNames#grid(int, int)}.
+ * The grid itself is never built. Each passage of the maze is handed to an
+ * {@link EdgeSink} as soon as it is carved, so the only memory used is a few
+ * bits or ints per cell, and mazes with millions of cells can be streamed
+ * straight to a file or another graph.
+ * 
+ * All three algorithms run in time linear in the number of cells (Wilson's
+ * algorithm in expected time) and produce exactly rows*cols-1 passages.
+ * 
+ * @author jspacco
+ *
+ */
+public class MazeGenerator
+{
+    /**
+     * Receives the passages of a maze, one at a time.
+     */
+    public interface EdgeSink
+    {
+        /**
+         * Called once for every passage between two neighboring cells.
+         * 
+         * @param from the cell the passage was carved from
+         * @param to the newly connected cell
+         */
+        void edge(int from, int to);
+    }
+    
+    // row and column offsets for up, left, right, down
+    private static final int[] DR={-1, 0, 0, 1};
+    private static final int[] DC={0, -1, 1, 0};
+    
+    /**
+     * Randomized depth-first search ("recursive backtracker"), written
+     * iteratively with an explicit stack of cells so that it cannot overflow
+     * the call stack. The cell on top of the stack is the parent of the next
+     * cell carved, so nothing needs to be searched to connect it. Produces
+     * mazes with long winding corridors.
+     * 
+     * @param rows
+     * @param cols
+     * @param seed
+     * @param sink
+     */
+    public static void depthFirst(int rows, int cols, long seed, EdgeSink sink) {
+        int n=cells(rows, cols);
+        SplittableRandom random=new SplittableRandom(seed);
+        BitSet visited=new BitSet(n);
+        int[] stack=new int[n];
+        int top=0;
+        int[] options=new int[4];
+        stack[top++]=0;
+        visited.set(0);
+        while (top>0) {
+            int cell=stack[top-1];
+            int r=cell/cols;
+            int c=cell%cols;
+            int count=0;
+            for (int d=0; d<4; d++) {
+                int nr=r+DR[d];
+                int nc=c+DC[d];
+                if (nr>=0 && nr<rows && nc>=0 && nc<cols && !visited.get(nr*cols+nc)) {
+                    options[count++]=nr*cols+nc;
+                }
+            }
+            if (count==0) {
+                top--;
+                continue;
+            }
+            int next=options[random.nextInt(count)];
+            visited.set(next);
+            sink.edge(cell, next);
+            stack[top++]=next;
+        }
+    }
+    
+    /**
+     * Randomized Kruskal's algorithm: visit every wall in random order and
+     * knock it down if the cells on either side are not already connected,
+     * using a union-find structure. Produces mazes with many short dead ends.
+     * 
+     * @param rows
+     * @param cols
+     * @param seed
+     * @param sink
+     */
+    public static void kruskal(int rows, int cols, long seed, EdgeSink sink) {
+        int n=cells(rows, cols);
+        if ((long)n*2>Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Grid too large for Kruskal: "+rows+"x"+cols);
+        }
+        // wall 2*cell is to the right of the cell, wall 2*cell+1 is below it
+        int[] walls=new int[2*n];
+        int count=0;
+        for (int cell=0; cell<n; cell++) {
+            if (cell%cols<cols-1) {
+                walls[count++]=2*cell;
+            }
+            if (cell/cols<rows-1) {
+                walls[count++]=2*cell+1;
+            }
+        }
+        SplittableRandom random=new SplittableRandom(seed);
+        for (int i=count-1; i>0; i--) {
+            int j=random.nextInt(i+1);
+            int tmp=walls[i];
+            walls[i]=walls[j];
+            walls[j]=tmp;
+        }
+        int[] parent=new int[n];
+        for (int i=0; i<n; i++) {
+            parent[i]=i;
+        }
+        int carved=0;
+        for (int i=0; i<count && carved<n-1; i++) {
+            int cell=walls[i]>>>1;
+            int other=(walls[i]&1)==0 ? cell+1 : cell+cols;
+            int a=find(parent, cell);
+            int b=find(parent, other);
+            if (a!=b) {
+                parent[a]=b;
+                sink.edge(cell, other);
+                carved++;
+            }
+        }
+    }
+    
+    private static int find(int[] parent, int x) {
+        while (parent[x]!=x) {
+            // path halving
+            parent[x]=parent[parent[x]];
+            x=parent[x];
+        }
+        return x;
+    }
+    
+    /**
+     * Wilson's algorithm: repeatedly take a loop-erased random walk from a
+     * cell outside the maze until it hits the maze, then add the walk. This
+     * picks uniformly among all possible mazes, so it has no bias towards
+     * corridors or dead ends.
+     * 
+     * @param rows
+     * @param cols
+     * @param seed
+     * @param sink
+     */
+    public static void wilson(int rows, int cols, long seed, EdgeSink sink) {
+        int n=cells(rows, cols);
+        SplittableRandom random=new SplittableRandom(seed);
+        BitSet inMaze=new BitSet(n);
+        // the cell the walk last left each cell towards; overwriting it
+        // when the walk comes back around erases the loop
+        int[] next=new int[n];
+        inMaze.set(random.nextInt(n));
+        for (int start=inMaze.nextClearBit(0); start<n; start=inMaze.nextClearBit(start+1)) {
+            int cell=start;
+            while (!inMaze.get(cell)) {
+                next[cell]=randomNeighbor(cell, rows, cols, random);
+                cell=next[cell];
+            }
+            cell=start;
+            while (!inMaze.get(cell)) {
+                inMaze.set(cell);
+                sink.edge(next[cell], cell);
+                cell=next[cell];
+            }
+        }
+    }
+    
+    private static int randomNeighbor(int cell, int rows, int cols, SplittableRandom random) {
+        int r=cell/cols;
+        int c=cell%cols;
+        while (true) {
+            int d=random.nextInt(4);
+            int nr=r+DR[d];
+            int nc=c+DC[d];
+            if (nr>=0 && nr<rows && nc>=0 && nc<cols) {
+                return nr*cols+nc;
+            }
+        }
+    }
+    
+    private static int cells(int rows, int cols) {
+        if (rows<1 || cols<1 || (long)rows*cols>Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bad grid size: "+rows+"x"+cols);
+        }
+        return rows*cols;
+    }
+    
+    private MazeGenerator() {
+        // private constructor to prevent creating instances
+        // this class exists only to hold static methods
+    }
+}
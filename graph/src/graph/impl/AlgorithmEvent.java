@@ -0,0 +1,92 @@
+package graph.impl;
+
+import java.util.Map;
+import java.util.Set;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event emitted once for every graph algorithm invocation
+ * (BFS, DFS, Dijkstra, Prim-Jarnik, and the Scotland Yard move searches).
+ *
+ * The duration of the event is the running time of the algorithm. The algorithms
+ * only fill in the counters and commit the event when {@link #shouldCommit()}
+ * says the event is being recorded, so when JFR is not recording the cost is a
+ * handful of local int increments.
+ *
+ * @author jspacco
+ *
+ */
+@Name("graph.Algorithm")
+@Label("Graph Algorithm")
+@Category({"Graph"})
+@Description("A single invocation of a graph algorithm")
+@StackTrace(false)
+class AlgorithmEvent extends Event
+{
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Source")
+    @Description("Name of the node the algorithm started from, if any")
+    String source;
+
+    @Label("Nodes Touched")
+    int nodesTouched;
+
+    @Label("Edges Touched")
+    int edgesTouched;
+
+    @Label("Queue Peak Size")
+    @Description("Largest size reached by the work queue, stack or priority queue")
+    int queuePeak;
+
+    AlgorithmEvent(String algorithm) {
+        this.algorithm=algorithm;
+    }
+
+    /**
+     * Fill in the counters and commit the event, but only if it is
+     * going to be recorded.
+     *
+     * @param source
+     * @param nodesTouched
+     * @param edgesTouched
+     * @param queuePeak
+     */
+    void finish(String source, int nodesTouched, int edgesTouched, int queuePeak) {
+        end();
+        if (shouldCommit()) {
+            this.source=source;
+            this.nodesTouched=nodesTouched;
+            this.edgesTouched=edgesTouched;
+            this.queuePeak=queuePeak;
+            commit();
+        }
+    }
+
+    /**
+     * Commit the event for a Scotland Yard move search, counting every
+     * possible location of every move as a touched node.
+     *
+     * @param source
+     * @param moves
+     */
+    void finishMoves(String source, Map<Integer,Set<String>> moves) {
+        end();
+        if (shouldCommit()) {
+            int count=0;
+            for (Set<String> locations : moves.values()) {
+                count+=locations.size();
+            }
+            this.source=source;
+            this.nodesTouched=count;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package graph.impl;
+
+import graph.GraphProvider;
+import graph.IGraph;
+import graph.INode;
+
+/**
+ * {@link GraphProvider} for the code in graph.impl, registered under the
+ * name "impl".
+ * 
+ * @author jspacco
+ *
+ */
+public class DefaultGraphProvider implements GraphProvider
+{
+    public String getName() {
+        return "impl";
+    }
+    
+    public IGraph createGraph() {
+        return new Graph(this);
+    }
+    
+    @Override
+    public IGraph createGraph(int expectedNodes) {
+        return new Graph(this, expectedNodes);
+    }
+    
+    public INode createNode(String name) {
+        return new Node(name);
+    }
+}
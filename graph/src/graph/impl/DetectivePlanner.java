@@ -0,0 +1,763 @@
+package graph.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import graph.impl.ScotlandYardMap.Ticket;
+
+/**
+ * Chooses the detectives' moves for a turn of Scotland Yard by Monte Carlo
+ * tree search, run by every thread of a {@link ForkJoinPool} until a time
+ * budget runs out.
+ *
+ * Each playout picks where Mr. X really is from the belief of a
+ * {@link MrXTracker}, then walks down the tree of detective moves, one
+ * detective at a time, choosing moves by UCT. The nodes of the tree are
+ * what the detectives know (their stations, their tickets and the bitset of
+ * stations Mr. X could be at), not where Mr. X is, so statistics from
+ * different guesses add up in the same node. They are kept in a shared
+ * {@link TranspositionTable} keyed by a Zobrist hash of that state, which
+ * also merges the orders of moves that reach the same state. Threads add a
+ * visit to every node on their way down before they know the reward, which
+ * steers the other threads elsewhere in the meantime.
+ *
+ * Mr. X is not searched: in the tree and in the playouts he moves to the
+ * free neighboring station furthest from the nearest detective most of the
+ * time, and to a random one otherwise. Detectives in playouts mostly close
+ * in on where Mr. X is in that playout. Tickets Mr. X holds are not
+ * counted, so he can always take any route, as with a black ticket; his
+ * belief grows accordingly. A playout scores 1 if Mr. X is caught, 0 if he
+ * reaches the last round, and a small amount for being close to him if it
+ * stops after {@link #setHorizon(int)} rounds.
+ *
+ * @author jspacco
+ *
+ */
+public class DetectivePlanner
+{
+    /**
+     * Rounds after which Mr. X shows where he is.
+     */
+    public static final int[] SURFACE_ROUNDS={3, 8, 13, 18, 24};
+    public static final int LAST_ROUND=24;
+    private static final Ticket[] TICKETS={Ticket.TAXI, Ticket.BUS, Ticket.UNDERGROUND};
+    // stations further apart than this count as this far
+    private static final int FAR=127;
+
+    /**
+     * One detective's move. The ticket is null if the detective cannot move
+     * and stays where they are.
+     */
+    public static class Move
+    {
+        private final int detective;
+        private final Ticket ticket;
+        private final String station;
+
+        Move(int detective, Ticket ticket, String station) {
+            this.detective=detective;
+            this.ticket=ticket;
+            this.station=station;
+        }
+
+        public int getDetective() {
+            return detective;
+        }
+
+        public Ticket getTicket() {
+            return ticket;
+        }
+
+        public String getStation() {
+            return station;
+        }
+
+        @Override
+        public String toString() {
+            return detective+": "+(ticket==null ? "stay" : ticket.getName())+" to "+station;
+        }
+    }
+
+    /**
+     * The moves chosen for a turn, and how much searching went into them.
+     */
+    public static class Plan
+    {
+        private final List<Move> moves;
+        private final long playouts;
+        private final long nanos;
+        private final double value;
+
+        Plan(List<Move> moves, long playouts, long nanos, double value) {
+            this.moves=Collections.unmodifiableList(moves);
+            this.playouts=playouts;
+            this.nanos=nanos;
+            this.value=value;
+        }
+
+        /**
+         * One move per detective, in the order the detectives were given.
+         *
+         * @return
+         */
+        public List<Move> getMoves() {
+            return moves;
+        }
+
+        public long getPlayouts() {
+            return playouts;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getPlayoutsPerSecond() {
+            return nanos==0 ? 0.0 : playouts*1e9/nanos;
+        }
+
+        /**
+         * Average playout score from the current state, roughly the chance of
+         * catching Mr. X.
+         *
+         * @return
+         */
+        public double getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return moves+" ("+playouts+" playouts, value "+String.format("%.3f", value)+")";
+        }
+    }
+
+    private final ScotlandYardMap map;
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+    private final int n;
+    private final int words;
+    // hop distance between stations over any route
+    private final byte[] distance;
+    private final long[] beliefKeys;
+    private final boolean[] surfaces=new boolean[LAST_ROUND+1];
+    private final int maxMoves;
+    private double exploration=0.7;
+    private double greed=0.8;
+    private int horizon=4;
+    private long maxPlayouts=Long.MAX_VALUE;
+
+    public DetectivePlanner(ScotlandYardMap map) {
+        this(map, ForkJoinPool.commonPool(), 1<<20);
+    }
+
+    public DetectivePlanner(ScotlandYardMap map, ForkJoinPool pool, int tableCapacity) {
+        this.map=map;
+        this.pool=pool;
+        this.table=new TranspositionTable(tableCapacity);
+        this.n=map.stationCount();
+        this.words=(n+63)/64;
+        for (int round : SURFACE_ROUNDS) {
+            surfaces[round]=true;
+        }
+        this.beliefKeys=new long[n];
+        for (int v=0; v<n; v++) {
+            beliefKeys[v]=mix(3L<<40 | v);
+        }
+        int most=0;
+        for (int u=0; u<n; u++) {
+            int moves=0;
+            for (Ticket ticket : TICKETS) {
+                moves+=map.degree(u, ticket);
+            }
+            most=Math.max(most, moves);
+        }
+        this.maxMoves=most;
+        this.distance=distances(map);
+    }
+
+    private static byte[] distances(ScotlandYardMap map) {
+        int n=map.stationCount();
+        int[] offsets=map.offsets(Ticket.ANY);
+        int[] targets=map.targets(Ticket.ANY);
+        byte[] distance=new byte[n*n];
+        Arrays.fill(distance, (byte)FAR);
+        int[] queue=new int[n];
+        for (int s=0; s<n; s++) {
+            int head=0;
+            int tail=0;
+            queue[tail++]=s;
+            distance[s*n+s]=0;
+            while (head<tail) {
+                int u=queue[head++];
+                int d=distance[s*n+u];
+                if (d+1>=FAR) {
+                    continue;
+                }
+                for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                    int v=targets[e];
+                    if (distance[s*n+v]==FAR) {
+                        distance[s*n+v]=(byte)(d+1);
+                        queue[tail++]=v;
+                    }
+                }
+            }
+        }
+        return distance;
+    }
+
+    // the finalizer of SplitMix64
+    private static long mix(long z) {
+        z=(z ^ z>>>30)*0xbf58476d1ce4e5b9L;
+        z=(z ^ z>>>27)*0x94d049bb133111ebL;
+        return z ^ z>>>31;
+    }
+
+    private static long detectiveKey(int detective, int station) {
+        return mix(1L<<40 | (long)detective<<16 | station);
+    }
+
+    private static long ticketKey(int detective, int ticket, int count) {
+        return mix(2L<<40 | (long)(detective*3+ticket)<<16 | count);
+    }
+
+    // whose turn it is; detectives.length means Mr. X
+    private static long turnKey(int round, int toMove) {
+        return mix(4L<<40 | (long)round<<8 | toMove);
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Weight of the exploration term of UCT.
+     *
+     * @param exploration
+     */
+    public void setExploration(double exploration) {
+        this.exploration=exploration;
+    }
+
+    /**
+     * Chance that Mr. X and the detectives make their preferred move in a
+     * playout rather than a random one.
+     *
+     * @param greed
+     */
+    public void setGreed(double greed) {
+        this.greed=greed;
+    }
+
+    /**
+     * Number of rounds a playout runs past the tree before it is scored.
+     *
+     * @param horizon
+     */
+    public void setHorizon(int horizon) {
+        this.horizon=horizon;
+    }
+
+    /**
+     * Stop searching after this many playouts even if there is time left.
+     *
+     * @param maxPlayouts
+     */
+    public void setMaxPlayouts(long maxPlayouts) {
+        this.maxPlayouts=maxPlayouts;
+    }
+
+    /**
+     * Search for the detectives' moves after Mr. X has moved in the given
+     * round.
+     *
+     * @param tracker where Mr. X could be, which must already account for
+     *      his move this round
+     * @param detectives the detectives' stations
+     * @param tickets taxi, bus and underground tickets left for each
+     *      detective
+     * @param round the round, from 1 to {@link #LAST_ROUND}
+     * @param millis how long to search
+     * @return
+     */
+    public synchronized Plan plan(MrXTracker tracker, List<String> detectives, int[][] tickets, int round, long millis) {
+        if (tickets.length!=detectives.size()) {
+            throw new IllegalArgumentException("Need tickets for each of "+detectives.size()+" detectives");
+        }
+        if (round<1 || round>LAST_ROUND) {
+            throw new IllegalArgumentException("No round "+round);
+        }
+        Root root=new Root(detectives.size(), round);
+        for (int i=0; i<root.d; i++) {
+            int id=map.id(detectives.get(i));
+            if (id<0) {
+                throw new IllegalArgumentException("Unknown station "+detectives.get(i));
+            }
+            root.pos[i]=id;
+            for (int t=0; t<TICKETS.length; t++) {
+                root.tick[i*3+t]=tickets[i][t];
+            }
+        }
+        root.setBelief(tracker);
+
+        table.clear();
+        long start=System.nanoTime();
+        long deadline=start+millis*1000000;
+        int tasks=Math.max(1, pool.getParallelism());
+        long perTask=maxPlayouts==Long.MAX_VALUE ? Long.MAX_VALUE : (maxPlayouts+tasks-1)/tasks;
+        List<ForkJoinTask<Long>> running=new ArrayList<ForkJoinTask<Long>>(tasks);
+        for (int i=0; i<tasks; i++) {
+            final long seed=mix(start+i);
+            running.add(pool.submit(() -> {
+                Workspace work=new Workspace(root, seed);
+                long playouts=0;
+                while (playouts<perTask && System.nanoTime()<deadline) {
+                    work.playout();
+                    playouts++;
+                }
+                return playouts;
+            }));
+        }
+        long playouts=0;
+        for (ForkJoinTask<Long> task : running) {
+            playouts+=task.join();
+        }
+        long nanos=System.nanoTime()-start;
+        Workspace work=new Workspace(root, 0);
+        double value=table.meanReward(table.find(root.hash));
+        return new Plan(work.bestMoves(), playouts, nanos, value);
+    }
+
+    /**
+     * The state at the start of the search, copied by every playout.
+     */
+    private class Root
+    {
+        final int d;
+        final int round;
+        final int[] pos;
+        final int[] tick;
+        final long[] belief=new long[words];
+        long hash;
+        // where Mr. X could be, with cumulative probabilities
+        int[] stations;
+        double[] cumulative;
+
+        Root(int d, int round) {
+            this.d=d;
+            this.round=round;
+            this.pos=new int[d];
+            this.tick=new int[d*3];
+        }
+
+        void setBelief(MrXTracker tracker) {
+            int[] ids=tracker.possibleIds();
+            Arrays.sort(ids);
+            stations=new int[ids.length];
+            cumulative=new double[ids.length];
+            int size=0;
+            double total=0.0;
+            for (int v : ids) {
+                if (occupied(v)) {
+                    continue;
+                }
+                total+=tracker.probability(v);
+                stations[size]=v;
+                cumulative[size++]=total;
+                belief[v>>>6]|=1L<<v;
+            }
+            if (size==0) {
+                throw new IllegalArgumentException("Mr. X cannot be anywhere the detectives are not");
+            }
+            stations=Arrays.copyOf(stations, size);
+            cumulative=Arrays.copyOf(cumulative, size);
+            hash=turnKey(round, 0);
+            for (int i=0; i<d; i++) {
+                hash^=detectiveKey(i, pos[i]);
+                for (int t=0; t<TICKETS.length; t++) {
+                    hash^=ticketKey(i, t, tick[i*3+t]);
+                }
+            }
+            for (int v : stations) {
+                hash^=beliefKeys[v];
+            }
+        }
+
+        boolean occupied(int v) {
+            for (int p : pos) {
+                if (p==v) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int sample(SplittableRandom random) {
+            double x=random.nextDouble()*cumulative[cumulative.length-1];
+            int i=Arrays.binarySearch(cumulative, x);
+            i=i<0 ? -i-1 : i+1;
+            return stations[Math.min(i, stations.length-1)];
+        }
+    }
+
+    /**
+     * The state of one thread's playout, and scratch space for it.
+     */
+    private class Workspace
+    {
+        private final Root root;
+        private final int d;
+        private final SplittableRandom random;
+        private final int[] pos;
+        private final int[] tick;
+        private long[] belief;
+        private long[] nextBelief;
+        private int mrX;
+        private int round;
+        private int toMove;
+        private long hash;
+        // slots of the nodes visited by the current playout
+        private int[] path=new int[64];
+        private int pathSize;
+        private final int[] moveTicket;
+        private final int[] moveStation;
+
+        Workspace(Root root, long seed) {
+            this.root=root;
+            this.d=root.d;
+            this.random=new SplittableRandom(seed);
+            this.pos=new int[d];
+            this.tick=new int[d*3];
+            this.belief=new long[words];
+            this.nextBelief=new long[words];
+            this.moveTicket=new int[maxMoves];
+            this.moveStation=new int[maxMoves];
+        }
+
+        void reset() {
+            System.arraycopy(root.pos, 0, pos, 0, d);
+            System.arraycopy(root.tick, 0, tick, 0, tick.length);
+            System.arraycopy(root.belief, 0, belief, 0, words);
+            round=root.round;
+            toMove=0;
+            hash=root.hash;
+            pathSize=0;
+        }
+
+        private void visit() {
+            int slot=table.findOrCreate(hash);
+            if (slot>=0) {
+                table.addVisit(slot);
+                if (pathSize==path.length) {
+                    path=Arrays.copyOf(path, path.length*2);
+                }
+                path[pathSize++]=slot;
+            }
+        }
+
+        private boolean occupied(int v) {
+            for (int i=0; i<d; i++) {
+                if (pos[i]==v) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Fill in the moves the detective to move can make, and return how
+         * many there are.
+         */
+        private int legalMoves() {
+            int count=0;
+            int u=pos[toMove];
+            for (int t=0; t<TICKETS.length; t++) {
+                if (tick[toMove*3+t]==0) {
+                    continue;
+                }
+                int[] offsets=map.offsets(TICKETS[t]);
+                int[] targets=map.targets(TICKETS[t]);
+                for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                    if (!occupied(targets[e])) {
+                        moveTicket[count]=t;
+                        moveStation[count++]=targets[e];
+                    }
+                }
+            }
+            return count;
+        }
+
+        private boolean inBelief(int v) {
+            return (belief[v>>>6] & 1L<<v)!=0;
+        }
+
+        /**
+         * Hash of the state after the given move. It does not depend on
+         * whether the move catches Mr. X, which the detectives cannot know
+         * beforehand.
+         */
+        private long childHash(int k) {
+            int t=moveTicket[k];
+            int v=moveStation[k];
+            int c=tick[toMove*3+t];
+            long h=hash ^ detectiveKey(toMove, pos[toMove]) ^ detectiveKey(toMove, v)
+                    ^ ticketKey(toMove, t, c) ^ ticketKey(toMove, t, c-1)
+                    ^ turnKey(round, toMove) ^ turnKey(round, toMove+1);
+            if (inBelief(v)) {
+                h^=beliefKeys[v];
+            }
+            return h;
+        }
+
+        /**
+         * Make the given move, and return true if it catches Mr. X.
+         */
+        private boolean apply(int k) {
+            hash=childHash(k);
+            int v=moveStation[k];
+            pos[toMove]=v;
+            tick[toMove*3+moveTicket[k]]--;
+            toMove++;
+            if (v==mrX) {
+                return true;
+            }
+            belief[v>>>6]&=~(1L<<v);
+            return false;
+        }
+
+        private void pass() {
+            hash^=turnKey(round, toMove) ^ turnKey(round, toMove+1);
+            toMove++;
+        }
+
+        /**
+         * Move Mr. X, and return false if he has nowhere to go.
+         */
+        private boolean moveMrX() {
+            int[] offsets=map.offsets(Ticket.ANY);
+            int[] targets=map.targets(Ticket.ANY);
+            boolean greedy=random.nextDouble()<greed;
+            int best=-1;
+            int bestScore=-1;
+            int free=0;
+            for (int e=offsets[mrX]; e<offsets[mrX+1]; e++) {
+                int v=targets[e];
+                if (occupied(v)) {
+                    continue;
+                }
+                free++;
+                int score;
+                if (greedy) {
+                    score=FAR;
+                    for (int i=0; i<d; i++) {
+                        score=Math.min(score, distance[pos[i]*n+v]);
+                    }
+                } else {
+                    score=random.nextInt(1<<20);
+                }
+                if (score>bestScore) {
+                    best=v;
+                    bestScore=score;
+                }
+            }
+            if (free==0) {
+                return false;
+            }
+            mrX=best;
+            return true;
+        }
+
+        /**
+         * Every free station one move away from where Mr. X could have been.
+         */
+        private void expandBelief() {
+            int[] offsets=map.offsets(Ticket.ANY);
+            int[] targets=map.targets(Ticket.ANY);
+            Arrays.fill(nextBelief, 0);
+            for (int w=0; w<words; w++) {
+                long bits=belief[w];
+                while (bits!=0) {
+                    int u=w<<6 | Long.numberOfTrailingZeros(bits);
+                    bits&=bits-1;
+                    for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                        int v=targets[e];
+                        if (!occupied(v)) {
+                            nextBelief[v>>>6]|=1L<<v;
+                        }
+                    }
+                }
+            }
+            if (surfaces[round]) {
+                Arrays.fill(nextBelief, 0);
+                nextBelief[mrX>>>6]|=1L<<mrX;
+            }
+            for (int w=0; w<words; w++) {
+                long changed=belief[w] ^ nextBelief[w];
+                while (changed!=0) {
+                    hash^=beliefKeys[w<<6 | Long.numberOfTrailingZeros(changed)];
+                    changed&=changed-1;
+                }
+            }
+            long[] tmp=belief;
+            belief=nextBelief;
+            nextBelief=tmp;
+        }
+
+        /**
+         * Pick a child of the current node by UCT, trying every child once
+         * before using any twice.
+         */
+        private int select(int count, int parentVisits) {
+            double logParent=Math.log(Math.max(1, parentVisits));
+            int offset=random.nextInt(count);
+            int best=-1;
+            double bestScore=Double.NEGATIVE_INFINITY;
+            for (int i=0; i<count; i++) {
+                int k=(i+offset)%count;
+                int slot=table.find(childHash(k));
+                int visits=table.visits(slot);
+                if (visits==0) {
+                    return k;
+                }
+                double score=table.meanReward(slot)+exploration*Math.sqrt(logParent/visits);
+                if (score>bestScore) {
+                    best=k;
+                    bestScore=score;
+                }
+            }
+            return best;
+        }
+
+        void playout() {
+            reset();
+            mrX=root.sample(random);
+            visit();
+            double reward;
+            while (true) {
+                if (toMove==d) {
+                    if (round==LAST_ROUND) {
+                        reward=0.0;
+                        break;
+                    }
+                    if (!moveMrX()) {
+                        reward=1.0;
+                        break;
+                    }
+                    round++;
+                    expandBelief();
+                    hash^=turnKey(round-1, d) ^ turnKey(round, 0);
+                    toMove=0;
+                    visit();
+                    continue;
+                }
+                int count=legalMoves();
+                if (count==0) {
+                    pass();
+                    visit();
+                    continue;
+                }
+                int parent=pathSize>0 ? path[pathSize-1] : -1;
+                int k=select(count, table.visits(parent));
+                boolean expand=table.visits(table.find(childHash(k)))==0;
+                boolean caught=apply(k);
+                visit();
+                if (caught) {
+                    reward=1.0;
+                    break;
+                }
+                if (expand) {
+                    reward=rollout();
+                    break;
+                }
+            }
+            for (int i=0; i<pathSize; i++) {
+                table.addReward(path[i], reward);
+            }
+        }
+
+        /**
+         * Play on from the current state without the tree, the belief or
+         * the hash.
+         */
+        private double rollout() {
+            int rounds=0;
+            while (true) {
+                if (toMove==d) {
+                    if (round==LAST_ROUND) {
+                        return 0.0;
+                    }
+                    if (rounds==horizon) {
+                        int nearest=FAR;
+                        for (int i=0; i<d; i++) {
+                            nearest=Math.min(nearest, distance[pos[i]*n+mrX]);
+                        }
+                        return 0.5/(1+nearest);
+                    }
+                    if (!moveMrX()) {
+                        return 1.0;
+                    }
+                    round++;
+                    rounds++;
+                    toMove=0;
+                    continue;
+                }
+                int count=legalMoves();
+                if (count==0) {
+                    toMove++;
+                    continue;
+                }
+                int k=random.nextInt(count);
+                if (random.nextDouble()<greed) {
+                    int start=k;
+                    for (int i=0; i<count; i++) {
+                        int j=(start+i)%count;
+                        if (distance[moveStation[j]*n+mrX]<distance[moveStation[k]*n+mrX]) {
+                            k=j;
+                        }
+                    }
+                }
+                pos[toMove]=moveStation[k];
+                tick[toMove*3+moveTicket[k]]--;
+                toMove++;
+                if (pos[toMove-1]==mrX) {
+                    return 1.0;
+                }
+            }
+        }
+
+        /**
+         * Follow the most visited moves from the root through every
+         * detective's turn.
+         */
+        List<Move> bestMoves() {
+            reset();
+            mrX=-1;
+            List<Move> moves=new ArrayList<Move>(d);
+            while (toMove<d) {
+                int count=legalMoves();
+                if (count==0) {
+                    moves.add(new Move(toMove, null, map.name(pos[toMove])));
+                    pass();
+                    continue;
+                }
+                int best=0;
+                int bestVisits=-1;
+                for (int k=0; k<count; k++) {
+                    int visits=table.visits(table.find(childHash(k)));
+                    if (visits>bestVisits) {
+                        best=k;
+                        bestVisits=visits;
+                    }
+                }
+                moves.add(new Move(toMove, TICKETS[moveTicket[best]], map.name(moveStation[best])));
+                apply(best);
+            }
+            return moves;
+        }
+    }
+}
@@ -7,11 +7,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import graph.GraphProvider;
+import graph.GraphProviders;
 import graph.IGraph;
 import graph.INode;
+import graph.MemoryFootprint;
 import graph.NodeVisitor;
 import graph.Path;
-import junit.VERSION;
 
 import java.util.*;
 
@@ -22,46 +24,36 @@ import java.util.*;
  * @author jspacco
  *
  */
-public class Graph implements IGraph {
-	private Map<String, INode> nodes = new HashMap<String, INode>();
+public class Graph implements IGraph, MemoryFootprint.Source {
+	private Map<String, INode> nodes;
+	// where new nodes come from
+	private final GraphProvider provider;
 
-	// private constructor to force use of the static factory pattern
-	private Graph() {
+	// package-private constructor to force use of the static factory pattern
+	// (or DefaultGraphProvider)
+	Graph(GraphProvider provider) {
+		this.provider = provider;
+		this.nodes = new HashMap<String, INode>();
+	}
+
+	// presized for bulk loading
+	Graph(GraphProvider provider, int expectedNodes) {
+		this.provider = provider;
+		this.nodes = new HashMap<String, INode>(Math.max(16, (int) (expectedNodes / 0.75f) + 1));
 	}
 
 	/**
 	 * Static factory to create a graph. This method can return different
 	 * classes that implement the IGraph interface based on the version number
-	 * set in a different class. This uses Reflection in Java, a way to inspect
-	 * the code that is currently being executed.
+	 * set in a different class. The implementation for each version is looked
+	 * up once by {@link GraphProviders} and cached, so only the first graph
+	 * of each version pays for reflection.
 	 *
 	 * @return
 	 */
 	public static IGraph createGraph() {
 		// static factory lets us load many different versinos of the code
-		int version = VERSION.version;
-		if (version == 0) {
-			// version 0 uses the private constructor defined here, not one of
-			// the broken versions
-			return new Graph();
-		} else if (version == -1) {
-			// load Spacco's solution code (not available for students)
-			// all other versions have a public constructor
-			try {
-				Class<?> clazz = Class.forName("graph.sol.Graph");
-				return (IGraph) clazz.newInstance();
-			} catch (Exception e) {
-				throw new RuntimeException(e);
-			}
-		} else {
-			try {
-				Class<?> clazz = Class.forName(String.format(
-						"graph.broken%d.Graph", version));
-				return (IGraph) clazz.newInstance();
-			} catch (Exception e) {
-				throw new RuntimeException(e);
-			}
-		}
+		return GraphProviders.current().createGraph();
 	}
 
 	/**
@@ -78,11 +70,34 @@ public class Graph implements IGraph {
 		// Use a map to ensure that we don't create more than one node with the
 		// same name
 		if (!nodes.containsKey(name)) {
-			nodes.put(name, Node.createNode(name));
+			nodes.put(name, provider.createNode(name));
 		}
 		return nodes.get(name);
 	}
 
+	/**
+	 * Estimate the heap used by this graph: the name to node map, the names,
+	 * and for every node its object, neighbor map and boxed weights. Nodes
+	 * from other providers are estimated as if they were {@link Node}s.
+	 * 
+	 * @return
+	 */
+	public MemoryFootprint memoryFootprint() {
+		MemoryFootprint.Builder report = new MemoryFootprint.Builder(getClass().getName());
+		report.add(MemoryFootprint.Category.INDEX, MemoryFootprint.object(2, 0) + MemoryFootprint.hashMap(nodes.size()));
+		for (Map.Entry<String, INode> entry : nodes.entrySet()) {
+			report.add(MemoryFootprint.Category.NAMES, MemoryFootprint.string(entry.getKey()));
+			INode node = entry.getValue();
+			if (node instanceof Node) {
+				((Node) node).addFootprint(report);
+			} else {
+				report.add(MemoryFootprint.Category.NODES, MemoryFootprint.object(2, 0));
+				report.add(MemoryFootprint.Category.ADJACENCY, MemoryFootprint.hashMap(node.getNeighbors().size()));
+			}
+		}
+		return report.build();
+	}
+
 	/**
 	 * Return true if the graph contains a node with the given name, and false
 	 * otherwise.
@@ -104,6 +119,20 @@ public class Graph implements IGraph {
 		return new LinkedList<INode>(nodes.values());
 	}
 
+	/**
+	 * The neighbors of a node in alphabetical order of their names, which is
+	 * the order IGraph asks searches to visit them in. Sorting here keeps
+	 * the node's own map a plain HashMap for lookups.
+	 * 
+	 * @param node
+	 * @return
+	 */
+	private static List<INode> sortedNeighbors(INode node) {
+		List<INode> neighbors = new ArrayList<>(node.getNeighbors());
+		neighbors.sort(Comparator.comparing(INode::getName));
+		return neighbors;
+	}
+
 	/**
 	 * Perform a breadth-first search on the graph, starting at the node with
 	 * the given name. The visit method of the {@link NodeVisitor} should be
@@ -114,6 +143,10 @@ public class Graph implements IGraph {
 	 * @param v
 	 */
 	public void breadthFirstSearch(String startNodeName, NodeVisitor v) {
+		AlgorithmEvent event = new AlgorithmEvent("breadthFirstSearch");
+		event.begin();
+		int edges = 0;
+		int queuePeak = 1;
 		Set<String> visited = new HashSet<>();
 		List<String> toVisit = new LinkedList();
 		toVisit.add(startNodeName);
@@ -122,14 +155,17 @@ public class Graph implements IGraph {
 			if (!visited.contains(curr)) {
 				v.visit(this.nodes.get(curr));
 				visited.add(curr);
-				for (INode i : this.nodes.get(curr).getNeighbors()) {
+				for (INode i : sortedNeighbors(this.nodes.get(curr))) {
+					edges++;
 					String s = i.getName();
 					if (!visited.contains(s)) {
 						toVisit.add(s);
 					}
 				}
+				queuePeak = Math.max(queuePeak, toVisit.size());
 			}
 		}
+		event.finish(startNodeName, visited.size(), edges, queuePeak);
 	}
 
 	/**
@@ -142,6 +178,10 @@ public class Graph implements IGraph {
 	 * @param v
 	 */
 	public void depthFirstSearch(String startNodeName, NodeVisitor v) {
+		AlgorithmEvent event = new AlgorithmEvent("depthFirstSearch");
+		event.begin();
+		int edges = 0;
+		int queuePeak = 1;
 		Set<String> visited = new HashSet<>();
 		Stack toVisit = new Stack();
 		toVisit.push(startNodeName);
@@ -150,14 +190,17 @@ public class Graph implements IGraph {
 			if (!visited.contains(curr)) {
 				v.visit(this.nodes.get(curr));
 				visited.add(curr);
-				for (INode i : this.nodes.get(curr).getNeighbors()) {
+				for (INode i : sortedNeighbors(this.nodes.get(curr))) {
+					edges++;
 					String s = i.getName();
 					if (!visited.contains(s)) {
 						toVisit.add(s);
 					}
 				}
+				queuePeak = Math.max(queuePeak, toVisit.size());
 			}
 		}
+		event.finish(startNodeName, visited.size(), edges, queuePeak);
 	}
 
 	/**
@@ -174,21 +217,49 @@ public class Graph implements IGraph {
 	 * @return
 	 */
 	public Map<INode, Integer> dijkstra(String startName) {
+		return dijkstra(startName, new QueryStats());
+	}
+
+	/**
+	 * Same as {@link #dijkstra(String)}, but also fills in the given
+	 * {@link QueryStats} with the number of nodes settled, edges relaxed,
+	 * heap pushes and pops, and stale queue entries skipped.
+	 * 
+	 * @param startName
+	 * @param stats
+	 * @return
+	 */
+	public Map<INode, Integer> dijkstra(String startName, QueryStats stats) {
+		AlgorithmEvent event = new AlgorithmEvent("dijkstra");
+		event.begin();
+		long startTime = System.nanoTime();
+		stats.clear();
 		Map<INode, Integer> res = new HashMap<INode, Integer>();
 		PriorityQueue<Path> toDo = new PriorityQueue<Path>();
 		toDo.add(new Path(startName, 0));
+		stats.heapPushes++;
+		stats.queuePeak = 1;
 		while (res.size() < this.nodes.size()) {
 			Path next = toDo.poll();
+			stats.heapPops++;
 			INode node = this.nodes.get(next.getDestination());
 			if (res.containsKey(node)) {
+				stats.staleSkipped++;
 				continue;
 			}
 			int cost = next.getCost();
 			res.put(node, cost);
+			stats.nodesSettled++;
 			for (INode n : node.getNeighbors()) {
+				stats.edgesRelaxed++;
 				toDo.add(new Path(n.getName(), cost + n.getWeight(node)));
+				stats.heapPushes++;
 			}
+			stats.queuePeak = Math.max(stats.queuePeak, toDo.size());
 		}
+		stats.elapsedNanos = System.nanoTime() - startTime;
+		GraphMetrics.global().recordDijkstra(stats);
+		event.finish(startName, stats.nodesSettled, stats.edgesRelaxed, stats.queuePeak);
 		return res;
 	}
 
@@ -201,8 +272,13 @@ public class Graph implements IGraph {
 	 * @return
 	 */
 	public IGraph primJarnik() {
+		AlgorithmEvent event = new AlgorithmEvent("primJarnik");
+		event.begin();
+		int edges = 0;
+		int queuePeak = 0;
+
 		/* Declare graph to return later*/
-		IGraph res = (IGraph) new Graph();
+		IGraph res = provider.createGraph();
 		
 		/*Select random node to start with*/
 		INode curr = this.nodes.values().iterator().next();
@@ -215,9 +291,11 @@ public class Graph implements IGraph {
 		
 		Collection<INode> nb = start.getNeighbors();
 		for(INode n: nb){
+			edges++;
 			int weight = start.getWeight(n);
 			toDo.add(new Edge(weight, startName, n.getName()));
 		}
+		queuePeak = toDo.size();
 
 		/*Put that random node into returning result*/
 		res.getOrCreateNode(startName);
@@ -245,16 +323,41 @@ public class Graph implements IGraph {
 			/*Put edges to neighbors into Q*/
 			Collection<INode> neighbors = destNode.getNeighbors();
 			for(INode n: neighbors){
+				edges++;
 				int weight = destNode.getWeight(n);
 				toDo.add(new Edge(weight, destinationName, n.getName()));
 			}
+			queuePeak = Math.max(queuePeak, toDo.size());
 		}
 		
+		event.finish(startName, this.nodes.size(), edges, queuePeak);
 		return res;
 	}
 
 	public Map<Integer, Set<String>> getMoves(String startNodeName,
 			NodeVisitor v, int depth) {
+		return getMoves(startNodeName, v, depth, new QueryStats());
+	}
+
+	/**
+	 * Same as {@link #getMoves(String, NodeVisitor, int)}, but also fills in
+	 * the given {@link QueryStats}, including the size of the frontier at
+	 * each level.
+	 * 
+	 * @param startNodeName
+	 * @param v
+	 * @param depth
+	 * @param stats
+	 * @return
+	 */
+	public Map<Integer, Set<String>> getMoves(String startNodeName,
+			NodeVisitor v, int depth, QueryStats stats) {
+		AlgorithmEvent event = new AlgorithmEvent("getMoves");
+		event.begin();
+		long startTime = System.nanoTime();
+		stats.clear();
+		stats.queuePeak = 1;
+		stats.frontierSizes.add(1);
 		
 		Map<Integer, Set<String>> result = new HashMap<Integer, Set<String>>();
 
@@ -273,6 +376,7 @@ public class Graph implements IGraph {
 			String curr = toVisit.remove(0);
 			INode currNode = this.nodes.get(curr);
 			v.visit(currNode);
+			stats.nodesSettled++;
 			
 			result.get(level).add(curr);
 			
@@ -283,23 +387,36 @@ public class Graph implements IGraph {
 			
 			
 			for (INode i : this.nodes.get(curr).getNeighbors()) {
+				stats.edgesRelaxed++;
 				String s = i.getName();
 				toVisit2.add(s);
 			}
+			stats.queuePeak = Math.max(stats.queuePeak, toVisit2.size());
 			
 			if(toVisit.isEmpty()){
 				List<String> temp = new LinkedList();
 				temp = toVisit;
 				toVisit = toVisit2;
 				toVisit2 = temp;
+				if (!toVisit.isEmpty() && level <= depth) {
+					stats.frontierSizes.add(toVisit.size());
+				}
 			}
 		}
 
+		stats.elapsedNanos = System.nanoTime() - startTime;
+		GraphMetrics.global().recordMoves(stats);
+		event.finish(startNodeName, stats.nodesSettled, stats.edgesRelaxed, stats.queuePeak);
 		return result;
 	}
 	
 	public Map<Integer, Set<String>> getMovesT(String startNodeName,
 			NodeVisitor v, int depth, List<String> transportTypes) {
+		AlgorithmEvent event = new AlgorithmEvent("getMovesT");
+		event.begin();
+		int nodesTouched = 0;
+		int edges = 0;
+		int queuePeak = 1;
 
 		Map<Integer, Set<String>> result = new HashMap<Integer, Set<String>>();
 		for(int i=1; i<=5; i++){
@@ -321,6 +438,7 @@ public class Graph implements IGraph {
 			String curr = toVisit.remove(0);
 			INode currNode = this.nodes.get(curr);
 			v.visit(currNode);
+			nodesTouched++;
 			
 			result.get(level).add(curr);
 			
@@ -330,6 +448,7 @@ public class Graph implements IGraph {
 			
 			
 			for (INode i : this.nodes.get(curr).getNeighbors()) {
+				edges++;
 				if (transportTypes.contains("taxi") && currNode.getWeight(i) == 1 || 
 					transportTypes.contains("bus") && currNode.getWeight(i) == 2 ||
 					transportTypes.contains("underground") && currNode.getWeight(i) == 3)  {
@@ -337,6 +456,7 @@ public class Graph implements IGraph {
 					toVisit2.add(s);
 				}
 			}
+			queuePeak = Math.max(queuePeak, toVisit2.size());
 			
 			if(toVisit.isEmpty()){
 				List<String> temp = new LinkedList();
@@ -346,6 +466,7 @@ public class Graph implements IGraph {
 			}
 		}
 
+		event.finish(startNodeName, nodesTouched, edges, queuePeak);
 		return result;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,184 @@
+package graph.impl;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide registry of histograms describing the work done by graph
+ * queries. Use {@link #global()} to get the registry that {@link Graph}
+ * reports to, and {@link #scrape()} to read it in the Prometheus text format.
+ * 
+ * Each query accumulates its counters in a local {@link QueryStats} and only
+ * touches the registry once when it finishes. The histograms are built out of
+ * {@link LongAdder}s, which stripe their cells across threads, so many threads
+ * running queries at once do not contend on the same cache line.
+ * 
+ * @author jspacco
+ *
+ */
+public class GraphMetrics
+{
+    private static final GraphMetrics GLOBAL=new GraphMetrics();
+    
+    private final Map<String,Histogram> histograms=new ConcurrentHashMap<String,Histogram>();
+    
+    // resolved once so that recording a query does not need a map lookup
+    private final Histogram dijkstraSettled=histogram("graph_dijkstra_nodes_settled");
+    private final Histogram dijkstraRelaxed=histogram("graph_dijkstra_edges_relaxed");
+    private final Histogram dijkstraPushes=histogram("graph_dijkstra_heap_pushes");
+    private final Histogram dijkstraPops=histogram("graph_dijkstra_heap_pops");
+    private final Histogram dijkstraStale=histogram("graph_dijkstra_stale_skipped");
+    private final Histogram dijkstraNanos=histogram("graph_dijkstra_nanos");
+    private final Histogram movesFrontier=histogram("graph_moves_frontier_size");
+    private final Histogram movesSettled=histogram("graph_moves_nodes_settled");
+    private final Histogram movesNanos=histogram("graph_moves_nanos");
+    
+    /**
+     * Return the registry that all graphs report to.
+     * 
+     * @return
+     */
+    public static GraphMetrics global() {
+        return GLOBAL;
+    }
+    
+    /**
+     * Return the histogram with the given name, creating it if necessary.
+     * 
+     * @param name
+     * @return
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new Histogram());
+    }
+    
+    void recordDijkstra(QueryStats stats) {
+        dijkstraSettled.record(stats.nodesSettled);
+        dijkstraRelaxed.record(stats.edgesRelaxed);
+        dijkstraPushes.record(stats.heapPushes);
+        dijkstraPops.record(stats.heapPops);
+        dijkstraStale.record(stats.staleSkipped);
+        dijkstraNanos.record(stats.elapsedNanos);
+    }
+    
+    void recordMoves(QueryStats stats) {
+        for (int size : stats.frontierSizes) {
+            movesFrontier.record(size);
+        }
+        movesSettled.record(stats.nodesSettled);
+        movesNanos.record(stats.elapsedNanos);
+    }
+    
+    /**
+     * Clear every histogram in the registry.
+     */
+    public void reset() {
+        for (Histogram h : histograms.values()) {
+            h.reset();
+        }
+    }
+    
+    /**
+     * Return the contents of every histogram in the Prometheus text
+     * exposition format, sorted by name.
+     * 
+     * @return
+     */
+    public String scrape() {
+        StringBuilder buf=new StringBuilder();
+        for (Map.Entry<String,Histogram> entry : new TreeMap<String,Histogram>(histograms).entrySet()) {
+            entry.getValue().appendTo(entry.getKey(), buf);
+        }
+        return buf.toString();
+    }
+    
+    /**
+     * Histogram of non-negative long values with power-of-two buckets. Bucket
+     * {@code i} counts values {@code v} with {@code v < 2^i} that did not fit
+     * in an earlier bucket.
+     */
+    public static class Histogram
+    {
+        private static final int BUCKETS=64;
+        
+        private final LongAdder[] buckets=new LongAdder[BUCKETS];
+        private final LongAdder count=new LongAdder();
+        private final LongAdder sum=new LongAdder();
+        
+        Histogram() {
+            for (int i=0; i<BUCKETS; i++) {
+                buckets[i]=new LongAdder();
+            }
+        }
+        
+        public void record(long value) {
+            if (value<0) {
+                value=0;
+            }
+            buckets[Math.min(BUCKETS-1, 64-Long.numberOfLeadingZeros(value))].increment();
+            count.increment();
+            sum.add(value);
+        }
+        
+        public long getCount() {
+            return count.sum();
+        }
+        
+        public long getSum() {
+            return sum.sum();
+        }
+        
+        /**
+         * Return an upper bound on the given quantile (between 0 and 1),
+         * accurate to the power-of-two bucket it falls in.
+         * 
+         * @param q
+         * @return
+         */
+        public long quantile(double q) {
+            long total=getCount();
+            long target=(long)Math.ceil(q*total);
+            long seen=0;
+            for (int i=0; i<BUCKETS; i++) {
+                seen+=buckets[i].sum();
+                if (seen>=target && seen>0) {
+                    return upperBound(i);
+                }
+            }
+            return 0;
+        }
+        
+        void reset() {
+            for (LongAdder b : buckets) {
+                b.reset();
+            }
+            count.reset();
+            sum.reset();
+        }
+        
+        private static long upperBound(int bucket) {
+            return bucket>=63 ? Long.MAX_VALUE : (1L<<bucket)-1;
+        }
+        
+        private void appendTo(String name, StringBuilder buf) {
+            buf.append("# TYPE ").append(name).append(" histogram\n");
+            long cumulative=0;
+            int last=BUCKETS-1;
+            while (last>0 && buckets[last].sum()==0) {
+                last--;
+            }
+            for (int i=0; i<=last; i++) {
+                cumulative+=buckets[i].sum();
+                buf.append(name).append("_bucket{le=\"").append(upperBound(i)).append("\"} ")
+                    .append(cumulative).append('\n');
+            }
+            // use the bucket total so that +Inf and _count agree even if
+            // another thread records a value while we are scraping
+            buf.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+            buf.append(name).append("_sum ").append(getSum()).append('\n');
+            buf.append(name).append("_count ").append(cumulative).append('\n');
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package graph.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import graph.impl.ScotlandYardMap.Ticket;
+
+/**
+ * Where Mr. X can be, and how likely each station is, over a whole game.
+ * Unlike {@link SYSolver#getNextFivePossibleMoves(graph.IGraph, String, List)},
+ * which expands from a known start every time, the tracker keeps its belief
+ * between calls and folds in one revealed ticket at a time, along with
+ * where the detectives are. A move costs time proportional to the routes
+ * leaving the stations Mr. X could be at, so replaying a game costs no more
+ * than walking its moves.
+ *
+ * The belief is a probability for each station, assuming Mr. X picks
+ * uniformly among the stations he can reach with the ticket he showed that
+ * are not occupied by a detective. A typical game calls
+ * {@link #surface(String)} when Mr. X shows himself, {@link #move(Ticket)}
+ * for each ticket he uses (twice for a double move), and
+ * {@link #detectivesAt(Collection)} after the detectives move, since a
+ * detective standing on a station without catching Mr. X rules it out.
+ *
+ * One tracker can be reused for any number of games; it allocates nothing
+ * after it is created. It is not thread-safe.
+ *
+ * @author jspacco
+ *
+ */
+public class MrXTracker
+{
+    private final ScotlandYardMap map;
+    // probability of each station; only meaningful where stamp==epoch
+    private double[] p;
+    private double[] next;
+    // the stations with a probability above zero
+    private int[] support;
+    private int[] nextSupport;
+    private int supportSize;
+    // marks the stations of the current support without clearing arrays
+    private final int[] stamp;
+    private int epoch;
+    private final boolean[] occupied;
+    private final int[] detectives;
+    private int detectiveCount;
+
+    public MrXTracker(ScotlandYardMap map) {
+        this.map=map;
+        int n=map.stationCount();
+        this.p=new double[n];
+        this.next=new double[n];
+        this.support=new int[n];
+        this.nextSupport=new int[n];
+        this.stamp=new int[n];
+        this.occupied=new boolean[n];
+        this.detectives=new int[n];
+    }
+
+    public ScotlandYardMap getMap() {
+        return map;
+    }
+
+    private int station(String name) {
+        int id=map.id(name);
+        if (id<0) {
+            throw new IllegalArgumentException("Unknown station "+name);
+        }
+        return id;
+    }
+
+    private void nextEpoch() {
+        if (epoch==Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch=0;
+        }
+        epoch++;
+    }
+
+    /**
+     * Mr. X was seen at the given station: forget everything before.
+     *
+     * @param station
+     */
+    public void surface(String station) {
+        surface(station(station));
+    }
+
+    public void surface(int station) {
+        nextEpoch();
+        stamp[station]=epoch;
+        p[station]=1.0;
+        support[0]=station;
+        supportSize=1;
+    }
+
+    /**
+     * The detectives are now at the given stations. Those stations are ruled
+     * out for Mr. X, and the next {@link #move(Ticket)} cannot end on them.
+     *
+     * @param stations
+     * @throws IllegalStateException if this rules out every station
+     */
+    public void detectivesAt(Collection<String> stations) {
+        int[] ids=new int[stations.size()];
+        int i=0;
+        for (String name : stations) {
+            ids[i++]=station(name);
+        }
+        detectivesAt(ids);
+    }
+
+    public void detectivesAt(int... stations) {
+        for (int i=0; i<detectiveCount; i++) {
+            occupied[detectives[i]]=false;
+        }
+        detectiveCount=0;
+        for (int s : stations) {
+            if (!occupied[s]) {
+                occupied[s]=true;
+                detectives[detectiveCount++]=s;
+            }
+        }
+        if (supportSize==0) {
+            return;
+        }
+        double total=0.0;
+        int kept=0;
+        for (int i=0; i<supportSize; i++) {
+            int u=support[i];
+            if (occupied[u]) {
+                stamp[u]=0;
+            } else {
+                support[kept++]=u;
+                total+=p[u];
+            }
+        }
+        supportSize=kept;
+        normalize(total);
+    }
+
+    /**
+     * Mr. X used the given ticket. He could have come from any station he
+     * might have been at that has a route for that ticket to a station with
+     * no detective on it, and he splits his chances evenly between those
+     * routes.
+     *
+     * @param ticket
+     * @throws IllegalStateException if no station is consistent with the move,
+     *      or if Mr. X has not surfaced yet
+     */
+    public void move(Ticket ticket) {
+        if (supportSize==0) {
+            throw new IllegalStateException("Mr. X has not surfaced");
+        }
+        int[] offsets=map.offsets(ticket);
+        int[] targets=map.targets(ticket);
+        int from=epoch;
+        nextEpoch();
+        int size=0;
+        double total=0.0;
+        for (int i=0; i<supportSize; i++) {
+            int u=support[i];
+            int allowed=0;
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                if (!occupied[targets[e]]) {
+                    allowed++;
+                }
+            }
+            if (allowed==0) {
+                continue;
+            }
+            double share=p[u]/allowed;
+            total+=p[u];
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                int v=targets[e];
+                if (occupied[v]) {
+                    continue;
+                }
+                if (stamp[v]!=epoch) {
+                    stamp[v]=epoch;
+                    next[v]=0.0;
+                    nextSupport[size++]=v;
+                }
+                next[v]+=share;
+            }
+        }
+        if (size==0) {
+            // leave the belief as it was
+            epoch=from;
+            throw new IllegalStateException("No station is consistent with a "+ticket.getName()+" move");
+        }
+        double[] tmp=p;
+        p=next;
+        next=tmp;
+        int[] tmpSupport=support;
+        support=nextSupport;
+        nextSupport=tmpSupport;
+        supportSize=size;
+        normalize(total);
+    }
+
+    private void normalize(double total) {
+        if (supportSize==0) {
+            throw new IllegalStateException("No station is consistent with the detectives' positions");
+        }
+        if (total!=1.0) {
+            for (int i=0; i<supportSize; i++) {
+                p[support[i]]/=total;
+            }
+        }
+    }
+
+    /**
+     * Number of stations Mr. X could be at.
+     *
+     * @return
+     */
+    public int size() {
+        return supportSize;
+    }
+
+    public boolean isPossible(String station) {
+        int id=map.id(station);
+        return id>=0 && isPossible(id);
+    }
+
+    public boolean isPossible(int station) {
+        return supportSize>0 && stamp[station]==epoch;
+    }
+
+    /**
+     * Chance that Mr. X is at the given station, 0 if he cannot be.
+     *
+     * @param station
+     * @return
+     */
+    public double probability(String station) {
+        int id=map.id(station);
+        return id>=0 ? probability(id) : 0.0;
+    }
+
+    public double probability(int station) {
+        return isPossible(station) ? p[station] : 0.0;
+    }
+
+    /**
+     * Ids of the stations Mr. X could be at, in no particular order.
+     *
+     * @return
+     */
+    public int[] possibleIds() {
+        return Arrays.copyOf(support, supportSize);
+    }
+
+    /**
+     * Names of the stations Mr. X could be at, in order of their ids.
+     *
+     * @return
+     */
+    public List<String> possibleStations() {
+        int[] ids=possibleIds();
+        Arrays.sort(ids);
+        List<String> result=new ArrayList<String>(ids.length);
+        for (int id : ids) {
+            result.add(map.name(id));
+        }
+        return result;
+    }
+
+    /**
+     * The station Mr. X is most likely at, or null if he has not surfaced.
+     *
+     * @return
+     */
+    public String mostLikely() {
+        int best=-1;
+        for (int i=0; i<supportSize; i++) {
+            int u=support[i];
+            if (best<0 || p[u]>p[best] || (p[u]==p[best] && u<best)) {
+                best=u;
+            }
+        }
+        return best<0 ? null : map.name(best);
+    }
+}
@@ -1,11 +1,12 @@
 package graph.impl;
 
-import java.lang.reflect.Constructor;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import graph.GraphProviders;
 import graph.INode;
+import graph.MemoryFootprint;
 import junit.VERSION;
 
 /**
@@ -33,40 +34,27 @@ public class Node implements INode
      * Create a new node with the given name. The newly created node should
      * have no edges.
      * 
-     * This constructor is private because we are using the Static Factory pattern
-     * to construct new nodes. We use static factories so that we can test multiple
-     * implementations of the same interface using one set of JUnit tests.
+     * This constructor is package-private because we are using the Static Factory pattern
+     * to construct new nodes (or {@link DefaultGraphProvider}). We use static factories so that
+     * we can test multiple implementations of the same interface using one set of JUnit tests.
      * 
      * @param name
      */
-    private Node(String name) {
+    Node(String name) {
         this.name=name;
     }
     
+    /**
+     * Static factory to create a node, using the implementation for the version
+     * number in {@link VERSION}. Each implementation is looked up only once by
+     * {@link GraphProviders}, so there is no reflection per node.
+     * 
+     * @param name
+     * @return
+     */
     public static INode createNode(String name){
         // The VERSION class knows what version to run
-        int version = VERSION.version;
-        if (version == 0){
-            // version 0 uses the graph.impl.Node code
-            return new Node(name);
-        } else if (version == -1){
-            // load Spacco's solution code
-            try {
-                Class<?> clazz = Class.forName(String.format("graph.sol.Node", version));
-                Constructor<?> constructor = clazz.getConstructor(String.class);
-                return (INode)constructor.newInstance(name);
-            } catch (Exception e){
-                throw new RuntimeException(e);
-            }
-        } else {
-            try {
-                Class<?> clazz = Class.forName(String.format("graph.broken%d.Node", version));
-                Constructor<?> constructor = clazz.getConstructor(String.class);
-                return (INode)constructor.newInstance(name);
-            } catch (Exception e){
-                throw new RuntimeException(e);
-            }
-        }
+        return GraphProviders.current().createNode(name);
     }
     
     /**
@@ -148,6 +136,20 @@ public class Node implements INode
         return neighbors.containsKey(other);
     }
     
+    /**
+     * Add the bytes used by this node, its neighbor map and its boxed
+     * weights to the report. The name is counted by the graph.
+     * 
+     * @param report
+     */
+    void addFootprint(MemoryFootprint.Builder report) {
+        report.add(MemoryFootprint.Category.NODES, MemoryFootprint.object(2, 0));
+        report.add(MemoryFootprint.Category.ADJACENCY, MemoryFootprint.hashMap(neighbors.size()));
+        for (Integer weight : neighbors.values()) {
+            report.add(MemoryFootprint.Category.WEIGHTS, MemoryFootprint.boxedInt(weight));
+        }
+    }
+    
     /**
      * Get the weight of the edge to the given node.
      * 
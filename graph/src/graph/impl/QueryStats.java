@@ -0,0 +1,111 @@
+package graph.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Counters describing the work done by a single graph query.
+ * 
+ * Pass an instance to {@link Graph#dijkstra(String, QueryStats)} or
+ * {@link Graph#getMoves(String, graph.NodeVisitor, int, QueryStats)} and it
+ * will be filled in alongside the normal result. The counters are reset at
+ * the start of every query, so an instance can be reused by one thread
+ * for many queries, but should not be shared between threads.
+ * 
+ * Every query also feeds the same numbers into {@link GraphMetrics#global()},
+ * so the aggregate picture is available even when nobody asks for the
+ * per-query stats.
+ * 
+ * @author jspacco
+ *
+ */
+public class QueryStats
+{
+    int nodesSettled;
+    int edgesRelaxed;
+    int heapPushes;
+    int heapPops;
+    int staleSkipped;
+    int queuePeak;
+    long elapsedNanos;
+    List<Integer> frontierSizes=new ArrayList<Integer>();
+    
+    void clear() {
+        nodesSettled=0;
+        edgesRelaxed=0;
+        heapPushes=0;
+        heapPops=0;
+        staleSkipped=0;
+        queuePeak=0;
+        elapsedNanos=0;
+        frontierSizes.clear();
+    }
+    
+    /**
+     * Number of nodes whose final result was fixed (settled by Dijkstra,
+     * or visited by a level-by-level search).
+     * 
+     * @return
+     */
+    public int getNodesSettled() {
+        return nodesSettled;
+    }
+    
+    /**
+     * Number of edges that were scanned.
+     * 
+     * @return
+     */
+    public int getEdgesRelaxed() {
+        return edgesRelaxed;
+    }
+    
+    public int getHeapPushes() {
+        return heapPushes;
+    }
+    
+    public int getHeapPops() {
+        return heapPops;
+    }
+    
+    /**
+     * Number of queue entries that were popped but skipped because their
+     * node had already been settled through a cheaper path.
+     * 
+     * @return
+     */
+    public int getStaleSkipped() {
+        return staleSkipped;
+    }
+    
+    /**
+     * Largest size reached by the priority queue or frontier list.
+     * 
+     * @return
+     */
+    public int getQueuePeak() {
+        return queuePeak;
+    }
+    
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    
+    /**
+     * Size of the frontier at each level of a level-by-level search,
+     * starting with level 0. Empty for Dijkstra.
+     * 
+     * @return
+     */
+    public List<Integer> getFrontierSizes() {
+        return Collections.unmodifiableList(frontierSizes);
+    }
+    
+    @Override
+    public String toString() {
+        return "settled=" + nodesSettled + " relaxed=" + edgesRelaxed + " pushes=" + heapPushes
+                + " pops=" + heapPops + " stale=" + staleSkipped + " queuePeak=" + queuePeak
+                + " frontiers=" + frontierSizes + " nanos=" + elapsedNanos;
+    }
+}
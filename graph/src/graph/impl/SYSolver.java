@@ -10,9 +10,12 @@ import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
 
+import graph.GraphProvider;
+import graph.GraphProviders;
 import graph.IGraph;
 import graph.INode;
 import graph.NodeVisitor;
+import graph.compact.GraphBuilder;
 
 public class SYSolver
 {
@@ -49,10 +52,25 @@ public class SYSolver
      */
     public static IGraph readGraphFromFile(InputStream in) throws IOException
     {
-        IGraph g=Graph.createGraph();
+        return readGraphFromFile(in, null);
+    }
+    
+    /**
+     * Same as {@link #readGraphFromFile(InputStream)}, but creates the graph
+     * with the given provider instead of the one picked by junit.VERSION.
+     * A null provider means the default.
+     * 
+     * @param in
+     * @param provider
+     * @return
+     * @throws IOException
+     */
+    public static IGraph readGraphFromFile(InputStream in, GraphProvider provider) throws IOException
+    {
         Scanner scan=new Scanner(in);
         int numNodes=scan.nextInt();
         int numEdges=scan.nextInt();
+        GraphBuilder builder=new GraphBuilder(numNodes, numEdges, true);
         for (int i=0; i<numEdges; i++) {
             String srcName=scan.next();
             String dstName=scan.next();
@@ -65,12 +83,10 @@ public class SYSolver
             } else if (transportType.equals("U")){
                 transportTypeInt = 3;
             }
-            INode src=g.getOrCreateNode(srcName);
-            INode dst=g.getOrCreateNode(dstName);
-            src.addUndirectedEdgeToNode(dst, transportTypeInt);
+            builder.addEdge(srcName, dstName, transportTypeInt);
         }
         scan.close();
-        return g;
+        return builder.build(provider==null ? GraphProviders.current() : provider);
     }
     
     /**
@@ -142,9 +158,12 @@ public class SYSolver
             public void visit(INode n) {
             }
         };
+        AlgorithmEvent event = new AlgorithmEvent("SYSolver.getNextFivePossibleMoves");
+        event.begin();
         Graph g2 = (Graph)g;
         result = g2.getMoves(start, v, 5);
         
+        event.finishMoves(start, result);
         return result;
     }
     
@@ -175,11 +194,16 @@ public class SYSolver
             public void visit(INode n) {
             }
         };
+        AlgorithmEvent event = new AlgorithmEvent("SYSolver.getNextFivePossibleMovesT");
+        event.begin();
         Graph g2 = (Graph)g;
         //System.out.println(transportTypes.toString());
-        return g2.getMovesT(start, v, 5, transportTypes);
+        Map<Integer,Set<String>> result=g2.getMovesT(start, v, 5, transportTypes);
+        event.finishMoves(start, result);
+        return result;
         //return result;
     }
+
     
     
 
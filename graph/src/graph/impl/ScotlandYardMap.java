@@ -0,0 +1,270 @@
+package graph.impl;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+import graph.IGraph;
+import graph.INode;
+
+/**
+ * The Scotland Yard board as one adjacency list per kind of ticket. The
+ * graphs read by {@link SYSolver} keep a single transport type per pair of
+ * stations as the edge weight, so a pair joined by both a bus and the
+ * underground only remembers the last one read; this class keeps all of
+ * them, which is what tracking Mr. X by the tickets he shows needs.
+ *
+ * Stations have ids 0 to n-1, and the stations reachable from u with a
+ * ticket t are targets(t)[offsets(t)[u]] up to targets(t)[offsets(t)[u+1]],
+ * sorted and without duplicates. A black ticket ({@link Ticket#ANY}) can be
+ * used on any route.
+ *
+ * @author jspacco
+ *
+ */
+public class ScotlandYardMap
+{
+    /**
+     * The tickets Mr. X can reveal, named the way {@link SYSolver} and
+     * {@link ScotlandYardFrame} name transport types.
+     */
+    public enum Ticket
+    {
+        TAXI("taxi"),
+        BUS("bus"),
+        UNDERGROUND("underground"),
+        ANY("any");
+
+        private final String name;
+
+        Ticket(String name) {
+            this.name=name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The ticket with the given name: "taxi", "bus", "underground" or
+         * "any".
+         *
+         * @param name
+         * @return
+         */
+        public static Ticket parse(String name) {
+            for (Ticket ticket : values()) {
+                if (ticket.name.equals(name)) {
+                    return ticket;
+                }
+            }
+            throw new IllegalArgumentException("Unknown ticket "+name);
+        }
+    }
+
+    private final String[] names;
+    private final Map<String,Integer> ids;
+    private final int[][] offsets;
+    private final int[][] targets;
+
+    private ScotlandYardMap(String[] names, int[][] offsets, int[][] targets) {
+        this.names=names;
+        this.offsets=offsets;
+        this.targets=targets;
+        this.ids=new HashMap<String,Integer>(names.length*2);
+        for (int i=0; i<names.length; i++) {
+            ids.put(names[i], i);
+        }
+    }
+
+    /**
+     * Read the board in the format of files/scotmap.txt: the number of
+     * stations and of routes, then one route per line as two stations and
+     * T, B or U for taxi, bus or underground. Routes go both ways. Stations
+     * are numbered from 1, and station i gets id i-1.
+     *
+     * @param in
+     * @return
+     */
+    public static ScotlandYardMap read(InputStream in) {
+        Scanner scan=new Scanner(in);
+        int numNodes=scan.nextInt();
+        int numEdges=scan.nextInt();
+        String[] names=new String[numNodes];
+        for (int i=0; i<numNodes; i++) {
+            names[i]=Integer.toString(i+1);
+        }
+        Builder builder=new Builder(names, numEdges);
+        for (int i=0; i<numEdges; i++) {
+            int src=Integer.parseInt(scan.next())-1;
+            int dst=Integer.parseInt(scan.next())-1;
+            String type=scan.next();
+            Ticket ticket=type.equals("T") ? Ticket.TAXI : type.equals("B") ? Ticket.BUS
+                    : type.equals("U") ? Ticket.UNDERGROUND : Ticket.ANY;
+            builder.add(src, dst, ticket);
+        }
+        scan.close();
+        return builder.build();
+    }
+
+    public static ScotlandYardMap read(String filename) throws IOException {
+        try (InputStream in=new FileInputStream(filename)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Build the board from a graph read by {@link SYSolver}, whose edge
+     * weights are 1, 2 and 3 for taxi, bus and underground. Only one
+     * transport type survives for each pair of stations in such a graph.
+     *
+     * @param g
+     * @return
+     */
+    public static ScotlandYardMap of(IGraph g) {
+        String[] names=new String[g.getAllNodes().size()];
+        int i=0;
+        for (INode node : g.getAllNodes()) {
+            names[i++]=node.getName();
+        }
+        Arrays.sort(names);
+        Builder builder=new Builder(names, 0);
+        for (INode node : g.getAllNodes()) {
+            int src=builder.id(node.getName());
+            for (INode neighbor : node.getNeighbors()) {
+                int w=node.getWeight(neighbor);
+                Ticket ticket=w==1 ? Ticket.TAXI : w==2 ? Ticket.BUS : w==3 ? Ticket.UNDERGROUND : Ticket.ANY;
+                builder.addDirected(src, builder.id(neighbor.getName()), ticket);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Collects routes as pairs of ids per ticket, then sorts them into rows.
+     */
+    private static class Builder
+    {
+        private final String[] names;
+        private final Map<String,Integer> ids=new HashMap<String,Integer>();
+        private final int[] size=new int[Ticket.values().length];
+        private final long[][] edges=new long[Ticket.values().length][];
+
+        Builder(String[] names, int expectedEdges) {
+            this.names=names;
+            for (int i=0; i<names.length; i++) {
+                ids.put(names[i], i);
+            }
+            for (int t=0; t<edges.length; t++) {
+                edges[t]=new long[Math.max(16, 2*expectedEdges)];
+            }
+        }
+
+        int id(String name) {
+            return ids.get(name);
+        }
+
+        void add(int src, int dst, Ticket ticket) {
+            addDirected(src, dst, ticket);
+            addDirected(dst, src, ticket);
+        }
+
+        void addDirected(int src, int dst, Ticket ticket) {
+            push(ticket.ordinal(), src, dst);
+            if (ticket!=Ticket.ANY) {
+                push(Ticket.ANY.ordinal(), src, dst);
+            }
+        }
+
+        private void push(int t, int src, int dst) {
+            if (size[t]==edges[t].length) {
+                edges[t]=Arrays.copyOf(edges[t], edges[t].length*2);
+            }
+            edges[t][size[t]++]=(long)src<<32 | dst;
+        }
+
+        ScotlandYardMap build() {
+            int n=names.length;
+            int[][] offsets=new int[edges.length][];
+            int[][] targets=new int[edges.length][];
+            for (int t=0; t<edges.length; t++) {
+                long[] sorted=Arrays.copyOf(edges[t], size[t]);
+                Arrays.sort(sorted);
+                int[] off=new int[n+1];
+                int[] tgt=new int[sorted.length];
+                int m=0;
+                for (int k=0; k<sorted.length; k++) {
+                    if (k>0 && sorted[k]==sorted[k-1]) {
+                        continue;
+                    }
+                    int src=(int)(sorted[k]>>>32);
+                    off[src+1]++;
+                    tgt[m++]=(int)sorted[k];
+                }
+                for (int u=0; u<n; u++) {
+                    off[u+1]+=off[u];
+                }
+                offsets[t]=off;
+                targets[t]=Arrays.copyOf(tgt, m);
+            }
+            return new ScotlandYardMap(names, offsets, targets);
+        }
+    }
+
+    public int stationCount() {
+        return names.length;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * The id of the station with the given name, or -1 if there is none.
+     *
+     * @param name
+     * @return
+     */
+    public int id(String name) {
+        Integer id=ids.get(name);
+        return id==null ? -1 : id;
+    }
+
+    /**
+     * The row offsets for the given ticket. This is the internal array; it
+     * must not be modified.
+     *
+     * @param ticket
+     * @return
+     */
+    public int[] offsets(Ticket ticket) {
+        return offsets[ticket.ordinal()];
+    }
+
+    /**
+     * The destinations for the given ticket. This is the internal array; it
+     * must not be modified.
+     *
+     * @param ticket
+     * @return
+     */
+    public int[] targets(Ticket ticket) {
+        return targets[ticket.ordinal()];
+    }
+
+    /**
+     * Number of stations reachable from u with the given ticket.
+     *
+     * @param u
+     * @param ticket
+     * @return
+     */
+    public int degree(int u, Ticket ticket) {
+        int[] off=offsets[ticket.ordinal()];
+        return off[u+1]-off[u];
+    }
+}
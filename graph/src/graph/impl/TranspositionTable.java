@@ -0,0 +1,160 @@
+package graph.impl;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Search statistics shared by the threads of a {@link DetectivePlanner},
+ * keyed by a 64 bit hash of the game state so that a state reached by
+ * different orders of moves is counted once. Each entry holds a number of
+ * visits and a sum of rewards between 0 and 1.
+ *
+ * The table is open addressing over fixed arrays, and entries are claimed
+ * with a compare-and-set on the key, so no thread ever blocks. When a key
+ * finds no free slot within a few probes the state is simply not recorded,
+ * which costs the search some sharing but never correctness. Two states
+ * whose hashes collide share an entry; with 64 bit hashes that is rare
+ * enough to ignore.
+ *
+ * @author jspacco
+ *
+ */
+public class TranspositionTable
+{
+    private static final int PROBES=16;
+    // rewards are summed in fixed point
+    private static final double SCALE=1<<20;
+
+    private final int mask;
+    private final AtomicLongArray keys;
+    private final AtomicIntegerArray visits;
+    private final AtomicLongArray rewards;
+
+    /**
+     * A table with room for the given number of states, rounded up to a
+     * power of 2.
+     *
+     * @param capacity
+     */
+    public TranspositionTable(int capacity) {
+        int size=Integer.highestOneBit(Math.max(PROBES, capacity-1)<<1);
+        this.mask=size-1;
+        this.keys=new AtomicLongArray(size);
+        this.visits=new AtomicIntegerArray(size);
+        this.rewards=new AtomicLongArray(size);
+    }
+
+    // 0 marks an empty slot
+    private static long nonZero(long key) {
+        return key==0 ? 1 : key;
+    }
+
+    private int home(long key) {
+        return (int)(key ^ key>>>32) & mask;
+    }
+
+    /**
+     * The slot of the given state, or -1 if it has none.
+     *
+     * @param key
+     * @return
+     */
+    public int find(long key) {
+        key=nonZero(key);
+        int i=home(key);
+        for (int p=0; p<PROBES; p++) {
+            long k=keys.get(i);
+            if (k==key) {
+                return i;
+            }
+            if (k==0) {
+                return -1;
+            }
+            i=(i+1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * The slot of the given state, claiming one if it has none, or -1 if
+     * the table is too full around its home slot.
+     *
+     * @param key
+     * @return
+     */
+    public int findOrCreate(long key) {
+        key=nonZero(key);
+        int i=home(key);
+        for (int p=0; p<PROBES; p++) {
+            long k=keys.get(i);
+            if (k==key) {
+                return i;
+            }
+            if (k==0) {
+                if (keys.compareAndSet(i, 0, key)) {
+                    return i;
+                }
+                if (keys.get(i)==key) {
+                    // another thread claimed it for the same state
+                    return i;
+                }
+            }
+            i=(i+1) & mask;
+        }
+        return -1;
+    }
+
+    public void addVisit(int slot) {
+        visits.incrementAndGet(slot);
+    }
+
+    public void addReward(int slot, double reward) {
+        rewards.addAndGet(slot, (long)(reward*SCALE));
+    }
+
+    public int visits(int slot) {
+        return slot<0 ? 0 : visits.get(slot);
+    }
+
+    /**
+     * Average reward of the state, counting visits whose reward has not
+     * been added yet as 0.
+     *
+     * @param slot
+     * @return
+     */
+    public double meanReward(int slot) {
+        int n=visits(slot);
+        return n==0 ? 0.0 : rewards.get(slot)/SCALE/n;
+    }
+
+    /**
+     * Number of states recorded. This walks the whole table.
+     *
+     * @return
+     */
+    public int size() {
+        int size=0;
+        for (int i=0; i<keys.length(); i++) {
+            if (keys.get(i)!=0) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public int capacity() {
+        return keys.length();
+    }
+
+    /**
+     * Forget every state. Must not run at the same time as a search.
+     */
+    public void clear() {
+        for (int i=0; i<keys.length(); i++) {
+            keys.set(i, 0);
+            visits.set(i, 0);
+            rewards.set(i, 0);
+        }
+    }
+}
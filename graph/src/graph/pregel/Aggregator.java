@@ -0,0 +1,49 @@
+package graph.pregel;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * A global value that every vertex can contribute to in one superstep and
+ * read in the next, like the total change in a PageRank iteration or the
+ * number of vertices that updated. Contributions are combined within each
+ * partition first and then across partitions at the barrier, so the
+ * operator must be commutative and associative.
+ *
+ * @author jspacco
+ *
+ */
+public final class Aggregator
+{
+    private final double identity;
+    private final DoubleBinaryOperator operator;
+
+    public Aggregator(double identity, DoubleBinaryOperator operator) {
+        this.identity=identity;
+        this.operator=operator;
+    }
+
+    public static Aggregator sum() {
+        return new Aggregator(0, (a, b) -> a+b);
+    }
+
+    public static Aggregator min() {
+        return new Aggregator(Double.POSITIVE_INFINITY, Math::min);
+    }
+
+    public static Aggregator max() {
+        return new Aggregator(Double.NEGATIVE_INFINITY, Math::max);
+    }
+
+    /**
+     * The value of the aggregator when nothing has been contributed.
+     *
+     * @return
+     */
+    public double identity() {
+        return identity;
+    }
+
+    public double combine(double a, double b) {
+        return operator.applyAsDouble(a, b);
+    }
+}
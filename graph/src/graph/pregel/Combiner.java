@@ -0,0 +1,16 @@
+package graph.pregel;
+
+/**
+ * Merges two messages sent to the same vertex into one, for programs that
+ * only care about, say, the smallest or the sum of their messages. Must be
+ * commutative and associative, since messages arrive in no particular order.
+ *
+ * @param <M>
+ *
+ * @author jspacco
+ *
+ */
+public interface Combiner<M>
+{
+    M combine(M a, M b);
+}
@@ -0,0 +1,458 @@
+package graph.pregel;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import graph.IGraph;
+import graph.compact.CompactGraph;
+
+/**
+ * A vertex-centric, bulk synchronous (Pregel style) computation over a
+ * {@link CompactGraph}. The user supplies a {@link VertexProgram}; the engine
+ * splits the vertices into partitions of consecutive ids and runs supersteps.
+ * In each superstep every partition runs compute for its active vertices,
+ * sending messages into one outbox per destination partition. Then, after a
+ * barrier, every partition collects the messages addressed to it from all
+ * the outboxes, groups them by vertex and, if there is a {@link Combiner},
+ * merges each group into a single message. A partition only ever writes its
+ * own vertices and its own outboxes, so no locks are needed.
+ *
+ * A vertex that votes to halt is skipped until a message arrives for it.
+ * The computation ends when every vertex has halted and no messages are in
+ * flight, or when the superstep limit is reached.
+ *
+ * Partitions are run as tasks on a pluggable {@link ExecutorService}, which
+ * by default is the common fork/join pool. Any executor works, for instance
+ * a fixed pool of platform threads, or on a JDK with virtual threads a
+ * virtual thread per task executor.
+ *
+ * @param <V> type of the value stored at each vertex
+ * @param <M> type of the messages
+ *
+ * @author jspacco
+ *
+ */
+public class Pregel<V,M>
+{
+    private final CompactGraph graph;
+    private final ExecutorService executor;
+    private final List<Partition> partitions;
+    private final Map<String,Integer> aggregatorIndex=new HashMap<String,Integer>();
+    private final List<Aggregator> aggregators=new ArrayList<Aggregator>();
+    private Combiner<M> combiner;
+    private int maxSupersteps=Integer.MAX_VALUE;
+
+    private final Object[] values;
+    private final boolean[] halted;
+    private double[] aggregated=new double[0];
+    private int superstep;
+
+    /**
+     * A computation over the given graph with one partition per processor,
+     * run on the common fork/join pool.
+     *
+     * @param graph
+     */
+    public Pregel(CompactGraph graph) {
+        this(graph, Runtime.getRuntime().availableProcessors(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * A computation over the given graph, split into the given number of
+     * partitions, run on the given executor. The executor is not shut down.
+     *
+     * @param graph
+     * @param partitionCount
+     * @param executor
+     */
+    public Pregel(CompactGraph graph, int partitionCount, ExecutorService executor) {
+        if (partitionCount<=0) {
+            throw new IllegalArgumentException("Need at least one partition but got "+partitionCount);
+        }
+        this.graph=graph;
+        this.executor=executor;
+        int n=graph.nodeCount();
+        this.values=new Object[n];
+        this.halted=new boolean[n];
+        partitionCount=Math.max(1, Math.min(partitionCount, n));
+        this.partitions=new ArrayList<Partition>(partitionCount);
+        for (int p=0; p<partitionCount; p++) {
+            partitions.add(new Partition(p, (int)((long)n*p/partitionCount), (int)((long)n*(p+1)/partitionCount)));
+        }
+    }
+
+    /**
+     * Run a computation over any graph, compiling it to a {@link CompactGraph}
+     * first unless it already is one.
+     *
+     * @param g
+     * @return
+     */
+    public static <V,M> Pregel<V,M> of(IGraph g) {
+        return new Pregel<V,M>(g instanceof CompactGraph ? (CompactGraph)g : CompactGraph.copyOf(g));
+    }
+
+    public Pregel<V,M> setCombiner(Combiner<M> combiner) {
+        this.combiner=combiner;
+        return this;
+    }
+
+    public Pregel<V,M> addAggregator(String name, Aggregator aggregator) {
+        if (aggregatorIndex.containsKey(name)) {
+            throw new IllegalArgumentException("There is already an aggregator named "+name);
+        }
+        aggregatorIndex.put(name, aggregators.size());
+        aggregators.add(aggregator);
+        return this;
+    }
+
+    public Pregel<V,M> setMaxSupersteps(int maxSupersteps) {
+        this.maxSupersteps=maxSupersteps;
+        return this;
+    }
+
+    public CompactGraph graph() {
+        return graph;
+    }
+
+    /**
+     * Run the program until every vertex has halted with no messages in
+     * flight, or the superstep limit is reached.
+     *
+     * @param program
+     * @param initial the value of each vertex before superstep 0, by id
+     * @return
+     */
+    public Result<V> run(VertexProgram<V,M> program, IntFunction<V> initial) {
+        for (int u=0; u<values.length; u++) {
+            values[u]=initial.apply(u);
+        }
+        Arrays.fill(halted, false);
+        superstep=0;
+        aggregated=identities();
+        List<Callable<Integer>> compute=new ArrayList<Callable<Integer>>();
+        List<Callable<Integer>> deliver=new ArrayList<Callable<Integer>>();
+        for (Partition partition : partitions) {
+            partition.reset();
+            compute.add(() -> partition.compute(program));
+            deliver.add(() -> partition.deliver());
+        }
+        while (superstep<maxSupersteps) {
+            int active=runAll(compute);
+            double[] next=identities();
+            for (Partition partition : partitions) {
+                for (int i=0; i<next.length; i++) {
+                    next[i]=aggregators.get(i).combine(next[i], partition.local[i]);
+                }
+            }
+            aggregated=next;
+            int messages=runAll(deliver);
+            superstep++;
+            if (active==0 && messages==0) {
+                break;
+            }
+        }
+        Map<String,Double> finalAggregates=new LinkedHashMap<String,Double>();
+        for (Map.Entry<String,Integer> entry : aggregatorIndex.entrySet()) {
+            finalAggregates.put(entry.getKey(), aggregated[entry.getValue()]);
+        }
+        return new Result<V>(values.clone(), superstep, finalAggregates);
+    }
+
+    private double[] identities() {
+        double[] result=new double[aggregators.size()];
+        for (int i=0; i<result.length; i++) {
+            result[i]=aggregators.get(i).identity();
+        }
+        return result;
+    }
+
+    /**
+     * Run one task per partition and wait for all of them, which is the
+     * barrier between phases. Returns the sum of their results.
+     */
+    private int runAll(List<Callable<Integer>> tasks) {
+        try {
+            int total=0;
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                total+=future.get();
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted in superstep "+superstep, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error)e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private int partitionOf(int id) {
+        // partitions are equal ranges, so start from the proportional guess
+        int p=(int)((long)id*partitions.size()/values.length);
+        while (id<partitions.get(p).lo) {
+            p--;
+        }
+        while (id>=partitions.get(p).hi) {
+            p++;
+        }
+        return p;
+    }
+
+    /**
+     * The outcome of a run.
+     */
+    public static class Result<V>
+    {
+        private final Object[] values;
+        private final int supersteps;
+        private final Map<String,Double> aggregates;
+
+        Result(Object[] values, int supersteps, Map<String,Double> aggregates) {
+            this.values=values;
+            this.supersteps=supersteps;
+            this.aggregates=aggregates;
+        }
+
+        /**
+         * The final value of the vertex with the given id.
+         *
+         * @param id
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        public V value(int id) {
+            return (V)values[id];
+        }
+
+        public int supersteps() {
+            return supersteps;
+        }
+
+        /**
+         * The value of the named aggregator after the last superstep.
+         *
+         * @param name
+         * @return
+         */
+        public double aggregated(String name) {
+            Double value=aggregates.get(name);
+            if (value==null) {
+                throw new IllegalArgumentException("No aggregator named "+name);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Growable list of (target, message) pairs from one partition to another.
+     */
+    private static class Outbox
+    {
+        int[] targets=new int[16];
+        Object[] messages=new Object[16];
+        int size;
+
+        void add(int target, Object message) {
+            if (size==targets.length) {
+                targets=Arrays.copyOf(targets, size*2);
+                messages=Arrays.copyOf(messages, size*2);
+            }
+            targets[size]=target;
+            messages[size]=message;
+            size++;
+        }
+
+        void clear() {
+            Arrays.fill(messages, 0, size, null);
+            size=0;
+        }
+    }
+
+    /**
+     * The vertices lo to hi-1, with their incoming messages and outboxes.
+     */
+    class Partition
+    {
+        final int index;
+        final int lo;
+        final int hi;
+        private final Vertex<V,M> vertex=new Vertex<V,M>(this);
+        private final MessageList messageList=new MessageList();
+        // outboxes[q] holds the messages for partition q
+        private Outbox[] outboxes;
+        // messages for vertex u are inbox[inOffsets[u-lo]..inOffsets[u-lo+1])
+        private int[] inOffsets;
+        private Object[] inbox;
+        double[] local;
+
+        Partition(int index, int lo, int hi) {
+            this.index=index;
+            this.lo=lo;
+            this.hi=hi;
+        }
+
+        void reset() {
+            outboxes=new Outbox[partitions.size()];
+            for (int q=0; q<outboxes.length; q++) {
+                outboxes[q]=new Outbox();
+            }
+            inOffsets=new int[hi-lo+1];
+            inbox=new Object[0];
+            local=identities();
+        }
+
+        CompactGraph graph() {
+            return graph;
+        }
+
+        Object[] values() {
+            return values;
+        }
+
+        int superstep() {
+            return superstep;
+        }
+
+        void send(int target, M message) {
+            outboxes[partitionOf(target)].add(target, message);
+        }
+
+        void halt(int id) {
+            halted[id]=true;
+        }
+
+        void aggregate(String name, double value) {
+            Integer index=aggregatorIndex.get(name);
+            if (index==null) {
+                throw new IllegalArgumentException("No aggregator named "+name);
+            }
+            local[index]=aggregators.get(index).combine(local[index], value);
+        }
+
+        double aggregated(String name) {
+            Integer index=aggregatorIndex.get(name);
+            if (index==null) {
+                throw new IllegalArgumentException("No aggregator named "+name);
+            }
+            return aggregated[index];
+        }
+
+        /**
+         * Run compute for every vertex that is active or has mail, and
+         * return how many are still active afterwards.
+         */
+        int compute(VertexProgram<V,M> program) {
+            local=identities();
+            int active=0;
+            for (int u=lo; u<hi; u++) {
+                int first=inOffsets[u-lo];
+                int last=inOffsets[u-lo+1];
+                if (halted[u] && first==last) {
+                    continue;
+                }
+                halted[u]=false;
+                messageList.set(first, last);
+                vertex.moveTo(u);
+                program.compute(vertex, messageList);
+                if (!halted[u]) {
+                    active++;
+                }
+            }
+            return active;
+        }
+
+        /**
+         * Collect the messages sent to this partition by every partition,
+         * grouped by target vertex, and return how many there are.
+         */
+        @SuppressWarnings("unchecked")
+        int deliver() {
+            int size=hi-lo;
+            int[] counts=new int[size+1];
+            for (Partition source : partitions) {
+                Outbox outbox=source.outboxes[index];
+                for (int i=0; i<outbox.size; i++) {
+                    counts[outbox.targets[i]-lo+1]++;
+                }
+            }
+            for (int i=0; i<size; i++) {
+                counts[i+1]+=counts[i];
+            }
+            Object[] messages=new Object[counts[size]];
+            int[] cursor=Arrays.copyOf(counts, size);
+            for (Partition source : partitions) {
+                Outbox outbox=source.outboxes[index];
+                for (int i=0; i<outbox.size; i++) {
+                    messages[cursor[outbox.targets[i]-lo]++]=outbox.messages[i];
+                }
+                outbox.clear();
+            }
+            if (combiner!=null) {
+                // fold every group into its first slot, then compact
+                int next=0;
+                for (int i=0; i<size; i++) {
+                    int first=counts[i];
+                    int last=counts[i+1];
+                    counts[i]=next;
+                    if (first<last) {
+                        M combined=(M)messages[first];
+                        for (int k=first+1; k<last; k++) {
+                            combined=combiner.combine(combined, (M)messages[k]);
+                        }
+                        messages[next++]=combined;
+                    }
+                }
+                counts[size]=next;
+                messages=Arrays.copyOf(messages, next);
+            }
+            inOffsets=counts;
+            inbox=messages;
+            return messages.length;
+        }
+
+        /**
+         * Read-only view of the messages of the current vertex.
+         */
+        private class MessageList extends AbstractList<M>
+        {
+            private int first;
+            private int size;
+
+            void set(int first, int last) {
+                this.first=first;
+                this.size=last-first;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public M get(int index) {
+                if (index<0 || index>=size) {
+                    throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+                }
+                return (M)inbox[first+index];
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package graph.pregel;
+
+/**
+ * The view of one vertex handed to {@link VertexProgram#compute(Vertex, Iterable)}.
+ * Each partition reuses a single Vertex object, moving it from vertex to
+ * vertex, so it must not be kept after compute returns.
+ *
+ * @param <V>
+ * @param <M>
+ *
+ * @author jspacco
+ *
+ */
+public final class Vertex<V,M>
+{
+    private final Pregel<V,M>.Partition partition;
+    private int id;
+
+    Vertex(Pregel<V,M>.Partition partition) {
+        this.partition=partition;
+    }
+
+    void moveTo(int id) {
+        this.id=id;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public String name() {
+        return partition.graph().name(id);
+    }
+
+    /**
+     * Number of superstep being run, starting from 0.
+     *
+     * @return
+     */
+    public int superstep() {
+        return partition.superstep();
+    }
+
+    /**
+     * Number of vertices in the whole graph.
+     *
+     * @return
+     */
+    public int vertexCount() {
+        return partition.graph().nodeCount();
+    }
+
+    @SuppressWarnings("unchecked")
+    public V getValue() {
+        return (V)partition.values()[id];
+    }
+
+    public void setValue(V value) {
+        partition.values()[id]=value;
+    }
+
+    public int outDegree() {
+        return partition.graph().degree(id);
+    }
+
+    /**
+     * Id of the target of the i-th outgoing edge, in id order.
+     *
+     * @param i
+     * @return
+     * @throws IndexOutOfBoundsException unless 0 <= i < {@link #outDegree()}
+     */
+    public int target(int i) {
+        return partition.graph().targets()[edge(i)];
+    }
+
+    /**
+     * Weight of the i-th outgoing edge.
+     *
+     * @param i
+     * @return
+     * @throws IndexOutOfBoundsException unless 0 <= i < {@link #outDegree()}
+     */
+    public int weight(int i) {
+        return partition.graph().weight(edge(i));
+    }
+
+    /**
+     * Position of the i-th outgoing edge in the shared CSR arrays, which
+     * hold the edges of the next vertex right after this one's.
+     */
+    private int edge(int i) {
+        int degree=outDegree();
+        if (i<0 || i>=degree) {
+            throw new IndexOutOfBoundsException("Edge "+i+" of vertex "+id+" with "+degree+" edges");
+        }
+        return partition.graph().offsets()[id]+i;
+    }
+
+    /**
+     * Send a message that the target will receive in the next superstep,
+     * waking it up if it has voted to halt.
+     *
+     * @param target
+     * @param message
+     */
+    public void sendMessage(int target, M message) {
+        partition.send(target, message);
+    }
+
+    /**
+     * Send the same message along every outgoing edge.
+     *
+     * @param message
+     */
+    public void sendToNeighbors(M message) {
+        int[] offsets=partition.graph().offsets();
+        int[] targets=partition.graph().targets();
+        for (int e=offsets[id]; e<offsets[id+1]; e++) {
+            partition.send(targets[e], message);
+        }
+    }
+
+    /**
+     * Stop running compute for this vertex until a message arrives for it.
+     * The computation ends when every vertex has halted and no messages are
+     * in flight.
+     */
+    public void voteToHalt() {
+        partition.halt(id);
+    }
+
+    /**
+     * Contribute a value to the named aggregator. The combined value of all
+     * contributions is visible to every vertex in the next superstep.
+     *
+     * @param name
+     * @param value
+     */
+    public void aggregate(String name, double value) {
+        partition.aggregate(name, value);
+    }
+
+    /**
+     * The combined value of the named aggregator from the previous
+     * superstep, or its identity in superstep 0.
+     *
+     * @param name
+     * @return
+     */
+    public double getAggregated(String name) {
+        return partition.aggregated(name);
+    }
+}
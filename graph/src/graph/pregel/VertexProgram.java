@@ -0,0 +1,27 @@
+package graph.pregel;
+
+/**
+ * The code run for every active vertex in every superstep of a {@link Pregel}
+ * computation.
+ *
+ * @param <V> type of the value stored at each vertex
+ * @param <M> type of the messages sent between vertices
+ *
+ * @author jspacco
+ *
+ */
+public interface VertexProgram<V,M>
+{
+    /**
+     * Update the vertex from the messages sent to it in the previous
+     * superstep. The vertex can change its value, send messages that will
+     * be delivered in the next superstep, contribute to aggregators, and
+     * vote to halt. Implementations must only touch the given vertex, since
+     * vertices in other partitions run at the same time.
+     *
+     * @param vertex
+     * @param messages the messages sent to this vertex, empty in superstep 0;
+     *  at most one if the computation has a {@link Combiner}
+     */
+    void compute(Vertex<V,M> vertex, Iterable<M> messages);
+}
@@ -0,0 +1,72 @@
+package graph.server;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Shares one computation between all the callers that ask for the same key
+ * while it is running. The first caller runs the computation on its own
+ * thread; everyone who asks for the key before it finishes gets the same
+ * future, without running anything or blocking a thread. Once the result is
+ * ready the key is forgotten, so a later request computes afresh.
+ *
+ * @param <K>
+ * @param <V>
+ *
+ * @author jspacco
+ *
+ */
+public class Coalescer<K,V>
+{
+    private final ConcurrentMap<K,CompletableFuture<V>> inFlight=new ConcurrentHashMap<K,CompletableFuture<V>>();
+    private final LongAdder requests=new LongAdder();
+    private final LongAdder computations=new LongAdder();
+
+    /**
+     * Return the result for the key, computing it with the given supplier
+     * unless the same key is already being computed.
+     *
+     * @param key
+     * @param compute
+     * @return
+     */
+    public CompletableFuture<V> get(K key, Supplier<V> compute) {
+        requests.increment();
+        CompletableFuture<V> future=new CompletableFuture<V>();
+        CompletableFuture<V> running=inFlight.putIfAbsent(key, future);
+        if (running!=null) {
+            return running;
+        }
+        computations.increment();
+        try {
+            future.complete(compute.get());
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.remove(key, future);
+        }
+        return future;
+    }
+
+    /**
+     * Number of calls to {@link #get(Object, Supplier)}.
+     *
+     * @return
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Number of computations actually run; the rest of the requests shared
+     * one of these.
+     *
+     * @return
+     */
+    public long getComputations() {
+        return computations.sum();
+    }
+}
@@ -0,0 +1,363 @@
+package graph.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import graph.IGraph;
+import graph.compact.CompactGraph;
+import graph.impl.Graph;
+import graph.impl.GraphMetrics;
+import graph.impl.SYSolver;
+
+/**
+ * An embeddable HTTP server answering graph queries over a read-only
+ * snapshot of a graph. The graph handed to the constructor must not be
+ * changed afterwards; shortest path queries run on a {@link CompactGraph}
+ * copy of it, which is immutable and can be searched by any number of
+ * threads at once.
+ *
+ * Queries are GET requests:
+ * <ul>
+ * <li>/dijkstra?source=A returns the cost to every reachable node, and
+ * /dijkstra?source=A&amp;target=B just the cost to B.</li>
+ * <li>/moves?start=A returns {@link SYSolver#getNextFivePossibleMoves(IGraph, String)},
+ * and /moves?start=A&amp;transport=taxi,bus,any,any,underground the version
+ * restricted to the given transport types. This needs a {@link Graph}.</li>
+ * <li>/metrics returns {@link GraphMetrics#scrape()}.</li>
+ * </ul>
+ * Missing or malformed parameters get a 400 response, unknown nodes a 404.
+ * Results are JSON, or with format=binary a big-endian stream written by
+ * {@link DataOutputStream}: an int count followed by that many pairs of a
+ * UTF name and an int (the distance, or the move number).
+ *
+ * Concurrent identical queries are coalesced, and Dijkstra queries are keyed
+ * by source only, so every concurrent request from the same source, whatever
+ * its target, shares one traversal (see {@link Coalescer}). Requests that
+ * join a running traversal do not hold a thread while they wait: the
+ * response is written by a callback when the result is ready. The callbacks
+ * run on the server's executor rather than on the thread that finished the
+ * traversal, so the responses to a popular source are formatted and sent in
+ * parallel instead of one after another.
+ *
+ * Requests are handled on a pluggable executor. The default is a fixed
+ * pool of platform threads; on a JDK with virtual threads a virtual thread
+ * per task executor can be passed instead.
+ *
+ * @author jspacco
+ *
+ */
+public class QueryServer
+{
+    private final IGraph graph;
+    private final CompactGraph snapshot;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Coalescer<String,int[]> distances=new Coalescer<String,int[]>();
+    private final Coalescer<String,Map<Integer,Set<String>>> moves=new Coalescer<String,Map<Integer,Set<String>>>();
+
+    /**
+     * Serve the given graph on the given port of all interfaces, or any free
+     * port if the port is 0, with a pool of two threads per processor.
+     *
+     * @param graph
+     * @param port
+     * @throws IOException
+     */
+    public QueryServer(IGraph graph, int port) throws IOException {
+        this(graph, new InetSocketAddress(port),
+                Executors.newFixedThreadPool(2*Runtime.getRuntime().availableProcessors()), true);
+    }
+
+    /**
+     * Serve the given graph on the given address, handling requests on the
+     * given executor. The executor is not shut down by {@link #stop(int)}.
+     *
+     * @param graph
+     * @param address
+     * @param executor
+     * @throws IOException
+     */
+    public QueryServer(IGraph graph, InetSocketAddress address, ExecutorService executor) throws IOException {
+        this(graph, address, executor, false);
+    }
+
+    private QueryServer(IGraph graph, InetSocketAddress address, ExecutorService executor, boolean ownsExecutor)
+            throws IOException
+    {
+        this.graph=graph;
+        this.snapshot=graph instanceof CompactGraph ? (CompactGraph)graph : CompactGraph.copyOf(graph);
+        this.executor=executor;
+        this.ownsExecutor=ownsExecutor;
+        this.server=HttpServer.create(address, 1024);
+        server.setExecutor(executor);
+        server.createContext("/dijkstra", exchange -> handle(exchange, this::dijkstra));
+        server.createContext("/moves", exchange -> handle(exchange, this::moves));
+        server.createContext("/metrics", exchange -> handle(exchange, this::metrics));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop accepting requests and close the server, waiting at most the
+     * given number of seconds for running requests to finish.
+     *
+     * @param delaySeconds
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Statistics on the Dijkstra queries: requests received and traversals
+     * actually run.
+     *
+     * @return
+     */
+    public Coalescer<String,int[]> dijkstraStats() {
+        return distances;
+    }
+
+    public Coalescer<String,Map<Integer,Set<String>>> movesStats() {
+        return moves;
+    }
+
+    private interface Handler
+    {
+        CompletableFuture<Response> handle(Map<String,String> params);
+    }
+
+    /**
+     * A finished response: status, content type and body.
+     */
+    private static class Response
+    {
+        final int status;
+        final String type;
+        final byte[] body;
+
+        Response(int status, String type, byte[] body) {
+            this.status=status;
+            this.type=type;
+            this.body=body;
+        }
+
+        static Response error(int status, String message) {
+            return new Response(status, "application/json",
+                    ("{\"error\":"+quote(message)+"}").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            send(exchange, Response.error(405, "Only GET is supported"));
+            return;
+        }
+        CompletableFuture<Response> response;
+        try {
+            response=handler.handle(parse(exchange.getRequestURI().getRawQuery()));
+        } catch (IllegalArgumentException e) {
+            response=CompletableFuture.completedFuture(Response.error(400, e.getMessage()));
+        } catch (NoSuchElementException e) {
+            response=CompletableFuture.completedFuture(Response.error(404, e.getMessage()));
+        }
+        response.whenComplete((r, e) -> send(exchange, e==null ? r : Response.error(500, String.valueOf(e))));
+    }
+
+    private static void send(HttpExchange exchange, Response response) {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", response.type);
+            exchange.sendResponseHeaders(response.status, response.body.length);
+            try (OutputStream out=exchange.getResponseBody()) {
+                out.write(response.body);
+            }
+        } catch (IOException e) {
+            // the client went away
+            exchange.close();
+        }
+    }
+
+    private static Map<String,String> parse(String query) {
+        Map<String,String> params=new HashMap<String,String>();
+        if (query==null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq=pair.indexOf('=');
+            if (eq>0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq+1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static String require(Map<String,String> params, String name) {
+        String value=params.get(name);
+        if (value==null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter "+name);
+        }
+        return value;
+    }
+
+    private int requireNode(String name) {
+        int id=snapshot.id(name);
+        if (id<0) {
+            throw new NoSuchElementException("No node named "+name);
+        }
+        return id;
+    }
+
+    private CompletableFuture<Response> dijkstra(Map<String,String> params) {
+        String source=require(params, "source");
+        final int sourceId=requireNode(source);
+        final String target=params.get("target");
+        final int targetId=target==null ? -1 : requireNode(target);
+        final boolean binary="binary".equals(params.get("format"));
+        return distances.get(source, () -> snapshot.dijkstraDistances(sourceId)).thenApplyAsync(dist -> {
+            if (targetId>=0) {
+                int cost=dist[targetId];
+                if (binary) {
+                    return binary(new String[] {target}, new int[] {cost==Integer.MAX_VALUE ? -1 : cost}, 1);
+                }
+                return json("{\"source\":"+quote(source)+",\"target\":"+quote(target)+",\"cost\":"
+                        +(cost==Integer.MAX_VALUE ? "null" : cost)+"}");
+            }
+            String[] names=new String[dist.length];
+            int[] values=new int[dist.length];
+            int count=0;
+            for (int i=0; i<dist.length; i++) {
+                if (dist[i]!=Integer.MAX_VALUE) {
+                    names[count]=snapshot.name(i);
+                    values[count++]=dist[i];
+                }
+            }
+            if (binary) {
+                return binary(names, values, count);
+            }
+            StringBuilder json=new StringBuilder("{\"source\":").append(quote(source)).append(",\"distances\":{");
+            for (int i=0; i<count; i++) {
+                json.append(i==0 ? "" : ",").append(quote(names[i])).append(':').append(values[i]);
+            }
+            return json(json.append("}}").toString());
+        }, executor);
+    }
+
+    private CompletableFuture<Response> moves(Map<String,String> params) {
+        final String start=require(params, "start");
+        requireNode(start);
+        if (!(graph instanceof Graph)) {
+            throw new IllegalArgumentException("Move queries need a graph.impl.Graph");
+        }
+        String transport=params.get("transport");
+        final List<String> types=transport==null ? null : Arrays.asList(transport.split(","));
+        if (types!=null && types.size()!=5) {
+            throw new IllegalArgumentException("Expected 5 transport types but got "+types.size());
+        }
+        final boolean binary="binary".equals(params.get("format"));
+        String key=start+"|"+(transport==null ? "" : transport);
+        return moves.get(key, () -> types==null ? SYSolver.getNextFivePossibleMoves(graph, start)
+                : SYSolver.getNextFivePossibleMoves(graph, start, types)).thenApplyAsync(result -> {
+            if (binary) {
+                int size=0;
+                for (Set<String> locations : result.values()) {
+                    size+=locations.size();
+                }
+                String[] names=new String[size];
+                int[] values=new int[size];
+                int count=0;
+                for (Map.Entry<Integer,Set<String>> entry : result.entrySet()) {
+                    for (String location : new TreeSet<String>(entry.getValue())) {
+                        names[count]=location;
+                        values[count++]=entry.getKey();
+                    }
+                }
+                return binary(names, values, count);
+            }
+            StringBuilder json=new StringBuilder("{");
+            boolean firstMove=true;
+            for (Map.Entry<Integer,Set<String>> entry : result.entrySet()) {
+                json.append(firstMove ? "" : ",").append('"').append(entry.getKey()).append("\":[");
+                firstMove=false;
+                boolean first=true;
+                for (String location : new TreeSet<String>(entry.getValue())) {
+                    json.append(first ? "" : ",").append(quote(location));
+                    first=false;
+                }
+                json.append(']');
+            }
+            return json(json.append('}').toString());
+        }, executor);
+    }
+
+    private CompletableFuture<Response> metrics(Map<String,String> params) {
+        return CompletableFuture.completedFuture(new Response(200, "text/plain; version=0.0.4",
+                GraphMetrics.global().scrape().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Response json(String body) {
+        return new Response(200, "application/json", body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Response binary(String[] names, int[] values, int count) {
+        try {
+            ByteArrayOutputStream bytes=new ByteArrayOutputStream(16+count*8);
+            DataOutputStream out=new DataOutputStream(bytes);
+            out.writeInt(count);
+            for (int i=0; i<count; i++) {
+                out.writeUTF(names[i]);
+                out.writeInt(values[i]);
+            }
+            out.flush();
+            return new Response(200, "application/octet-stream", bytes.toByteArray());
+        } catch (IOException e) {
+            // cannot happen writing to memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A JSON string literal.
+     */
+    private static String quote(String s) {
+        StringBuilder sb=new StringBuilder(s.length()+2).append('"');
+        for (int i=0; i<s.length(); i++) {
+            char c=s.charAt(i);
+            if (c=='"' || c=='\\') {
+                sb.append('\\').append(c);
+            } else if (c<0x20) {
+                sb.append(String.format("\\u%04x", (int)c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
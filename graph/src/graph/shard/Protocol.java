@@ -0,0 +1,187 @@
+package graph.shard;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The messages exchanged between a {@link ShardedGraph} and its
+ * {@link ShardWorker}s. Every request is an opcode followed by its
+ * arguments, and gets exactly one reply. Names and values travel in
+ * batches, so a whole frontier or a few thousand edges cost one round trip.
+ *
+ * @author jspacco
+ *
+ */
+final class Protocol
+{
+    // int shard, int shards -> boolean
+    static final byte HELLO=0;
+    // Batch of names -> boolean
+    static final byte ADD_NODES=1;
+    // Edges -> boolean
+    static final byte ADD_EDGES=2;
+    // Edges (weights ignored) -> boolean
+    static final byte REMOVE_EDGES=3;
+    // UTF name -> boolean
+    static final byte CONTAINS=4;
+    // UTF name -> Batch of neighbor names and weights
+    static final byte NEIGHBORS=5;
+    // -> Batch of the names owned by the shard
+    static final byte NODES=6;
+    // byte kind -> boolean
+    static final byte START_SEARCH=7;
+    // Batch of names and distances -> Batch for other shards, boolean more work
+    static final byte STEP=8;
+    // -> Batch of the names and distances reached on this shard
+    static final byte RESULT=9;
+    // UTF src, UTF dst -> boolean present, int weight
+    static final byte WEIGHT=10;
+    // no reply; the worker closes the connection
+    static final byte CLOSE=11;
+    // -> boolean; puts every node of the shard in a component of its own
+    static final byte MST_START=12;
+    // -> Edges between components, Edges between the nodes that join them
+    static final byte MST_STEP=13;
+    // Edges from old component to new (weights ignored) -> boolean
+    static final byte MST_MERGE=14;
+
+    static final byte BFS=0;
+    static final byte DIJKSTRA=1;
+
+    private Protocol() {
+    }
+
+    /**
+     * The shard that owns the node with the given name. String hash codes
+     * are part of the Java specification, so every process agrees on this.
+     *
+     * @param name
+     * @param shards
+     * @return
+     */
+    static int owner(String name, int shards) {
+        return Math.floorMod(name.hashCode(), shards);
+    }
+
+    /**
+     * Whether the undirected edge a-b of weight w is lighter than the edge
+     * c-d of weight x. Ties on weight are broken by the names of the ends,
+     * so every shard and the coordinator agree on a single order of all the
+     * edges, which is what keeps Boruvka's algorithm from closing a cycle
+     * between edges of equal weight.
+     *
+     * @param w
+     * @param a
+     * @param b
+     * @param x
+     * @param c
+     * @param d
+     * @return
+     */
+    static boolean lighter(int w, String a, String b, int x, String c, String d) {
+        if (w!=x) {
+            return w<x;
+        }
+        String lo1=a.compareTo(b)<0 ? a : b;
+        String lo2=c.compareTo(d)<0 ? c : d;
+        int cmp=lo1.compareTo(lo2);
+        if (cmp!=0) {
+            return cmp<0;
+        }
+        String hi1=lo1==a ? b : a;
+        String hi2=lo2==c ? d : c;
+        return hi1.compareTo(hi2)<0;
+    }
+
+    /**
+     * A list of names, each with an int value: a distance, a weight, or
+     * nothing at all.
+     */
+    static class Batch
+    {
+        final List<String> names=new ArrayList<String>();
+        int[] values=new int[16];
+
+        void add(String name, int value) {
+            if (names.size()==values.length) {
+                values=Arrays.copyOf(values, values.length*2);
+            }
+            values[names.size()]=value;
+            names.add(name);
+        }
+
+        int size() {
+            return names.size();
+        }
+
+        boolean isEmpty() {
+            return names.isEmpty();
+        }
+
+        void clear() {
+            names.clear();
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(names.size());
+            for (int i=0; i<names.size(); i++) {
+                out.writeUTF(names.get(i));
+                out.writeInt(values[i]);
+            }
+        }
+
+        static Batch read(DataInputStream in) throws IOException {
+            Batch batch=new Batch();
+            int size=in.readInt();
+            for (int i=0; i<size; i++) {
+                batch.add(in.readUTF(), in.readInt());
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * A list of directed edges, all starting at nodes owned by one shard.
+     */
+    static class Edges
+    {
+        final List<String> sources=new ArrayList<String>();
+        final Batch targets=new Batch();
+
+        void add(String source, String target, int weight) {
+            sources.add(source);
+            targets.add(target, weight);
+        }
+
+        int size() {
+            return sources.size();
+        }
+
+        void clear() {
+            sources.clear();
+            targets.clear();
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(sources.size());
+            for (int i=0; i<sources.size(); i++) {
+                out.writeUTF(sources.get(i));
+                out.writeUTF(targets.names.get(i));
+                out.writeInt(targets.values[i]);
+            }
+        }
+
+        static Edges read(DataInputStream in) throws IOException {
+            Edges edges=new Edges();
+            int size=in.readInt();
+            for (int i=0; i<size; i++) {
+                edges.add(in.readUTF(), in.readUTF(), in.readInt());
+            }
+            return edges;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package graph.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import graph.INode;
+
+/**
+ * A handle to a node of a {@link ShardedGraph}. It only holds the name:
+ * every question about the node is answered by the shard that owns it, and
+ * new edges are buffered by the graph. Two handles with the same name in
+ * the same graph are equal.
+ *
+ * @author jspacco
+ *
+ */
+class ShardNode implements INode
+{
+    private final ShardedGraph graph;
+    private final String name;
+
+    ShardNode(ShardedGraph graph, String name) {
+        this.graph=graph;
+        this.name=name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Collection<INode> getNeighbors() {
+        List<INode> neighbors=new ArrayList<INode>();
+        for (String neighbor : graph.neighbors(name).names) {
+            neighbors.add(new ShardNode(graph, neighbor));
+        }
+        return neighbors;
+    }
+
+    public void addDirectedEdgeToNode(INode neighbor, int weight) {
+        graph.addEdge(name, neighbor.getName(), weight);
+    }
+
+    public void addUndirectedEdgeToNode(INode neighbor, int weight) {
+        graph.addEdge(name, neighbor.getName(), weight);
+        graph.addEdge(neighbor.getName(), name, weight);
+    }
+
+    public void removeDirectedEdgeToNode(INode neighbor) {
+        graph.removeEdge(name, neighbor.getName());
+    }
+
+    public void removeUndirectedEdgeToNode(INode neighbor) {
+        graph.removeEdge(name, neighbor.getName());
+        graph.removeEdge(neighbor.getName(), name);
+    }
+
+    public boolean hasEdge(INode node) {
+        return graph.weight(name, node.getName())!=null;
+    }
+
+    public int getWeight(INode node) {
+        Integer weight=graph.weight(name, node.getName());
+        if (weight==null) {
+            throw new IllegalStateException("No edge to "+node.getName());
+        }
+        return weight;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ShardNode)) {
+            return false;
+        }
+        ShardNode other=(ShardNode)o;
+        return graph==other.graph && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
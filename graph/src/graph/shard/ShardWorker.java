@@ -0,0 +1,428 @@
+package graph.shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import graph.GraphProviders;
+import graph.IGraph;
+import graph.INode;
+import graph.Path;
+
+/**
+ * A server holding one shard of a {@link ShardedGraph}. The shard is an
+ * ordinary {@link graph.impl.Graph} containing the nodes this shard owns,
+ * with all their outgoing edges, plus a ghost node for every node on another
+ * shard that one of those edges points to. Ghosts have no edges of their
+ * own; they only stand in for the real node, so reaching one during a search
+ * produces a message for its owner instead of a step.
+ *
+ * A worker can be started in this JVM with {@link #start(InetAddress, int)},
+ * or in its own process with {@link #main(String[])}, which prints the port
+ * it is listening on and exits when its standard input is closed, so that
+ * workers never outlive the process that launched them. Workers listen on
+ * the loopback address unless they are given another one to bind to, such
+ * as the address of a machine's network interface for a real cluster.
+ *
+ * @author jspacco
+ *
+ */
+public class ShardWorker implements Closeable
+{
+    private final ServerSocket server;
+
+    private ShardWorker(ServerSocket server) {
+        this.server=server;
+    }
+
+    /**
+     * Start a worker listening on the given port of the loopback address,
+     * or on any free port if the port is 0.
+     *
+     * @param port
+     * @return
+     * @throws IOException
+     */
+    public static ShardWorker start(int port) throws IOException {
+        return start(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Start a worker listening on the given port of the given address, or
+     * on any free port if the port is 0. Every connection is served by its
+     * own daemon thread and holds its own shard.
+     *
+     * @param bind
+     * @param port
+     * @return
+     * @throws IOException
+     */
+    public static ShardWorker start(InetAddress bind, int port) throws IOException {
+        ServerSocket server=new ServerSocket(port, 50, bind);
+        final ShardWorker worker=new ShardWorker(server);
+        Thread acceptor=new Thread(() -> worker.accept(), "shard-worker-"+server.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return worker;
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public void close() throws IOException {
+        server.close();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                final Socket socket=server.accept();
+                Thread thread=new Thread(() -> serve(socket), "shard-"+socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // the server socket was closed
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s=socket) {
+            s.setTcpNoDelay(true);
+            DataInputStream in=new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out=new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            Shard shard=null;
+            while (true) {
+                byte op=in.readByte();
+                if (op==Protocol.CLOSE) {
+                    return;
+                }
+                if (op==Protocol.HELLO) {
+                    shard=new Shard(in.readInt(), in.readInt());
+                    out.writeBoolean(true);
+                } else if (shard==null) {
+                    throw new IOException("Expected HELLO but got "+op);
+                } else {
+                    shard.handle(op, in, out);
+                }
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // the coordinator went away
+        } catch (IOException e) {
+            // ends this connection's thread, through its uncaught exception handler
+            throw new UncheckedIOException("Shard connection failed", e);
+        }
+    }
+
+    /**
+     * Run a worker in its own process. The optional arguments are the port
+     * to listen on, by default any free port, and the address to bind to,
+     * by default the loopback address. The port is printed on the first
+     * line of standard output.
+     *
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        int port=args.length>0 ? Integer.parseInt(args[0]) : 0;
+        InetAddress bind=args.length>1 ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
+        ShardWorker worker=start(bind, port);
+        System.out.println(worker.getPort());
+        System.out.flush();
+        // run until the launching process closes our standard input
+        while (System.in.read()>=0) {
+            // ignore anything sent
+        }
+        worker.close();
+    }
+
+    /**
+     * The nodes of one shard and the state of the search running over it.
+     */
+    private static class Shard
+    {
+        private final int shard;
+        private final int shards;
+        private final IGraph graph=GraphProviders.get("impl").createGraph();
+
+        private byte kind;
+        // distance of every owned node reached so far
+        private final Map<String,Integer> dist=new HashMap<String,Integer>();
+        // best distance already sent for every ghost
+        private final Map<String,Integer> sent=new HashMap<String,Integer>();
+        private List<INode> frontier=new ArrayList<INode>();
+        private final PriorityQueue<Path> heap=new PriorityQueue<Path>();
+        // component of every node of the shard, ghosts included, while a
+        // spanning forest is being built
+        private final Map<String,String> component=new HashMap<String,String>();
+
+        Shard(int shard, int shards) {
+            this.shard=shard;
+            this.shards=shards;
+        }
+
+        private boolean owns(String name) {
+            return Protocol.owner(name, shards)==shard;
+        }
+
+        void handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+            switch (op) {
+            case Protocol.ADD_NODES:
+                for (String name : Protocol.Batch.read(in).names) {
+                    graph.getOrCreateNode(name);
+                }
+                out.writeBoolean(true);
+                break;
+            case Protocol.ADD_EDGES: {
+                Protocol.Edges edges=Protocol.Edges.read(in);
+                for (int i=0; i<edges.size(); i++) {
+                    INode src=graph.getOrCreateNode(edges.sources.get(i));
+                    src.addDirectedEdgeToNode(graph.getOrCreateNode(edges.targets.names.get(i)), edges.targets.values[i]);
+                }
+                out.writeBoolean(true);
+                break;
+            }
+            case Protocol.REMOVE_EDGES: {
+                Protocol.Edges edges=Protocol.Edges.read(in);
+                for (int i=0; i<edges.size(); i++) {
+                    String src=edges.sources.get(i);
+                    String dst=edges.targets.names.get(i);
+                    if (graph.containsNode(src) && graph.containsNode(dst)) {
+                        graph.getOrCreateNode(src).removeDirectedEdgeToNode(graph.getOrCreateNode(dst));
+                    }
+                }
+                out.writeBoolean(true);
+                break;
+            }
+            case Protocol.CONTAINS: {
+                String name=in.readUTF();
+                out.writeBoolean(owns(name) && graph.containsNode(name));
+                break;
+            }
+            case Protocol.NEIGHBORS: {
+                String name=in.readUTF();
+                Protocol.Batch batch=new Protocol.Batch();
+                if (graph.containsNode(name)) {
+                    INode node=graph.getOrCreateNode(name);
+                    for (INode neighbor : node.getNeighbors()) {
+                        batch.add(neighbor.getName(), node.getWeight(neighbor));
+                    }
+                }
+                batch.write(out);
+                break;
+            }
+            case Protocol.WEIGHT: {
+                String src=in.readUTF();
+                String dst=in.readUTF();
+                boolean present=graph.containsNode(src) && graph.containsNode(dst)
+                        && graph.getOrCreateNode(src).hasEdge(graph.getOrCreateNode(dst));
+                out.writeBoolean(present);
+                out.writeInt(present ? graph.getOrCreateNode(src).getWeight(graph.getOrCreateNode(dst)) : 0);
+                break;
+            }
+            case Protocol.NODES: {
+                Protocol.Batch batch=new Protocol.Batch();
+                for (INode node : graph.getAllNodes()) {
+                    if (owns(node.getName())) {
+                        batch.add(node.getName(), 0);
+                    }
+                }
+                batch.write(out);
+                break;
+            }
+            case Protocol.MST_START:
+                component.clear();
+                for (INode node : graph.getAllNodes()) {
+                    component.put(node.getName(), node.getName());
+                }
+                out.writeBoolean(true);
+                break;
+            case Protocol.MST_STEP: {
+                Protocol.Edges between=new Protocol.Edges();
+                Protocol.Edges joining=new Protocol.Edges();
+                lightestCutEdges(between, joining);
+                between.write(out);
+                joining.write(out);
+                break;
+            }
+            case Protocol.MST_MERGE: {
+                Protocol.Edges merges=Protocol.Edges.read(in);
+                Map<String,String> renamed=new HashMap<String,String>();
+                for (int i=0; i<merges.size(); i++) {
+                    renamed.put(merges.sources.get(i), merges.targets.names.get(i));
+                }
+                for (Map.Entry<String,String> entry : component.entrySet()) {
+                    String to=renamed.get(entry.getValue());
+                    if (to!=null) {
+                        entry.setValue(to);
+                    }
+                }
+                out.writeBoolean(true);
+                break;
+            }
+            case Protocol.START_SEARCH:
+                kind=in.readByte();
+                dist.clear();
+                sent.clear();
+                frontier.clear();
+                heap.clear();
+                out.writeBoolean(true);
+                break;
+            case Protocol.STEP: {
+                Protocol.Batch incoming=Protocol.Batch.read(in);
+                Protocol.Batch outgoing=new Protocol.Batch();
+                boolean more=kind==Protocol.BFS ? bfsStep(incoming, outgoing) : dijkstraStep(incoming, outgoing);
+                outgoing.write(out);
+                out.writeBoolean(more);
+                break;
+            }
+            case Protocol.RESULT: {
+                Protocol.Batch batch=new Protocol.Batch();
+                for (Map.Entry<String,Integer> entry : dist.entrySet()) {
+                    batch.add(entry.getKey(), entry.getValue());
+                }
+                batch.write(out);
+                break;
+            }
+            default:
+                throw new IOException("Unknown opcode "+op);
+            }
+        }
+
+        /**
+         * One Boruvka step on this shard: for every component, the lightest
+         * edge from one of its owned nodes to a node of another component.
+         * Between gets the two components and joining the two nodes, at the
+         * same index.
+         */
+        private void lightestCutEdges(Protocol.Edges between, Protocol.Edges joining) {
+            Map<String,Integer> best=new HashMap<String,Integer>();
+            for (INode u : graph.getAllNodes()) {
+                if (!owns(u.getName())) {
+                    continue;
+                }
+                String cu=component.get(u.getName());
+                for (INode v : u.getNeighbors()) {
+                    String cv=component.get(v.getName());
+                    if (cu.equals(cv)) {
+                        continue;
+                    }
+                    int w=u.getWeight(v);
+                    Integer k=best.get(cu);
+                    if (k==null) {
+                        best.put(cu, joining.size());
+                        between.add(cu, cv, w);
+                        joining.add(u.getName(), v.getName(), w);
+                    } else if (Protocol.lighter(w, u.getName(), v.getName(), joining.targets.values[k],
+                            joining.sources.get(k), joining.targets.names.get(k))) {
+                        between.targets.names.set(k, cv);
+                        between.targets.values[k]=w;
+                        joining.sources.set(k, u.getName());
+                        joining.targets.names.set(k, v.getName());
+                        joining.targets.values[k]=w;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Add the nodes reached from other shards to the frontier, then
+         * expand the whole frontier by one level. Owned neighbors go straight
+         * into the next frontier; ghosts are sent to their owners, who add
+         * them to theirs at the start of the next step, so every shard stays
+         * on the same level. Returns true if the next frontier is not empty.
+         */
+        private boolean bfsStep(Protocol.Batch incoming, Protocol.Batch outgoing) {
+            for (int i=0; i<incoming.size(); i++) {
+                String name=incoming.names.get(i);
+                if (!dist.containsKey(name) && graph.containsNode(name)) {
+                    dist.put(name, incoming.values[i]);
+                    frontier.add(graph.getOrCreateNode(name));
+                }
+            }
+            List<INode> next=new ArrayList<INode>();
+            for (INode u : frontier) {
+                int level=dist.get(u.getName())+1;
+                for (INode v : u.getNeighbors()) {
+                    String name=v.getName();
+                    if (owns(name)) {
+                        if (!dist.containsKey(name)) {
+                            dist.put(name, level);
+                            next.add(v);
+                        }
+                    } else if (!sent.containsKey(name)) {
+                        sent.put(name, level);
+                        outgoing.add(name, level);
+                    }
+                }
+            }
+            frontier=next;
+            return !frontier.isEmpty();
+        }
+
+        /**
+         * Apply the improved distances sent by other shards, then run
+         * Dijkstra's algorithm over the owned nodes until the heap is empty.
+         * Every improvement to a ghost is sent to its owner, which may in
+         * turn improve nodes here in a later step. The search is over when
+         * no shard has anything left to send.
+         */
+        private boolean dijkstraStep(Protocol.Batch incoming, Protocol.Batch outgoing) {
+            for (int i=0; i<incoming.size(); i++) {
+                String name=incoming.names.get(i);
+                int d=incoming.values[i];
+                Integer known=dist.get(name);
+                if ((known==null || d<known) && graph.containsNode(name)) {
+                    dist.put(name, d);
+                    heap.add(new Path(name, d));
+                }
+            }
+            Map<String,Integer> best=new HashMap<String,Integer>();
+            while (!heap.isEmpty()) {
+                Path p=heap.poll();
+                if (p.getCost()>dist.get(p.getDestination())) {
+                    // stale entry, already settled more cheaply
+                    continue;
+                }
+                INode u=graph.getOrCreateNode(p.getDestination());
+                for (INode v : u.getNeighbors()) {
+                    String name=v.getName();
+                    int alt=p.getCost()+u.getWeight(v);
+                    if (owns(name)) {
+                        Integer known=dist.get(name);
+                        if (known==null || alt<known) {
+                            dist.put(name, alt);
+                            heap.add(new Path(name, alt));
+                        }
+                    } else {
+                        Integer known=sent.get(name);
+                        if (known==null || alt<known) {
+                            sent.put(name, alt);
+                            best.put(name, alt);
+                        }
+                    }
+                }
+            }
+            for (Map.Entry<String,Integer> entry : best.entrySet()) {
+                outgoing.add(entry.getKey(), entry.getValue());
+            }
+            return false;
+        }
+    }
+}
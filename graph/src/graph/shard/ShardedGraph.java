@@ -0,0 +1,537 @@
+package graph.shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import graph.GraphProviders;
+import graph.IGraph;
+import graph.INode;
+import graph.NodeVisitor;
+
+/**
+ * An {@link IGraph} whose nodes are spread over several {@link ShardWorker}s,
+ * usually each in its own JVM, so that the graph can be bigger than any one
+ * heap. Node names are hash partitioned: the shard that owns a node stores
+ * all of its outgoing edges, and an edge to a node on another shard points
+ * at a ghost of that node (see {@link ShardWorker}).
+ *
+ * Code written against {@link IGraph} and {@link INode} works unchanged.
+ * Edges are not sent one at a time: additions are buffered per shard and
+ * shipped in batches, before any query and whenever a buffer fills up.
+ *
+ * Breadth-first search and Dijkstra's algorithm run on the workers. The
+ * coordinator sends every shard the nodes other shards have reached on it,
+ * each shard advances its part of the search, and the ghosts it reaches come
+ * back as one batch per shard to be routed to their owners. All the shards
+ * work on a step at the same time. Depth-first search is inherently
+ * sequential, so it asks the owning shard for the neighbors of every node it
+ * visits, one round trip per node. The minimum spanning tree is built with
+ * Boruvka's algorithm, a few rounds in which each shard reports the
+ * lightest edge leaving every component, so the edges stay on the shards.
+ *
+ * This class is not thread safe.
+ *
+ * @author jspacco
+ *
+ */
+public class ShardedGraph implements IGraph, Closeable
+{
+    // edges buffered for a shard before they are sent
+    private static final int BATCH=4096;
+
+    private final List<Connection> shards=new ArrayList<Connection>();
+    private final List<Process> processes=new ArrayList<Process>();
+
+    /**
+     * A graph stored on the workers listening at the given addresses, one
+     * shard per worker.
+     *
+     * @param workers
+     * @throws IOException
+     */
+    public ShardedGraph(List<InetSocketAddress> workers) throws IOException {
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("A sharded graph needs at least one worker");
+        }
+        try {
+            for (int i=0; i<workers.size(); i++) {
+                Connection c=new Connection(workers.get(i));
+                shards.add(c);
+                c.out.writeByte(Protocol.HELLO);
+                c.out.writeInt(i);
+                c.out.writeInt(workers.size());
+                c.out.flush();
+                c.in.readBoolean();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Launch the given number of worker processes on this machine, running
+     * with the same java and class path as this JVM, and connect to them.
+     * The processes are stopped by {@link #close()}, or when this JVM exits.
+     *
+     * @param count
+     * @return
+     * @throws IOException
+     */
+    public static ShardedGraph launch(int count) throws IOException {
+        String java=System.getProperty("java.home")+File.separator+"bin"+File.separator+"java";
+        List<Process> processes=new ArrayList<Process>();
+        List<InetSocketAddress> addresses=new ArrayList<InetSocketAddress>();
+        try {
+            for (int i=0; i<count; i++) {
+                ProcessBuilder builder=new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        ShardWorker.class.getName());
+                builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+                Process process=builder.start();
+                processes.add(process);
+            }
+            for (Process process : processes) {
+                BufferedReader reader=new BufferedReader(new InputStreamReader(process.getInputStream()));
+                String line=reader.readLine();
+                if (line==null) {
+                    throw new IOException("Shard worker exited before reporting its port");
+                }
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(line.trim())));
+            }
+            ShardedGraph graph=new ShardedGraph(addresses);
+            graph.processes.addAll(processes);
+            return graph;
+        } catch (IOException | RuntimeException e) {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Number of shards.
+     *
+     * @return
+     */
+    public int shardCount() {
+        return shards.size();
+    }
+
+    /**
+     * The shard that owns the node with the given name.
+     *
+     * @param name
+     * @return
+     */
+    public int owner(String name) {
+        return Protocol.owner(name, shards.size());
+    }
+
+    public INode getOrCreateNode(String name) {
+        Connection c=shards.get(owner(name));
+        c.nodes.add(name, 0);
+        if (c.nodes.size()>=BATCH) {
+            flush(c);
+        }
+        return new ShardNode(this, name);
+    }
+
+    public boolean containsNode(String name) {
+        flush();
+        Connection c=shards.get(owner(name));
+        try {
+            c.out.writeByte(Protocol.CONTAINS);
+            c.out.writeUTF(name);
+            c.out.flush();
+            return c.in.readBoolean();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Collection<INode> getAllNodes() {
+        flush();
+        List<INode> all=new ArrayList<INode>();
+        try {
+            for (Connection c : shards) {
+                c.out.writeByte(Protocol.NODES);
+                c.out.flush();
+            }
+            for (Connection c : shards) {
+                for (String name : Protocol.Batch.read(c.in).names) {
+                    all.add(new ShardNode(this, name));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return all;
+    }
+
+    /**
+     * Breadth-first search, run level by level on all the shards at once.
+     * Nodes are visited a level at a time, in alphabetical order within each
+     * level, once the search has finished.
+     */
+    public void breadthFirstSearch(String startNode, NodeVisitor v) {
+        Map<String,Integer> levels=search(Protocol.BFS, startNode);
+        List<String> order=new ArrayList<String>(levels.keySet());
+        order.sort((a, b) -> {
+            int byLevel=Integer.compare(levels.get(a), levels.get(b));
+            return byLevel!=0 ? byLevel : a.compareTo(b);
+        });
+        for (String name : order) {
+            v.visit(new ShardNode(this, name));
+        }
+    }
+
+    /**
+     * Depth-first search, visiting neighbors in alphabetical order. This
+     * asks the owning shard for the neighbors of each node as it is visited.
+     */
+    public void depthFirstSearch(String startNode, NodeVisitor v) {
+        Set<String> visited=new HashSet<String>();
+        Deque<String> stack=new ArrayDeque<String>();
+        stack.push(startNode);
+        while (!stack.isEmpty()) {
+            String name=stack.pop();
+            if (!visited.add(name)) {
+                continue;
+            }
+            v.visit(new ShardNode(this, name));
+            List<String> neighbors=new ArrayList<String>(neighbors(name).names);
+            // pushed in alphabetical order, the same stack order as Graph
+            Collections.sort(neighbors);
+            for (String neighbor : neighbors) {
+                if (!visited.contains(neighbor)) {
+                    stack.push(neighbor);
+                }
+            }
+        }
+    }
+
+    public Map<INode, Integer> dijkstra(String sourceNode) {
+        Map<INode,Integer> result=new HashMap<INode,Integer>();
+        for (Map.Entry<String,Integer> entry : search(Protocol.DIJKSTRA, sourceNode).entrySet()) {
+            result.put(new ShardNode(this, entry.getKey()), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Minimum spanning tree, or forest if the graph is not connected, built
+     * with Boruvka's algorithm so that the edges never leave the shards.
+     * Every node starts in a component of its own. In each round every
+     * shard reports, for every component, the lightest edge from one of the
+     * component's nodes it owns to another component; the coordinator keeps
+     * the lightest of those per component, adds them to the tree, and tells
+     * every shard which components merged. Each round at least halves the
+     * number of components that still have edges leaving them, so there are
+     * at most log n rounds. The coordinator only holds the nodes and the
+     * edges of the tree it returns, which is a regular local graph with each
+     * tree edge stored once.
+     */
+    public IGraph primJarnik() {
+        flush();
+        IGraph tree=GraphProviders.get("impl").createGraph();
+        try {
+            for (Connection c : shards) {
+                c.out.writeByte(Protocol.NODES);
+                c.out.writeByte(Protocol.MST_START);
+                c.out.flush();
+            }
+            for (Connection c : shards) {
+                for (String name : Protocol.Batch.read(c.in).names) {
+                    tree.getOrCreateNode(name);
+                }
+                c.in.readBoolean();
+            }
+            // union-find over component names; a root is its own parent
+            Map<String,String> parent=new HashMap<String,String>();
+            while (true) {
+                for (Connection c : shards) {
+                    c.out.writeByte(Protocol.MST_STEP);
+                    c.out.flush();
+                }
+                // the lightest edge leaving each component, over all shards
+                Map<String,Integer> best=new HashMap<String,Integer>();
+                Protocol.Edges between=new Protocol.Edges();
+                Protocol.Edges joining=new Protocol.Edges();
+                for (Connection c : shards) {
+                    Protocol.Edges b=Protocol.Edges.read(c.in);
+                    Protocol.Edges e=Protocol.Edges.read(c.in);
+                    for (int i=0; i<b.size(); i++) {
+                        String from=b.sources.get(i);
+                        Integer k=best.get(from);
+                        int w=e.targets.values[i];
+                        if (k==null || Protocol.lighter(w, e.sources.get(i), e.targets.names.get(i),
+                                joining.targets.values[k], joining.sources.get(k), joining.targets.names.get(k))) {
+                            best.put(from, joining.size());
+                            between.add(from, b.targets.names.get(i), w);
+                            joining.add(e.sources.get(i), e.targets.names.get(i), w);
+                        }
+                    }
+                }
+                if (best.isEmpty()) {
+                    return tree;
+                }
+                List<String> components=new ArrayList<String>(best.keySet());
+                Collections.sort(components);
+                for (String from : components) {
+                    int k=best.get(from);
+                    String a=find(parent, from);
+                    String b=find(parent, between.targets.names.get(k));
+                    if (a.equals(b)) {
+                        // the same edge, chosen from the other side
+                        continue;
+                    }
+                    parent.put(a.compareTo(b)<0 ? b : a, a.compareTo(b)<0 ? a : b);
+                    tree.getOrCreateNode(joining.sources.get(k)).addDirectedEdgeToNode(
+                            tree.getOrCreateNode(joining.targets.names.get(k)), joining.targets.values[k]);
+                }
+                Protocol.Edges merges=new Protocol.Edges();
+                for (String name : new ArrayList<String>(parent.keySet())) {
+                    String root=find(parent, name);
+                    if (!root.equals(name)) {
+                        merges.add(name, root, 0);
+                    }
+                }
+                // only the current component names are needed next round
+                parent.clear();
+                for (Connection c : shards) {
+                    c.out.writeByte(Protocol.MST_MERGE);
+                    merges.write(c.out);
+                    c.out.flush();
+                }
+                for (Connection c : shards) {
+                    c.in.readBoolean();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String find(Map<String,String> parent, String name) {
+        String root=name;
+        String up;
+        while ((up=parent.get(root))!=null) {
+            root=up;
+        }
+        // point everything on the path straight at the root
+        while (!name.equals(root)) {
+            up=parent.put(name, root);
+            name=up;
+        }
+        return root;
+    }
+
+    /**
+     * Send the buffered nodes and edges to every shard.
+     */
+    public void flush() {
+        for (Connection c : shards) {
+            flush(c);
+        }
+    }
+
+    /**
+     * Start a search on every shard, then exchange batches of reached
+     * nodes until no shard has anything left to do, and collect the
+     * distances.
+     */
+    private Map<String,Integer> search(byte kind, String start) {
+        flush();
+        int n=shards.size();
+        try {
+            for (Connection c : shards) {
+                c.out.writeByte(Protocol.START_SEARCH);
+                c.out.writeByte(kind);
+                c.out.flush();
+            }
+            for (Connection c : shards) {
+                c.in.readBoolean();
+            }
+            List<Protocol.Batch> inboxes=new ArrayList<Protocol.Batch>();
+            for (int i=0; i<n; i++) {
+                inboxes.add(new Protocol.Batch());
+            }
+            inboxes.get(owner(start)).add(start, 0);
+            boolean more=true;
+            while (more) {
+                // all the shards work on the step at the same time
+                for (int i=0; i<n; i++) {
+                    Connection c=shards.get(i);
+                    c.out.writeByte(Protocol.STEP);
+                    inboxes.get(i).write(c.out);
+                    c.out.flush();
+                    inboxes.get(i).clear();
+                }
+                more=false;
+                for (Connection c : shards) {
+                    Protocol.Batch outgoing=Protocol.Batch.read(c.in);
+                    more|=c.in.readBoolean();
+                    for (int k=0; k<outgoing.size(); k++) {
+                        String name=outgoing.names.get(k);
+                        inboxes.get(owner(name)).add(name, outgoing.values[k]);
+                        more=true;
+                    }
+                }
+            }
+            Map<String,Integer> result=new HashMap<String,Integer>();
+            for (Connection c : shards) {
+                c.out.writeByte(Protocol.RESULT);
+                c.out.flush();
+            }
+            for (Connection c : shards) {
+                Protocol.Batch batch=Protocol.Batch.read(c.in);
+                for (int k=0; k<batch.size(); k++) {
+                    result.put(batch.names.get(k), batch.values[k]);
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void addEdge(String src, String dst, int weight) {
+        Connection c=shards.get(owner(src));
+        c.edges.add(src, dst, weight);
+        if (c.edges.size()>=BATCH) {
+            flush(c);
+        }
+        // the owner of the target must know the node exists
+        if (owner(dst)!=owner(src)) {
+            getOrCreateNode(dst);
+        }
+    }
+
+    void removeEdge(String src, String dst) {
+        flush();
+        Connection c=shards.get(owner(src));
+        Protocol.Edges edges=new Protocol.Edges();
+        edges.add(src, dst, 0);
+        try {
+            c.out.writeByte(Protocol.REMOVE_EDGES);
+            edges.write(c.out);
+            c.out.flush();
+            c.in.readBoolean();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    Protocol.Batch neighbors(String name) {
+        flush();
+        Connection c=shards.get(owner(name));
+        try {
+            c.out.writeByte(Protocol.NEIGHBORS);
+            c.out.writeUTF(name);
+            c.out.flush();
+            return Protocol.Batch.read(c.in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The weight of the edge from src to dst, or null if there is none.
+     */
+    Integer weight(String src, String dst) {
+        flush();
+        Connection c=shards.get(owner(src));
+        try {
+            c.out.writeByte(Protocol.WEIGHT);
+            c.out.writeUTF(src);
+            c.out.writeUTF(dst);
+            c.out.flush();
+            boolean present=c.in.readBoolean();
+            int weight=c.in.readInt();
+            return present ? weight : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flush(Connection c) {
+        try {
+            if (!c.nodes.isEmpty()) {
+                c.out.writeByte(Protocol.ADD_NODES);
+                c.nodes.write(c.out);
+                c.out.flush();
+                c.in.readBoolean();
+                c.nodes.clear();
+            }
+            if (c.edges.size()>0) {
+                c.out.writeByte(Protocol.ADD_EDGES);
+                c.edges.write(c.out);
+                c.out.flush();
+                c.in.readBoolean();
+                c.edges.clear();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Disconnect from the workers, and stop them if this graph launched them.
+     */
+    public void close() {
+        for (Connection c : shards) {
+            try {
+                c.out.writeByte(Protocol.CLOSE);
+                c.out.flush();
+                c.socket.close();
+            } catch (IOException e) {
+                // already gone
+            }
+        }
+        for (Process process : processes) {
+            process.destroy();
+        }
+    }
+
+    /**
+     * The connection to one worker, with the nodes and edges waiting to
+     * be sent to it.
+     */
+    private static class Connection
+    {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final Protocol.Batch nodes=new Protocol.Batch();
+        final Protocol.Edges edges=new Protocol.Edges();
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket=new Socket(address.getAddress(), address.getPort());
+            socket.setTcpNoDelay(true);
+            in=new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out=new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+    }
+}
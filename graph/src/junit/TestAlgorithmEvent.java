@@ -0,0 +1,69 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+
+import graph.GraphProviders;
+import graph.IGraph;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class TestAlgorithmEvent
+{
+    private static RecordedEvent find(List<RecordedEvent> events, String algorithm) {
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals("graph.Algorithm")
+                    && algorithm.equals(event.getString("algorithm"))) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testSearchesAreRecorded() throws Exception
+    {
+        // A-B, A-C, B-D
+        IGraph g=GraphProviders.get("impl").createGraph();
+        g.getOrCreateNode("A").addUndirectedEdgeToNode(g.getOrCreateNode("B"), 1);
+        g.getOrCreateNode("A").addUndirectedEdgeToNode(g.getOrCreateNode("C"), 2);
+        g.getOrCreateNode("B").addUndirectedEdgeToNode(g.getOrCreateNode("D"), 3);
+        Path file=Files.createTempFile("algorithms", ".jfr");
+        try {
+            try (Recording recording=new Recording()) {
+                recording.enable("graph.Algorithm");
+                recording.start();
+                g.breadthFirstSearch("A", n -> {});
+                g.dijkstra("B");
+                recording.stop();
+                recording.dump(file);
+            }
+            List<RecordedEvent> events=RecordingFile.readAllEvents(file);
+
+            RecordedEvent bfs=find(events, "breadthFirstSearch");
+            assertNotNull(bfs);
+            assertEquals("A", bfs.getString("source"));
+            assertEquals(4, bfs.getInt("nodesTouched"));
+            // every edge of every node, in both directions
+            assertEquals(6, bfs.getInt("edgesTouched"));
+            // B and C, then C and D
+            assertEquals(2, bfs.getInt("queuePeak"));
+            assertTrue(!bfs.getDuration().isNegative());
+
+            RecordedEvent dijkstra=find(events, "dijkstra");
+            assertNotNull(dijkstra);
+            assertEquals("B", dijkstra.getString("source"));
+            assertEquals(4, dijkstra.getInt("nodesTouched"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
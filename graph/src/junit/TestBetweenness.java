@@ -0,0 +1,87 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import graph.analytics.Betweenness;
+import graph.compact.CompactGraph;
+import graph.compact.GraphBuilder;
+import graph.gen.GraphGenerators;
+
+public class TestBetweenness
+{
+    @Test
+    public void testPath()
+    {
+        GraphBuilder builder=new GraphBuilder(4, 3, true);
+        builder.addEdge("A", "B", 1);
+        builder.addEdge("B", "C", 1);
+        builder.addEdge("C", "D", 1);
+        CompactGraph g=builder.build();
+        double[] scores=Betweenness.exact(g);
+        // B is on the paths A-C and A-D, counted in both directions
+        assertEquals(0.0, scores[g.id("A")], 1e-9);
+        assertEquals(4.0, scores[g.id("B")], 1e-9);
+        assertEquals(4.0, scores[g.id("C")], 1e-9);
+        assertEquals(0.0, scores[g.id("D")], 1e-9);
+    }
+
+    @Test
+    public void testWeightedSplitsPaths()
+    {
+        // two shortest paths from A to D of cost 4, and a long direct edge
+        GraphBuilder builder=new GraphBuilder(4, 5, true);
+        builder.addEdge("A", "B", 1);
+        builder.addEdge("B", "D", 3);
+        builder.addEdge("A", "C", 2);
+        builder.addEdge("C", "D", 2);
+        builder.addEdge("A", "D", 9);
+        CompactGraph g=builder.build();
+        ForkJoinPool pool=new ForkJoinPool(3);
+        try {
+            double[] scores=Betweenness.exact(g, pool);
+            assertEquals(1.0, scores[g.id("B")], 1e-9);
+            assertEquals(1.0, scores[g.id("C")], 1e-9);
+            assertEquals(0.0, scores[g.id("D")], 1e-9);
+            // A is on the only shortest path from B to C, in both directions
+            assertEquals(2.0, scores[g.id("A")], 1e-9);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectsNonPositiveWeights()
+    {
+        GraphBuilder builder=new GraphBuilder(3, 2, true);
+        builder.addEdge("A", "B", 2);
+        builder.addEdge("B", "C", 0);
+        CompactGraph g=builder.build();
+        try {
+            Betweenness.exact(g);
+            fail("Should have thrown an exception");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testApproximateWithinBound()
+    {
+        CompactGraph g=GraphGenerators.erdosRenyi(300, 1200, 7);
+        int n=g.nodeCount();
+        double[] exact=Betweenness.exact(g);
+        int samples=Betweenness.samplesFor(n, 0.05, 0.01);
+        double[] approx=Betweenness.approximate(g, samples, 42);
+        double bound=Betweenness.errorBound(n, samples, 0.01)*n*(n-1);
+        assertTrue(bound<=0.05*n*(n-1)+1e-9);
+        for (int v=0; v<n; v++) {
+            assertEquals(exact[v], approx[v], bound);
+        }
+    }
+}
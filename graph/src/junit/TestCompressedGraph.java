@@ -0,0 +1,164 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import graph.IGraph;
+import graph.INode;
+import graph.compact.CompactGraph;
+import graph.compact.CompressedGraph;
+import graph.compact.GraphBuilder;
+import graph.compact.NodeNames;
+import graph.gen.GraphGenerators;
+import graph.impl.SYSolver;
+
+public class TestCompressedGraph
+{
+    private static void checkSameLists(CompactGraph g, CompressedGraph c) {
+        assertEquals(g.nodeCount(), c.nodeCount());
+        assertEquals(g.edgeCount(), c.edgeCount());
+        CompressedGraph.Decoder decoder=c.decoder();
+        int[] targets=new int[c.maxDegree()];
+        int[] weights=new int[c.maxDegree()];
+        for (int u=0; u<g.nodeCount(); u++) {
+            int d=decoder.decode(u, targets, weights);
+            assertEquals(g.degree(u), d);
+            assertEquals(d, c.degree(u));
+            for (int k=0; k<d; k++) {
+                int e=g.offsets()[u]+k;
+                assertEquals(g.targets()[e], targets[k]);
+                assertEquals(g.weight(e), weights[k]);
+            }
+        }
+    }
+
+    private static Map<String,Integer> byName(Map<INode,Integer> distances) {
+        Map<String,Integer> result=new HashMap<String,Integer>();
+        for (Map.Entry<INode,Integer> entry : distances.entrySet()) {
+            result.put(entry.getKey().getName(), entry.getValue());
+        }
+        return result;
+    }
+
+    @Test
+    public void testRandomGraphs()
+    {
+        CompactGraph rmat=GraphGenerators.rmat(12, 40000, 0.57, 0.19, 0.19, 1);
+        CompactGraph random=GraphGenerators.erdosRenyi(3000, 20000, 2);
+        for (CompactGraph g : new CompactGraph[] {rmat, random}) {
+            checkSameLists(g, CompressedGraph.compress(g, 0, 0));
+            checkSameLists(g, CompressedGraph.compress(g, 7, 3));
+            checkSameLists(g, CompressedGraph.compress(g, 3, 1));
+        }
+    }
+
+    @Test
+    public void testReferencesShrinkSimilarLists()
+    {
+        // every node of the first half points at most of the second half,
+        // so consecutive lists are nearly the same
+        GraphBuilder builder=new GraphBuilder(400, 40000, false);
+        for (int u=0; u<200; u++) {
+            for (int v=200; v<400; v++) {
+                if ((u*7+v)%13!=0) {
+                    builder.addEdge(String.format("%03d", u), String.format("%03d", v), 1);
+                }
+            }
+        }
+        CompactGraph g=builder.build().sortedByName();
+        CompressedGraph plain=CompressedGraph.compress(g, 0, 0);
+        CompressedGraph referenced=CompressedGraph.compress(g, 7, 3);
+        checkSameLists(g, plain);
+        checkSameLists(g, referenced);
+        assertTrue(referenced.sizeInBytes()*2<plain.sizeInBytes());
+        assertTrue(plain.bitsPerEdge()<16);
+    }
+
+    @Test
+    public void testScotlandYard() throws Exception
+    {
+        IGraph g=SYSolver.readGraphFromFile(new FileInputStream("files/scotmap.txt"));
+        CompactGraph compact=CompactGraph.copyOf(g);
+        CompressedGraph c=CompressedGraph.of(g);
+        checkSameLists(compact, c);
+        assertEquals(byName(g.dijkstra("1")), byName(c.dijkstra("1")));
+
+        final List<String> expected=new ArrayList<String>();
+        compact.breadthFirstSearch("1", n -> expected.add(n.getName()));
+        final List<String> actual=new ArrayList<String>();
+        c.breadthFirstSearch("1", n -> actual.add(n.getName()));
+        assertEquals(expected, actual);
+        expected.clear();
+        actual.clear();
+        compact.depthFirstSearch("1", n -> expected.add(n.getName()));
+        c.depthFirstSearch("1", n -> actual.add(n.getName()));
+        assertEquals(expected, actual);
+
+        INode one=c.getOrCreateNode("1");
+        assertTrue(one.hasEdge(c.getOrCreateNode("8")));
+        assertFalse(one.hasEdge(c.getOrCreateNode("2")));
+        assertEquals(g.getOrCreateNode("1").getWeight(g.getOrCreateNode("8")), one.getWeight(c.getOrCreateNode("8")));
+        assertEquals(199, c.primJarnik().getAllNodes().size());
+        try {
+            one.addDirectedEdgeToNode(c.getOrCreateNode("2"), 1);
+            fail("Should have thrown an exception");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLookupsOnHub() throws Exception
+    {
+        // node 0 is a hub with 300000 neighbors, all of them leaves, and the
+        // edge to leaf v has weight v
+        int n=300001;
+        GraphBuilder builder=new GraphBuilder(NodeNames.numbered(n, 0), n, true);
+        for (int v=1; v<n; v++) {
+            builder.addEdge(0, v, v);
+        }
+        final CompressedGraph c=CompressedGraph.of(builder.build());
+        final INode hub=c.getOrCreateNode("0");
+        assertEquals(n-1, hub.getNeighbors().size());
+        assertEquals("1", hub.getNeighbors().iterator().next().getName());
+        assertFalse(c.getOrCreateNode("7").hasEdge(c.getOrCreateNode("8")));
+        try {
+            c.getOrCreateNode("7").getWeight(c.getOrCreateNode("8"));
+            fail("Should have thrown an exception");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        // lookups from several threads at once, in both directions
+        final List<String> errors=new ArrayList<String>();
+        Thread[] threads=new Thread[4];
+        for (int t=0; t<threads.length; t++) {
+            final int first=t+1;
+            threads[t]=new Thread(() -> {
+                for (int v=first; v<n; v+=997) {
+                    INode leaf=c.node(v);
+                    if (!leaf.hasEdge(hub) || !hub.hasEdge(leaf) || leaf.getWeight(hub)!=v
+                            || hub.getWeight(leaf)!=v || leaf.getNeighbors().size()!=1) {
+                        synchronized (errors) {
+                            errors.add(leaf.getName());
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+    }
+}
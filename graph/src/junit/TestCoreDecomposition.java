@@ -0,0 +1,78 @@
+package junit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import graph.analytics.CoreDecomposition;
+import graph.compact.CompactGraph;
+import graph.compact.GraphBuilder;
+import graph.compact.NodeNames;
+import graph.gen.GraphGenerators;
+
+public class TestCoreDecomposition
+{
+    @Test
+    public void testCliqueWithTail()
+    {
+        // a 4-clique A-D, a triangle hanging off D, and a tail E-F-G
+        GraphBuilder builder=new GraphBuilder(8, 12, true);
+        String[] clique={"A", "B", "C", "D"};
+        for (int i=0; i<4; i++) {
+            for (int j=i+1; j<4; j++) {
+                builder.addEdge(clique[i], clique[j], 1);
+            }
+        }
+        builder.addEdge("D", "E", 1);
+        builder.addEdge("E", "H", 1);
+        builder.addEdge("H", "D", 1);
+        builder.addEdge("E", "F", 1);
+        builder.addEdge("F", "G", 1);
+        CompactGraph g=builder.build();
+        CoreDecomposition cores=CoreDecomposition.peel(g);
+        assertEquals(3, cores.coreNumber(g.id("A")));
+        assertEquals(3, cores.coreNumber(g.id("D")));
+        assertEquals(2, cores.coreNumber(g.id("E")));
+        assertEquals(2, cores.coreNumber(g.id("H")));
+        assertEquals(1, cores.coreNumber(g.id("F")));
+        assertEquals(1, cores.coreNumber(g.id("G")));
+        assertEquals(3, cores.maxCore());
+
+        CompactGraph core=cores.kCore(3);
+        assertEquals(4, core.nodeCount());
+        assertEquals(12, core.edgeCount());
+        assertEquals(8, g.nodeCount());
+        assertArrayEquals(cores.coreNumbers(), CoreDecomposition.hIndex(g).coreNumbers());
+    }
+
+    @Test
+    public void testPeelingMatchesHIndex()
+    {
+        CompactGraph g=GraphGenerators.rmat(12, 40000, 0.57, 0.19, 0.19, 5);
+        CoreDecomposition peeled=CoreDecomposition.peel(g);
+        assertArrayEquals(peeled.coreNumbers(), CoreDecomposition.hIndex(g).coreNumbers());
+        // every node of the k-core has at least k neighbors inside it
+        int k=peeled.maxCore();
+        CompactGraph core=peeled.kCore(k);
+        for (int u=0; u<core.nodeCount(); u++) {
+            assertTrue(core.degree(u)>=k);
+        }
+    }
+
+    @Test
+    public void testStar()
+    {
+        // one hub, in one range, and a leaf in every other range
+        GraphBuilder builder=new GraphBuilder(NodeNames.numbered(5001, 0), 5000, true);
+        for (int v=1; v<=5000; v++) {
+            builder.addEdge(0, v, 1);
+        }
+        CompactGraph g=builder.build();
+        CoreDecomposition cores=CoreDecomposition.hIndex(g);
+        assertArrayEquals(CoreDecomposition.peel(g).coreNumbers(), cores.coreNumbers());
+        assertEquals(1, cores.maxCore());
+        assertEquals(1, cores.coreNumber(0));
+    }
+}
@@ -0,0 +1,166 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import graph.impl.DetectivePlanner;
+import graph.impl.DetectivePlanner.Move;
+import graph.impl.DetectivePlanner.Plan;
+import graph.impl.MrXTracker;
+import graph.impl.ScotlandYardMap;
+import graph.impl.ScotlandYardMap.Ticket;
+import graph.impl.TranspositionTable;
+
+public class TestDetectivePlanner
+{
+    private static ScotlandYardMap readMap() throws Exception {
+        return ScotlandYardMap.read(new FileInputStream("files/scotmap.txt"));
+    }
+
+    private static boolean hasRoute(ScotlandYardMap map, String from, String to, Ticket ticket) {
+        int u=map.id(from);
+        for (int e=map.offsets(ticket)[u]; e<map.offsets(ticket)[u+1]; e++) {
+            if (map.targets(ticket)[e]==map.id(to)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testTranspositionTable() throws Exception
+    {
+        TranspositionTable table=new TranspositionTable(1000);
+        assertEquals(1024, table.capacity());
+        assertEquals(-1, table.find(42));
+        int slot=table.findOrCreate(42);
+        assertEquals(slot, table.findOrCreate(42));
+        assertEquals(slot, table.find(42));
+        assertTrue(table.findOrCreate(0)!=slot);
+        table.addVisit(slot);
+        table.addVisit(slot);
+        table.addReward(slot, 1.0);
+        assertEquals(2, table.visits(slot));
+        assertEquals(0.5, table.meanReward(slot), 1e-6);
+        assertEquals(0, table.visits(-1));
+
+        // many threads counting into the same states
+        final TranspositionTable shared=new TranspositionTable(1<<12);
+        Thread[] threads=new Thread[4];
+        for (int t=0; t<threads.length; t++) {
+            threads[t]=new Thread(() -> {
+                for (int i=0; i<10000; i++) {
+                    int s=shared.findOrCreate(i%100*0x9E3779B97F4A7C15L);
+                    shared.addVisit(s);
+                    shared.addReward(s, 0.25);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(100, shared.size());
+        int s=shared.find(7*0x9E3779B97F4A7C15L);
+        assertEquals(400, shared.visits(s));
+        assertEquals(0.25, shared.meanReward(s), 1e-6);
+        shared.clear();
+        assertEquals(0, shared.size());
+    }
+
+    @Test
+    public void testCatchesKnownMrX() throws Exception
+    {
+        ScotlandYardMap map=readMap();
+        MrXTracker tracker=new MrXTracker(map);
+        tracker.surface("1");
+        tracker.move(Ticket.UNDERGROUND);
+        ForkJoinPool pool=new ForkJoinPool(2);
+        try {
+            DetectivePlanner planner=new DetectivePlanner(map, pool, 1<<16);
+            planner.setMaxPlayouts(5000);
+            Plan plan=planner.plan(tracker, Arrays.asList("47"), new int[][] {{10, 8, 4}}, 1, 10000);
+            assertEquals(1, plan.getMoves().size());
+            Move move=plan.getMoves().get(0);
+            assertEquals("46", move.getStation());
+            assertEquals(Ticket.TAXI, move.getTicket());
+            assertTrue(plan.getPlayouts()>=5000);
+            assertTrue(plan.getValue()>0.9);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMovesAreLegal() throws Exception
+    {
+        ScotlandYardMap map=readMap();
+        MrXTracker tracker=new MrXTracker(map);
+        tracker.surface("100");
+        tracker.move(Ticket.ANY);
+        List<String> detectives=Arrays.asList("13", "26", "29", "34", "50");
+        int[][] tickets={{10, 8, 4}, {0, 8, 4}, {10, 0, 0}, {10, 8, 4}, {0, 0, 0}};
+        tracker.detectivesAt(detectives);
+        ForkJoinPool pool=new ForkJoinPool(4);
+        try {
+            DetectivePlanner planner=new DetectivePlanner(map, pool, 1<<18);
+            planner.setMaxPlayouts(20000);
+            Plan plan=planner.plan(tracker, detectives, tickets, 3, 10000);
+            assertEquals(5, plan.getMoves().size());
+            assertTrue(plan.getPlayoutsPerSecond()>0);
+            assertTrue(planner.getTable().size()>1);
+            Set<String> taken=new HashSet<String>();
+            for (Move move : plan.getMoves()) {
+                int i=move.getDetective();
+                if (move.getTicket()==null) {
+                    // no ticket for any route from here
+                    assertEquals(detectives.get(i), move.getStation());
+                } else {
+                    assertTrue(tickets[i][move.getTicket().ordinal()]>0);
+                    assertTrue(hasRoute(map, detectives.get(i), move.getStation(), move.getTicket()));
+                }
+                assertTrue(taken.add(move.getStation()));
+            }
+            assertNull(plan.getMoves().get(4).getTicket());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBadArguments() throws Exception
+    {
+        ScotlandYardMap map=readMap();
+        MrXTracker tracker=new MrXTracker(map);
+        tracker.surface("1");
+        ForkJoinPool pool=new ForkJoinPool(1);
+        try {
+            DetectivePlanner planner=new DetectivePlanner(map, pool, 1<<10);
+            try {
+                planner.plan(tracker, Arrays.asList("2", "3"), new int[][] {{1, 1, 1}}, 1, 10);
+                fail("Should have thrown an exception");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            try {
+                planner.plan(tracker, Arrays.asList("1"), new int[][] {{1, 1, 1}}, 1, 10);
+                fail("Should have thrown an exception");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
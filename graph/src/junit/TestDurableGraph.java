@@ -0,0 +1,213 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import graph.GraphProviders;
+import graph.INode;
+import graph.durable.DurableGraph;
+
+public class TestDurableGraph
+{
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files=Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static int edges(DurableGraph g) {
+        int count=0;
+        for (INode node : g.getAllNodes()) {
+            count+=node.getNeighbors().size();
+        }
+        return count;
+    }
+
+    @Test
+    public void testReopenReplaysLog() throws Exception
+    {
+        Path dir=Files.createTempDirectory("durable");
+        try {
+            try (DurableGraph g=DurableGraph.open(dir)) {
+                g.getOrCreateNode("A").addUndirectedEdgeToNode(g.getOrCreateNode("B"), 3);
+                g.getOrCreateNode("B").addDirectedEdgeToNode(g.getOrCreateNode("C"), 4);
+                g.getOrCreateNode("lonely");
+                g.getOrCreateNode("C").addUndirectedEdgeToNode(g.getOrCreateNode("A"), 9);
+                g.getOrCreateNode("C").removeUndirectedEdgeToNode(g.getOrCreateNode("A"));
+            }
+            try (DurableGraph g=DurableGraph.open(dir)) {
+                assertEquals(8, g.getReplayed());
+                assertEquals(4, g.getAllNodes().size());
+                assertTrue(g.containsNode("lonely"));
+                INode a=g.getOrCreateNode("A");
+                assertEquals(3, a.getWeight(g.getOrCreateNode("B")));
+                assertFalse(a.hasEdge(g.getOrCreateNode("C")));
+                assertFalse(g.getOrCreateNode("C").hasEdge(g.getOrCreateNode("B")));
+                assertEquals(3, edges(g));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws Exception
+    {
+        Path dir=Files.createTempDirectory("durable");
+        try {
+            try (DurableGraph g=DurableGraph.open(dir)) {
+                g.getOrCreateNode("A").addDirectedEdgeToNode(g.getOrCreateNode("B"), 1);
+            }
+            Path log=dir.resolve("log-0");
+            long size=Files.size(log);
+            // half of a record, as left by a crash in the middle of a write
+            try (OutputStream out=Files.newOutputStream(log, StandardOpenOption.APPEND)) {
+                out.write(new byte[] {0, 0, 0, 20, 1, 2, 3});
+            }
+            try (DurableGraph g=DurableGraph.open(dir)) {
+                assertEquals(size, Files.size(log));
+                assertEquals(1, edges(g));
+                g.getOrCreateNode("B").addDirectedEdgeToNode(g.getOrCreateNode("A"), 2);
+            }
+            try (DurableGraph g=DurableGraph.open(dir)) {
+                assertEquals(2, edges(g));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testUnloggableMutationIsNotApplied() throws Exception
+    {
+        // writeUTF cannot encode a name of more than 65535 bytes
+        StringBuilder name=new StringBuilder();
+        for (int i=0; i<70000; i++) {
+            name.append('x');
+        }
+        Path dir=Files.createTempDirectory("durable");
+        try {
+            try (DurableGraph g=DurableGraph.open(dir)) {
+                INode a=g.getOrCreateNode("A");
+                try {
+                    g.getOrCreateNode(name.toString());
+                    fail("Should have thrown an exception");
+                } catch (UncheckedIOException e) {
+                    // expected
+                }
+                // a node of another graph, since this one cannot create it
+                INode other=GraphProviders.get("impl").createGraph().getOrCreateNode(name.toString());
+                try {
+                    a.addDirectedEdgeToNode(other, 1);
+                    fail("Should have thrown an exception");
+                } catch (UncheckedIOException e) {
+                    // expected
+                }
+                assertFalse(g.containsNode(name.toString()));
+                assertEquals(1, g.getAllNodes().size());
+                assertEquals(0, edges(g));
+            }
+            try (DurableGraph g=DurableGraph.open(dir)) {
+                assertEquals(1, g.getReplayed());
+                assertEquals(1, g.getAllNodes().size());
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testCompaction() throws Exception
+    {
+        Path dir=Files.createTempDirectory("durable");
+        try {
+            try (DurableGraph g=DurableGraph.open(dir)) {
+                for (int i=0; i<100; i++) {
+                    g.getOrCreateNode("n"+i).addUndirectedEdgeToNode(g.getOrCreateNode("n"+(i+1)), i);
+                }
+                g.compact().get();
+                g.getOrCreateNode("n0").removeUndirectedEdgeToNode(g.getOrCreateNode("n1"));
+                g.compact().get();
+                g.getOrCreateNode("n0").addDirectedEdgeToNode(g.getOrCreateNode("n50"), 7);
+                assertEquals(2, g.getGeneration());
+            }
+            List<String> files=new ArrayList<String>();
+            try (Stream<Path> list=Files.list(dir)) {
+                list.forEach(p -> files.add(p.getFileName().toString()));
+            }
+            files.sort(null);
+            assertEquals(List.of("log-2", "snapshot-2"), files);
+            try (DurableGraph g=DurableGraph.open(dir)) {
+                // only the mutation after the last compaction is replayed
+                assertEquals(1, g.getReplayed());
+                assertEquals(101, g.getAllNodes().size());
+                assertEquals(2*99+1, edges(g));
+                assertEquals(7, g.getOrCreateNode("n0").getWeight(g.getOrCreateNode("n50")));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception
+    {
+        Path dir=Files.createTempDirectory("durable");
+        try {
+            try (DurableGraph g=DurableGraph.open(dir)) {
+                for (int i=0; i<8; i++) {
+                    g.getOrCreateNode("w"+i);
+                }
+                long before=g.getSyncs();
+                final CyclicBarrier start=new CyclicBarrier(8);
+                List<Thread> threads=new ArrayList<Thread>();
+                for (int t=0; t<8; t++) {
+                    final String src="w"+t;
+                    Thread thread=new Thread(() -> {
+                        try {
+                            start.await();
+                        } catch (InterruptedException | BrokenBarrierException e) {
+                            throw new IllegalStateException(e);
+                        }
+                        for (int i=0; i<100; i++) {
+                            g.getOrCreateNode(src).addDirectedEdgeToNode(g.getOrCreateNode(src+"-"+i), i);
+                        }
+                    });
+                    threads.add(thread);
+                    thread.start();
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                // 1600 records; writers that arrive during an fsync share
+                // the next one, so there are far fewer fsyncs than records
+                long syncs=g.getSyncs()-before;
+                assertTrue(syncs>0);
+                assertTrue(syncs<1200);
+            }
+            try (DurableGraph g=DurableGraph.open(dir)) {
+                assertEquals(808, g.getAllNodes().size());
+                assertEquals(800, edges(g));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+}
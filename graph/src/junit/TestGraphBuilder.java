@@ -0,0 +1,152 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import graph.GraphFactories;
+import graph.GraphProviders;
+import graph.IGraph;
+import graph.INode;
+import graph.NodeVisitor;
+import graph.compact.CompactGraph;
+import graph.compact.GraphBuilder;
+import graph.compact.NodeNames;
+import graph.impl.SYSolver;
+
+public class TestGraphBuilder
+{
+    @Test
+    public void testLastEdgeWins()
+    {
+        GraphBuilder builder=new GraphBuilder(3, 4, true);
+        builder.addEdge("A", "B", 3);
+        builder.addEdge("B", "C", 4);
+        builder.addEdge("B", "A", 7);
+        builder.addEdge("C", "C", 1);
+        
+        CompactGraph compact=builder.build();
+        assertEquals(3, compact.nodeCount());
+        // A-B and B-C in both directions; the self loop is dropped
+        assertEquals(4, compact.edgeCount());
+        assertEquals(7, compact.getOrCreateNode("A").getWeight(compact.getOrCreateNode("B")));
+        assertEquals(7, compact.getOrCreateNode("B").getWeight(compact.getOrCreateNode("A")));
+    }
+    
+    @Test
+    public void testBuildMutableGraph()
+    {
+        GraphBuilder builder=new GraphBuilder(3, 3, true);
+        builder.addEdges(new String[] {"A", "B", "A"}, new String[] {"B", "C", "B"}, new int[] {5, 6, 8});
+        IGraph g=builder.build(GraphProviders.get("impl"));
+        INode a=g.getOrCreateNode("A");
+        INode b=g.getOrCreateNode("B");
+        INode c=g.getOrCreateNode("C");
+        assertEquals(3, g.getAllNodes().size());
+        assertEquals(8, a.getWeight(b));
+        assertEquals(8, b.getWeight(a));
+        assertEquals(6, c.getWeight(b));
+        assertFalse(a.hasEdge(c));
+        // the result is a normal graph, so it can still be changed
+        a.addUndirectedEdgeToNode(c, 2);
+        assertTrue(c.hasEdge(a));
+    }
+    
+    @Test
+    public void testDirectedIdBatches()
+    {
+        GraphBuilder builder=new GraphBuilder(NodeNames.numbered(4, 1), 3, false);
+        builder.addEdges(new int[] {0, 1, 2}, new int[] {1, 2, 3}, null);
+        CompactGraph g=builder.build();
+        assertEquals(4, g.nodeCount());
+        assertEquals(3, g.edgeCount());
+        assertTrue(g.getOrCreateNode("1").hasEdge(g.getOrCreateNode("2")));
+        assertFalse(g.getOrCreateNode("2").hasEdge(g.getOrCreateNode("1")));
+        assertFalse(g.isWeighted());
+    }
+    
+    @Test
+    public void testSortedByName()
+    {
+        GraphBuilder builder=new GraphBuilder(5, 5, true);
+        builder.addEdge("E", "A", 2);
+        builder.addEdge("E", "C", 3);
+        builder.addEdge("E", "B", 4);
+        builder.addEdge("A", "D", 5);
+        builder.addEdge("B", "C", 6);
+        CompactGraph g=builder.build().sortedByName();
+        assertEquals(g, g.sortedByName());
+        for (int i=0; i<g.nodeCount(); i++) {
+            assertEquals(String.valueOf((char)('A'+i)), g.name(i));
+        }
+        assertEquals(3, g.getOrCreateNode("E").getWeight(g.getOrCreateNode("C")));
+        
+        final StringBuilder order=new StringBuilder();
+        g.breadthFirstSearch("E", new NodeVisitor() {
+            public void visit(INode node) {
+                order.append(node.getName());
+            }
+        });
+        assertEquals("EABCD", order.toString());
+        order.setLength(0);
+        g.depthFirstSearch("E", new NodeVisitor() {
+            public void visit(INode node) {
+                order.append(node.getName());
+            }
+        });
+        assertEquals("ECBAD", order.toString());
+        
+        int[] common=new int[2];
+        assertEquals(0, g.commonNeighbors(g.id("D"), g.id("B"), null));
+        assertEquals(1, g.commonNeighbors(g.id("C"), g.id("B"), common));
+        assertEquals("E", g.name(common[0]));
+        assertEquals(1, g.countCommonNeighbors(g.id("C"), g.id("B")));
+    }
+    
+    @Test
+    public void testSameOrderAsGraph() throws Exception
+    {
+        IGraph g=SYSolver.readGraphFromFile(new FileInputStream("files/scotmap.txt"));
+        CompactGraph compact=CompactGraph.copyOf(g);
+        for (String start : new String[] {"1", "100", "199"}) {
+            final List<String> expected=new ArrayList<String>();
+            final List<String> actual=new ArrayList<String>();
+            g.depthFirstSearch(start, n -> expected.add(n.getName()));
+            compact.depthFirstSearch(start, n -> actual.add(n.getName()));
+            assertEquals(expected, actual);
+            expected.clear();
+            actual.clear();
+            g.breadthFirstSearch(start, n -> expected.add(n.getName()));
+            compact.breadthFirstSearch(start, n -> actual.add(n.getName()));
+            assertEquals(expected, actual);
+        }
+    }
+    
+    @Test
+    public void testSelfLoopsReachProviderGraphs() throws Exception
+    {
+        IGraph g=GraphFactories.createUndirectedGraphFromAdjacencyList(
+                new ByteArrayInputStream("A A\nA B\n".getBytes("UTF-8")));
+        INode a=g.getOrCreateNode("A");
+        assertTrue(a.hasEdge(a));
+        assertEquals(2, a.getNeighbors().size());
+        
+        GraphBuilder builder=new GraphBuilder(2, 3, false);
+        builder.addEdge("A", "A", 4);
+        builder.addEdge("A", "B", 1);
+        builder.addEdge("A", "A", 9);
+        IGraph directed=builder.build(GraphProviders.get("impl"));
+        a=directed.getOrCreateNode("A");
+        assertEquals(9, a.getWeight(a));
+        assertFalse(directed.getOrCreateNode("B").hasEdge(a));
+        // the compact graph still has no self loops
+        assertEquals(1, builder.build().edgeCount());
+    }
+}
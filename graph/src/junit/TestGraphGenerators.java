@@ -0,0 +1,134 @@
+package junit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import graph.GridGraph;
+import graph.IGraph;
+import graph.INode;
+import graph.compact.CompactGraph;
+import graph.gen.GraphGenerators;
+import graph.gen.MazeGenerator;
+
+public class TestGraphGenerators
+{
+    private static TreeSet<String> neighborNames(INode n) {
+        TreeSet<String> names=new TreeSet<String>();
+        for (INode m : n.getNeighbors()) {
+            names.add(m.getName());
+        }
+        return names;
+    }
+    
+    @Test
+    public void testGridMatchesGridGraph()
+    {
+        IGraph g=GridGraph.makeGridGraph(4, 5);
+        CompactGraph c=GraphGenerators.grid(4, 5);
+        assertEquals(g.getAllNodes().size(), c.nodeCount());
+        for (INode n : g.getAllNodes()) {
+            assertTrue(c.containsNode(n.getName()));
+            assertEquals(neighborNames(n), neighborNames(c.getOrCreateNode(n.getName())));
+        }
+        assertFalse(c.containsNode("r4c0"));
+        assertFalse(c.containsNode("r03c0"));
+    }
+    
+    @Test
+    public void testGridDijkstra()
+    {
+        CompactGraph c=GraphGenerators.grid(4, 5);
+        Map<INode,Integer> costs=c.dijkstra("r0c0");
+        assertEquals(20, costs.size());
+        assertEquals(7, (int)costs.get(c.getOrCreateNode("r3c4")));
+    }
+    
+    @Test
+    public void testSeededGeneratorsAreDeterministic()
+    {
+        CompactGraph a=GraphGenerators.rmat(12, 200000, 0.57, 0.19, 0.19, 42);
+        CompactGraph b=GraphGenerators.rmat(12, 200000, 0.57, 0.19, 0.19, 42);
+        assertArrayEquals(a.offsets(), b.offsets());
+        assertArrayEquals(a.targets(), b.targets());
+        
+        CompactGraph e1=GraphGenerators.erdosRenyi(100000, 300000, 7);
+        CompactGraph e2=GraphGenerators.erdosRenyi(100000, 300000, 7);
+        assertArrayEquals(e1.targets(), e2.targets());
+        // with so few edges for so many nodes, duplicates are very rare
+        assertTrue(e1.edgeCount()>2*299000);
+    }
+    
+    @Test
+    public void testRandomGeometricEdgesAreSymmetric()
+    {
+        CompactGraph g=GraphGenerators.randomGeometric(2000, 0.05, 3);
+        assertTrue(g.edgeCount()>0);
+        int[] offsets=g.offsets();
+        int[] targets=g.targets();
+        for (int u=0; u<g.nodeCount(); u++) {
+            for (int e=offsets[u]; e<offsets[u+1]; e++) {
+                int back=g.findEdge(targets[e], u);
+                assertTrue(back>=0);
+                assertEquals(g.weight(e), g.weight(back));
+            }
+        }
+    }
+    
+    /**
+     * Check that the passages form a spanning tree of the grid: every passage
+     * joins two neighboring cells that were not already connected, and there
+     * are exactly one fewer passages than cells.
+     */
+    private static void checkMaze(final int rows, final int cols, String algorithm) {
+        final int[] parent=new int[rows*cols];
+        for (int i=0; i<parent.length; i++) {
+            parent[i]=i;
+        }
+        final int[] count={0};
+        MazeGenerator.EdgeSink sink=new MazeGenerator.EdgeSink() {
+            @Override
+            public void edge(int from, int to) {
+                int dr=Math.abs(from/cols-to/cols);
+                int dc=Math.abs(from%cols-to%cols);
+                assertEquals(1, dr+dc);
+                int a=root(parent, from);
+                int b=root(parent, to);
+                assertTrue(a!=b);
+                parent[a]=b;
+                count[0]++;
+            }
+        };
+        if (algorithm.equals("dfs")) {
+            MazeGenerator.depthFirst(rows, cols, 11, sink);
+        } else if (algorithm.equals("kruskal")) {
+            MazeGenerator.kruskal(rows, cols, 11, sink);
+        } else {
+            MazeGenerator.wilson(rows, cols, 11, sink);
+        }
+        assertEquals(rows*cols-1, count[0]);
+    }
+    
+    private static int root(int[] parent, int x) {
+        while (parent[x]!=x) {
+            parent[x]=parent[parent[x]];
+            x=parent[x];
+        }
+        return x;
+    }
+    
+    @Test
+    public void testMazesAreSpanningTrees()
+    {
+        checkMaze(37, 23, "dfs");
+        checkMaze(37, 23, "kruskal");
+        checkMaze(37, 23, "wilson");
+        checkMaze(1, 50, "dfs");
+    }
+}
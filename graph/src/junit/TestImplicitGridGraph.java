@@ -0,0 +1,96 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import graph.GridGraph;
+import graph.IGraph;
+import graph.INode;
+import graph.NodeVisitor;
+import graph.compact.ImplicitGridGraph;
+
+public class TestImplicitGridGraph
+{
+    @Test
+    public void testSameNeighborsAsGridGraph()
+    {
+        IGraph g=GridGraph.makeGridGraph(3, 4);
+        ImplicitGridGraph grid=new ImplicitGridGraph(3, 4);
+        assertEquals(12, grid.getAllNodes().size());
+        for (INode n : g.getAllNodes()) {
+            TreeSet<String> expected=new TreeSet<String>();
+            for (INode m : n.getNeighbors()) {
+                expected.add(m.getName());
+            }
+            TreeSet<String> actual=new TreeSet<String>();
+            for (INode m : grid.getOrCreateNode(n.getName()).getNeighbors()) {
+                actual.add(m.getName());
+            }
+            assertEquals(expected, actual);
+        }
+    }
+    
+    @Test
+    public void testBlockedCells()
+    {
+        // 3x3 grid with the middle column blocked except for the bottom row:
+        // r0c0 r0c1 r0c2
+        // r1c0  XX  r1c2
+        // r2c0 r2c1 r2c2
+        BitSet blocked=new BitSet();
+        blocked.set(1*3+1);
+        ImplicitGridGraph grid=new ImplicitGridGraph(3, 3, blocked, null);
+        assertFalse(grid.containsNode("r1c1"));
+        assertFalse(grid.getOrCreateNode("r0c1").hasEdge(grid.getOrCreateNode("r2c1")));
+        assertEquals(2, grid.getOrCreateNode("r1c0").getNeighbors().size());
+        
+        final LinkedList<String> visited=new LinkedList<String>();
+        grid.breadthFirstSearch("r0c0", new NodeVisitor() {
+            @Override
+            public void visit(INode n) {
+                visited.add(n.getName());
+            }
+        });
+        assertEquals(8, visited.size());
+        assertFalse(visited.contains("r1c1"));
+    }
+    
+    @Test
+    public void testCellWeights()
+    {
+        // entering the middle cell is expensive, so the shortest path
+        // from r1c0 to r1c2 goes around it
+        int[] weights=new int[] {
+            1, 1, 1,
+            1, 9, 1,
+            1, 1, 1,
+        };
+        ImplicitGridGraph grid=new ImplicitGridGraph(3, 3, null, weights);
+        INode middle=grid.getOrCreateNode("r1c1");
+        INode left=grid.getOrCreateNode("r1c0");
+        assertEquals(9, left.getWeight(middle));
+        assertEquals(1, middle.getWeight(left));
+        
+        Map<INode,Integer> costs=grid.dijkstra("r1c0");
+        assertEquals(4, (int)costs.get(grid.getOrCreateNode("r1c2")));
+        assertEquals(9, (int)costs.get(middle));
+        try {
+            grid.primJarnik();
+            fail("Should have thrown an exception");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        IGraph tree=new ImplicitGridGraph(3, 3).primJarnik();
+        assertEquals(9, tree.getAllNodes().size());
+        assertTrue(tree.containsNode("r1c1"));
+    }
+}
@@ -0,0 +1,67 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import graph.analytics.Louvain;
+import graph.compact.CompactGraph;
+import graph.compact.GraphBuilder;
+import graph.compact.NodeNames;
+
+public class TestLouvain
+{
+    @Test
+    public void testTwoCliques()
+    {
+        // two 5-cliques joined by a single light edge
+        GraphBuilder builder=new GraphBuilder(10, 21, true);
+        for (int base=0; base<10; base+=5) {
+            for (int i=0; i<5; i++) {
+                for (int j=i+1; j<5; j++) {
+                    builder.addEdge("n"+(base+i), "n"+(base+j), 3);
+                }
+            }
+        }
+        builder.addEdge("n0", "n5", 1);
+        CompactGraph g=builder.build();
+        Louvain louvain=Louvain.detect(g);
+        assertEquals(2, louvain.count());
+        for (int i=1; i<5; i++) {
+            assertEquals(louvain.community(g.id("n0")), louvain.community(g.id("n"+i)));
+            assertEquals(louvain.community(g.id("n5")), louvain.community(g.id("n"+(5+i))));
+        }
+        assertTrue(louvain.community(g.id("n0"))!=louvain.community(g.id("n5")));
+        assertEquals(Louvain.modularity(g, louvain.communities()), louvain.modularity(), 1e-12);
+        assertTrue(louvain.modularity()>0.45);
+    }
+
+    @Test
+    public void testPlantedPartition()
+    {
+        // 20 groups of 50 nodes, dense inside and sparse between
+        int groups=20;
+        int size=50;
+        int n=groups*size;
+        Random random=new Random(11);
+        GraphBuilder builder=new GraphBuilder(NodeNames.numbered(n, 0), 40000, true);
+        int[] planted=new int[n];
+        for (int u=0; u<n; u++) {
+            planted[u]=u/size;
+            for (int v=u+1; v<n; v++) {
+                double p=planted[u]==v/size ? 0.3 : 0.002;
+                if (random.nextDouble()<p) {
+                    builder.addEdge(u, v, 1);
+                }
+            }
+        }
+        CompactGraph g=builder.build();
+        Louvain louvain=Louvain.detect(g);
+        double expected=Louvain.modularity(g, planted);
+        assertTrue(louvain.modularity()+" vs "+expected, louvain.modularity()>=expected-0.01);
+        assertTrue(louvain.levels()>=1);
+    }
+}
@@ -0,0 +1,83 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileInputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import graph.GraphProviders;
+import graph.IGraph;
+import graph.MemoryFootprint;
+import graph.MemoryFootprint.Category;
+import graph.compact.CompactGraph;
+import graph.compact.CompressedGraph;
+import graph.compact.ImplicitGridGraph;
+import graph.impl.SYSolver;
+import graph.shard.ShardWorker;
+import graph.shard.ShardedGraph;
+
+public class TestMemoryFootprint
+{
+    @Test
+    public void testSmallGraph()
+    {
+        IGraph g=GraphProviders.get("impl").createGraph();
+        g.getOrCreateNode("A").addUndirectedEdgeToNode(g.getOrCreateNode("B"), 1000);
+        g.getOrCreateNode("A").addDirectedEdgeToNode(g.getOrCreateNode("C"), 5);
+        MemoryFootprint f=MemoryFootprint.of(g);
+        assertEquals(3*MemoryFootprint.object(2, 0), f.get(Category.NODES));
+        assertEquals(3*MemoryFootprint.string("A"), f.get(Category.NAMES));
+        // 1000 is boxed in each direction, 5 comes from the Integer cache
+        assertEquals(2*MemoryFootprint.boxedInt(1000), f.get(Category.WEIGHTS));
+        assertEquals(0, MemoryFootprint.boxedInt(5));
+        assertEquals(MemoryFootprint.hashMap(2)+MemoryFootprint.hashMap(1)+MemoryFootprint.hashMap(0),
+                f.get(Category.ADJACENCY));
+        long sum=0;
+        for (Category category : Category.values()) {
+            sum+=f.get(category);
+        }
+        assertEquals(sum, f.total());
+    }
+
+    @Test
+    public void testRepresentationsCompare() throws Exception
+    {
+        IGraph g=SYSolver.readGraphFromFile(new FileInputStream("files/scotmap.txt"));
+        CompactGraph compact=CompactGraph.copyOf(g);
+        MemoryFootprint hash=MemoryFootprint.of(g);
+        MemoryFootprint csr=MemoryFootprint.of(compact);
+        MemoryFootprint compressed=MemoryFootprint.of(CompressedGraph.of(compact));
+        assertTrue(csr.total()*4<hash.total());
+        assertEquals(0, csr.get(Category.NODES));
+        assertEquals(MemoryFootprint.array(4, compact.edgeCount()), csr.get(Category.ADJACENCY));
+        assertTrue(compressed.get(Category.ADJACENCY)<csr.get(Category.ADJACENCY)+csr.get(Category.WEIGHTS));
+
+        MemoryFootprint grid=MemoryFootprint.of(new ImplicitGridGraph(1000, 1000));
+        assertEquals(0, grid.get(Category.ADJACENCY));
+        assertTrue(grid.total()<100);
+    }
+
+    @Test
+    public void testUnsupportedGraph() throws Exception
+    {
+        // a sharded graph keeps its nodes in other processes
+        try (ShardWorker worker=ShardWorker.start(0);
+                ShardedGraph g=new ShardedGraph(Collections.singletonList(
+                        new InetSocketAddress(InetAddress.getLoopbackAddress(), worker.getPort())))) {
+            g.getOrCreateNode("A");
+            assertEquals(1, g.getAllNodes().size());
+            try {
+                MemoryFootprint.of(g);
+                fail("Should have thrown an exception");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
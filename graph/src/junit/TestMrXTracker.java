@@ -0,0 +1,169 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import graph.impl.MrXTracker;
+import graph.impl.SYSolver;
+import graph.impl.ScotlandYardMap;
+import graph.impl.ScotlandYardMap.Ticket;
+
+public class TestMrXTracker
+{
+    private static ScotlandYardMap readMap() throws Exception {
+        return ScotlandYardMap.read(new FileInputStream("files/scotmap.txt"));
+    }
+
+    private static void checkSumsToOne(MrXTracker tracker) {
+        double sum=0.0;
+        for (int id : tracker.possibleIds()) {
+            sum+=tracker.probability(id);
+        }
+        assertEquals(1.0, sum, 1e-9);
+    }
+
+    @Test
+    public void testMap() throws Exception
+    {
+        ScotlandYardMap map=readMap();
+        assertEquals(199, map.stationCount());
+        int one=map.id("1");
+        assertEquals(2, map.degree(one, Ticket.TAXI));
+        // 1 and 46 are joined by both bus and underground
+        assertEquals(2, map.degree(one, Ticket.BUS));
+        assertEquals(1, map.degree(one, Ticket.UNDERGROUND));
+        assertEquals(4, map.degree(one, Ticket.ANY));
+        assertEquals(-1, map.id("200"));
+        assertEquals(Ticket.UNDERGROUND, Ticket.parse("underground"));
+
+        // the graph read by SYSolver keeps one transport per pair
+        ScotlandYardMap lossy=ScotlandYardMap.of(SYSolver.readGraphFromFile(new FileInputStream("files/scotmap.txt")));
+        assertEquals(199, lossy.stationCount());
+        assertEquals(1, lossy.degree(lossy.id("1"), Ticket.BUS));
+        assertEquals(4, lossy.degree(lossy.id("1"), Ticket.ANY));
+    }
+
+    @Test
+    public void testMoves() throws Exception
+    {
+        MrXTracker tracker=new MrXTracker(readMap());
+        tracker.surface("1");
+        assertEquals(Arrays.asList("1"), tracker.possibleStations());
+        tracker.move(Ticket.TAXI);
+        assertEquals(Arrays.asList("8", "9"), tracker.possibleStations());
+        assertEquals(0.5, tracker.probability("8"), 1e-9);
+
+        tracker.move(Ticket.TAXI);
+        assertEquals(Arrays.asList("1", "18", "19", "20"), tracker.possibleStations());
+        assertEquals(1.0/3, tracker.probability("1"), 1e-9);
+        assertEquals(1.0/6, tracker.probability("18"), 1e-9);
+        assertEquals(1.0/3, tracker.probability("19"), 1e-9);
+        assertEquals(0.0, tracker.probability("8"), 1e-9);
+        checkSumsToOne(tracker);
+
+        // a detective on 19 rules it out
+        tracker.detectivesAt(Arrays.asList("19", "100"));
+        assertEquals(Arrays.asList("1", "18", "20"), tracker.possibleStations());
+        assertEquals(0.5, tracker.probability("1"), 1e-9);
+        assertFalse(tracker.isPossible("19"));
+        checkSumsToOne(tracker);
+
+        // surfacing forgets everything
+        tracker.surface("1");
+        tracker.move(Ticket.BUS);
+        assertEquals(Arrays.asList("46", "58"), tracker.possibleStations());
+        tracker.surface("1");
+        tracker.move(Ticket.UNDERGROUND);
+        assertEquals(Arrays.asList("46"), tracker.possibleStations());
+        assertEquals("46", tracker.mostLikely());
+    }
+
+    @Test
+    public void testDetectivesBlockMoves() throws Exception
+    {
+        MrXTracker tracker=new MrXTracker(readMap());
+        tracker.surface("1");
+        tracker.detectivesAt(Arrays.asList("8"));
+        tracker.move(Ticket.TAXI);
+        assertEquals(Arrays.asList("9"), tracker.possibleStations());
+        assertEquals(1.0, tracker.probability("9"), 1e-9);
+
+        tracker.surface("1");
+        tracker.detectivesAt(Arrays.asList("8", "9"));
+        try {
+            tracker.move(Ticket.TAXI);
+            fail("Should have thrown an exception");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        // the belief is unchanged
+        assertEquals(Arrays.asList("1"), tracker.possibleStations());
+        tracker.detectivesAt(Collections.<String>emptyList());
+        tracker.move(Ticket.TAXI);
+        assertEquals(2, tracker.size());
+    }
+
+    @Test
+    public void testMatchesExpansion() throws Exception
+    {
+        ScotlandYardMap map=readMap();
+        MrXTracker tracker=new MrXTracker(map);
+        Random random=new Random(7);
+        Ticket[] tickets=Ticket.values();
+        for (int game=0; game<50; game++) {
+            int start=random.nextInt(map.stationCount());
+            tracker.surface(start);
+            TreeSet<Integer> expected=new TreeSet<Integer>(Collections.singleton(start));
+            for (int round=0; round<5; round++) {
+                Ticket ticket=tickets[random.nextInt(tickets.length)];
+                TreeSet<Integer> reached=new TreeSet<Integer>();
+                for (int u : expected) {
+                    int[] off=map.offsets(ticket);
+                    for (int e=off[u]; e<off[u+1]; e++) {
+                        reached.add(map.targets(ticket)[e]);
+                    }
+                }
+                if (reached.isEmpty()) {
+                    break;
+                }
+                expected=reached;
+                tracker.move(ticket);
+                TreeSet<Integer> actual=new TreeSet<Integer>();
+                for (int id : tracker.possibleIds()) {
+                    actual.add(id);
+                }
+                assertEquals(expected, actual);
+                checkSumsToOne(tracker);
+            }
+        }
+        assertTrue(tracker.size()>0);
+    }
+
+    @Test
+    public void testUnknownStation() throws Exception
+    {
+        MrXTracker tracker=new MrXTracker(readMap());
+        try {
+            tracker.surface("0");
+            fail("Should have thrown an exception");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            tracker.move(Ticket.ANY);
+            fail("Should have thrown an exception");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
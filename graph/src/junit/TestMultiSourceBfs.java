@@ -0,0 +1,99 @@
+package junit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import graph.GraphProviders;
+import graph.IGraph;
+import graph.analytics.MultiSourceBfs;
+import graph.compact.CompactGraph;
+import graph.gen.GraphGenerators;
+
+public class TestMultiSourceBfs
+{
+    /**
+     * Hop distances from one source with an ordinary BFS.
+     */
+    private static int[] bfs(CompactGraph g, int source) {
+        int[] dist=new int[g.nodeCount()];
+        java.util.Arrays.fill(dist, -1);
+        int[] queue=new int[g.nodeCount()];
+        int head=0;
+        int tail=0;
+        dist[source]=0;
+        queue[tail++]=source;
+        while (head<tail) {
+            int u=queue[head++];
+            for (int e=g.offsets()[u]; e<g.offsets()[u+1]; e++) {
+                int v=g.targets()[e];
+                if (dist[v]<0) {
+                    dist[v]=dist[u]+1;
+                    queue[tail++]=v;
+                }
+            }
+        }
+        return dist;
+    }
+
+    @Test
+    public void testAgainstSingleSourceBfs()
+    {
+        // sparse enough to leave some nodes unreachable, with more than two
+        // batches of sources and a repeated source
+        CompactGraph g=GraphGenerators.erdosRenyi(3000, 2500, 5);
+        int[] sources=new int[150];
+        for (int i=0; i<sources.length; i++) {
+            sources[i]=(i*37)%g.nodeCount();
+        }
+        sources[100]=sources[3];
+        ForkJoinPool pool=new ForkJoinPool(3);
+        try {
+            int[][] dist=MultiSourceBfs.distances(g, sources, pool);
+            for (int i=0; i<sources.length; i++) {
+                assertArrayEquals(bfs(g, sources[i]), dist[i]);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testLevelsInOrder()
+    {
+        CompactGraph g=GraphGenerators.grid(10, 10);
+        final List<List<Integer>> levels=new ArrayList<List<Integer>>();
+        for (int i=0; i<2; i++) {
+            levels.add(new ArrayList<Integer>());
+        }
+        MultiSourceBfs.search(g, new int[] {0, 55}, (source, node, level) -> levels.get(source).add(level),
+                ForkJoinPool.commonPool());
+        for (List<Integer> l : levels) {
+            assertEquals(100, l.size());
+            for (int i=1; i<l.size(); i++) {
+                assertEquals(true, l.get(i-1)<=l.get(i));
+            }
+        }
+        assertEquals(18, (int)levels.get(0).get(99));
+    }
+
+    @Test
+    public void testClosenessOfPath()
+    {
+        IGraph g=GraphProviders.get("impl").createGraph();
+        String[] names={"A", "B", "C", "D", "E"};
+        for (int i=0; i+1<names.length; i++) {
+            g.getOrCreateNode(names[i]).addUndirectedEdgeToNode(g.getOrCreateNode(names[i+1]), 7);
+        }
+        CompactGraph c=CompactGraph.copyOf(g);
+        double[] closeness=MultiSourceBfs.closeness(c, ForkJoinPool.commonPool());
+        assertEquals(4/6.0, closeness[c.id("C")], 1e-9);
+        assertEquals(4/10.0, closeness[c.id("A")], 1e-9);
+        assertEquals(4, MultiSourceBfs.distances(g, "A", "E")[0][c.id("E")]);
+    }
+}
@@ -0,0 +1,66 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.util.Map;
+
+import org.junit.Test;
+
+import graph.IGraph;
+import graph.INode;
+import graph.compact.CompactGraph;
+import graph.compact.NameDictionary;
+import graph.impl.SYSolver;
+
+public class TestNameDictionary
+{
+    @Test
+    public void testMixedNames()
+    {
+        String[] names={"B", "A", "10", "3", "r2c1", "007", ""};
+        NameDictionary d=NameDictionary.of(names);
+        assertEquals(names.length, d.size());
+        for (int i=0; i<names.length; i++) {
+            assertEquals(names[i], d.name(i));
+            assertEquals(i, d.id(names[i]));
+        }
+        assertTrue(d.isNumeric(2));
+        // leading zeros are not canonical numbers, so "007" is kept as text
+        assertFalse(d.isNumeric(5));
+        assertEquals(-1, d.id("7"));
+        assertEquals(-1, d.id("C"));
+    }
+    
+    @Test
+    public void testBuilderDeduplicates()
+    {
+        NameDictionary.Builder builder=new NameDictionary.Builder(1);
+        for (int i=0; i<1000; i++) {
+            assertEquals(2*i, builder.getOrAdd("n"+i));
+            assertEquals(2*i+1, builder.getOrAdd(Integer.toString(5000+i)));
+        }
+        for (int i=0; i<1000; i++) {
+            assertEquals(2*i, builder.getOrAdd("n"+i));
+        }
+        NameDictionary d=builder.build();
+        assertEquals(2000, d.size());
+        assertEquals(1999, d.id("5999"));
+        assertEquals("n17", d.name(34));
+    }
+    
+    @Test
+    public void testCompactCopyOfScotlandYard() throws Exception
+    {
+        IGraph g=SYSolver.readGraphFromFile(new FileInputStream("files/scotmap.txt"));
+        CompactGraph c=CompactGraph.copyOf(g);
+        assertEquals(199, c.nodeCount());
+        Map<INode,Integer> expected=g.dijkstra("1");
+        int[] actual=c.dijkstraDistances(c.id("1"));
+        for (Map.Entry<INode,Integer> entry : expected.entrySet()) {
+            assertEquals((int)entry.getValue(), actual[c.id(entry.getKey().getName())]);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package junit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileInputStream;
+
+import org.junit.Test;
+
+import graph.GraphFactories;
+import graph.IGraph;
+import graph.analytics.PageRank;
+import graph.compact.CompactGraph;
+import graph.compact.GraphBuilder;
+
+public class TestPageRank
+{
+    private static double total(double[] ranks) {
+        double sum=0;
+        for (double r : ranks) {
+            sum+=r;
+        }
+        return sum;
+    }
+
+    @Test
+    public void testCycleIsUniform()
+    {
+        GraphBuilder builder=new GraphBuilder(4, 4, false);
+        builder.addEdge("A", "B", 1);
+        builder.addEdge("B", "C", 1);
+        builder.addEdge("C", "D", 1);
+        builder.addEdge("D", "A", 1);
+        PageRank.Result result=new PageRank(builder.build()).rank();
+        assertTrue(result.isConverged());
+        for (double r : result.getRanks()) {
+            assertEquals(0.25, r, 1e-9);
+        }
+    }
+
+    @Test
+    public void testDanglingAndTop()
+    {
+        // everything points at C, which has no outgoing edges
+        GraphBuilder builder=new GraphBuilder(3, 3, false);
+        builder.addEdge("A", "B", 1);
+        builder.addEdge("A", "C", 1);
+        builder.addEdge("B", "C", 1);
+        CompactGraph g=builder.build();
+        PageRank.Result result=new PageRank(g).rank();
+        assertEquals(1.0, total(result.getRanks()), 1e-9);
+        assertTrue(result.getRank("C")>result.getRank("B"));
+        assertTrue(result.getRank("B")>result.getRank("A"));
+        assertArrayEquals(new int[] {g.id("C"), g.id("B")}, result.top(2));
+        assertArrayEquals(new int[0], result.top(0));
+        assertArrayEquals(new int[] {g.id("C"), g.id("B"), g.id("A")}, result.top(10));
+        try {
+            result.top(-1);
+            fail("Should have thrown an exception");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPersonalizedFromIGraph() throws Exception
+    {
+        IGraph g=GraphFactories.createUndirectedGraphFromAdjacencyList(new FileInputStream("tests/BFStestGraph"));
+        PageRank pageRank=PageRank.of(g);
+        PageRank.Result result=pageRank.personalized("A");
+        assertEquals(1.0, total(result.getRanks()), 1e-9);
+        assertEquals(result.getRanks()[result.top(1)[0]], result.getRank("A"), 0);
+
+        PageRank.Result capped=pageRank.rank(0.85, 0, 3);
+        assertEquals(3, capped.getIterations());
+        assertTrue(!capped.isConverged());
+    }
+}
@@ -0,0 +1,125 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import graph.compact.CompactGraph;
+import graph.compact.GraphBuilder;
+import graph.compact.NodeNames;
+import graph.gen.GraphGenerators;
+import graph.pregel.Aggregator;
+import graph.pregel.Pregel;
+import graph.pregel.Vertex;
+import graph.pregel.VertexProgram;
+
+public class TestPregel
+{
+    /**
+     * Single source shortest paths: a vertex that learns of a shorter
+     * path passes it on along its edges.
+     */
+    private static class ShortestPaths implements VertexProgram<Integer,Integer>
+    {
+        private final int source;
+
+        ShortestPaths(int source) {
+            this.source=source;
+        }
+
+        public void compute(Vertex<Integer,Integer> vertex, Iterable<Integer> messages) {
+            int best=vertex.superstep()==0 && vertex.id()==source ? 0 : vertex.getValue();
+            for (int m : messages) {
+                best=Math.min(best, m);
+            }
+            if (best<vertex.getValue() || (vertex.superstep()==0 && vertex.id()==source)) {
+                vertex.setValue(best);
+                for (int i=0; i<vertex.outDegree(); i++) {
+                    vertex.sendMessage(vertex.target(i), best+vertex.weight(i));
+                }
+            }
+            vertex.voteToHalt();
+        }
+    }
+
+    @Test
+    public void testShortestPathsMatchDijkstra()
+    {
+        CompactGraph g=GraphGenerators.randomGeometric(2000, 0.05, 9);
+        Pregel<Integer,Integer> pregel=new Pregel<Integer,Integer>(g, 5, ForkJoinPool.commonPool());
+        pregel.setCombiner(Math::min);
+        Pregel.Result<Integer> result=pregel.run(new ShortestPaths(0), id -> Integer.MAX_VALUE);
+        int[] expected=g.dijkstraDistances(0);
+        for (int u=0; u<g.nodeCount(); u++) {
+            assertEquals(expected[u], (int)result.value(u));
+        }
+    }
+
+    @Test
+    public void testLabelPropagationWithAggregator() throws Exception
+    {
+        // two separate paths: 0-1-2-3 and 4-5-6
+        int[] src={0, 1, 2, 4, 5};
+        int[] dst={1, 2, 3, 5, 6};
+        GraphBuilder builder=new GraphBuilder(NodeNames.numbered(7, 0), 5, true);
+        builder.addEdges(src, dst, null);
+        ExecutorService threads=Executors.newFixedThreadPool(3);
+        try {
+            Pregel<Integer,Integer> pregel=new Pregel<Integer,Integer>(builder.build(), 3, threads);
+            pregel.setCombiner(Math::min).addAggregator("changed", Aggregator.sum());
+            Pregel.Result<Integer> result=pregel.run(new VertexProgram<Integer,Integer>() {
+                public void compute(Vertex<Integer,Integer> vertex, Iterable<Integer> messages) {
+                    int label=vertex.getValue();
+                    for (int m : messages) {
+                        label=Math.min(label, m);
+                    }
+                    if (vertex.superstep()==0 || label<vertex.getValue()) {
+                        vertex.setValue(label);
+                        vertex.aggregate("changed", 1);
+                        vertex.sendToNeighbors(label);
+                    }
+                    vertex.voteToHalt();
+                }
+            }, id -> id);
+            for (int u=0; u<4; u++) {
+                assertEquals(0, (int)result.value(u));
+            }
+            for (int u=4; u<7; u++) {
+                assertEquals(4, (int)result.value(u));
+            }
+            // the last superstep only delivers, so nothing changes in it
+            assertEquals(0.0, result.aggregated("changed"), 0);
+            assertEquals(5, result.supersteps());
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    public void testEdgeIndexOutOfRange()
+    {
+        // vertex 0 has one edge, and vertex 1 has its own right after it
+        GraphBuilder builder=new GraphBuilder(NodeNames.numbered(3, 0), 2, false);
+        builder.addEdge(0, 1, 1);
+        builder.addEdge(1, 2, 7);
+        Pregel<Integer,Integer> pregel=new Pregel<Integer,Integer>(builder.build(), 1, ForkJoinPool.commonPool());
+        try {
+            pregel.run(new VertexProgram<Integer,Integer>() {
+                public void compute(Vertex<Integer,Integer> vertex, Iterable<Integer> messages) {
+                    if (vertex.id()==0) {
+                        vertex.weight(vertex.outDegree());
+                    }
+                    vertex.voteToHalt();
+                }
+            }, id -> id);
+            fail("Should have thrown an exception");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import graph.IGraph;
+import graph.INode;
+import graph.impl.SYSolver;
+import graph.server.Coalescer;
+import graph.server.QueryServer;
+
+public class TestQueryServer
+{
+    private static int status(int port, String path) throws IOException {
+        HttpURLConnection c=(HttpURLConnection)new URL("http://localhost:"+port+path).openConnection();
+        int status=c.getResponseCode();
+        c.disconnect();
+        return status;
+    }
+
+    private static byte[] get(int port, String path) throws IOException {
+        HttpURLConnection c=(HttpURLConnection)new URL("http://localhost:"+port+path).openConnection();
+        assertEquals(200, c.getResponseCode());
+        try (InputStream in=c.getInputStream()) {
+            ByteArrayOutputStream out=new ByteArrayOutputStream();
+            byte[] buf=new byte[4096];
+            int n;
+            while ((n=in.read(buf))>0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    public void testCoalescer() throws Exception
+    {
+        final Coalescer<String,Integer> coalescer=new Coalescer<String,Integer>();
+        final CountDownLatch started=new CountDownLatch(1);
+        final CountDownLatch release=new CountDownLatch(1);
+        final AtomicInteger runs=new AtomicInteger();
+        final CompletableFuture<CompletableFuture<Integer>> first=new CompletableFuture<CompletableFuture<Integer>>();
+        Thread t=new Thread(() -> first.complete(coalescer.get("a", () -> {
+            runs.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 42;
+        })));
+        t.start();
+        started.await();
+
+        // joins the running computation instead of starting another one
+        CompletableFuture<Integer> second=coalescer.get("a", () -> {
+            runs.incrementAndGet();
+            return 0;
+        });
+        assertTrue(!second.isDone());
+        release.countDown();
+        assertEquals(42, (int)second.get());
+        assertEquals(42, (int)first.get().get());
+        assertEquals(1, runs.get());
+
+        // once finished, the key is computed afresh
+        assertEquals(7, (int)coalescer.get("a", () -> 7).get());
+        assertEquals(3, coalescer.getRequests());
+        assertEquals(2, coalescer.getComputations());
+    }
+
+    @Test
+    public void testQueries() throws Exception
+    {
+        IGraph g=SYSolver.readGraphFromFile(new FileInputStream("files/scotmap.txt"));
+        QueryServer server=new QueryServer(g, 0);
+        server.start();
+        try {
+            int port=server.getPort();
+            int expected=-1;
+            for (java.util.Map.Entry<INode,Integer> entry : g.dijkstra("1").entrySet()) {
+                if (entry.getKey().getName().equals("100")) {
+                    expected=entry.getValue();
+                }
+            }
+            String json=new String(get(port, "/dijkstra?source=1&target=100"), StandardCharsets.UTF_8);
+            assertEquals("{\"source\":\"1\",\"target\":\"100\",\"cost\":"+expected+"}", json);
+
+            try (DataInputStream in=new DataInputStream(
+                    new java.io.ByteArrayInputStream(get(port, "/dijkstra?source=1&format=binary")))) {
+                assertEquals(199, in.readInt());
+            }
+
+            json=new String(get(port, "/moves?start=1"), StandardCharsets.UTF_8);
+            assertTrue(json.contains("\"1\":[\"46\",\"58\",\"8\",\"9\"]"));
+
+            assertEquals(404, status(port, "/nowhere"));
+            assertEquals(400, status(port, "/dijkstra"));
+            assertEquals(404, status(port, "/dijkstra?source=nowhere"));
+            assertEquals(400, status(port, "/moves?start=1&transport=taxi"));
+            assertEquals(2, server.dijkstraStats().getRequests());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import graph.GraphFactories;
+import graph.INode;
+import graph.NodeVisitor;
+import graph.impl.Graph;
+import graph.impl.GraphMetrics;
+import graph.impl.QueryStats;
+
+public class TestQueryStats
+{
+    @Test
+    public void testDijkstraStats() throws Exception
+    {
+        Graph g=(Graph)GraphFactories.createUndirectedWeightedGraphFromEdgeList(new FileInputStream("tests/graph1.txt"));
+        QueryStats stats=new QueryStats();
+        g.dijkstra("A", stats);
+        assertEquals(g.getAllNodes().size(), stats.getNodesSettled());
+        // every pop either settles a node or is skipped as stale
+        assertEquals(stats.getHeapPops(), stats.getNodesSettled()+stats.getStaleSkipped());
+        // one push for the start node, then one for every edge relaxed
+        assertEquals(stats.getEdgesRelaxed()+1, stats.getHeapPushes());
+    }
+    
+    @Test
+    public void testMovesFrontierSizes() throws Exception
+    {
+        Graph g=(Graph)GraphFactories.createUndirectedGraphFromAdjacencyList(new FileInputStream("tests/BFStestGraph"));
+        QueryStats stats=new QueryStats();
+        g.getMoves("A", new NodeVisitor() {
+            @Override
+            public void visit(INode n) {
+            }
+        }, 1, stats);
+        // level 0 is just the start node
+        assertEquals(Integer.valueOf(1), stats.getFrontierSizes().get(0));
+        assertEquals(g.getOrCreateNode("A").getNeighbors().size(), (int)stats.getFrontierSizes().get(1));
+    }
+    
+    @Test
+    public void testHistogram()
+    {
+        GraphMetrics.Histogram h=new GraphMetrics().histogram("test");
+        for (long v : Arrays.asList(0L, 1L, 2L, 3L, 100L)) {
+            h.record(v);
+        }
+        assertEquals(5, h.getCount());
+        assertEquals(106, h.getSum());
+        assertEquals(3, h.quantile(0.8));
+        assertEquals(127, h.quantile(1.0));
+        assertTrue(GraphMetrics.global().scrape().contains("graph_dijkstra_nodes_settled_count"));
+    }
+}
@@ -0,0 +1,215 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import graph.GraphProviders;
+import graph.IGraph;
+import graph.INode;
+import graph.NodeVisitor;
+import graph.impl.SYSolver;
+import graph.shard.ShardWorker;
+import graph.shard.ShardedGraph;
+
+public class TestShardedGraph
+{
+    private static Map<String,Integer> byName(Map<INode,Integer> distances) {
+        Map<String,Integer> result=new HashMap<String,Integer>();
+        for (Map.Entry<INode,Integer> entry : distances.entrySet()) {
+            result.put(entry.getKey().getName(), entry.getValue());
+        }
+        return result;
+    }
+
+    private static Map<String,Integer> hopDistances(IGraph g, String start) {
+        Map<String,Integer> hops=new HashMap<String,Integer>();
+        LinkedList<INode> queue=new LinkedList<INode>();
+        hops.put(start, 0);
+        queue.add(g.getOrCreateNode(start));
+        while (!queue.isEmpty()) {
+            INode node=queue.removeFirst();
+            for (INode neighbor : node.getNeighbors()) {
+                if (!hops.containsKey(neighbor.getName())) {
+                    hops.put(neighbor.getName(), hops.get(node.getName())+1);
+                    queue.add(neighbor);
+                }
+            }
+        }
+        return hops;
+    }
+
+    private static int edgeCount(IGraph g) {
+        int count=0;
+        for (INode node : g.getAllNodes()) {
+            count+=node.getNeighbors().size();
+        }
+        return count;
+    }
+
+    private static long totalWeight(IGraph g) {
+        long total=0;
+        for (INode node : g.getAllNodes()) {
+            for (INode neighbor : node.getNeighbors()) {
+                total+=node.getWeight(neighbor);
+            }
+        }
+        return total;
+    }
+
+    private static IGraph undirected(IGraph g) {
+        IGraph result=GraphProviders.get("impl").createGraph();
+        for (INode node : g.getAllNodes()) {
+            INode src=result.getOrCreateNode(node.getName());
+            for (INode neighbor : node.getNeighbors()) {
+                src.addUndirectedEdgeToNode(result.getOrCreateNode(neighbor.getName()), node.getWeight(neighbor));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testScotlandYardOnThreeShards() throws Exception
+    {
+        IGraph local=SYSolver.readGraphFromFile(new FileInputStream("files/scotmap.txt"));
+        List<ShardWorker> workers=new ArrayList<ShardWorker>();
+        List<InetSocketAddress> addresses=new ArrayList<InetSocketAddress>();
+        for (int i=0; i<3; i++) {
+            ShardWorker worker=ShardWorker.start(0);
+            workers.add(worker);
+            addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), worker.getPort()));
+        }
+        try (ShardedGraph sharded=new ShardedGraph(addresses)) {
+            for (INode node : local.getAllNodes()) {
+                INode src=sharded.getOrCreateNode(node.getName());
+                for (INode neighbor : node.getNeighbors()) {
+                    src.addDirectedEdgeToNode(sharded.getOrCreateNode(neighbor.getName()), node.getWeight(neighbor));
+                }
+            }
+            assertEquals(199, sharded.getAllNodes().size());
+            assertTrue(sharded.containsNode("1"));
+            assertFalse(sharded.containsNode("200"));
+            assertEquals(byName(local.dijkstra("1")), byName(sharded.dijkstra("1")));
+            assertEquals(local.getOrCreateNode("1").getNeighbors().size(),
+                    sharded.getOrCreateNode("1").getNeighbors().size());
+
+            // BFS visits level by level, so each level is one ring of
+            // unweighted distance around the start, sorted by name
+            final List<String> order=new LinkedList<String>();
+            sharded.breadthFirstSearch("1", new NodeVisitor() {
+                public void visit(INode n) {
+                    order.add(n.getName());
+                }
+            });
+            final Map<String,Integer> hops=hopDistances(local, "1");
+            List<String> expected=new ArrayList<String>(hops.keySet());
+            expected.sort((x, y) -> {
+                int byLevel=Integer.compare(hops.get(x), hops.get(y));
+                return byLevel!=0 ? byLevel : x.compareTo(y);
+            });
+            assertEquals(199, order.size());
+            assertEquals(expected, order);
+
+            final List<String> localDfs=new ArrayList<String>();
+            final List<String> shardedDfs=new ArrayList<String>();
+            local.depthFirstSearch("1", n -> localDfs.add(n.getName()));
+            sharded.depthFirstSearch("1", n -> shardedDfs.add(n.getName()));
+            assertEquals(localDfs, shardedDfs);
+
+            IGraph tree=sharded.primJarnik();
+            assertEquals(199, tree.getAllNodes().size());
+            assertEquals(198, edgeCount(tree));
+            assertEquals(totalWeight(local.primJarnik()), totalWeight(tree));
+
+            INode a=sharded.getOrCreateNode("1");
+            INode b=sharded.getOrCreateNode("8");
+            assertTrue(a.hasEdge(b));
+            a.removeUndirectedEdgeToNode(b);
+            assertFalse(a.hasEdge(b));
+            assertFalse(b.hasEdge(a));
+        } finally {
+            for (ShardWorker worker : workers) {
+                worker.close();
+            }
+        }
+    }
+
+    @Test
+    public void testWorkerProcesses() throws Exception
+    {
+        try (ShardedGraph g=ShardedGraph.launch(2)) {
+            String[] names={"A", "B", "C", "D", "E"};
+            for (int i=0; i+1<names.length; i++) {
+                g.getOrCreateNode(names[i]).addUndirectedEdgeToNode(g.getOrCreateNode(names[i+1]), i+1);
+            }
+            g.getOrCreateNode("A").addUndirectedEdgeToNode(g.getOrCreateNode("E"), 20);
+            Map<String,Integer> distances=byName(g.dijkstra("A"));
+            assertEquals(10, (int)distances.get("E"));
+            assertEquals(6, (int)distances.get("D"));
+
+            final StringBuilder dfs=new StringBuilder();
+            g.depthFirstSearch("C", new NodeVisitor() {
+                public void visit(INode n) {
+                    dfs.append(n.getName());
+                }
+            });
+            assertEquals("CDEAB", dfs.toString());
+        }
+    }
+
+    @Test
+    public void testSpanningForestWithEqualWeights() throws Exception
+    {
+        // a 12x12 grid where every edge weighs 1, so only the tie breaking
+        // keeps the components from closing cycles, plus a separate triangle
+        // and a node on its own
+        List<ShardWorker> workers=new ArrayList<ShardWorker>();
+        List<InetSocketAddress> addresses=new ArrayList<InetSocketAddress>();
+        for (int i=0; i<4; i++) {
+            ShardWorker worker=ShardWorker.start(InetAddress.getLoopbackAddress(), 0);
+            workers.add(worker);
+            addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), worker.getPort()));
+        }
+        try (ShardedGraph sharded=new ShardedGraph(addresses)) {
+            for (int r=0; r<12; r++) {
+                for (int c=0; c<12; c++) {
+                    INode node=sharded.getOrCreateNode(r+","+c);
+                    if (r>0) {
+                        node.addUndirectedEdgeToNode(sharded.getOrCreateNode((r-1)+","+c), 1);
+                    }
+                    if (c>0) {
+                        node.addUndirectedEdgeToNode(sharded.getOrCreateNode(r+","+(c-1)), 1);
+                    }
+                }
+            }
+            sharded.getOrCreateNode("X").addUndirectedEdgeToNode(sharded.getOrCreateNode("Y"), 5);
+            sharded.getOrCreateNode("Y").addUndirectedEdgeToNode(sharded.getOrCreateNode("Z"), 2);
+            sharded.getOrCreateNode("Z").addUndirectedEdgeToNode(sharded.getOrCreateNode("X"), 3);
+            sharded.getOrCreateNode("alone");
+
+            IGraph forest=sharded.primJarnik();
+            assertEquals(148, forest.getAllNodes().size());
+            // one edge fewer than nodes in each of the three components
+            assertEquals(145, edgeCount(forest));
+            assertEquals(143+5, totalWeight(forest));
+            // still spanning: the grid is connected through the tree
+            Map<String,Integer> reached=hopDistances(undirected(forest), "0,0");
+            assertEquals(144, reached.size());
+        } finally {
+            for (ShardWorker worker : workers) {
+                worker.close();
+            }
+        }
+    }
+}
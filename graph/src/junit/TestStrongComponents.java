@@ -0,0 +1,77 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import graph.IGraph;
+import graph.INode;
+import graph.analytics.StrongComponents;
+import graph.compact.CompactGraph;
+import graph.compact.GraphBuilder;
+import graph.compact.NodeNames;
+import graph.impl.Graph;
+
+public class TestStrongComponents
+{
+    @Test
+    public void testTwoCyclesAndCondensation()
+    {
+        // A->B->C->A and D<->E, with C->D (cost 4), B->E (cost 2) and a lone F
+        IGraph g=Graph.createGraph();
+        String[][] edges={{"A", "B", "1"}, {"B", "C", "1"}, {"C", "A", "1"},
+                {"D", "E", "1"}, {"E", "D", "1"}, {"C", "D", "4"}, {"B", "E", "2"}, {"E", "F", "3"}};
+        for (String[] edge : edges) {
+            INode src=g.getOrCreateNode(edge[0]);
+            src.addDirectedEdgeToNode(g.getOrCreateNode(edge[1]), Integer.parseInt(edge[2]));
+        }
+        StrongComponents scc=StrongComponents.of(g);
+        assertEquals(3, scc.count());
+        assertEquals(scc.component("A"), scc.component("C"));
+        assertEquals(scc.component("D"), scc.component("E"));
+        assertTrue(scc.component("A")!=scc.component("D"));
+        // topological numbering
+        assertEquals(0, scc.component("A"));
+        assertEquals(1, scc.component("D"));
+        assertEquals(2, scc.component("F"));
+
+        CompactGraph dag=scc.condensation();
+        assertEquals(3, dag.nodeCount());
+        assertEquals(2, dag.edgeCount());
+        assertEquals(2, dag.weight(dag.findEdge(0, 1)));
+        assertEquals(3, dag.weight(dag.findEdge(1, 2)));
+    }
+
+    @Test
+    public void testDeepChain()
+    {
+        // a two million node cycle: far too deep for a recursive search
+        int n=2000000;
+        int[] src=new int[n];
+        int[] dst=new int[n];
+        for (int i=0; i<n; i++) {
+            src[i]=i;
+            dst[i]=(i+1)%n;
+        }
+        GraphBuilder builder=new GraphBuilder(NodeNames.numbered(n, 0), n, false);
+        builder.addEdges(src, dst, null);
+        StrongComponents scc=StrongComponents.find(builder.build());
+        assertEquals(1, scc.count());
+
+        // cutting the last edge leaves a chain of singleton components
+        src[n-1]=dst[n-1]=0;
+        CompactGraph chain=CompactGraph.fromEdges(src, dst, null, n, false, NodeNames.numbered(n, 0));
+        scc=StrongComponents.find(chain);
+        assertEquals(n, scc.count());
+        for (int i=0; i<n; i++) {
+            assertEquals(i, scc.component(i));
+        }
+        CompactGraph dag=scc.condensation();
+        for (int c=0; c<dag.nodeCount(); c++) {
+            for (int e=dag.offsets()[c]; e<dag.offsets()[c+1]; e++) {
+                assertTrue(dag.targets()[e]>c);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package junit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import graph.IGraph;
+import graph.INode;
+import graph.analytics.TopologicalOrder;
+import graph.compact.CompactGraph;
+import graph.impl.Graph;
+
+public class TestTopologicalOrder
+{
+    private static IGraph directed(String[][] edges) {
+        IGraph g=Graph.createGraph();
+        for (String[] edge : edges) {
+            INode src=g.getOrCreateNode(edge[0]);
+            src.addDirectedEdgeToNode(g.getOrCreateNode(edge[1]), Integer.parseInt(edge[2]));
+        }
+        return g;
+    }
+
+    @Test
+    public void testSchedule()
+    {
+        // two routes from A to D: A-B-D costs 5, A-C-D costs 9
+        TopologicalOrder topo=TopologicalOrder.of(directed(new String[][] {
+            {"A", "B", "2"}, {"B", "D", "3"}, {"A", "C", "1"}, {"C", "D", "8"}, {"D", "E", "1"}}));
+        CompactGraph g=topo.graph();
+        assertTrue(topo.isAcyclic());
+        assertNull(topo.findCycle());
+        assertEquals(4, topo.levelCount());
+        assertArrayEquals(new int[] {g.id("B"), g.id("C")}, topo.level(1));
+
+        int[] position=new int[g.nodeCount()];
+        for (int i=0; i<g.nodeCount(); i++) {
+            position[topo.order()[i]]=i;
+        }
+        for (int u=0; u<g.nodeCount(); u++) {
+            for (int e=g.offsets()[u]; e<g.offsets()[u+1]; e++) {
+                assertTrue(position[u]<position[g.targets()[e]]);
+            }
+        }
+
+        int a=g.id("A");
+        assertEquals(6, topo.shortestPaths(a)[g.id("E")]);
+        assertEquals(10, topo.longestPaths(a)[g.id("E")]);
+        assertEquals(Long.MAX_VALUE, topo.shortestPaths(g.id("B"))[g.id("C")]);
+        assertArrayEquals(new int[] {a, g.id("C"), g.id("D"), g.id("E")}, topo.criticalPath());
+    }
+
+    @Test
+    public void testCycle()
+    {
+        TopologicalOrder topo=TopologicalOrder.of(directed(new String[][] {
+            {"S", "A", "1"}, {"A", "B", "1"}, {"B", "C", "1"}, {"C", "A", "1"}, {"C", "T", "1"}}));
+        CompactGraph g=topo.graph();
+        assertFalse(topo.isAcyclic());
+        int[] cycle=topo.findCycle();
+        assertEquals(3, cycle.length);
+        for (int i=0; i<cycle.length; i++) {
+            assertTrue(g.findEdge(cycle[i], cycle[(i+1)%cycle.length])>=0);
+        }
+        try {
+            topo.longestPaths(g.id("S"));
+            fail("Should have thrown an exception");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testSelfLoop()
+    {
+        TopologicalOrder topo=TopologicalOrder.of(directed(new String[][] {
+            {"A", "A", "1"}, {"A", "B", "1"}}));
+        CompactGraph g=topo.graph();
+        assertFalse(topo.isAcyclic());
+        assertArrayEquals(new int[] {g.id("A")}, topo.findCycle());
+        try {
+            topo.order();
+            fail("Should have thrown an exception");
+        } catch (IllegalStateException expected) {
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package junit;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import graph.analytics.Triangles;
+import graph.compact.CompactGraph;
+import graph.compact.GraphBuilder;
+import graph.gen.GraphGenerators;
+
+public class TestTriangles
+{
+    /**
+     * Per-node triangle counts from merging the full neighbor lists.
+     */
+    private static void checkAgainstMerge(CompactGraph g, Triangles t) {
+        long total=0;
+        for (int u=0; u<g.nodeCount(); u++) {
+            long twice=0;
+            for (int e=g.offsets()[u]; e<g.offsets()[u+1]; e++) {
+                twice+=g.countCommonNeighbors(u, g.targets()[e]);
+            }
+            assertEquals(twice/2, t.triangles(u));
+            total+=twice/2;
+        }
+        assertEquals(total/3, t.total());
+    }
+
+    @Test
+    public void testCompleteGraph()
+    {
+        GraphBuilder builder=new GraphBuilder(4, 6, true);
+        String[] names={"A", "B", "C", "D"};
+        for (int i=0; i<4; i++) {
+            for (int j=i+1; j<4; j++) {
+                builder.addEdge(names[i], names[j], 1);
+            }
+        }
+        Triangles t=Triangles.count(builder.build());
+        assertEquals(4, t.total());
+        for (int u=0; u<4; u++) {
+            assertEquals(3, t.triangles(u));
+            assertEquals(1.0, t.clustering(u), 1e-9);
+        }
+        assertEquals(1.0, t.globalClustering(), 1e-9);
+    }
+
+    @Test
+    public void testSkewedListsGallop()
+    {
+        // x has two neighbors, a and b, which are both attached to 40 hubs
+        // with 100 leaves each, so the short oriented list of x is
+        // intersected with the long ones of a and b
+        GraphBuilder builder=new GraphBuilder(4100, 4100, true);
+        builder.addEdge("x", "a", 1);
+        builder.addEdge("x", "b", 1);
+        builder.addEdge("a", "b", 1);
+        for (int h=0; h<40; h++) {
+            builder.addEdge("a", "h"+h, 1);
+            builder.addEdge("b", "h"+h, 1);
+            for (int leaf=0; leaf<100; leaf++) {
+                builder.addEdge("h"+h, "h"+h+"-"+leaf, 1);
+            }
+        }
+        CompactGraph g=builder.build();
+        Triangles t=Triangles.count(g);
+        assertEquals(41, t.total());
+        assertEquals(1, t.triangles(g.id("x")));
+        assertEquals(41, t.triangles(g.id("a")));
+        checkAgainstMerge(g, t);
+    }
+    
+    @Test
+    public void testRandomGraph()
+    {
+        CompactGraph g=GraphGenerators.erdosRenyi(2000, 30000, 3);
+        Triangles t=Triangles.count(g);
+        checkAgainstMerge(g, t);
+        assertEquals(0.0, Triangles.count(GraphGenerators.grid(20, 20)).globalClustering(), 0);
+    }
+}